@@ -26,6 +26,8 @@ import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.apache.calcite.jdbc.CalciteSchemaBuilder;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
 import org.apache.pinot.broker.api.RequesterIdentity;
 import org.apache.pinot.broker.broker.AccessControlFactory;
 import org.apache.pinot.broker.queryquota.QueryQuotaManager;
@@ -34,7 +36,6 @@ import org.apache.pinot.common.config.provider.TableCache;
 import org.apache.pinot.common.exception.QueryException;
 import org.apache.pinot.common.metrics.BrokerMeter;
 import org.apache.pinot.common.metrics.BrokerMetrics;
-import org.apache.pinot.common.proto.Mailbox;
 import org.apache.pinot.common.request.BrokerRequest;
 import org.apache.pinot.common.response.BrokerResponse;
 import org.apache.pinot.common.response.broker.BrokerResponseNative;
@@ -44,10 +45,15 @@ import org.apache.pinot.common.utils.request.RequestUtils;
 import org.apache.pinot.core.transport.ServerInstance;
 import org.apache.pinot.query.QueryEnvironment;
 import org.apache.pinot.query.catalog.PinotCatalog;
+import org.apache.pinot.query.catalog.ZkTableStatisticsProvider;
 import org.apache.pinot.query.mailbox.GrpcMailboxService;
 import org.apache.pinot.query.mailbox.MailboxService;
 import org.apache.pinot.query.planner.QueryPlan;
+import org.apache.pinot.query.planner.logical.LogicalPlanCache;
 import org.apache.pinot.query.routing.WorkerManager;
+import org.apache.pinot.query.routing.ZkTablePartitionInfoProvider;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.operator.utils.OperatorStatsUtils;
 import org.apache.pinot.query.service.QueryConfig;
 import org.apache.pinot.query.service.QueryDispatcher;
 import org.apache.pinot.query.type.TypeFactory;
@@ -67,13 +73,14 @@ public class MultiStageBrokerRequestHandler extends BaseBrokerRequestHandler {
   private final String _reducerHostname;
   private final int _reducerPort;
 
-  private final MailboxService<Mailbox.MailboxContent> _mailboxService;
+  private final MailboxService<TransferableBlock> _mailboxService;
+  private final ZkTableStatisticsProvider _tableStatisticsProvider;
   private final QueryEnvironment _queryEnvironment;
   private final QueryDispatcher _queryDispatcher;
 
   public MultiStageBrokerRequestHandler(PinotConfiguration config, BrokerRoutingManager routingManager,
       AccessControlFactory accessControlFactory, QueryQuotaManager queryQuotaManager, TableCache tableCache,
-      BrokerMetrics brokerMetrics) {
+      BrokerMetrics brokerMetrics, ZkHelixPropertyStore<ZNRecord> propertyStore) {
     super(config, routingManager, accessControlFactory, queryQuotaManager, tableCache, brokerMetrics);
     LOGGER.info("Using Multi-stage BrokerRequestHandler.");
     String reducerHostname = config.getProperty(QueryConfig.KEY_OF_QUERY_RUNNER_HOSTNAME);
@@ -87,9 +94,23 @@ public class MultiStageBrokerRequestHandler extends BaseBrokerRequestHandler {
     }
     _reducerHostname = reducerHostname;
     _reducerPort = config.getProperty(QueryConfig.KEY_OF_QUERY_RUNNER_PORT, QueryConfig.DEFAULT_QUERY_RUNNER_PORT);
+    long statisticsRefreshIntervalMs = config.getProperty(
+        QueryConfig.KEY_OF_PLANNER_TABLE_STATISTICS_REFRESH_INTERVAL_MS,
+        ZkTableStatisticsProvider.DEFAULT_REFRESH_INTERVAL_MS);
+    _tableStatisticsProvider = new ZkTableStatisticsProvider(propertyStore, statisticsRefreshIntervalMs);
+    int planCacheSize =
+        config.getProperty(QueryConfig.KEY_OF_PLANNER_PLAN_CACHE_SIZE, QueryConfig.DEFAULT_PLANNER_PLAN_CACHE_SIZE);
+    LogicalPlanCache planCache =
+        planCacheSize > 0 ? new LogicalPlanCache(planCacheSize, statisticsRefreshIntervalMs) : null;
     _queryEnvironment = new QueryEnvironment(new TypeFactory(new TypeSystem()),
-        CalciteSchemaBuilder.asRootSchema(new PinotCatalog(tableCache)),
-        new WorkerManager(_reducerHostname, _reducerPort, routingManager));
+        CalciteSchemaBuilder.asRootSchema(new PinotCatalog(tableCache, _tableStatisticsProvider)),
+        new WorkerManager(_reducerHostname, _reducerPort, routingManager,
+            new ZkTablePartitionInfoProvider(tableCache, propertyStore)), planCache);
+    if (planCache != null) {
+      // cached plans are resolved against the table configs and schemas, drop them all when any of them changes.
+      tableCache.registerTableConfigChangeListener(tableConfigs -> _queryEnvironment.invalidatePlanCache());
+      tableCache.registerSchemaChangeListener(schemas -> _queryEnvironment.invalidatePlanCache());
+    }
     _queryDispatcher = new QueryDispatcher();
     _mailboxService = new GrpcMailboxService(_reducerHostname, _reducerPort, config);
 
@@ -141,6 +162,21 @@ public class MultiStageBrokerRequestHandler extends BaseBrokerRequestHandler {
       switch (sqlNodeAndOptions.getSqlNode().getKind()) {
         case EXPLAIN:
           String plan = _queryEnvironment.explainQuery(query, sqlNodeAndOptions);
+          if (Boolean.parseBoolean(sqlNodeAndOptions.getOptions().get(CommonConstants.Broker.Request.TRACE))) {
+            // run the explained query to report the runtime stats of each stage along with the plan, the explained
+            // query is compiled again from a fresh parse.
+            QueryPlan explainedQueryPlan =
+                _queryEnvironment.planExplainedQuery(query, RequestUtils.parseQuery(query, request));
+            List<JsonNode> stageStats = new ArrayList<>();
+            try {
+              _queryDispatcher.submitAndReduce(requestId, explainedQueryPlan, _mailboxService, DEFAULT_TIMEOUT_NANO,
+                  stageStats);
+            } catch (Exception e) {
+              LOGGER.info("explained query execution failed", e);
+              return new BrokerResponseNative(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
+            }
+            plan = plan + "\n" + OperatorStatsUtils.explainStageStats(OperatorStatsUtils.mergeStageStats(stageStats));
+          }
           return constructMultistageExplainPlan(query, plan);
         case SELECT:
         default:
@@ -155,8 +191,10 @@ public class MultiStageBrokerRequestHandler extends BaseBrokerRequestHandler {
     }
 
     ResultTable queryResults;
+    List<JsonNode> stageStats = new ArrayList<>();
     try {
-      queryResults = _queryDispatcher.submitAndReduce(requestId, queryPlan, _mailboxService, DEFAULT_TIMEOUT_NANO);
+      queryResults =
+          _queryDispatcher.submitAndReduce(requestId, queryPlan, _mailboxService, DEFAULT_TIMEOUT_NANO, stageStats);
     } catch (Exception e) {
       LOGGER.info("query execution failed", e);
       return new BrokerResponseNative(QueryException.getException(QueryException.QUERY_EXECUTION_ERROR, e));
@@ -170,6 +208,7 @@ public class MultiStageBrokerRequestHandler extends BaseBrokerRequestHandler {
         + (executionEndTimeNs - compilationStartTimeNs));
     brokerResponse.setTimeUsedMs(totalTimeMs);
     brokerResponse.setResultTable(queryResults);
+    brokerResponse.setStageStats(OperatorStatsUtils.mergeStageStats(stageStats));
     requestContext.setQueryProcessingTime(totalTimeMs);
     augmentStatistics(requestContext, brokerResponse);
     return brokerResponse;
@@ -204,5 +243,6 @@ public class MultiStageBrokerRequestHandler extends BaseBrokerRequestHandler {
   public void shutDown() {
     _queryDispatcher.shutdown();
     _mailboxService.shutdown();
+    _tableStatisticsProvider.shutDown();
   }
 }
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -47,7 +48,7 @@ import org.apache.pinot.spi.utils.JsonUtils;
     "numGroupsLimitReached", "totalDocs", "timeUsedMs", "offlineThreadCpuTimeNs", "realtimeThreadCpuTimeNs",
     "offlineSystemActivitiesCpuTimeNs", "realtimeSystemActivitiesCpuTimeNs", "offlineResponseSerializationCpuTimeNs",
     "realtimeResponseSerializationCpuTimeNs", "offlineTotalCpuTimeNs", "realtimeTotalCpuTimeNs", "segmentStatistics",
-    "traceInfo"
+    "traceInfo", "stageStats"
 })
 public class BrokerResponseNative implements BrokerResponse {
   public static final BrokerResponseNative EMPTY_RESULT = BrokerResponseNative.empty();
@@ -95,6 +96,8 @@ public class BrokerResponseNative implements BrokerResponse {
   private Map<String, String> _traceInfo = new HashMap<>();
   private List<QueryProcessingException> _processingExceptions = new ArrayList<>();
   private List<String> _segmentStatistics = new ArrayList<>();
+  // per-operator stats of each stage, only set for the multi-stage queries.
+  private JsonNode _stageStats;
 
   public BrokerResponseNative() {
   }
@@ -531,6 +534,17 @@ public class BrokerResponseNative implements BrokerResponse {
     _traceInfo = traceInfo;
   }
 
+  @JsonProperty("stageStats")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public JsonNode getStageStats() {
+    return _stageStats;
+  }
+
+  @JsonProperty("stageStats")
+  public void setStageStats(JsonNode stageStats) {
+    _stageStats = stageStats;
+  }
+
   @Override
   public String toJsonString()
       throws IOException {
@@ -20,6 +20,7 @@ package org.apache.pinot.core.common.datablock;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.utils.DataSchema;
 
 
@@ -92,5 +93,82 @@ public class ColumnarDataBlock extends BaseDataBlock {
     return new ColumnarDataBlock(_numRows, _dataSchema, _stringDictionary, _fixedSizeDataBytes, _variableSizeDataBytes);
   }
 
-  // TODO: add whole-column access methods.
+  // --------------------------------------------------------------------------
+  // Whole-column access
+  // --------------------------------------------------------------------------
+
+  /**
+   * Returns the values of an INT column read in bulk from the column-major fixed size buffer. For a STRING column the
+   * returned values are the ids into {@link #getStringDictionary()}, and for a FLOAT column the raw float bits.
+   */
+  public int[] getIntColumn(int colId) {
+    int[] values = new int[_numRows];
+    if (_numRows > 0) {
+      getColumnBuffer(colId).asIntBuffer().get(values);
+    }
+    return values;
+  }
+
+  /**
+   * Returns the values of a LONG column read in bulk from the column-major fixed size buffer. For a DOUBLE column the
+   * returned values are the raw double bits.
+   */
+  public long[] getLongColumn(int colId) {
+    long[] values = new long[_numRows];
+    if (_numRows > 0) {
+      getColumnBuffer(colId).asLongBuffer().get(values);
+    }
+    return values;
+  }
+
+  public float[] getFloatColumn(int colId) {
+    float[] values = new float[_numRows];
+    if (_numRows > 0) {
+      getColumnBuffer(colId).asFloatBuffer().get(values);
+    }
+    return values;
+  }
+
+  public double[] getDoubleColumn(int colId) {
+    double[] values = new double[_numRows];
+    if (_numRows > 0) {
+      getColumnBuffer(colId).asDoubleBuffer().get(values);
+    }
+    return values;
+  }
+
+  /**
+   * Returns the values of a STRING column. The returned array shares the String instances of the dictionary.
+   */
+  public String[] getStringColumn(int colId) {
+    int[] dictIds = getIntColumn(colId);
+    String[] values = new String[_numRows];
+    for (int rowId = 0; rowId < _numRows; rowId++) {
+      values[rowId] = _stringDictionary[dictIds[rowId]];
+    }
+    return values;
+  }
+
+  @Nullable
+  public String[] getStringDictionary() {
+    return _stringDictionary;
+  }
+
+  /**
+   * Returns the size of the fixed and variable size data of the block, not counting the dictionary and the metadata.
+   */
+  public int getDataSizeInBytes() {
+    int dataSize = _fixedSizeDataBytes != null ? _fixedSizeDataBytes.length : 0;
+    return _variableSizeDataBytes != null ? dataSize + _variableSizeDataBytes.length : dataSize;
+  }
+
+  /**
+   * Returns a view of the fixed size buffer positioned at the start of the given column. The view is independent of
+   * the shared buffer position, so whole-column reads do not interfere with the row accessors.
+   */
+  ByteBuffer getColumnBuffer(int colId) {
+    ByteBuffer columnBuffer = _fixedSizeData.duplicate();
+    columnBuffer.position(_cumulativeColumnOffsetSizeInBytes[colId]);
+    return columnBuffer;
+  }
 }
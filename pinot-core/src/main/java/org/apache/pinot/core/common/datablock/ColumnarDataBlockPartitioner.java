@@ -0,0 +1,473 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.common.datablock;
+
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.ObjectSerDeUtils;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+
+/**
+ * Splits a {@link ColumnarDataBlock} into one block per partition, given the partition id of every row.
+ *
+ * <p>Rows are first bucketed by a counting sort on the partition ids, then every column is moved as a whole: fixed
+ * width values are gathered into primitive arrays and bulk written into the partition buffers, STRING dictionary ids
+ * are remapped into a per-partition dictionary (sharing the String instances of the source dictionary), and variable
+ * size values are copied as raw bytes. No per-row object is created. Within a partition the rows keep their relative
+ * order from the source block.
+ *
+ * <p>Rows with a negative partition id are dropped, which is also how a block is compacted to the rows of a selection
+ * vector (see {@link #select(ColumnarDataBlock, int[])}). The same column-wise copy is used the other way around to
+ * concatenate blocks (see {@link #concat(List)}).
+ */
+public final class ColumnarDataBlockPartitioner {
+  private ColumnarDataBlockPartitioner() {
+  }
+
+  /**
+   * Returns a block with only the given rows of the source block, in the given order which must be ascending.
+   */
+  public static ColumnarDataBlock select(ColumnarDataBlock block, int[] rowIds)
+      throws IOException {
+    int[] partitionIds = new int[block.getNumberOfRows()];
+    Arrays.fill(partitionIds, -1);
+    for (int rowId : rowIds) {
+      partitionIds[rowId] = 0;
+    }
+    return partition(block, partitionIds, 1)[0];
+  }
+
+  /**
+   * Returns a single block with the rows of all the given blocks, in order. The blocks must share the same data schema.
+   * The STRING dictionaries of the blocks are merged, so that every distinct value is stored once.
+   */
+  public static ColumnarDataBlock concat(List<ColumnarDataBlock> blocks)
+      throws IOException {
+    Preconditions.checkArgument(!blocks.isEmpty(), "Expect at least one block to concatenate");
+    ColumnarDataBlock firstBlock = blocks.get(0);
+    if (blocks.size() == 1) {
+      return firstBlock;
+    }
+    DataSchema dataSchema = firstBlock.getDataSchema();
+    int numBlocks = blocks.size();
+    int numRows = 0;
+    int maxBlockNumRows = 0;
+    for (ColumnarDataBlock block : blocks) {
+      Preconditions.checkArgument(dataSchema.equals(block.getDataSchema()),
+          "Cannot concatenate blocks with different data schemas: %s and %s", dataSchema, block.getDataSchema());
+      numRows += block.getNumberOfRows();
+      maxBlockNumRows = Math.max(maxBlockNumRows, block.getNumberOfRows());
+    }
+
+    // Merge the STRING dictionaries, and record the merged dictionary id of every source dictionary id.
+    List<String> dictionary = new ArrayList<>();
+    Map<String, Integer> dictIdByValue = new HashMap<>();
+    int[][] dictIdMaps = new int[numBlocks][];
+    for (int i = 0; i < numBlocks; i++) {
+      String[] sourceDictionary = blocks.get(i)._stringDictionary;
+      int[] dictIdMap = new int[sourceDictionary != null ? sourceDictionary.length : 0];
+      for (int sourceDictId = 0; sourceDictId < dictIdMap.length; sourceDictId++) {
+        dictIdMap[sourceDictId] = dictIdByValue.computeIfAbsent(sourceDictionary[sourceDictId], value -> {
+          dictionary.add(value);
+          return dictionary.size() - 1;
+        });
+      }
+      dictIdMaps[i] = dictIdMap;
+    }
+
+    int[] rowIds = new int[maxBlockNumRows];
+    for (int rowId = 0; rowId < maxBlockNumRows; rowId++) {
+      rowIds[rowId] = rowId;
+    }
+    int numColumns = dataSchema.size();
+    DataSchema.ColumnDataType[] storedTypes = dataSchema.getStoredColumnDataTypes();
+    PartitionWriter writer = new PartitionWriter(numRows, firstBlock._columnSizeInBytes, dictionary);
+    for (int colId = 0; colId < numColumns; colId++) {
+      for (int i = 0; i < numBlocks; i++) {
+        ColumnarDataBlock block = blocks.get(i);
+        int blockNumRows = block.getNumberOfRows();
+        if (blockNumRows == 0) {
+          continue;
+        }
+        writer.setDictIdMap(dictIdMaps[i]);
+        switch (storedTypes[colId]) {
+          case INT:
+          case FLOAT:
+            writer.writeIntColumn(block.getIntColumn(colId), rowIds, 0, blockNumRows);
+            break;
+          case LONG:
+          case DOUBLE:
+            writer.writeLongColumn(block.getLongColumn(colId), rowIds, 0, blockNumRows);
+            break;
+          case STRING:
+            writer.writeDictIdColumn(block.getIntColumn(colId), rowIds, 0, blockNumRows);
+            break;
+          default: {
+            int[] positions = new int[blockNumRows * 2];
+            block.getColumnBuffer(colId).asIntBuffer().get(positions);
+            writer.writeVariableSizeColumn(block._variableSizeData, positions,
+                VariableSizeEncoding.of(storedTypes[colId]), rowIds, 0, blockNumRows);
+            break;
+          }
+        }
+      }
+    }
+
+    // Shift the null bitmaps by the number of rows of the preceding blocks.
+    for (int colId = 0; colId < numColumns; colId++) {
+      RoaringBitmap nullRowIds = null;
+      int rowOffset = 0;
+      for (ColumnarDataBlock block : blocks) {
+        RoaringBitmap blockNullRowIds = block.getNullRowIds(colId);
+        if (blockNullRowIds != null && !blockNullRowIds.isEmpty()) {
+          if (nullRowIds == null) {
+            nullRowIds = new RoaringBitmap();
+          }
+          PeekableIntIterator iterator = blockNullRowIds.getIntIterator();
+          while (iterator.hasNext()) {
+            nullRowIds.add(rowOffset + iterator.next());
+          }
+        }
+        rowOffset += block.getNumberOfRows();
+      }
+      writer.writeNullRowIds(nullRowIds);
+    }
+    return writer.build(dataSchema);
+  }
+
+  /**
+   * Returns one block per partition, where row {@code i} of the source block goes to partition
+   * {@code partitionIds[i]}, or is dropped when the partition id is negative. Partitions receiving no row get an empty
+   * block carrying the source data schema.
+   */
+  public static ColumnarDataBlock[] partition(ColumnarDataBlock block, int[] partitionIds, int numPartitions)
+      throws IOException {
+    int numRows = block.getNumberOfRows();
+    Preconditions.checkArgument(partitionIds.length >= numRows, "Expect at least %s partition ids, got %s", numRows,
+        partitionIds.length);
+
+    // Counting sort the row ids by partition, and record the position of every row within its partition.
+    int[] partitionStarts = new int[numPartitions + 1];
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      if (partitionIds[rowId] >= 0) {
+        partitionStarts[partitionIds[rowId] + 1]++;
+      }
+    }
+    for (int partition = 0; partition < numPartitions; partition++) {
+      partitionStarts[partition + 1] += partitionStarts[partition];
+    }
+    int[] sortedRowIds = new int[partitionStarts[numPartitions]];
+    int[] rowPositions = new int[numRows];
+    int[] cursors = Arrays.copyOf(partitionStarts, numPartitions);
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      int partition = partitionIds[rowId];
+      if (partition < 0) {
+        continue;
+      }
+      int index = cursors[partition]++;
+      sortedRowIds[index] = rowId;
+      rowPositions[rowId] = index - partitionStarts[partition];
+    }
+
+    DataSchema dataSchema = block.getDataSchema();
+    int numColumns = dataSchema.size();
+    DataSchema.ColumnDataType[] storedTypes = dataSchema.getStoredColumnDataTypes();
+    PartitionWriter[] writers = new PartitionWriter[numPartitions];
+    for (int partition = 0; partition < numPartitions; partition++) {
+      int partitionNumRows = partitionStarts[partition + 1] - partitionStarts[partition];
+      writers[partition] = new PartitionWriter(partitionNumRows, block._columnSizeInBytes, block._stringDictionary);
+    }
+
+    for (int colId = 0; colId < numColumns; colId++) {
+      switch (storedTypes[colId]) {
+        case INT:
+        case FLOAT: {
+          // FLOAT values are moved as raw bits
+          int[] values = block.getIntColumn(colId);
+          for (int partition = 0; partition < numPartitions; partition++) {
+            writers[partition].writeIntColumn(values, sortedRowIds, partitionStarts[partition],
+                writers[partition]._numRows);
+          }
+          break;
+        }
+        case LONG:
+        case DOUBLE: {
+          // DOUBLE values are moved as raw bits
+          long[] values = block.getLongColumn(colId);
+          for (int partition = 0; partition < numPartitions; partition++) {
+            writers[partition].writeLongColumn(values, sortedRowIds, partitionStarts[partition],
+                writers[partition]._numRows);
+          }
+          break;
+        }
+        case STRING: {
+          int[] dictIds = block.getIntColumn(colId);
+          for (int partition = 0; partition < numPartitions; partition++) {
+            writers[partition].writeDictIdColumn(dictIds, sortedRowIds, partitionStarts[partition],
+                writers[partition]._numRows);
+          }
+          break;
+        }
+        default: {
+          // (POSITION|LENGTH) pairs into the variable size buffer
+          int[] positions = new int[numRows * 2];
+          if (numRows > 0) {
+            block.getColumnBuffer(colId).asIntBuffer().get(positions);
+          }
+          VariableSizeEncoding encoding = VariableSizeEncoding.of(storedTypes[colId]);
+          for (int partition = 0; partition < numPartitions; partition++) {
+            writers[partition].writeVariableSizeColumn(block._variableSizeData, positions, encoding, sortedRowIds,
+                partitionStarts[partition], writers[partition]._numRows);
+          }
+          break;
+        }
+      }
+    }
+
+    // Remap the null bitmaps, then write them after the data as DataBlockBuilder does.
+    RoaringBitmap[][] nullBitmaps = new RoaringBitmap[numColumns][];
+    for (int colId = 0; colId < numColumns; colId++) {
+      RoaringBitmap nullRowIds = block.getNullRowIds(colId);
+      if (nullRowIds != null && !nullRowIds.isEmpty()) {
+        RoaringBitmap[] partitionNullRowIds = new RoaringBitmap[numPartitions];
+        PeekableIntIterator iterator = nullRowIds.getIntIterator();
+        while (iterator.hasNext()) {
+          int rowId = iterator.next();
+          int partition = partitionIds[rowId];
+          if (partition < 0) {
+            continue;
+          }
+          if (partitionNullRowIds[partition] == null) {
+            partitionNullRowIds[partition] = new RoaringBitmap();
+          }
+          partitionNullRowIds[partition].add(rowPositions[rowId]);
+        }
+        nullBitmaps[colId] = partitionNullRowIds;
+      }
+    }
+
+    ColumnarDataBlock[] partitionBlocks = new ColumnarDataBlock[numPartitions];
+    for (int partition = 0; partition < numPartitions; partition++) {
+      PartitionWriter writer = writers[partition];
+      for (int colId = 0; colId < numColumns; colId++) {
+        writer.writeNullRowIds(nullBitmaps[colId] != null ? nullBitmaps[colId][partition] : null);
+      }
+      partitionBlocks[partition] = writer.build(dataSchema);
+    }
+    return partitionBlocks;
+  }
+
+  /**
+   * How the bytes referenced by a (POSITION|LENGTH) pair are laid out in the variable size buffer.
+   */
+  private enum VariableSizeEncoding {
+    // LENGTH is the number of bytes
+    BYTES,
+    // 4 bytes object type followed by LENGTH bytes
+    OBJECT,
+    // LENGTH is the number of 4 bytes elements
+    INT_ELEMENTS,
+    // LENGTH is the number of 8 bytes elements
+    LONG_ELEMENTS,
+    // LENGTH is the number of 4 bytes STRING dictionary ids
+    DICT_ID_ELEMENTS;
+
+    static VariableSizeEncoding of(DataSchema.ColumnDataType storedType) {
+      switch (storedType) {
+        case BIG_DECIMAL:
+        case BYTES:
+          return BYTES;
+        case OBJECT:
+          return OBJECT;
+        case BOOLEAN_ARRAY:
+        case INT_ARRAY:
+        case FLOAT_ARRAY:
+          return INT_ELEMENTS;
+        case TIMESTAMP_ARRAY:
+        case LONG_ARRAY:
+        case DOUBLE_ARRAY:
+          return LONG_ELEMENTS;
+        case BYTES_ARRAY:
+        case STRING_ARRAY:
+          return DICT_ID_ELEMENTS;
+        default:
+          throw new IllegalStateException("Unsupported stored data type: " + storedType);
+      }
+    }
+  }
+
+  /**
+   * Accumulates the fixed size, variable size and dictionary content of a single partition, or of the concatenated
+   * block.
+   */
+  private static class PartitionWriter {
+    private final int _numRows;
+    private final ByteBuffer _fixedSizeData;
+    private final ByteArrayOutputStream _variableSizeDataByteArrayOutputStream = new ByteArrayOutputStream();
+    private final DataOutputStream _variableSizeDataOutputStream =
+        new DataOutputStream(_variableSizeDataByteArrayOutputStream);
+    private final String[] _sourceDictionary;
+    // Mapping from source dictionary id to partition dictionary id (-1 when absent), lazily created when partitioning
+    private int[] _dictIdMap;
+    private List<String> _dictionary;
+    private byte[] _copyBuffer;
+
+    PartitionWriter(int numRows, int[] columnSizeInBytes, String[] sourceDictionary) {
+      _numRows = numRows;
+      int fixedSize = 0;
+      for (int columnSize : columnSizeInBytes) {
+        fixedSize += columnSize * numRows + Integer.BYTES * 2;
+      }
+      _fixedSizeData = ByteBuffer.allocate(fixedSize);
+      _sourceDictionary = sourceDictionary;
+    }
+
+    /**
+     * Creates a writer with an already merged dictionary, see {@link #setDictIdMap(int[])}.
+     */
+    PartitionWriter(int numRows, int[] columnSizeInBytes, List<String> dictionary) {
+      this(numRows, columnSizeInBytes, (String[]) null);
+      _dictionary = dictionary;
+    }
+
+    /**
+     * Sets the complete mapping from the dictionary ids of the block being written to the merged dictionary ids.
+     */
+    void setDictIdMap(int[] dictIdMap) {
+      _dictIdMap = dictIdMap;
+    }
+
+    void writeIntColumn(int[] values, int[] sortedRowIds, int start, int numRows) {
+      int[] gathered = new int[numRows];
+      for (int i = 0; i < numRows; i++) {
+        gathered[i] = values[sortedRowIds[start + i]];
+      }
+      _fixedSizeData.asIntBuffer().put(gathered);
+      _fixedSizeData.position(_fixedSizeData.position() + numRows * Integer.BYTES);
+    }
+
+    void writeLongColumn(long[] values, int[] sortedRowIds, int start, int numRows) {
+      long[] gathered = new long[numRows];
+      for (int i = 0; i < numRows; i++) {
+        gathered[i] = values[sortedRowIds[start + i]];
+      }
+      _fixedSizeData.asLongBuffer().put(gathered);
+      _fixedSizeData.position(_fixedSizeData.position() + numRows * Long.BYTES);
+    }
+
+    void writeDictIdColumn(int[] dictIds, int[] sortedRowIds, int start, int numRows) {
+      int[] gathered = new int[numRows];
+      for (int i = 0; i < numRows; i++) {
+        gathered[i] = remapDictId(dictIds[sortedRowIds[start + i]]);
+      }
+      _fixedSizeData.asIntBuffer().put(gathered);
+      _fixedSizeData.position(_fixedSizeData.position() + numRows * Integer.BYTES);
+    }
+
+    void writeVariableSizeColumn(ByteBuffer sourceVariableSizeData, int[] positions, VariableSizeEncoding encoding,
+        int[] sortedRowIds, int start, int numRows)
+        throws IOException {
+      ByteBuffer source = sourceVariableSizeData != null ? sourceVariableSizeData.duplicate() : null;
+      for (int i = 0; i < numRows; i++) {
+        int rowId = sortedRowIds[start + i];
+        int offset = positions[rowId * 2];
+        int length = positions[rowId * 2 + 1];
+        _fixedSizeData.putInt(_variableSizeDataByteArrayOutputStream.size());
+        _fixedSizeData.putInt(length);
+        switch (encoding) {
+          case BYTES:
+            copyBytes(source, offset, length);
+            break;
+          case OBJECT:
+            copyBytes(source, offset, Integer.BYTES + length);
+            break;
+          case INT_ELEMENTS:
+            copyBytes(source, offset, length * Integer.BYTES);
+            break;
+          case LONG_ELEMENTS:
+            copyBytes(source, offset, length * Long.BYTES);
+            break;
+          case DICT_ID_ELEMENTS:
+            for (int j = 0; j < length; j++) {
+              _variableSizeDataOutputStream.writeInt(remapDictId(source.getInt(offset + j * Integer.BYTES)));
+            }
+            break;
+          default:
+            throw new IllegalStateException("Unsupported encoding: " + encoding);
+        }
+      }
+    }
+
+    void writeNullRowIds(RoaringBitmap nullRowIds)
+        throws IOException {
+      _fixedSizeData.putInt(_variableSizeDataByteArrayOutputStream.size());
+      if (nullRowIds == null || nullRowIds.isEmpty()) {
+        _fixedSizeData.putInt(0);
+      } else {
+        byte[] bitmapBytes = ObjectSerDeUtils.ROARING_BITMAP_SER_DE.serialize(nullRowIds);
+        _fixedSizeData.putInt(bitmapBytes.length);
+        _variableSizeDataByteArrayOutputStream.write(bitmapBytes);
+      }
+    }
+
+    ColumnarDataBlock build(DataSchema dataSchema) {
+      String[] dictionary = _dictionary != null ? _dictionary.toArray(new String[0]) : new String[0];
+      return new ColumnarDataBlock(_numRows, dataSchema, dictionary, _fixedSizeData.array(),
+          _variableSizeDataByteArrayOutputStream.toByteArray());
+    }
+
+    private int remapDictId(int sourceDictId) {
+      if (_dictIdMap == null) {
+        _dictIdMap = new int[_sourceDictionary.length];
+        Arrays.fill(_dictIdMap, -1);
+        _dictionary = new ArrayList<>();
+      }
+      int dictId = _dictIdMap[sourceDictId];
+      if (dictId < 0) {
+        dictId = _dictionary.size();
+        _dictIdMap[sourceDictId] = dictId;
+        _dictionary.add(_sourceDictionary[sourceDictId]);
+      }
+      return dictId;
+    }
+
+    private void copyBytes(ByteBuffer source, int offset, int numBytes) {
+      if (numBytes == 0) {
+        return;
+      }
+      if (_copyBuffer == null || _copyBuffer.length < numBytes) {
+        _copyBuffer = new byte[Math.max(numBytes, 1024)];
+      }
+      source.position(offset);
+      source.get(_copyBuffer, 0, numBytes);
+      _variableSizeDataByteArrayOutputStream.write(_copyBuffer, 0, numBytes);
+    }
+  }
+}
@@ -55,10 +55,18 @@ public final class DataBlockUtils {
   }
 
   public static MetadataBlock getEndOfStreamDataBlock(@Nonnull DataSchema dataSchema) {
-    // TODO: add query statistics metadata for the block.
     return new MetadataBlock(dataSchema);
   }
 
+  /**
+   * Returns an end-of-stream block carrying the given metadata, e.g. the query statistics of the sending stage.
+   */
+  public static MetadataBlock getEndOfStreamDataBlock(@Nonnull DataSchema dataSchema, Map<String, String> metadata) {
+    MetadataBlock endOfStreamBlock = new MetadataBlock(dataSchema);
+    endOfStreamBlock.getMetadata().putAll(metadata);
+    return endOfStreamBlock;
+  }
+
   public static BaseDataBlock getDataBlock(ByteBuffer byteBuffer)
       throws IOException {
     int versionType = byteBuffer.getInt();
@@ -147,6 +155,98 @@ public final class DataBlockUtils {
     return rows;
   }
 
+  /**
+   * Extracts the values of a single column from the data block, with {@code null} for the null values.
+   *
+   * <p>Unlike {@link #extractRows(BaseDataBlock)}, only the given column is read, which is cheaper for the operators
+   * that process a few columns at a time (e.g. group-by keys).
+   */
+  public static Object[] extractColumn(BaseDataBlock dataBlock, int colId) {
+    DataSchema dataSchema = dataBlock.getDataSchema();
+    DataSchema.ColumnDataType storedColumnDataType = dataSchema.getColumnDataType(colId).getStoredType();
+    int numRows = dataBlock.getNumberOfRows();
+
+    Object[] values = new Object[numRows];
+    switch (storedColumnDataType) {
+      // Single-value column
+      case INT:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getInt(rowId, colId);
+        }
+        break;
+      case LONG:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getLong(rowId, colId);
+        }
+        break;
+      case FLOAT:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getFloat(rowId, colId);
+        }
+        break;
+      case DOUBLE:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getDouble(rowId, colId);
+        }
+        break;
+      case BIG_DECIMAL:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getBigDecimal(rowId, colId);
+        }
+        break;
+      case STRING:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getString(rowId, colId);
+        }
+        break;
+      case BYTES:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getBytes(rowId, colId);
+        }
+        break;
+
+      // Multi-value column
+      case INT_ARRAY:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getIntArray(rowId, colId);
+        }
+        break;
+      case LONG_ARRAY:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getLongArray(rowId, colId);
+        }
+        break;
+      case FLOAT_ARRAY:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getFloatArray(rowId, colId);
+        }
+        break;
+      case DOUBLE_ARRAY:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getDoubleArray(rowId, colId);
+        }
+        break;
+      case STRING_ARRAY:
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = dataBlock.getStringArray(rowId, colId);
+        }
+        break;
+
+      default:
+        throw new IllegalStateException(
+            String.format("Unsupported data type: %s for column: %s", storedColumnDataType,
+                dataSchema.getColumnName(colId)));
+    }
+
+    RoaringBitmap nullBitmap = dataBlock.getNullRowIds(colId);
+    if (nullBitmap != null) {
+      for (Integer rowId : nullBitmap) {
+        values[rowId] = null;
+      }
+    }
+    return values;
+  }
+
   /**
    * Given a {@link DataSchema}, compute each column's offset and fill them into the passed in array, then return the
    * row size in bytes.
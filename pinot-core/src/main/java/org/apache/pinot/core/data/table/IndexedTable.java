@@ -139,21 +139,40 @@ public abstract class IndexedTable extends BaseTable {
     assert _hasOrderBy;
     long startTimeNs = System.nanoTime();
     _tableResizer.resizeRecordsMap(_lookupMap, _trimSize);
-    long resizeTimeNs = System.nanoTime() - startTimeNs;
+    addResize(System.nanoTime() - startTimeNs);
+  }
+
+  /**
+   * Records a resize of the table which took the given time.
+   */
+  protected void addResize(long resizeTimeNs) {
     _numResizes++;
     _resizeTimeNs += resizeTimeNs;
   }
 
+  /**
+   * Adds the resize stats of the given table into this table.
+   */
+  protected void addResizeStats(IndexedTable indexedTable) {
+    _numResizes += indexedTable._numResizes;
+    _resizeTimeNs += indexedTable._resizeTimeNs;
+  }
+
+  /**
+   * Returns the top records of the table, sorted if requested and the table has ORDER BY.
+   */
+  protected Collection<Record> getTopRecords(boolean sort) {
+    return _hasOrderBy ? _tableResizer.getTopRecords(_lookupMap, _resultSize, sort) : _lookupMap.values();
+  }
+
   @Override
   public void finish(boolean sort, boolean storeFinalResult) {
     if (_hasOrderBy) {
       long startTimeNs = System.nanoTime();
-      _topRecords = _tableResizer.getTopRecords(_lookupMap, _resultSize, sort);
-      long resizeTimeNs = System.nanoTime() - startTimeNs;
-      _numResizes++;
-      _resizeTimeNs += resizeTimeNs;
+      _topRecords = getTopRecords(sort);
+      addResize(System.nanoTime() - startTimeNs);
     } else {
-      _topRecords = _lookupMap.values();
+      _topRecords = getTopRecords(false);
     }
     // TODO: Directly return final result in _tableResizer.getTopRecords to avoid extracting final result multiple times
     if (storeFinalResult) {
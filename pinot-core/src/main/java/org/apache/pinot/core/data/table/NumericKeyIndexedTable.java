@@ -0,0 +1,507 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.table;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.FunctionContext;
+import org.apache.pinot.common.request.context.OrderByExpressionContext;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
+import org.apache.pinot.core.query.request.context.QueryContext;
+
+
+/**
+ * {@link IndexedTable} implementation for GROUP BY on a single INT or LONG expression, which stores the groups in
+ * primitive arrays instead of allocating a {@link Key}, a {@link Record} and boxed values for each group.
+ * <p>The group keys (INT keys are widened to LONG) are indexed with an open addressing hash table, and the
+ * intermediate results of SUM, MIN, MAX and COUNT are accumulated into primitive arrays. Other aggregation functions
+ * are merged on their boxed intermediate results. The groups are trimmed and sorted on the primitive arrays, and
+ * records are only materialized for the top groups in {@link #finish(boolean, boolean)}.
+ * <p>Should only be used when {@link #isApplicable(DataSchema, QueryContext)} returns {@code true}.
+ */
+@NotThreadSafe
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class NumericKeyIndexedTable extends IndexedTable {
+  private static final int INITIAL_GROUP_CAPACITY = 128;
+
+  private enum Accumulator {
+    DOUBLE_SUM, DOUBLE_MIN, DOUBLE_MAX, LONG_SUM, OBJECT
+  }
+
+  private final boolean _intKey;
+  private final int _numAggregationFunctions;
+  private final Accumulator[] _accumulators;
+  private final IntComparator _groupIdComparator;
+
+  // Open addressing hash table from the group key to the group id + 1 (0 for empty slot)
+  private long[] _hashKeys;
+  private int[] _hashGroupIds;
+  private int _hashMask;
+
+  // Group keys and values indexed by the group id
+  private int _numGroups;
+  private long[] _groupKeys;
+  private final double[][] _doubleValues;
+  private final long[][] _longValues;
+  private final Object[][] _objectValues;
+
+  public NumericKeyIndexedTable(DataSchema dataSchema, QueryContext queryContext, int resultSize, int trimSize,
+      int trimThreshold) {
+    super(dataSchema, queryContext, resultSize, trimSize, trimThreshold, Collections.emptyMap());
+    assert isApplicable(dataSchema, queryContext);
+    _intKey = dataSchema.getColumnDataType(0).getStoredType() == ColumnDataType.INT;
+    _numAggregationFunctions = _aggregationFunctions.length;
+    _accumulators = new Accumulator[_numAggregationFunctions];
+    _doubleValues = new double[_numAggregationFunctions][];
+    _longValues = new long[_numAggregationFunctions][];
+    _objectValues = new Object[_numAggregationFunctions][];
+    for (int i = 0; i < _numAggregationFunctions; i++) {
+      Accumulator accumulator = getAccumulator(_aggregationFunctions[i]);
+      _accumulators[i] = accumulator;
+      switch (accumulator) {
+        case DOUBLE_SUM:
+        case DOUBLE_MIN:
+        case DOUBLE_MAX:
+          _doubleValues[i] = new double[INITIAL_GROUP_CAPACITY];
+          break;
+        case LONG_SUM:
+          _longValues[i] = new long[INITIAL_GROUP_CAPACITY];
+          break;
+        default:
+          _objectValues[i] = new Object[INITIAL_GROUP_CAPACITY];
+          break;
+      }
+    }
+    _groupIdComparator = _hasOrderBy ? getGroupIdComparator(queryContext) : null;
+    _groupKeys = new long[INITIAL_GROUP_CAPACITY];
+    initHashTable(2 * INITIAL_GROUP_CAPACITY);
+  }
+
+  /**
+   * Returns whether the table can be used for the query, i.e. the query groups by a single INT or LONG expression
+   * without null handling, and all the ORDER BY expressions are either the group-by expression or aggregation
+   * functions accumulated into primitive values.
+   */
+  public static boolean isApplicable(DataSchema dataSchema, QueryContext queryContext) {
+    List<ExpressionContext> groupByExpressions = queryContext.getGroupByExpressions();
+    if (groupByExpressions == null || groupByExpressions.size() != 1 || queryContext.isNullHandlingEnabled()) {
+      return false;
+    }
+    ColumnDataType keyType = dataSchema.getColumnDataType(0).getStoredType();
+    if (keyType != ColumnDataType.INT && keyType != ColumnDataType.LONG) {
+      return false;
+    }
+    List<OrderByExpressionContext> orderByExpressions = queryContext.getOrderByExpressions();
+    if (orderByExpressions != null) {
+      AggregationFunction[] aggregationFunctions = queryContext.getAggregationFunctions();
+      for (OrderByExpressionContext orderByExpression : orderByExpressions) {
+        int columnIndex = getOrderByColumnIndex(orderByExpression.getExpression(), queryContext);
+        if (columnIndex < 0
+            || (columnIndex > 0 && getAccumulator(aggregationFunctions[columnIndex - 1]) == Accumulator.OBJECT)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the column for the given ORDER BY expression, or -1 if it is not the group-by expression or
+   * an aggregation function.
+   */
+  private static int getOrderByColumnIndex(ExpressionContext expression, QueryContext queryContext) {
+    if (expression.equals(queryContext.getGroupByExpressions().get(0))) {
+      return 0;
+    }
+    FunctionContext function = expression.getFunction();
+    if (function == null || function.getType() != FunctionContext.Type.AGGREGATION) {
+      return -1;
+    }
+    Integer aggregationFunctionIndex = queryContext.getAggregationFunctionIndexMap().get(function);
+    return aggregationFunctionIndex != null ? aggregationFunctionIndex + 1 : -1;
+  }
+
+  /**
+   * Returns the primitive accumulator for the given aggregation function. The intermediate result and the final
+   * result of the aggregation functions with primitive accumulator are the same.
+   */
+  private static Accumulator getAccumulator(AggregationFunction aggregationFunction) {
+    ColumnDataType intermediateResultType = aggregationFunction.getIntermediateResultColumnType();
+    switch (aggregationFunction.getType()) {
+      case COUNT:
+      case COUNTMV:
+        return intermediateResultType == ColumnDataType.LONG ? Accumulator.LONG_SUM : Accumulator.OBJECT;
+      case SUM:
+      case SUMMV:
+        return intermediateResultType == ColumnDataType.DOUBLE ? Accumulator.DOUBLE_SUM : Accumulator.OBJECT;
+      case MIN:
+      case MINMV:
+        return intermediateResultType == ColumnDataType.DOUBLE ? Accumulator.DOUBLE_MIN : Accumulator.OBJECT;
+      case MAX:
+      case MAXMV:
+        return intermediateResultType == ColumnDataType.DOUBLE ? Accumulator.DOUBLE_MAX : Accumulator.OBJECT;
+      default:
+        return Accumulator.OBJECT;
+    }
+  }
+
+  /**
+   * Returns a comparator on the group ids which ranks the groups in the order of the ORDER BY expressions.
+   */
+  private IntComparator getGroupIdComparator(QueryContext queryContext) {
+    List<OrderByExpressionContext> orderByExpressions = queryContext.getOrderByExpressions();
+    assert orderByExpressions != null;
+    int numOrderByExpressions = orderByExpressions.size();
+    IntComparator[] comparators = new IntComparator[numOrderByExpressions];
+    for (int i = 0; i < numOrderByExpressions; i++) {
+      OrderByExpressionContext orderByExpression = orderByExpressions.get(i);
+      int columnIndex = getOrderByColumnIndex(orderByExpression.getExpression(), queryContext);
+      IntComparator comparator;
+      if (columnIndex == 0) {
+        comparator = (groupId1, groupId2) -> Long.compare(_groupKeys[groupId1], _groupKeys[groupId2]);
+      } else {
+        int aggregationFunctionIndex = columnIndex - 1;
+        if (_accumulators[aggregationFunctionIndex] == Accumulator.LONG_SUM) {
+          comparator = (groupId1, groupId2) -> Long.compare(_longValues[aggregationFunctionIndex][groupId1],
+              _longValues[aggregationFunctionIndex][groupId2]);
+        } else {
+          comparator = (groupId1, groupId2) -> Double.compare(_doubleValues[aggregationFunctionIndex][groupId1],
+              _doubleValues[aggregationFunctionIndex][groupId2]);
+        }
+      }
+      if (orderByExpression.isAsc()) {
+        comparators[i] = comparator;
+      } else {
+        comparators[i] = (groupId1, groupId2) -> comparator.compare(groupId2, groupId1);
+      }
+    }
+    if (numOrderByExpressions == 1) {
+      return comparators[0];
+    }
+    return (groupId1, groupId2) -> {
+      for (IntComparator comparator : comparators) {
+        int result = comparator.compare(groupId1, groupId2);
+        if (result != 0) {
+          return result;
+        }
+      }
+      return 0;
+    };
+  }
+
+  private void initHashTable(int hashCapacity) {
+    _hashKeys = new long[hashCapacity];
+    _hashGroupIds = new int[hashCapacity];
+    _hashMask = hashCapacity - 1;
+    for (int groupId = 0; groupId < _numGroups; groupId++) {
+      long key = _groupKeys[groupId];
+      int slot = (int) HashCommon.mix(key) & _hashMask;
+      while (_hashGroupIds[slot] != 0) {
+        slot = (slot + 1) & _hashMask;
+      }
+      _hashKeys[slot] = key;
+      _hashGroupIds[slot] = groupId + 1;
+    }
+  }
+
+  /**
+   * Returns the group id for the given key, or adds a new group if the key does not exist. Returns -1 if the key does
+   * not exist and the table does not accept new groups (GROUP BY without ORDER BY with result size reached).
+   * <p>NOTE: Adding a new group might trim the table, which invalidates the previously returned group ids.
+   */
+  public int getGroupId(long key) {
+    int slot = (int) HashCommon.mix(key) & _hashMask;
+    int hashGroupId;
+    while ((hashGroupId = _hashGroupIds[slot]) != 0) {
+      if (_hashKeys[slot] == key) {
+        return hashGroupId - 1;
+      }
+      slot = (slot + 1) & _hashMask;
+    }
+
+    // New group
+    if (_hasOrderBy) {
+      if (_numGroups >= _trimThreshold && _numGroups > _trimSize) {
+        resize();
+        return getGroupId(key);
+      }
+    } else if (_numGroups >= _resultSize) {
+      return -1;
+    }
+    if (_numGroups == _groupKeys.length) {
+      expand();
+      return getGroupId(key);
+    }
+    int groupId = _numGroups++;
+    _groupKeys[groupId] = key;
+    _hashKeys[slot] = key;
+    _hashGroupIds[slot] = groupId + 1;
+    for (int i = 0; i < _numAggregationFunctions; i++) {
+      switch (_accumulators[i]) {
+        case DOUBLE_SUM:
+          _doubleValues[i][groupId] = 0.0;
+          break;
+        case DOUBLE_MIN:
+          _doubleValues[i][groupId] = Double.POSITIVE_INFINITY;
+          break;
+        case DOUBLE_MAX:
+          _doubleValues[i][groupId] = Double.NEGATIVE_INFINITY;
+          break;
+        case LONG_SUM:
+          _longValues[i][groupId] = 0L;
+          break;
+        default:
+          _objectValues[i][groupId] = null;
+          break;
+      }
+    }
+    return groupId;
+  }
+
+  /**
+   * Doubles the capacity of the groups and the hash table.
+   */
+  private void expand() {
+    int groupCapacity = 2 * _groupKeys.length;
+    _groupKeys = Arrays.copyOf(_groupKeys, groupCapacity);
+    for (int i = 0; i < _numAggregationFunctions; i++) {
+      if (_doubleValues[i] != null) {
+        _doubleValues[i] = Arrays.copyOf(_doubleValues[i], groupCapacity);
+      } else if (_longValues[i] != null) {
+        _longValues[i] = Arrays.copyOf(_longValues[i], groupCapacity);
+      } else {
+        _objectValues[i] = Arrays.copyOf(_objectValues[i], groupCapacity);
+      }
+    }
+    initHashTable(2 * groupCapacity);
+  }
+
+  /**
+   * Merges a DOUBLE intermediate result into the given group.
+   */
+  public void mergeDouble(int groupId, int aggregationFunctionIndex, double value) {
+    double[] values = _doubleValues[aggregationFunctionIndex];
+    switch (_accumulators[aggregationFunctionIndex]) {
+      case DOUBLE_SUM:
+        values[groupId] += value;
+        break;
+      case DOUBLE_MIN:
+        values[groupId] = Math.min(values[groupId], value);
+        break;
+      case DOUBLE_MAX:
+        values[groupId] = Math.max(values[groupId], value);
+        break;
+      default:
+        mergeObject(groupId, aggregationFunctionIndex, value);
+        break;
+    }
+  }
+
+  /**
+   * Merges a LONG intermediate result into the given group.
+   */
+  public void mergeLong(int groupId, int aggregationFunctionIndex, long value) {
+    if (_accumulators[aggregationFunctionIndex] == Accumulator.LONG_SUM) {
+      _longValues[aggregationFunctionIndex][groupId] += value;
+    } else {
+      mergeObject(groupId, aggregationFunctionIndex, value);
+    }
+  }
+
+  /**
+   * Merges a boxed intermediate result into the given group.
+   */
+  public void mergeObject(int groupId, int aggregationFunctionIndex, Object value) {
+    switch (_accumulators[aggregationFunctionIndex]) {
+      case DOUBLE_SUM:
+      case DOUBLE_MIN:
+      case DOUBLE_MAX:
+        mergeDouble(groupId, aggregationFunctionIndex, ((Number) value).doubleValue());
+        break;
+      case LONG_SUM:
+        mergeLong(groupId, aggregationFunctionIndex, ((Number) value).longValue());
+        break;
+      default:
+        Object[] values = _objectValues[aggregationFunctionIndex];
+        Object existingValue = values[groupId];
+        values[groupId] =
+            existingValue != null ? _aggregationFunctions[aggregationFunctionIndex].merge(existingValue, value) : value;
+        break;
+    }
+  }
+
+  @Override
+  public boolean upsert(Record record) {
+    Object[] values = record.getValues();
+    int groupId = getGroupId(((Number) values[0]).longValue());
+    if (groupId >= 0) {
+      for (int i = 0; i < _numAggregationFunctions; i++) {
+        mergeObject(groupId, i, values[i + 1]);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean upsert(Key key, Record record) {
+    return upsert(record);
+  }
+
+  /**
+   * Merges all the groups and the resize stats of the given table (for the same query) into this table.
+   */
+  public void mergeGroups(NumericKeyIndexedTable indexedTable) {
+    int numGroups = indexedTable._numGroups;
+    for (int i = 0; i < numGroups; i++) {
+      int groupId = getGroupId(indexedTable._groupKeys[i]);
+      if (groupId < 0) {
+        continue;
+      }
+      for (int j = 0; j < _numAggregationFunctions; j++) {
+        switch (_accumulators[j]) {
+          case DOUBLE_SUM:
+          case DOUBLE_MIN:
+          case DOUBLE_MAX:
+            mergeDouble(groupId, j, indexedTable._doubleValues[j][i]);
+            break;
+          case LONG_SUM:
+            mergeLong(groupId, j, indexedTable._longValues[j][i]);
+            break;
+          default:
+            mergeObject(groupId, j, indexedTable._objectValues[j][i]);
+            break;
+        }
+      }
+    }
+    addResizeStats(indexedTable);
+  }
+
+  /**
+   * Trims the table to the trim size on the primitive arrays.
+   */
+  @Override
+  protected void resize() {
+    assert _hasOrderBy;
+    long startTimeNs = System.nanoTime();
+    if (_numGroups > _trimSize) {
+      retainGroups(TableResizer.getTopGroupIds(_numGroups, _trimSize, _groupIdComparator, false));
+    }
+    addResize(System.nanoTime() - startTimeNs);
+  }
+
+  /**
+   * Retains only the given groups, which are re-numbered in the given order.
+   */
+  private void retainGroups(int[] groupIds) {
+    int numGroups = groupIds.length;
+    int groupCapacity = _groupKeys.length;
+    long[] groupKeys = new long[groupCapacity];
+    for (int i = 0; i < numGroups; i++) {
+      groupKeys[i] = _groupKeys[groupIds[i]];
+    }
+    _groupKeys = groupKeys;
+    for (int i = 0; i < _numAggregationFunctions; i++) {
+      if (_doubleValues[i] != null) {
+        double[] oldValues = _doubleValues[i];
+        double[] newValues = new double[groupCapacity];
+        for (int j = 0; j < numGroups; j++) {
+          newValues[j] = oldValues[groupIds[j]];
+        }
+        _doubleValues[i] = newValues;
+      } else if (_longValues[i] != null) {
+        long[] oldValues = _longValues[i];
+        long[] newValues = new long[groupCapacity];
+        for (int j = 0; j < numGroups; j++) {
+          newValues[j] = oldValues[groupIds[j]];
+        }
+        _longValues[i] = newValues;
+      } else {
+        Object[] oldValues = _objectValues[i];
+        Object[] newValues = new Object[groupCapacity];
+        for (int j = 0; j < numGroups; j++) {
+          newValues[j] = oldValues[groupIds[j]];
+        }
+        _objectValues[i] = newValues;
+      }
+    }
+    _numGroups = numGroups;
+    initHashTable(_hashKeys.length);
+  }
+
+  @Override
+  protected Collection<Record> getTopRecords(boolean sort) {
+    if (_hasOrderBy) {
+      int[] groupIds = TableResizer.getTopGroupIds(_numGroups, _resultSize, _groupIdComparator, sort);
+      List<Record> topRecords = new ArrayList<>(groupIds.length);
+      for (int groupId : groupIds) {
+        topRecords.add(getRecord(groupId));
+      }
+      return topRecords;
+    } else {
+      List<Record> records = new ArrayList<>(_numGroups);
+      for (int groupId = 0; groupId < _numGroups; groupId++) {
+        records.add(getRecord(groupId));
+      }
+      return records;
+    }
+  }
+
+  /**
+   * Materializes the record for the given group.
+   */
+  private Record getRecord(int groupId) {
+    Object[] values = new Object[_numColumns];
+    long key = _groupKeys[groupId];
+    if (_intKey) {
+      values[0] = (int) key;
+    } else {
+      values[0] = key;
+    }
+    for (int i = 0; i < _numAggregationFunctions; i++) {
+      switch (_accumulators[i]) {
+        case DOUBLE_SUM:
+        case DOUBLE_MIN:
+        case DOUBLE_MAX:
+          values[i + 1] = _doubleValues[i][groupId];
+          break;
+        case LONG_SUM:
+          values[i + 1] = _longValues[i][groupId];
+          break;
+        default:
+          values[i + 1] = _objectValues[i][groupId];
+          break;
+      }
+    }
+    return new Record(values);
+  }
+
+  @Override
+  public int size() {
+    return _topRecords != null ? _topRecords.size() : _numGroups;
+  }
+}
@@ -0,0 +1,213 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.data.table;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.query.request.context.QueryContext;
+
+
+/**
+ * Thread safe {@link IndexedTable} implementation for GROUP BY ORDER BY queries without any lock.
+ * <p>Each thread upserts records into its own set of partitions, where the partition of a record is decided by the
+ * hash of its key, so that no lock is needed while upserting or trimming. Once all the threads are done, the same
+ * partition of all the threads are merged and trimmed independently (in parallel with
+ * {@link #mergePartitions(ExecutorService, long)}), then concatenated into the lookup map to get the top records.
+ * <p>When the query groups by a single INT or LONG expression, the partitions are {@link NumericKeyIndexedTable}s to
+ * avoid allocating a {@link Key} and a {@link Record} for each group within the partitions.
+ * <p>NOTE: The partitions of a thread can only be accessed by the thread itself, and the partitions should only be
+ * merged after all the upserts are done.
+ */
+public class PartitionedIndexedTable extends IndexedTable {
+  private final QueryContext _queryContext;
+  private final int _numPartitions;
+  private final int _partitionTrimThreshold;
+  private final boolean _numericKeyPartitions;
+  private final Map<Thread, IndexedTable[]> _threadPartitionsMap = new ConcurrentHashMap<>();
+
+  private boolean _partitionsMerged;
+  private int _numPartitionResizes;
+  private long _partitionResizeTimeMs;
+
+  public PartitionedIndexedTable(DataSchema dataSchema, QueryContext queryContext, int resultSize, int trimSize,
+      int trimThreshold, int numPartitions) {
+    super(dataSchema, queryContext, resultSize, trimSize, trimThreshold, new HashMap<>());
+    Preconditions.checkState(_hasOrderBy, "PartitionedIndexedTable only applies to GROUP BY ORDER BY queries");
+    Preconditions.checkArgument(numPartitions > 0, "Number of partitions must be positive, got: %s", numPartitions);
+    _queryContext = queryContext;
+    _numPartitions = numPartitions;
+    // Each partition only holds part of the keys, but still needs to keep trimSize records when trimming
+    _partitionTrimThreshold =
+        (int) Math.min(Math.max((long) _trimThreshold / numPartitions, 2L * _trimSize), Integer.MAX_VALUE);
+    _numericKeyPartitions = NumericKeyIndexedTable.isApplicable(dataSchema, queryContext);
+  }
+
+  @Override
+  public boolean upsert(Key key, Record record) {
+    Thread thread = Thread.currentThread();
+    IndexedTable[] partitions = _threadPartitionsMap.get(thread);
+    if (partitions == null) {
+      partitions = new IndexedTable[_numPartitions];
+      _threadPartitionsMap.put(thread, partitions);
+    }
+    int partitionId = getPartitionId(key);
+    IndexedTable partition = partitions[partitionId];
+    if (partition == null) {
+      partition = newPartition();
+      partitions[partitionId] = partition;
+    }
+    return partition.upsert(key, record);
+  }
+
+  private IndexedTable newPartition() {
+    if (_numericKeyPartitions) {
+      return new NumericKeyIndexedTable(_dataSchema, _queryContext, _trimSize, _trimSize, _partitionTrimThreshold);
+    } else {
+      return new SimpleIndexedTable(_dataSchema, _queryContext, _trimSize, _trimSize, _partitionTrimThreshold);
+    }
+  }
+
+  /**
+   * Returns the partition of the key. Uses the high bits of the scrambled hash so that the keys within a partition are
+   * still evenly distributed in the hash map of the partition.
+   */
+  private int getPartitionId(Key key) {
+    int scrambledHash = key.hashCode() * 0x9E3779B9;
+    return (int) (((scrambledHash & 0xFFFFFFFFL) * _numPartitions) >>> 32);
+  }
+
+  /**
+   * Merges and trims the partitions of all the threads in parallel with the given executor service, then concatenates
+   * them into the lookup map. Should be called after all the upserts are done.
+   */
+  public void mergePartitions(ExecutorService executorService, long endTimeMs)
+      throws Exception {
+    if (_partitionsMerged) {
+      return;
+    }
+    addThreadPartitionResizeStats();
+    List<Future<IndexedTable>> futures = new ArrayList<>(_numPartitions);
+    try {
+      for (int i = 0; i < _numPartitions; i++) {
+        int partitionId = i;
+        futures.add(executorService.submit(() -> mergePartition(partitionId)));
+      }
+      for (Future<IndexedTable> future : futures) {
+        long timeoutMs = endTimeMs - System.currentTimeMillis();
+        if (timeoutMs <= 0) {
+          throw new TimeoutException("Timed out while merging the partitions");
+        }
+        addPartition(future.get(timeoutMs, TimeUnit.MILLISECONDS));
+      }
+    } finally {
+      for (Future<IndexedTable> future : futures) {
+        if (!future.isDone()) {
+          future.cancel(true);
+        }
+      }
+    }
+    _partitionsMerged = true;
+  }
+
+  private void addThreadPartitionResizeStats() {
+    if (_numericKeyPartitions) {
+      // The resize stats of the numeric key partitions are carried over when merging the partitions
+      return;
+    }
+    for (IndexedTable[] partitions : _threadPartitionsMap.values()) {
+      for (IndexedTable partition : partitions) {
+        if (partition != null) {
+          _numPartitionResizes += partition.getNumResizes();
+          _partitionResizeTimeMs += partition.getResizeTimeMs();
+        }
+      }
+    }
+  }
+
+  /**
+   * Merges the given partition of all the threads, and trims it to the trim size.
+   */
+  private IndexedTable mergePartition(int partitionId) {
+    IndexedTable mergedPartition = newPartition();
+    for (IndexedTable[] partitions : _threadPartitionsMap.values()) {
+      IndexedTable partition = partitions[partitionId];
+      if (partition != null) {
+        if (_numericKeyPartitions) {
+          ((NumericKeyIndexedTable) mergedPartition).mergeGroups((NumericKeyIndexedTable) partition);
+        } else {
+          for (Map.Entry<Key, Record> entry : partition._lookupMap.entrySet()) {
+            mergedPartition.upsert(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+    }
+    if (mergedPartition.size() > _trimSize) {
+      mergedPartition.resize();
+    }
+    return mergedPartition;
+  }
+
+  private void addPartition(IndexedTable partition) {
+    _numPartitionResizes += partition.getNumResizes();
+    _partitionResizeTimeMs += partition.getResizeTimeMs();
+    if (_numericKeyPartitions) {
+      // Materialize the records of the trimmed partition
+      partition.finish(false);
+      Iterator<Record> iterator = partition.iterator();
+      while (iterator.hasNext()) {
+        Record record = iterator.next();
+        _lookupMap.put(new Key(new Object[]{record.getValues()[0]}), record);
+      }
+    } else {
+      _lookupMap.putAll(partition._lookupMap);
+    }
+  }
+
+  @Override
+  public void finish(boolean sort, boolean storeFinalResult) {
+    if (!_partitionsMerged) {
+      addThreadPartitionResizeStats();
+      for (int i = 0; i < _numPartitions; i++) {
+        addPartition(mergePartition(i));
+      }
+      _partitionsMerged = true;
+    }
+    super.finish(sort, storeFinalResult);
+  }
+
+  @Override
+  public int getNumResizes() {
+    return super.getNumResizes() + _numPartitionResizes;
+  }
+
+  @Override
+  public long getResizeTimeMs() {
+    return super.getResizeTimeMs() + _partitionResizeTimeMs;
+  }
+}
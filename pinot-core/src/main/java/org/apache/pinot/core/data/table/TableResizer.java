@@ -20,6 +20,8 @@ package org.apache.pinot.core.data.table;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -34,6 +36,7 @@ import org.apache.pinot.common.request.context.OrderByExpressionContext;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
+import org.apache.pinot.core.query.aggregation.groupby.GlobalDictionary;
 import org.apache.pinot.core.query.aggregation.groupby.GroupByResultHolder;
 import org.apache.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
 import org.apache.pinot.core.query.postaggregation.PostAggregationFunction;
@@ -49,6 +52,7 @@ public class TableResizer {
   private final DataSchema _dataSchema;
   private final int _numGroupByExpressions;
   private final Map<ExpressionContext, Integer> _groupByExpressionIndexMap;
+  private final GlobalDictionary[] _globalDictionaries;
   private final AggregationFunction[] _aggregationFunctions;
   private final Map<FunctionContext, Integer> _aggregationFunctionIndexMap;
   private final int _numOrderByExpressions;
@@ -68,6 +72,16 @@ public class TableResizer {
     for (int i = 0; i < _numGroupByExpressions; i++) {
       _groupByExpressionIndexMap.put(groupByExpressions.get(i), i);
     }
+    // NOTE: Group-by values of the STRING columns with global dictionary might be global dictionary ids on the server
+    GlobalDictionary[] globalDictionaries = queryContext.getGroupByGlobalDictionaries();
+    if (globalDictionaries != null) {
+      for (int i = 0; i < _numGroupByExpressions; i++) {
+        if (dataSchema.getColumnDataType(i) != ColumnDataType.STRING) {
+          globalDictionaries[i] = null;
+        }
+      }
+    }
+    _globalDictionaries = globalDictionaries;
 
     _aggregationFunctions = queryContext.getAggregationFunctions();
     assert _aggregationFunctions != null;
@@ -297,6 +311,81 @@ public class TableResizer {
     }
   }
 
+  /**
+   * Returns the ids of the top groups among groups [0, numGroups), where the groups are ranked by the given comparator
+   * on the group ids (smaller is ranked higher). The returned group ids are ordered by rank if requested.
+   * <p>This method works on the primitive group ids so that the groups stored in primitive arrays (e.g. in
+   * {@link NumericKeyIndexedTable}) can be trimmed and sorted without materializing the records.
+   */
+  public static int[] getTopGroupIds(int numGroups, int size, IntComparator comparator, boolean sort) {
+    if (numGroups <= size) {
+      int[] groupIds = new int[numGroups];
+      for (int i = 0; i < numGroups; i++) {
+        groupIds[i] = i;
+      }
+      if (sort) {
+        IntArrays.quickSort(groupIds, comparator);
+      }
+      return groupIds;
+    }
+
+    // Make a heap of the top groups, where the lowest ranked group is at the top of the heap
+    IntComparator reversedComparator = (groupId1, groupId2) -> comparator.compare(groupId2, groupId1);
+    int[] heap = new int[size];
+    for (int i = 0; i < size; i++) {
+      heap[i] = i;
+    }
+    makeHeap(heap, size, reversedComparator);
+    for (int groupId = size; groupId < numGroups; groupId++) {
+      if (reversedComparator.compare(groupId, heap[0]) > 0) {
+        heap[0] = groupId;
+        downHeap(heap, size, 0, reversedComparator);
+      }
+    }
+    if (!sort) {
+      return heap;
+    }
+    int[] sortedGroupIds = new int[size];
+    while (size-- > 0) {
+      sortedGroupIds[size] = heap[0];
+      heap[0] = heap[size];
+      downHeap(heap, size, 0, reversedComparator);
+    }
+    return sortedGroupIds;
+  }
+
+  /**
+   * Primitive version of {@link #makeHeap(IntermediateRecord[], int, Comparator)}.
+   */
+  private static void makeHeap(int[] heap, int size, IntComparator c) {
+    int i = size >>> 1;
+    while (i-- != 0) {
+      downHeap(heap, size, i, c);
+    }
+  }
+
+  /**
+   * Primitive version of {@link #downHeap(IntermediateRecord[], int, int, Comparator)}.
+   */
+  private static void downHeap(int[] heap, int size, int i, IntComparator c) {
+    int e = heap[i];
+    int child;
+    while ((child = (i << 1) + 1) < size) {
+      int t = heap[child];
+      int right = child + 1;
+      if (right < size && c.compare(heap[right], t) < 0) {
+        child = right;
+        t = heap[child];
+      }
+      if (c.compare(e, t) <= 0) {
+        break;
+      }
+      heap[i] = t;
+      i = child;
+    }
+    heap[i] = e;
+  }
+
   /**
    * Trims the aggregation results using a heap and returns the top records.
    * This method is to be called from individual segment if the intermediate results need to be trimmed.
@@ -386,9 +475,11 @@ public class TableResizer {
    */
   private class GroupByExpressionExtractor implements OrderByValueExtractor {
     final int _index;
+    final GlobalDictionary _globalDictionary;
 
     GroupByExpressionExtractor(int groupByExpressionIndex) {
       _index = groupByExpressionIndex;
+      _globalDictionary = _globalDictionaries != null ? _globalDictionaries[groupByExpressionIndex] : null;
     }
 
     @Override
@@ -398,7 +489,12 @@ public class TableResizer {
 
     @Override
     public Comparable extract(Record record) {
-      return (Comparable) record.getValues()[_index];
+      Object value = record.getValues()[_index];
+      if (_globalDictionary != null && value instanceof Integer) {
+        // Order on the value of the global dictionary id
+        return _globalDictionary.get((Integer) value);
+      }
+      return (Comparable) value;
     }
   }
 
@@ -43,6 +43,11 @@ public class AggregationOnlyCombineOperator extends BaseCombineOperator<Aggregat
     return EXPLAIN_NAME;
   }
 
+  @Override
+  protected boolean isTreeMergeSupported() {
+    return true;
+  }
+
   @Override
   protected void mergeResultsBlocks(AggregationResultsBlock mergedBlock, AggregationResultsBlock blockToMerge) {
     AggregationFunction[] aggregationFunctions = mergedBlock.getAggregationFunctions();
@@ -50,6 +50,10 @@ import org.slf4j.LoggerFactory;
  * <p>Combine operator uses multiple worker threads to process segments in parallel, and uses the main thread to merge
  * the results blocks from the processed segments. It can early-terminate the query to save the system resources if it
  * detects that the merged results can already satisfy the query, or the query is already errored out or timed out.
+ * <p>When tree merge is enabled for the query (and supported by the combine operator), the worker threads merge the
+ * results blocks instead: each worker thread first merges the results blocks of its own segments, then the merged
+ * blocks of the worker threads are merged pairwise as the worker threads finish, so that the main thread only needs to
+ * pick up the final merged block.
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
 public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends BaseOperator<BaseResultsBlock> {
@@ -67,6 +71,13 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
   protected final BlockingQueue<BaseResultsBlock> _blockingQueue = new LinkedBlockingQueue<>();
   protected final AtomicLong _totalWorkerThreadCpuTimeNs = new AtomicLong(0);
 
+  // Tree merge states, guarded by the tree merge lock
+  private final Object _treeMergeLock = new Object();
+  private boolean _treeMerge;
+  private int _numUnfinishedTasks;
+  private int _numMergingTasks;
+  private T _pendingMergeBlock;
+
   protected BaseCombineOperator(List<Operator> operators, QueryContext queryContext, ExecutorService executorService) {
     _operators = operators;
     _numOperators = _operators.size();
@@ -78,6 +89,7 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
     //       The parallelism is bounded by the task count.
     _numTasks = CombineOperatorUtils.getNumTasksForQuery(operators.size(), queryContext.getMaxExecutionThreads());
     _futures = new Future[_numTasks];
+    _numUnfinishedTasks = _numTasks;
   }
 
   @Override
@@ -87,6 +99,7 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
     // deleted/refreshed, the segment will be released after the main thread returns, which would lead to undefined
     // behavior (even JVM crash) when processing queries against it.
     Phaser phaser = new Phaser(1);
+    _treeMerge = _queryContext.isTreeMerge() && isTreeMergeSupported();
     Tracing.activeRecording().setNumTasks(_numTasks);
     for (int i = 0; i < _numTasks; i++) {
       _futures[i] = _executorService.submit(new TraceRunnable() {
@@ -154,20 +167,13 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
    * Executes query on one or more segments in a worker thread.
    */
   protected void processSegments() {
+    if (_treeMerge) {
+      processAndMergeSegments();
+      return;
+    }
     int operatorId;
     while ((operatorId = _nextOperatorId.getAndIncrement()) < _numOperators) {
-      Operator operator = _operators.get(operatorId);
-      T resultsBlock;
-      try {
-        if (operator instanceof AcquireReleaseColumnsSegmentOperator) {
-          ((AcquireReleaseColumnsSegmentOperator) operator).acquire();
-        }
-        resultsBlock = (T) operator.nextBlock();
-      } finally {
-        if (operator instanceof AcquireReleaseColumnsSegmentOperator) {
-          ((AcquireReleaseColumnsSegmentOperator) operator).release();
-        }
-      }
+      T resultsBlock = getResultsBlock(_operators.get(operatorId));
       if (isQuerySatisfied(resultsBlock)) {
         // Query is satisfied, skip processing the remaining segments
         _blockingQueue.offer(resultsBlock);
@@ -178,6 +184,89 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
     }
   }
 
+  private T getResultsBlock(Operator operator) {
+    try {
+      if (operator instanceof AcquireReleaseColumnsSegmentOperator) {
+        ((AcquireReleaseColumnsSegmentOperator) operator).acquire();
+      }
+      return (T) operator.nextBlock();
+    } finally {
+      if (operator instanceof AcquireReleaseColumnsSegmentOperator) {
+        ((AcquireReleaseColumnsSegmentOperator) operator).release();
+      }
+    }
+  }
+
+  /**
+   * Executes query on one or more segments in a worker thread with tree merge, where the results blocks of the segments
+   * are merged locally, then merged with the results blocks of the other worker threads. Only the final merged block
+   * (or a block with exception, or a block that satisfies the query) is offered to the blocking queue.
+   * <p>A worker thread that finishes while no other merged block is pending parks its merged block, and the next worker
+   * thread that finishes picks it up to merge with its own, so that the merges of different pairs of blocks run in
+   * parallel. No worker thread ever waits for another one, so that the query cannot be blocked when the executor has
+   * less threads than tasks.
+   */
+  private void processAndMergeSegments() {
+    T mergedBlock = null;
+    int operatorId;
+    while ((operatorId = _nextOperatorId.getAndIncrement()) < _numOperators) {
+      T resultsBlock = getResultsBlock(_operators.get(operatorId));
+      if (resultsBlock.getProcessingExceptions() != null) {
+        // Caught exception while processing segment, directly return the exception
+        _blockingQueue.offer(resultsBlock);
+        return;
+      }
+      if (mergedBlock == null) {
+        mergedBlock = resultsBlock;
+      } else {
+        mergeResultsBlocks(mergedBlock, resultsBlock);
+      }
+      if (isQuerySatisfied(mergedBlock)) {
+        // Query is satisfied, skip processing the remaining segments
+        _blockingQueue.offer(mergedBlock);
+        return;
+      }
+    }
+
+    synchronized (_treeMergeLock) {
+      _numUnfinishedTasks--;
+    }
+    while (true) {
+      T blockToMerge;
+      synchronized (_treeMergeLock) {
+        if (mergedBlock == null || _pendingMergeBlock == null) {
+          if (_numUnfinishedTasks == 0 && _numMergingTasks == 0) {
+            // No other block to merge, this is the final merged block
+            T finalBlock = mergedBlock != null ? mergedBlock : _pendingMergeBlock;
+            _pendingMergeBlock = null;
+            if (finalBlock != null) {
+              _blockingQueue.offer(finalBlock);
+            }
+          } else if (mergedBlock != null) {
+            // Park the merged block for the worker threads still running to merge
+            _pendingMergeBlock = mergedBlock;
+          }
+          return;
+        }
+        blockToMerge = _pendingMergeBlock;
+        _pendingMergeBlock = null;
+        _numMergingTasks++;
+      }
+      try {
+        mergeResultsBlocks(mergedBlock, blockToMerge);
+      } finally {
+        synchronized (_treeMergeLock) {
+          _numMergingTasks--;
+        }
+      }
+      if (isQuerySatisfied(mergedBlock)) {
+        // Query is satisfied, skip merging the remaining results blocks
+        _blockingQueue.offer(mergedBlock);
+        return;
+      }
+    }
+  }
+
   /**
    * Invoked when {@link #processSegments()} throws exception.
    */
@@ -196,6 +285,9 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
    */
   protected BaseResultsBlock mergeResults()
       throws Exception {
+    if (_treeMerge) {
+      return getTreeMergedResults();
+    }
     T mergedBlock = null;
     int numBlocksMerged = 0;
     long endTimeMs = _queryContext.getEndTimeMs();
@@ -229,6 +321,23 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
     return mergedBlock;
   }
 
+  /**
+   * Waits for the final merged block when the results blocks are merged by the worker threads (see
+   * {@link #processAndMergeSegments()}).
+   */
+  private BaseResultsBlock getTreeMergedResults()
+      throws InterruptedException {
+    if (_numOperators == 0) {
+      return null;
+    }
+    long waitTimeMs = _queryContext.getEndTimeMs() - System.currentTimeMillis();
+    if (waitTimeMs <= 0) {
+      return getTimeoutResultsBlock(0);
+    }
+    BaseResultsBlock mergedBlock = _blockingQueue.poll(waitTimeMs, TimeUnit.MILLISECONDS);
+    return mergedBlock != null ? mergedBlock : getTimeoutResultsBlock(0);
+  }
+
   private ExceptionResultsBlock getTimeoutResultsBlock(int numBlocksMerged) {
     LOGGER.error("Timed out while polling results block, numBlocksMerged: {} (query: {})", numBlocksMerged,
         _queryContext);
@@ -236,6 +345,15 @@ public abstract class BaseCombineOperator<T extends BaseResultsBlock> extends Ba
         new TimeoutException("Timed out while polling results block"));
   }
 
+  /**
+   * Can be overridden to allow the results blocks to be merged by the worker threads (see
+   * {@link #processAndMergeSegments()}), which requires {@link #mergeResultsBlocks} to be associative and commutative
+   * and {@link #processSegments()} not to be overridden.
+   */
+  protected boolean isTreeMergeSupported() {
+    return false;
+  }
+
   /**
    * Can be overridden for early termination.
    */
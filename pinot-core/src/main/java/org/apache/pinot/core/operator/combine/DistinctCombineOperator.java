@@ -45,6 +45,11 @@ public class DistinctCombineOperator extends BaseCombineOperator<DistinctResults
     return EXPLAIN_NAME;
   }
 
+  @Override
+  protected boolean isTreeMergeSupported() {
+    return true;
+  }
+
   @Override
   protected boolean isQuerySatisfied(DistinctResultsBlock resultsBlock) {
     if (_hasOrderBy) {
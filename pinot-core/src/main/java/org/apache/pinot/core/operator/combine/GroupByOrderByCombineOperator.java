@@ -31,11 +31,14 @@ import java.util.concurrent.TimeoutException;
 import org.apache.pinot.common.exception.QueryException;
 import org.apache.pinot.common.response.ProcessingException;
 import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.data.table.ConcurrentIndexedTable;
 import org.apache.pinot.core.data.table.IndexedTable;
 import org.apache.pinot.core.data.table.IntermediateRecord;
 import org.apache.pinot.core.data.table.Key;
+import org.apache.pinot.core.data.table.NumericKeyIndexedTable;
+import org.apache.pinot.core.data.table.PartitionedIndexedTable;
 import org.apache.pinot.core.data.table.Record;
 import org.apache.pinot.core.data.table.UnboundedConcurrentIndexedTable;
 import org.apache.pinot.core.operator.AcquireReleaseColumnsSegmentOperator;
@@ -44,6 +47,7 @@ import org.apache.pinot.core.operator.blocks.results.ExceptionResultsBlock;
 import org.apache.pinot.core.operator.blocks.results.GroupByResultsBlock;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
 import org.apache.pinot.core.query.aggregation.groupby.AggregationGroupByResult;
+import org.apache.pinot.core.query.aggregation.groupby.GlobalDictionary;
 import org.apache.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
 import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.core.util.GroupByUtils;
@@ -70,6 +74,8 @@ public class GroupByOrderByCombineOperator extends BaseCombineOperator<GroupByRe
   private final int _numAggregationFunctions;
   private final int _numGroupByExpressions;
   private final int _numColumns;
+  // Global dictionaries of the group-by columns, null if no group-by column has global dictionary
+  private final GlobalDictionary[] _globalDictionaries;
   private final ConcurrentLinkedQueue<ProcessingException> _mergedProcessingExceptions = new ConcurrentLinkedQueue<>();
   // We use a CountDownLatch to track if all Futures are finished by the query timeout, and cancel the unfinished
   // _futures (try to interrupt the execution if it already started).
@@ -106,6 +112,7 @@ public class GroupByOrderByCombineOperator extends BaseCombineOperator<GroupByRe
     assert _queryContext.getGroupByExpressions() != null;
     _numGroupByExpressions = _queryContext.getGroupByExpressions().size();
     _numColumns = _numGroupByExpressions + _numAggregationFunctions;
+    _globalDictionaries = queryContext.getGroupByGlobalDictionaries();
     _operatorLatch = new CountDownLatch(_numTasks);
   }
 
@@ -143,7 +150,15 @@ public class GroupByOrderByCombineOperator extends BaseCombineOperator<GroupByRe
             if (_indexedTable == null) {
               DataSchema dataSchema = resultsBlock.getDataSchema();
               // NOTE: Use trimSize as resultSize on server size.
-              if (_trimThreshold >= MAX_TRIM_THRESHOLD) {
+              if (_queryContext.getOrderByExpressions() != null && (_queryContext.isPartitionedGroupByCombine()
+                  || NumericKeyIndexedTable.isApplicable(dataSchema, _queryContext))) {
+                // Each thread upserts into its own hash partitions without locking, and the partitions are merged
+                // in parallel after all the segments are processed. Always used when grouping by a single numeric
+                // expression so that the partitions can store the groups in primitive arrays.
+                int numPartitions = Math.min(_numTasks, CombineOperatorUtils.MAX_NUM_THREADS_PER_QUERY);
+                _indexedTable = new PartitionedIndexedTable(dataSchema, _queryContext, _trimSize, _trimSize,
+                    _trimThreshold, numPartitions);
+              } else if (_trimThreshold >= MAX_TRIM_THRESHOLD) {
                 // special case of trim threshold where it is set to max value.
                 // there won't be any trimming during upsert in this case.
                 // thus we can avoid the overhead of read-lock and write-lock
@@ -183,6 +198,9 @@ public class GroupByOrderByCombineOperator extends BaseCombineOperator<GroupByRe
             while (dicGroupKeyIterator.hasNext()) {
               GroupKeyGenerator.GroupKey groupKey = dicGroupKeyIterator.next();
               Object[] keys = groupKey._keys;
+              if (_globalDictionaries != null) {
+                encodeGlobalDictionaryKeys(keys);
+              }
               Object[] values = Arrays.copyOf(keys, _numColumns);
               int groupId = groupKey._groupId;
               for (int i = 0; i < _numAggregationFunctions; i++) {
@@ -196,6 +214,10 @@ public class GroupByOrderByCombineOperator extends BaseCombineOperator<GroupByRe
         } else {
           for (IntermediateRecord intermediateResult : intermediateRecords) {
             //TODO: change upsert api so that it accepts intermediateRecord directly
+            if (_globalDictionaries != null) {
+              encodeGlobalDictionaryKeys(intermediateResult._key.getValues());
+              encodeGlobalDictionaryKeys(intermediateResult._record.getValues());
+            }
             _indexedTable.upsert(intermediateResult._key, intermediateResult._record);
             mergedKeys++;
             checkMergePhaseInterruption(mergedKeys);
@@ -209,6 +231,36 @@ public class GroupByOrderByCombineOperator extends BaseCombineOperator<GroupByRe
     }
   }
 
+  /**
+   * Replaces the String values of the group-by columns with global dictionary with the global dictionary ids, so that
+   * the keys from the segments without dictionary for the column are consistent with the other segments.
+   */
+  private void encodeGlobalDictionaryKeys(Object[] values) {
+    for (int i = 0; i < _numGroupByExpressions; i++) {
+      GlobalDictionary globalDictionary = _globalDictionaries[i];
+      if (globalDictionary != null && values[i] instanceof String) {
+        values[i] = globalDictionary.indexOf((String) values[i]);
+      }
+    }
+  }
+
+  /**
+   * Resolves the global dictionary ids of the STRING group-by columns in the final records back into the values.
+   */
+  private void decodeGlobalDictionaryKeys(IndexedTable indexedTable) {
+    ColumnDataType[] columnDataTypes = indexedTable.getDataSchema().getColumnDataTypes();
+    Iterator<Record> iterator = indexedTable.iterator();
+    while (iterator.hasNext()) {
+      Object[] values = iterator.next().getValues();
+      for (int i = 0; i < _numGroupByExpressions; i++) {
+        GlobalDictionary globalDictionary = _globalDictionaries[i];
+        if (globalDictionary != null && columnDataTypes[i] == ColumnDataType.STRING && values[i] instanceof Integer) {
+          values[i] = globalDictionary.get((Integer) values[i]);
+        }
+      }
+    }
+  }
+
   // Check for thread interruption, every time after merging 10_000 keys
   private void checkMergePhaseInterruption(int mergedKeys) {
     if (mergedKeys % MAX_GROUP_BY_KEYS_MERGED_PER_INTERRUPTION_CHECK == 0 && Thread.interrupted()) {
@@ -254,11 +306,17 @@ public class GroupByOrderByCombineOperator extends BaseCombineOperator<GroupByRe
     }
 
     IndexedTable indexedTable = _indexedTable;
+    if (indexedTable instanceof PartitionedIndexedTable) {
+      ((PartitionedIndexedTable) indexedTable).mergePartitions(_executorService, _queryContext.getEndTimeMs());
+    }
     if (!_queryContext.isServerReturnFinalResult()) {
       indexedTable.finish(false);
     } else {
       indexedTable.finish(true, true);
     }
+    if (_globalDictionaries != null) {
+      decodeGlobalDictionaryKeys(indexedTable);
+    }
     GroupByResultsBlock mergedBlock = new GroupByResultsBlock(indexedTable);
     mergedBlock.setNumGroupsLimitReached(_numGroupsLimitReached);
     mergedBlock.setNumResizes(indexedTable.getNumResizes());
@@ -48,6 +48,16 @@ public class AndFilterOperator extends BaseFilterOperator {
     return new FilterBlock(new AndDocIdSet(filterBlockDocIdSets));
   }
 
+  @Override
+  public double getEstimatedSelectivity() {
+    // Assume the child filters are independent
+    double selectivity = 1;
+    for (BaseFilterOperator filterOperator : _filterOperators) {
+      selectivity *= filterOperator.getEstimatedSelectivity();
+    }
+    return selectivity;
+  }
+
   @Override
   public boolean canOptimizeCount() {
     boolean allChildrenCanProduceBitmaps = true;
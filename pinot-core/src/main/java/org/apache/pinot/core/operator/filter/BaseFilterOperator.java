@@ -41,6 +41,14 @@ public abstract class BaseFilterOperator extends BaseOperator<FilterBlock> {
     return false;
   }
 
+  /**
+   * Returns the estimated fraction of the records matching the filter, which is used to order the child filter
+   * operators of the AND filter operator. The estimation should be cheap compared to the evaluation of the filter.
+   */
+  public double getEstimatedSelectivity() {
+    return FilterOperatorUtils.UNKNOWN_SELECTIVITY;
+  }
+
   /**
    * Returns {@code true} if the filter has an optimized count implementation.
    */
@@ -20,6 +20,7 @@ package org.apache.pinot.core.operator.filter;
 
 import java.util.Collections;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.request.context.predicate.Predicate;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.operator.blocks.EmptyFilterBlock;
@@ -40,6 +41,7 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
   private static final String EXPLAIN_NAME = "FILTER_INVERTED_INDEX";
 
   private final PredicateEvaluator _predicateEvaluator;
+  private final DataSource _dataSource;
   private final InvertedIndexReader<ImmutableRoaringBitmap> _invertedIndexReader;
   private final ImmutableRoaringBitmap _docIds;
   private final boolean _exclusive;
@@ -48,6 +50,7 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
   @SuppressWarnings("unchecked")
   BitmapBasedFilterOperator(PredicateEvaluator predicateEvaluator, DataSource dataSource, int numDocs) {
     _predicateEvaluator = predicateEvaluator;
+    _dataSource = dataSource;
     _invertedIndexReader = (InvertedIndexReader<ImmutableRoaringBitmap>) dataSource.getInvertedIndex();
     _docIds = null;
     _exclusive = predicateEvaluator.isExclusive();
@@ -56,6 +59,7 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
 
   public BitmapBasedFilterOperator(ImmutableRoaringBitmap docIds, boolean exclusive, int numDocs) {
     _predicateEvaluator = null;
+    _dataSource = null;
     _invertedIndexReader = null;
     _docIds = docIds;
     _exclusive = exclusive;
@@ -109,6 +113,28 @@ public class BitmapBasedFilterOperator extends BaseFilterOperator {
     }
   }
 
+  @Override
+  public double getEstimatedSelectivity() {
+    if (_docIds != null) {
+      double selectivity = _numDocs > 0 ? (double) _docIds.getCardinality() / _numDocs : 0;
+      return _exclusive ? 1 - selectivity : selectivity;
+    }
+    return FilterOperatorUtils.estimateSelectivity(_predicateEvaluator, _dataSource);
+  }
+
+  /**
+   * Returns a scan based filter operator on the same predicate for single-value column, or {@code null} if it cannot
+   * be converted. Scanning is cheaper than merging the bitmaps of all the matching dictionary ids when the predicate
+   * is only evaluated on the few documents matched by the other child filter operators of the AND filter operator.
+   */
+  @Nullable
+  ScanBasedFilterOperator toScanBasedFilterOperator() {
+    if (_predicateEvaluator == null || !_dataSource.getDataSourceMetadata().isSingleValue()) {
+      return null;
+    }
+    return new ScanBasedFilterOperator(_predicateEvaluator, _dataSource, _numDocs, false);
+  }
+
   @Override
   public boolean canOptimizeCount() {
     return true;
@@ -46,6 +46,11 @@ public final class EmptyFilterOperator extends BaseFilterOperator {
     return true;
   }
 
+  @Override
+  public double getEstimatedSelectivity() {
+    return 0;
+  }
+
   @Override
   public boolean canOptimizeCount() {
     return true;
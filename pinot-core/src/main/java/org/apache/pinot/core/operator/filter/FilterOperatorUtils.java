@@ -20,17 +20,35 @@ package org.apache.pinot.core.operator.filter;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import org.apache.pinot.common.request.context.predicate.EqPredicate;
 import org.apache.pinot.common.request.context.predicate.Predicate;
+import org.apache.pinot.common.request.context.predicate.RangePredicate;
 import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluator;
 import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.segment.spi.datasource.DataSource;
+import org.apache.pinot.segment.spi.datasource.DataSourceMetadata;
+import org.apache.pinot.segment.spi.index.reader.BloomFilterReader;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.reader.InvertedIndexReader;
+import org.apache.pinot.spi.utils.Pairs.IntPair;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
 
 
 public class FilterOperatorUtils {
   private FilterOperatorUtils() {
   }
 
+  // Estimated selectivity of the filter operators that cannot be estimated cheaply
+  public static final double UNKNOWN_SELECTIVITY = 1.0;
+  // Max number of inverted index bitmaps to read when estimating the selectivity of a predicate
+  private static final int MAX_NUM_BITMAPS_TO_ESTIMATE_SELECTIVITY = 32;
+  // An inverted index based child of the AND filter operator is evaluated as a scan when its estimated selectivity is
+  // at least this many times the one of the most selective scan based child
+  private static final int MIN_SELECTIVITY_RATIO_TO_SCAN = 100;
+
   /**
    * Returns the leaf filter operator (i.e. not {@link AndFilterOperator} or {@link OrFilterOperator}).
    */
@@ -44,7 +62,7 @@ public class FilterOperatorUtils {
    */
   public static BaseFilterOperator getLeafFilterOperator(PredicateEvaluator predicateEvaluator, DataSource dataSource,
       int numDocs, boolean nullHandlingEnabled) {
-    if (predicateEvaluator.isAlwaysFalse()) {
+    if (predicateEvaluator.isAlwaysFalse() || isAbsentInBloomFilter(predicateEvaluator, dataSource)) {
       return EmptyFilterOperator.getInstance();
     } else if (predicateEvaluator.isAlwaysTrue()) {
       return new MatchAllFilterOperator(numDocs);
@@ -153,16 +171,43 @@ public class FilterOperatorUtils {
 
   /**
    * For AND filter operator, reorders its child filter operators based on the their cost and puts the ones with
-   * inverted index first in order to reduce the number of documents to be processed.
+   * inverted index first in order to reduce the number of documents to be processed. The child filter operators with
+   * the same cost are ordered by the order of magnitude of their estimated selectivity, and the inverted index based
+   * ones that are much less selective than the most selective scan based one are evaluated as scans on the documents
+   * matched by the others.
    * <p>Special filter operators such as {@link MatchAllFilterOperator} and {@link EmptyFilterOperator} should be
    * removed from the list before calling this method.
    */
   private static void reorderAndFilterChildOperators(QueryContext queryContext,
       List<BaseFilterOperator> filterOperators) {
+    Map<BaseFilterOperator, Double> selectivityMap;
+    if (queryContext.isSkipScanFilterReorder()) {
+      selectivityMap = null;
+    } else {
+      selectivityMap = new IdentityHashMap<>();
+      for (BaseFilterOperator filterOperator : filterOperators) {
+        selectivityMap.put(filterOperator, filterOperator.getEstimatedSelectivity());
+      }
+      // NOTE: Scan based filter operator excludes the null values when null handling is enabled
+      if (!queryContext.isNullHandlingEnabled()) {
+        scanUnselectiveBitmapBasedFilterOperators(filterOperators, selectivityMap);
+      }
+    }
     filterOperators.sort(new Comparator<BaseFilterOperator>() {
       @Override
       public int compare(BaseFilterOperator o1, BaseFilterOperator o2) {
-        return getPriority(o1) - getPriority(o2);
+        int priorityDiff = getPriority(o1) - getPriority(o2);
+        if (priorityDiff != 0 || selectivityMap == null) {
+          return priorityDiff;
+        }
+        // NOTE: The estimations are coarse, so only reorder the child filter operators when their estimated
+        //       selectivities are of different orders of magnitude
+        return Double.compare(getSelectivityMagnitude(selectivityMap.get(o1)),
+            getSelectivityMagnitude(selectivityMap.get(o2)));
+      }
+
+      double getSelectivityMagnitude(double selectivity) {
+        return Math.floor(Math.log10(selectivity));
       }
 
       int getPriority(BaseFilterOperator filterOperator) {
@@ -222,4 +267,158 @@ public class FilterOperatorUtils {
       return basePriority + 1;
     }
   }
+
+  /**
+   * For AND filter operator, replaces the single-value inverted index based child filter operators that are much less
+   * selective than the most selective scan based one with scan based filter operators. Instead of merging the bitmaps
+   * of all their matching dictionary ids, they are only evaluated on the documents matched by the selective one.
+   */
+  private static void scanUnselectiveBitmapBasedFilterOperators(List<BaseFilterOperator> filterOperators,
+      Map<BaseFilterOperator, Double> selectivityMap) {
+    double minScanSelectivity = UNKNOWN_SELECTIVITY;
+    for (BaseFilterOperator filterOperator : filterOperators) {
+      if (filterOperator instanceof ScanBasedFilterOperator) {
+        minScanSelectivity = Math.min(minScanSelectivity, selectivityMap.get(filterOperator));
+      }
+    }
+    if (minScanSelectivity * MIN_SELECTIVITY_RATIO_TO_SCAN > UNKNOWN_SELECTIVITY) {
+      return;
+    }
+    int numFilterOperators = filterOperators.size();
+    for (int i = 0; i < numFilterOperators; i++) {
+      BaseFilterOperator filterOperator = filterOperators.get(i);
+      if (filterOperator instanceof BitmapBasedFilterOperator) {
+        double selectivity = selectivityMap.get(filterOperator);
+        if (selectivity >= minScanSelectivity * MIN_SELECTIVITY_RATIO_TO_SCAN) {
+          ScanBasedFilterOperator scanBasedFilterOperator =
+              ((BitmapBasedFilterOperator) filterOperator).toScanBasedFilterOperator();
+          if (scanBasedFilterOperator != null) {
+            filterOperators.set(i, scanBasedFilterOperator);
+            selectivityMap.put(scanBasedFilterOperator, selectivity);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the estimated fraction of the documents matching the predicate within the segment, or
+   * {@link #UNKNOWN_SELECTIVITY} if it cannot be estimated cheaply.
+   * <p>For dictionary based predicates, the selectivity is computed from the cardinalities of the inverted index
+   * bitmaps (or sorted index ranges) of the matching dictionary ids when there are only a few of them, or from the
+   * fraction of the matching dictionary ids otherwise. For raw value based predicates, the bloom filter is checked for
+   * EQ predicates and the column min/max value is used for RANGE predicates.
+   */
+  public static double estimateSelectivity(PredicateEvaluator predicateEvaluator, DataSource dataSource) {
+    if (predicateEvaluator.isAlwaysFalse()) {
+      return 0;
+    }
+    if (predicateEvaluator.isAlwaysTrue()) {
+      return 1;
+    }
+    Predicate.Type predicateType = predicateEvaluator.getPredicateType();
+    if (predicateEvaluator.isDictionaryBased()) {
+      // Only estimate the predicates with cheap matching dictionary ids (e.g. not REGEXP_LIKE)
+      if (predicateType != Predicate.Type.EQ && predicateType != Predicate.Type.NOT_EQ
+          && predicateType != Predicate.Type.IN && predicateType != Predicate.Type.NOT_IN
+          && predicateType != Predicate.Type.RANGE) {
+        return UNKNOWN_SELECTIVITY;
+      }
+      boolean exclusive = predicateEvaluator.isExclusive();
+      int numDictIds =
+          exclusive ? predicateEvaluator.getNumNonMatchingDictIds() : predicateEvaluator.getNumMatchingDictIds();
+      double selectivity;
+      InvertedIndexReader<?> invertedIndex = dataSource.getInvertedIndex();
+      int numDocs = dataSource.getDataSourceMetadata().getNumDocs();
+      if (invertedIndex != null && numDictIds <= MAX_NUM_BITMAPS_TO_ESTIMATE_SELECTIVITY && numDocs > 0) {
+        int[] dictIds =
+            exclusive ? predicateEvaluator.getNonMatchingDictIds() : predicateEvaluator.getMatchingDictIds();
+        long numMatchingDocs = 0;
+        for (int dictId : dictIds) {
+          Object docIds = invertedIndex.getDocIds(dictId);
+          if (docIds instanceof ImmutableRoaringBitmap) {
+            numMatchingDocs += ((ImmutableRoaringBitmap) docIds).getCardinality();
+          } else if (docIds instanceof IntPair) {
+            IntPair docIdRange = (IntPair) docIds;
+            numMatchingDocs += docIdRange.getRight() - docIdRange.getLeft() + 1;
+          } else {
+            return UNKNOWN_SELECTIVITY;
+          }
+        }
+        // NOTE: The bitmaps of multi-value column can overlap
+        selectivity = Math.min((double) numMatchingDocs / numDocs, 1);
+      } else {
+        Dictionary dictionary = dataSource.getDictionary();
+        int cardinality = dictionary != null ? dictionary.length() : 0;
+        if (cardinality == 0) {
+          return UNKNOWN_SELECTIVITY;
+        }
+        selectivity = (double) numDictIds / cardinality;
+      }
+      return exclusive ? 1 - selectivity : selectivity;
+    }
+    if (predicateType == Predicate.Type.EQ) {
+      return isAbsentInBloomFilter(predicateEvaluator, dataSource) ? 0 : UNKNOWN_SELECTIVITY;
+    }
+    if (predicateType == Predicate.Type.RANGE) {
+      return estimateRangeSelectivity((RangePredicate) predicateEvaluator.getPredicate(),
+          dataSource.getDataSourceMetadata());
+    }
+    return UNKNOWN_SELECTIVITY;
+  }
+
+  /**
+   * Returns {@code true} if the value of the raw value based EQ predicate is not contained in the bloom filter of the
+   * column, {@code false} otherwise.
+   */
+  private static boolean isAbsentInBloomFilter(PredicateEvaluator predicateEvaluator, DataSource dataSource) {
+    if (predicateEvaluator.isDictionaryBased() || predicateEvaluator.getPredicateType() != Predicate.Type.EQ) {
+      return false;
+    }
+    BloomFilterReader bloomFilter = dataSource.getBloomFilter();
+    if (bloomFilter == null) {
+      return false;
+    }
+    String value = ((EqPredicate) predicateEvaluator.getPredicate()).getValue();
+    String standardizedValue;
+    try {
+      // Bloom filter is built on the standardized string values (same as ColumnValueSegmentPruner)
+      standardizedValue = dataSource.getDataSourceMetadata().getDataType().convertInternal(value).toString();
+    } catch (Exception e) {
+      return false;
+    }
+    return !bloomFilter.mightContain(standardizedValue);
+  }
+
+  /**
+   * Estimates the selectivity of the raw value based RANGE predicate on a numeric column assuming the values are
+   * uniformly distributed between the column min/max value.
+   */
+  private static double estimateRangeSelectivity(RangePredicate rangePredicate,
+      DataSourceMetadata dataSourceMetadata) {
+    Comparable minValue = dataSourceMetadata.getMinValue();
+    Comparable maxValue = dataSourceMetadata.getMaxValue();
+    if (!(minValue instanceof Number) || !(maxValue instanceof Number)) {
+      return UNKNOWN_SELECTIVITY;
+    }
+    double min = ((Number) minValue).doubleValue();
+    double max = ((Number) maxValue).doubleValue();
+    double lowerBound;
+    double upperBound;
+    try {
+      String lowerBoundString = rangePredicate.getLowerBound();
+      lowerBound = lowerBoundString.equals(RangePredicate.UNBOUNDED) ? min : Double.parseDouble(lowerBoundString);
+      String upperBoundString = rangePredicate.getUpperBound();
+      upperBound = upperBoundString.equals(RangePredicate.UNBOUNDED) ? max : Double.parseDouble(upperBoundString);
+    } catch (NumberFormatException e) {
+      return UNKNOWN_SELECTIVITY;
+    }
+    if (lowerBound > max || upperBound < min || lowerBound > upperBound) {
+      return 0;
+    }
+    if (max <= min) {
+      return 1;
+    }
+    return (Math.min(upperBound, max) - Math.max(lowerBound, min)) / (max - min);
+  }
 }
@@ -54,6 +54,11 @@ public class NotFilterOperator extends BaseFilterOperator {
     return new FilterBlock(new NotDocIdSet(_filterOperator.nextBlock().getBlockDocIdSet(), _numDocs));
   }
 
+  @Override
+  public double getEstimatedSelectivity() {
+    return 1 - _filterOperator.getEstimatedSelectivity();
+  }
+
   @Override
   public boolean canOptimizeCount() {
     return _filterOperator.canOptimizeCount();
@@ -50,6 +50,16 @@ public class OrFilterOperator extends BaseFilterOperator {
     return new FilterBlock(new OrDocIdSet(filterBlockDocIdSets, _numDocs));
   }
 
+  @Override
+  public double getEstimatedSelectivity() {
+    // Assume the child filters are independent
+    double nonMatchingFraction = 1;
+    for (BaseFilterOperator filterOperator : _filterOperators) {
+      nonMatchingFraction *= 1 - filterOperator.getEstimatedSelectivity();
+    }
+    return 1 - nonMatchingFraction;
+  }
+
 
   @Override
   public String toExplainString() {
@@ -97,6 +97,11 @@ public class RangeIndexBasedFilterOperator extends BaseFilterOperator {
     });
   }
 
+  @Override
+  public double getEstimatedSelectivity() {
+    return FilterOperatorUtils.estimateSelectivity(_rangePredicateEvaluator, _dataSource);
+  }
+
   @Override
   public boolean canOptimizeCount() {
     return _rangeEvaluator.isExact();
@@ -57,6 +57,11 @@ public class ScanBasedFilterOperator extends BaseFilterOperator {
   }
 
 
+  @Override
+  public double getEstimatedSelectivity() {
+    return FilterOperatorUtils.estimateSelectivity(_predicateEvaluator, _dataSource);
+  }
+
   @Override
   public List<Operator> getChildOperators() {
     return Collections.emptyList();
@@ -18,15 +18,25 @@
  */
 package org.apache.pinot.core.plan;
 
+import java.util.Collection;
 import javax.annotation.Nullable;
 import org.apache.pinot.core.operator.DocIdSetOperator;
 import org.apache.pinot.core.operator.filter.BaseFilterOperator;
 import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.segment.spi.IndexSegment;
+import org.apache.pinot.segment.spi.datasource.DataSource;
+import org.apache.pinot.segment.spi.datasource.DataSourceMetadata;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
 
 
 public class DocIdSetPlanNode implements PlanNode {
+  // NOTE: The reusable buffers are allocated with MAX_DOC_PER_CALL, so the block size can only be reduced from it
   public static final int MAX_DOC_PER_CALL = 10000;
+  public static final int MIN_DOC_PER_CALL = 1000;
+  // Target size of the projected values of a block, which should fit in the L2 cache
+  public static final int TARGET_BLOCK_SIZE_IN_BYTES = 1024 * 1024;
+  // Estimated size of a variable-width (STRING, BYTES, BIG_DECIMAL) value
+  private static final int VARIABLE_WIDTH_VALUE_SIZE_ESTIMATE = 32;
 
   private final IndexSegment _indexSegment;
   private final QueryContext _queryContext;
@@ -49,4 +59,28 @@ public class DocIdSetPlanNode implements PlanNode {
         _filterOperator != null ? _filterOperator : new FilterPlanNode(_indexSegment, _queryContext).run(),
         _maxDocPerCall);
   }
+
+  /**
+   * Returns the max number of documents per block for the given projected columns, so that the projected values of a
+   * block fit in {@link #TARGET_BLOCK_SIZE_IN_BYTES}. The result is bounded by {@link #MIN_DOC_PER_CALL} and
+   * {@link #MAX_DOC_PER_CALL}.
+   */
+  public static int getMaxDocPerCall(Collection<DataSource> dataSources) {
+    // Start with the document id
+    long numBytesPerDoc = Integer.BYTES;
+    for (DataSource dataSource : dataSources) {
+      DataSourceMetadata dataSourceMetadata = dataSource.getDataSourceMetadata();
+      DataType storedType = dataSourceMetadata.getDataType().getStoredType();
+      int valueSize = storedType.isFixedWidth() ? storedType.size() : VARIABLE_WIDTH_VALUE_SIZE_ESTIMATE;
+      if (dataSource.getDictionary() != null) {
+        // Dictionary id
+        valueSize += Integer.BYTES;
+      }
+      int numValuesPerDoc =
+          dataSourceMetadata.isSingleValue() ? 1 : Math.max(dataSourceMetadata.getMaxNumValuesPerMVEntry(), 1);
+      numBytesPerDoc += (long) valueSize * numValuesPerDoc;
+    }
+    long maxDocPerCall = TARGET_BLOCK_SIZE_IN_BYTES / numBytesPerDoc;
+    return (int) Math.max(Math.min(maxDocPerCall, MAX_DOC_PER_CALL), MIN_DOC_PER_CALL);
+  }
 }
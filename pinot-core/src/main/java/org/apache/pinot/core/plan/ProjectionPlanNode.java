@@ -57,9 +57,12 @@ public class ProjectionPlanNode implements PlanNode {
       dataSourceMap.put(column, _indexSegment.getDataSource(column));
     }
     // NOTE: Skip creating DocIdSetOperator when maxDocsPerCall is 0 (for selection query with LIMIT 0)
-    DocIdSetOperator docIdSetOperator =
-        _maxDocsPerCall > 0 ? new DocIdSetPlanNode(_indexSegment, _queryContext, _maxDocsPerCall, _filterOperator).run()
-            : null;
+    DocIdSetOperator docIdSetOperator = null;
+    if (_maxDocsPerCall > 0) {
+      // Reduce the block size for wide projections to keep the projected values of a block in the CPU cache
+      int maxDocsPerCall = Math.min(_maxDocsPerCall, DocIdSetPlanNode.getMaxDocPerCall(dataSourceMap.values()));
+      docIdSetOperator = new DocIdSetPlanNode(_indexSegment, _queryContext, maxDocsPerCall, _filterOperator).run();
+    }
     return new ProjectionOperator(dataSourceMap, docIdSetOperator);
   }
 }
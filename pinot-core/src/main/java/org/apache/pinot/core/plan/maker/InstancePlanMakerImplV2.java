@@ -23,6 +23,7 @@ import com.google.common.base.Preconditions;
 import io.grpc.stub.StreamObserver;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,6 +49,7 @@ import org.apache.pinot.core.plan.PlanNode;
 import org.apache.pinot.core.plan.SelectionPlanNode;
 import org.apache.pinot.core.plan.StreamingInstanceResponsePlanNode;
 import org.apache.pinot.core.plan.StreamingSelectionPlanNode;
+import org.apache.pinot.core.query.aggregation.groupby.GlobalDictionary;
 import org.apache.pinot.core.query.config.QueryExecutorConfig;
 import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.core.query.request.context.utils.QueryContextUtils;
@@ -213,6 +215,9 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
     }
     queryContext.setMaxExecutionThreads(maxExecutionThreads);
 
+    // Set treeMerge
+    queryContext.setTreeMerge(QueryOptionsUtils.isTreeMerge(queryOptions));
+
     // Set group-by query options
     if (QueryContextUtils.isAggregationQuery(queryContext) && queryContext.getGroupByExpressions() != null) {
 
@@ -236,6 +241,22 @@ public class InstancePlanMakerImplV2 implements PlanMaker {
 
       // Set groupTrimThreshold
       queryContext.setGroupTrimThreshold(_groupByTrimThreshold);
+
+      // Set partitionedGroupByCombine
+      queryContext.setPartitionedGroupByCombine(QueryOptionsUtils.isPartitionedGroupByCombine(queryOptions));
+
+      // Set global dictionaries for the group-by columns
+      List<String> globalDictionaryColumns = QueryOptionsUtils.getGlobalDictionaryColumns(queryOptions);
+      if (globalDictionaryColumns != null) {
+        Map<String, GlobalDictionary> globalDictionaryMap = new HashMap<>();
+        for (ExpressionContext groupByExpression : queryContext.getGroupByExpressions()) {
+          if (groupByExpression.getType() == ExpressionContext.Type.IDENTIFIER && globalDictionaryColumns.contains(
+              groupByExpression.getIdentifier())) {
+            globalDictionaryMap.put(groupByExpression.getIdentifier(), new GlobalDictionary());
+          }
+        }
+        queryContext.setGlobalDictionaryMap(globalDictionaryMap);
+      }
     }
   }
 
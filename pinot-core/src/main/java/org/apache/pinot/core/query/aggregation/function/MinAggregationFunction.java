@@ -29,6 +29,7 @@ import org.apache.pinot.core.query.aggregation.ObjectAggregationResultHolder;
 import org.apache.pinot.core.query.aggregation.groupby.DoubleGroupByResultHolder;
 import org.apache.pinot.core.query.aggregation.groupby.GroupByResultHolder;
 import org.apache.pinot.core.query.aggregation.groupby.ObjectGroupByResultHolder;
+import org.apache.pinot.core.query.aggregation.utils.AggregationKernels;
 import org.apache.pinot.segment.spi.AggregationFunctionType;
 import org.roaringbitmap.RoaringBitmap;
 
@@ -72,47 +73,35 @@ public class MinAggregationFunction extends BaseSingleInputAggregationFunction<D
       Map<ExpressionContext, BlockValSet> blockValSetMap) {
     BlockValSet blockValSet = blockValSetMap.get(_expression);
     if (_nullHandlingEnabled) {
+      // the result holder stores a nullable result, so take the null-aware path even when the block has no null value
       RoaringBitmap nullBitmap = blockValSet.getNullBitmap();
-      if (nullBitmap != null && !nullBitmap.isEmpty()) {
-        aggregateNullHandlingEnabled(length, aggregationResultHolder, blockValSet, nullBitmap);
-        return;
-      }
+      aggregateNullHandlingEnabled(length, aggregationResultHolder, blockValSet,
+          nullBitmap != null ? nullBitmap : new RoaringBitmap());
+      return;
     }
 
     switch (blockValSet.getValueType().getStoredType()) {
       case INT: {
         int[] values = blockValSet.getIntValuesSV();
-        int min = values[0];
-        for (int i = 0; i < length & i < values.length; i++) {
-          min = Math.min(values[i], min);
-        }
+        double min = AggregationKernels.min(values, Math.min(length, values.length));
         aggregationResultHolder.setValue(Math.min(min, aggregationResultHolder.getDoubleResult()));
         break;
       }
       case LONG: {
         long[] values = blockValSet.getLongValuesSV();
-        long min = values[0];
-        for (int i = 0; i < length & i < values.length; i++) {
-          min = Math.min(values[i], min);
-        }
+        double min = AggregationKernels.min(values, Math.min(length, values.length));
         aggregationResultHolder.setValue(Math.min(min, aggregationResultHolder.getDoubleResult()));
         break;
       }
       case FLOAT: {
         float[] values = blockValSet.getFloatValuesSV();
-        float min = values[0];
-        for (int i = 0; i < length & i < values.length; i++) {
-          min = Math.min(values[i], min);
-        }
+        double min = AggregationKernels.min(values, Math.min(length, values.length));
         aggregationResultHolder.setValue(Math.min(min, aggregationResultHolder.getDoubleResult()));
         break;
       }
       case DOUBLE: {
         double[] values = blockValSet.getDoubleValuesSV();
-        double min = values[0];
-        for (int i = 0; i < length & i < values.length; i++) {
-          min = Math.min(values[i], min);
-        }
+        double min = AggregationKernels.min(values, Math.min(length, values.length));
         aggregationResultHolder.setValue(Math.min(min, aggregationResultHolder.getDoubleResult()));
         break;
       }
@@ -233,6 +222,17 @@ public class MinAggregationFunction extends BaseSingleInputAggregationFunction<D
         }
         return;
       }
+      // the result holder stores nullable results, even when the block has no null value
+      double[] valueArray = blockValSet.getDoubleValuesSV();
+      for (int i = 0; i < length; i++) {
+        double value = valueArray[i];
+        int groupKey = groupKeyArray[i];
+        Double result = groupByResultHolder.getResult(groupKey);
+        if (result == null || value < result) {
+          groupByResultHolder.setValueForKey(groupKey, value);
+        }
+      }
+      return;
     }
 
     double[] valueArray = blockValSet.getDoubleValuesSV();
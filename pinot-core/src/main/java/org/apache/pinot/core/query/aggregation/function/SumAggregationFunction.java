@@ -29,6 +29,7 @@ import org.apache.pinot.core.query.aggregation.ObjectAggregationResultHolder;
 import org.apache.pinot.core.query.aggregation.groupby.DoubleGroupByResultHolder;
 import org.apache.pinot.core.query.aggregation.groupby.GroupByResultHolder;
 import org.apache.pinot.core.query.aggregation.groupby.ObjectGroupByResultHolder;
+import org.apache.pinot.core.query.aggregation.utils.AggregationKernels;
 import org.apache.pinot.segment.spi.AggregationFunctionType;
 import org.roaringbitmap.RoaringBitmap;
 
@@ -79,34 +80,28 @@ public class SumAggregationFunction extends BaseSingleInputAggregationFunction<D
       }
     }
 
-    double sum = aggregationResultHolder.getDoubleResult();
+    // with null handling enabled the result holder stores a nullable Double, even when the block has no null value.
+    boolean nullableResult = !(aggregationResultHolder instanceof DoubleAggregationResultHolder);
+    double sum = nullableResult ? 0 : aggregationResultHolder.getDoubleResult();
     switch (blockValSet.getValueType().getStoredType()) {
       case INT: {
         int[] values = blockValSet.getIntValuesSV();
-        for (int i = 0; i < length & i < values.length; i++) {
-          sum += values[i];
-        }
+        sum = AggregationKernels.sum(sum, values, Math.min(length, values.length));
         break;
       }
       case LONG: {
         long[] values = blockValSet.getLongValuesSV();
-        for (int i = 0; i < length & i < values.length; i++) {
-          sum += values[i];
-        }
+        sum = AggregationKernels.sum(sum, values, Math.min(length, values.length));
         break;
       }
       case FLOAT: {
         float[] values = blockValSet.getFloatValuesSV();
-        for (int i = 0; i < length & i < values.length; i++) {
-          sum += values[i];
-        }
+        sum = AggregationKernels.sum(sum, values, Math.min(length, values.length));
         break;
       }
       case DOUBLE: {
         double[] values = blockValSet.getDoubleValuesSV();
-        for (int i = 0; i < length & i < values.length; i++) {
-          sum += values[i];
-        }
+        sum = AggregationKernels.sum(sum, values, Math.min(length, values.length));
         break;
       }
       case BIG_DECIMAL: {
@@ -122,7 +117,11 @@ public class SumAggregationFunction extends BaseSingleInputAggregationFunction<D
       default:
         throw new IllegalStateException("Cannot compute sum for non-numeric type: " + blockValSet.getValueType());
     }
-    aggregationResultHolder.setValue(sum);
+    if (nullableResult) {
+      setAggregationResultHolder(aggregationResultHolder, sum);
+    } else {
+      aggregationResultHolder.setValue(sum);
+    }
   }
 
   private void aggregateNullHandlingEnabled(int length, AggregationResultHolder aggregationResultHolder,
@@ -230,9 +229,15 @@ public class SumAggregationFunction extends BaseSingleInputAggregationFunction<D
     }
 
     double[] valueArray = blockValSet.getDoubleValuesSV();
+    if (groupByResultHolder instanceof DoubleGroupByResultHolder) {
+      ((DoubleGroupByResultHolder) groupByResultHolder).addValues(length, groupKeyArray, valueArray);
+      return;
+    }
+    // with null handling enabled the result holder stores nullable Double results, even when the block has no null.
     for (int i = 0; i < length; i++) {
       int groupKey = groupKeyArray[i];
-      groupByResultHolder.setValueForKey(groupKey, groupByResultHolder.getDoubleResult(groupKey) + valueArray[i]);
+      Double result = groupByResultHolder.getResult(groupKey);
+      groupByResultHolder.setValueForKey(groupKey, result == null ? valueArray[i] : result + valueArray[i]);
     }
   }
 
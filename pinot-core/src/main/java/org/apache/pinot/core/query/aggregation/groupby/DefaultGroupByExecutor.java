@@ -95,7 +95,7 @@ public class DefaultGroupByExecutor implements GroupByExecutor {
       }
     } else {
       _groupKeyGenerator = new DictionaryBasedGroupKeyGenerator(transformOperator, groupByExpressions, numGroupsLimit,
-          maxInitialResultHolderCapacity);
+          maxInitialResultHolderCapacity, queryContext.getGroupByGlobalDictionaries());
     }
 
     // Initialize result holders
@@ -27,11 +27,13 @@ import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import java.util.Arrays;
 import java.util.Iterator;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.request.context.ExpressionContext;
 import org.apache.pinot.core.common.BlockValSet;
 import org.apache.pinot.core.operator.blocks.TransformBlock;
 import org.apache.pinot.core.operator.transform.TransformOperator;
 import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
 
 
 /**
@@ -58,6 +60,8 @@ import org.apache.pinot.segment.spi.index.reader.Dictionary;
  * </ul>
  * <p>All the logic is maintained internally, and to the outside world, the group ids are always int type, and are
  * bounded by the number of groups limit (globalGroupIdUpperBound is always smaller or equal to numGroupsLimit).
+ * <p>For STRING group-by columns with a {@link GlobalDictionary}, the group keys contain the global dictionary ids
+ * (Integer) instead of the String values.
  */
 public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
   // NOTE: map size = map capacity (power of 2) * load factor
@@ -85,6 +89,8 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
   private final int[] _cardinalities;
   private final boolean[] _isSingleValueColumn;
   private final Dictionary[] _dictionaries;
+  // Global dictionaries for the STRING group-by columns, null if no group-by column has global dictionary
+  private final GlobalDictionary[] _globalDictionaries;
 
   // The first dimension is the index of group-by column
   // Reusable buffer for single-value column dictionary ids
@@ -99,6 +105,15 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
 
   public DictionaryBasedGroupKeyGenerator(TransformOperator transformOperator, ExpressionContext[] groupByExpressions,
       int numGroupsLimit, int arrayBasedThreshold) {
+    this(transformOperator, groupByExpressions, numGroupsLimit, arrayBasedThreshold, null);
+  }
+
+  /**
+   * Constructor with the global dictionaries of the group-by expressions. The global dictionary is only applied to the
+   * group-by expressions with STRING dictionary.
+   */
+  public DictionaryBasedGroupKeyGenerator(TransformOperator transformOperator, ExpressionContext[] groupByExpressions,
+      int numGroupsLimit, int arrayBasedThreshold, @Nullable GlobalDictionary[] globalDictionaries) {
     assert numGroupsLimit >= arrayBasedThreshold;
 
     _groupByExpressions = groupByExpressions;
@@ -109,9 +124,25 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
     _dictionaries = new Dictionary[_numGroupByExpressions];
     _singleValueDictIds = new int[_numGroupByExpressions][];
     _multiValueDictIds = new int[_numGroupByExpressions][][];
+    GlobalDictionary[] appliedGlobalDictionaries = null;
+    if (globalDictionaries != null) {
+      for (int i = 0; i < _numGroupByExpressions; i++) {
+        if (globalDictionaries[i] != null
+            && transformOperator.getDictionary(groupByExpressions[i]).getValueType() == DataType.STRING) {
+          if (appliedGlobalDictionaries == null) {
+            appliedGlobalDictionaries = new GlobalDictionary[_numGroupByExpressions];
+          }
+          appliedGlobalDictionaries[i] = globalDictionaries[i];
+        }
+      }
+    }
+    _globalDictionaries = appliedGlobalDictionaries;
     // no need to intern dictionary values when there is only one group by expression because
     // only one call will be made to the dictionary to extract each raw value.
-    _internedDictionaryValues = _numGroupByExpressions > 1 ? new Object[_numGroupByExpressions][] : null;
+    // NOTE: The intern table of the column with global dictionary is the map from dictionary id to global id. Above
+    //       the intern table size limit, the global id is looked up in the global dictionary map for each group.
+    _internedDictionaryValues =
+        _numGroupByExpressions > 1 || _globalDictionaries != null ? new Object[_numGroupByExpressions][] : null;
 
     long cardinalityProduct = 1L;
     boolean longOverflow = false;
@@ -546,7 +577,7 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
   private Object[] getKeys(int rawKey) {
     // Specialize single group-by column case
     if (_numGroupByExpressions == 1) {
-      return new Object[]{_dictionaries[0].getInternal(rawKey)};
+      return new Object[]{_globalDictionaries != null ? getRawValue(0, rawKey) : _dictionaries[0].getInternal(rawKey)};
     } else {
       Object[] groupKeys = new Object[_numGroupByExpressions];
       for (int i = 0; i < _numGroupByExpressions; i++) {
@@ -560,14 +591,20 @@ public class DictionaryBasedGroupKeyGenerator implements GroupKeyGenerator {
 
   private Object getRawValue(int dictionaryIndex, int dictId) {
     Dictionary dictionary = _dictionaries[dictionaryIndex];
+    GlobalDictionary globalDictionary = _globalDictionaries != null ? _globalDictionaries[dictionaryIndex] : null;
     Object[] table = _internedDictionaryValues[dictionaryIndex];
     if (table == null) {
       // high cardinality dictionary values aren't interned
-      return dictionary.getInternal(dictId);
+      return globalDictionary != null ? globalDictionary.indexOf(dictionary.getStringValue(dictId))
+          : dictionary.getInternal(dictId);
     }
     Object rawValue = table[dictId];
     if (rawValue == null) {
-      rawValue = dictionary.getInternal(dictId);
+      if (globalDictionary != null) {
+        rawValue = globalDictionary.indexOf(dictionary.getStringValue(dictId));
+      } else {
+        rawValue = dictionary.getInternal(dictId);
+      }
       table[dictId] = rawValue;
     }
     return rawValue;
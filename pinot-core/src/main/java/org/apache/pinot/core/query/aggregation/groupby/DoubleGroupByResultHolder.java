@@ -20,6 +20,7 @@ package org.apache.pinot.core.query.aggregation.groupby;
 
 import com.google.common.base.Preconditions;
 import java.util.Arrays;
+import org.apache.pinot.core.query.aggregation.utils.AggregationKernels;
 
 
 /**
@@ -92,6 +93,13 @@ public class DoubleGroupByResultHolder implements GroupByResultHolder {
     }
   }
 
+  /**
+   * Adds the first {@code length} values into the results of their group keys, skipping the invalid group keys.
+   */
+  public void addValues(int length, int[] groupKeyArray, double[] values) {
+    AggregationKernels.scatterAdd(length, groupKeyArray, values, _resultArray);
+  }
+
   @Override
   public void setValueForKey(int groupKey, Object newValue) {
     throw new UnsupportedOperationException();
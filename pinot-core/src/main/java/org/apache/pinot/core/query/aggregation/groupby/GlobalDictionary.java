@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.aggregation.groupby;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ * Dictionary of a STRING group-by column shared by all the segments processed on the server for a query.
+ * <p>Each segment maps its own dictionary ids to the global ids, so that the group keys of the column are kept as the
+ * global ids (Integer) instead of the String values when combining the segment results. The values are only resolved
+ * when the groups are ordered on the column, and when the final records of the server are generated.
+ */
+@ThreadSafe
+public class GlobalDictionary {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final ConcurrentHashMap<String, Integer> _valueToIdMap = new ConcurrentHashMap<>();
+
+  // NOTE: The value is stored before its id is published in the map, and the array is only replaced (after copying
+  //       all the values) when expanding, so the value is always visible to the readers that got the id.
+  private volatile String[] _values = new String[INITIAL_CAPACITY];
+  private int _size;
+
+  /**
+   * Returns the global id of the given value, or adds the value if it does not exist.
+   */
+  public int indexOf(String value) {
+    Integer id = _valueToIdMap.get(value);
+    return id != null ? id : add(value);
+  }
+
+  private synchronized int add(String value) {
+    Integer existingId = _valueToIdMap.get(value);
+    if (existingId != null) {
+      return existingId;
+    }
+    int id = _size++;
+    String[] values = _values;
+    if (id == values.length) {
+      values = Arrays.copyOf(values, 2 * id);
+      values[id] = value;
+      _values = values;
+    } else {
+      values[id] = value;
+    }
+    _valueToIdMap.put(value, id);
+    return id;
+  }
+
+  /**
+   * Returns the value of the given global id.
+   */
+  public String get(int id) {
+    return _values[id];
+  }
+
+  public int size() {
+    return _valueToIdMap.size();
+  }
+}
@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.aggregation.utils;
+
+import org.apache.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
+
+
+/**
+ * Kernels for the inner loops of the SUM/MIN/MAX/AVG aggregations over a block of single-value values.
+ * <p>The loops are unrolled with independent accumulators where the result does not depend on the evaluation order
+ * (integer sums, min and max), which breaks the loop-carried dependency and lets the JIT vectorize them. The
+ * floating-point sums are only unrolled, and the values are still added in order so that the results stay the same
+ * as the plain loops.
+ */
+public class AggregationKernels {
+  private AggregationKernels() {
+  }
+
+  /**
+   * Returns {@code initialValue} plus the sum of the first {@code length} values.
+   * <p>The int values are summed as long, which cannot overflow for a block of values.
+   */
+  public static double sum(double initialValue, int[] values, int length) {
+    long sum0 = 0;
+    long sum1 = 0;
+    long sum2 = 0;
+    long sum3 = 0;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      sum0 += values[i];
+      sum1 += values[i + 1];
+      sum2 += values[i + 2];
+      sum3 += values[i + 3];
+    }
+    for (; i < length; i++) {
+      sum0 += values[i];
+    }
+    return initialValue + (sum0 + sum1 + sum2 + sum3);
+  }
+
+  /**
+   * Returns {@code initialValue} plus the sum of the first {@code length} values, added in order as double.
+   */
+  public static double sum(double initialValue, long[] values, int length) {
+    double sum = initialValue;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      sum = sum + values[i] + values[i + 1] + values[i + 2] + values[i + 3];
+    }
+    for (; i < length; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns {@code initialValue} plus the sum of the first {@code length} values, added in order as double.
+   */
+  public static double sum(double initialValue, float[] values, int length) {
+    double sum = initialValue;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      sum = sum + values[i] + values[i + 1] + values[i + 2] + values[i + 3];
+    }
+    for (; i < length; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns {@code initialValue} plus the sum of the first {@code length} values, added in order.
+   */
+  public static double sum(double initialValue, double[] values, int length) {
+    double sum = initialValue;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      sum = sum + values[i] + values[i + 1] + values[i + 2] + values[i + 3];
+    }
+    for (; i < length; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the min of the first {@code length} values, or {@link Double#POSITIVE_INFINITY} if {@code length} is 0.
+   */
+  public static double min(int[] values, int length) {
+    if (length == 0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    int min0 = values[0];
+    int min1 = min0;
+    int min2 = min0;
+    int min3 = min0;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      min0 = Math.min(min0, values[i]);
+      min1 = Math.min(min1, values[i + 1]);
+      min2 = Math.min(min2, values[i + 2]);
+      min3 = Math.min(min3, values[i + 3]);
+    }
+    for (; i < length; i++) {
+      min0 = Math.min(min0, values[i]);
+    }
+    return Math.min(Math.min(min0, min1), Math.min(min2, min3));
+  }
+
+  /**
+   * Returns the min of the first {@code length} values, or {@link Double#POSITIVE_INFINITY} if {@code length} is 0.
+   */
+  public static double min(long[] values, int length) {
+    if (length == 0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    long min0 = values[0];
+    long min1 = min0;
+    long min2 = min0;
+    long min3 = min0;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      min0 = Math.min(min0, values[i]);
+      min1 = Math.min(min1, values[i + 1]);
+      min2 = Math.min(min2, values[i + 2]);
+      min3 = Math.min(min3, values[i + 3]);
+    }
+    for (; i < length; i++) {
+      min0 = Math.min(min0, values[i]);
+    }
+    return Math.min(Math.min(min0, min1), Math.min(min2, min3));
+  }
+
+  /**
+   * Returns the min of the first {@code length} values, or {@link Double#POSITIVE_INFINITY} if {@code length} is 0.
+   */
+  public static double min(float[] values, int length) {
+    float min0 = Float.POSITIVE_INFINITY;
+    float min1 = Float.POSITIVE_INFINITY;
+    float min2 = Float.POSITIVE_INFINITY;
+    float min3 = Float.POSITIVE_INFINITY;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      min0 = Math.min(min0, values[i]);
+      min1 = Math.min(min1, values[i + 1]);
+      min2 = Math.min(min2, values[i + 2]);
+      min3 = Math.min(min3, values[i + 3]);
+    }
+    for (; i < length; i++) {
+      min0 = Math.min(min0, values[i]);
+    }
+    return Math.min(Math.min(min0, min1), Math.min(min2, min3));
+  }
+
+  /**
+   * Returns the min of the first {@code length} values, or {@link Double#POSITIVE_INFINITY} if {@code length} is 0.
+   */
+  public static double min(double[] values, int length) {
+    double min0 = Double.POSITIVE_INFINITY;
+    double min1 = Double.POSITIVE_INFINITY;
+    double min2 = Double.POSITIVE_INFINITY;
+    double min3 = Double.POSITIVE_INFINITY;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      min0 = Math.min(min0, values[i]);
+      min1 = Math.min(min1, values[i + 1]);
+      min2 = Math.min(min2, values[i + 2]);
+      min3 = Math.min(min3, values[i + 3]);
+    }
+    for (; i < length; i++) {
+      min0 = Math.min(min0, values[i]);
+    }
+    return Math.min(Math.min(min0, min1), Math.min(min2, min3));
+  }
+
+  /**
+   * Returns the max of the first {@code length} values, or {@link Double#NEGATIVE_INFINITY} if {@code length} is 0.
+   */
+  public static double max(int[] values, int length) {
+    if (length == 0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    int max0 = values[0];
+    int max1 = max0;
+    int max2 = max0;
+    int max3 = max0;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      max0 = Math.max(max0, values[i]);
+      max1 = Math.max(max1, values[i + 1]);
+      max2 = Math.max(max2, values[i + 2]);
+      max3 = Math.max(max3, values[i + 3]);
+    }
+    for (; i < length; i++) {
+      max0 = Math.max(max0, values[i]);
+    }
+    return Math.max(Math.max(max0, max1), Math.max(max2, max3));
+  }
+
+  /**
+   * Returns the max of the first {@code length} values, or {@link Double#NEGATIVE_INFINITY} if {@code length} is 0.
+   */
+  public static double max(long[] values, int length) {
+    if (length == 0) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    long max0 = values[0];
+    long max1 = max0;
+    long max2 = max0;
+    long max3 = max0;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      max0 = Math.max(max0, values[i]);
+      max1 = Math.max(max1, values[i + 1]);
+      max2 = Math.max(max2, values[i + 2]);
+      max3 = Math.max(max3, values[i + 3]);
+    }
+    for (; i < length; i++) {
+      max0 = Math.max(max0, values[i]);
+    }
+    return Math.max(Math.max(max0, max1), Math.max(max2, max3));
+  }
+
+  /**
+   * Returns the max of the first {@code length} values, or {@link Double#NEGATIVE_INFINITY} if {@code length} is 0.
+   */
+  public static double max(float[] values, int length) {
+    float max0 = Float.NEGATIVE_INFINITY;
+    float max1 = Float.NEGATIVE_INFINITY;
+    float max2 = Float.NEGATIVE_INFINITY;
+    float max3 = Float.NEGATIVE_INFINITY;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      max0 = Math.max(max0, values[i]);
+      max1 = Math.max(max1, values[i + 1]);
+      max2 = Math.max(max2, values[i + 2]);
+      max3 = Math.max(max3, values[i + 3]);
+    }
+    for (; i < length; i++) {
+      max0 = Math.max(max0, values[i]);
+    }
+    return Math.max(Math.max(max0, max1), Math.max(max2, max3));
+  }
+
+  /**
+   * Returns the max of the first {@code length} values, or {@link Double#NEGATIVE_INFINITY} if {@code length} is 0.
+   */
+  public static double max(double[] values, int length) {
+    double max0 = Double.NEGATIVE_INFINITY;
+    double max1 = Double.NEGATIVE_INFINITY;
+    double max2 = Double.NEGATIVE_INFINITY;
+    double max3 = Double.NEGATIVE_INFINITY;
+    int i = 0;
+    for (; i < length - 3; i += 4) {
+      max0 = Math.max(max0, values[i]);
+      max1 = Math.max(max1, values[i + 1]);
+      max2 = Math.max(max2, values[i + 2]);
+      max3 = Math.max(max3, values[i + 3]);
+    }
+    for (; i < length; i++) {
+      max0 = Math.max(max0, values[i]);
+    }
+    return Math.max(Math.max(max0, max1), Math.max(max2, max3));
+  }
+
+  /**
+   * Adds the first {@code length} values into the results of their group keys, skipping the
+   * {@link GroupKeyGenerator#INVALID_ID} group keys.
+   */
+  public static void scatterAdd(int length, int[] groupKeys, double[] values, double[] results) {
+    for (int i = 0; i < length; i++) {
+      int groupKey = groupKeys[i];
+      if (groupKey != GroupKeyGenerator.INVALID_ID) {
+        results[groupKey] += values[i];
+      }
+    }
+  }
+}
@@ -45,6 +45,7 @@ import org.apache.pinot.common.utils.DataTable;
 import org.apache.pinot.core.common.ObjectSerDeUtils;
 import org.apache.pinot.core.data.table.ConcurrentIndexedTable;
 import org.apache.pinot.core.data.table.IndexedTable;
+import org.apache.pinot.core.data.table.NumericKeyIndexedTable;
 import org.apache.pinot.core.data.table.Record;
 import org.apache.pinot.core.data.table.SimpleIndexedTable;
 import org.apache.pinot.core.data.table.UnboundedConcurrentIndexedTable;
@@ -238,7 +239,21 @@ public class GroupByDataTableReducer implements DataTableReducer {
     int resultSize = _queryContext.getHavingFilter() != null ? trimSize : limit;
     int trimThreshold = reducerContext.getGroupByTrimThreshold();
     IndexedTable indexedTable;
-    if (numReduceThreadsToUse == 1) {
+    NumericKeyIndexedTable[] numericKeyIndexedTables = null;
+    // NOTE: Without ORDER BY, each table stops accepting new groups after reaching the result size, so the per-thread
+    //       tables can end up with different groups and lose the values of the groups only kept by the other tables.
+    //       Only use per-thread tables when all the groups are kept until trimmed by the ORDER BY expressions.
+    if (NumericKeyIndexedTable.isApplicable(dataSchema, _queryContext) && (numReduceThreadsToUse == 1
+        || _queryContext.getOrderByExpressions() != null)) {
+      // Each thread reduces into its own table which stores the groups in primitive arrays, and the tables are merged
+      // after all the data tables are reduced.
+      numericKeyIndexedTables = new NumericKeyIndexedTable[numReduceThreadsToUse];
+      for (int i = 0; i < numReduceThreadsToUse; i++) {
+        numericKeyIndexedTables[i] =
+            new NumericKeyIndexedTable(dataSchema, _queryContext, resultSize, trimSize, trimThreshold);
+      }
+      indexedTable = numericKeyIndexedTables[0];
+    } else if (numReduceThreadsToUse == 1) {
       indexedTable = new SimpleIndexedTable(dataSchema, _queryContext, resultSize, trimSize, trimThreshold);
     } else {
       if (trimThreshold >= GroupByOrderByCombineOperator.MAX_TRIM_THRESHOLD) {
@@ -269,6 +284,8 @@ public class GroupByDataTableReducer implements DataTableReducer {
     ColumnDataType[] storedColumnDataTypes = dataSchema.getStoredColumnDataTypes();
     for (int i = 0; i < numReduceThreadsToUse; i++) {
       List<DataTable> reduceGroup = reduceGroups.get(i);
+      NumericKeyIndexedTable numericKeyIndexedTable =
+          numericKeyIndexedTables != null ? numericKeyIndexedTables[i] : null;
       futures[i] = reducerContext.getExecutorService().submit(new TraceRunnable() {
         @Override
         public void runJob() {
@@ -278,6 +295,10 @@ public class GroupByDataTableReducer implements DataTableReducer {
               return;
             }
             try {
+              if (numericKeyIndexedTable != null) {
+                upsertNumericKeyRows(numericKeyIndexedTable, dataTable, storedColumnDataTypes);
+                continue;
+              }
               boolean nullHandlingEnabled = _queryContext.isNullHandlingEnabled();
               RoaringBitmap[] nullBitmaps = null;
               if (nullHandlingEnabled) {
@@ -357,10 +378,66 @@ public class GroupByDataTableReducer implements DataTableReducer {
       }
     }
 
+    if (numericKeyIndexedTables != null) {
+      for (int i = 1; i < numReduceThreadsToUse; i++) {
+        numericKeyIndexedTables[0].mergeGroups(numericKeyIndexedTables[i]);
+      }
+    }
     indexedTable.finish(true);
     return indexedTable;
   }
 
+  /**
+   * Upserts the rows of the data table into the numeric key indexed table by reading the primitive values directly
+   * from the data table, without allocating a record for each row.
+   */
+  private void upsertNumericKeyRows(NumericKeyIndexedTable indexedTable, DataTable dataTable,
+      ColumnDataType[] storedColumnDataTypes) {
+    boolean intKey = storedColumnDataTypes[0] == ColumnDataType.INT;
+    int numRows = dataTable.getNumberOfRows();
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      int groupId = indexedTable.getGroupId(intKey ? dataTable.getInt(rowId, 0) : dataTable.getLong(rowId, 0));
+      if (groupId < 0) {
+        continue;
+      }
+      for (int i = 0; i < _numAggregationFunctions; i++) {
+        int colId = i + 1;
+        switch (storedColumnDataTypes[colId]) {
+          case INT:
+            indexedTable.mergeObject(groupId, i, dataTable.getInt(rowId, colId));
+            break;
+          case LONG:
+            indexedTable.mergeLong(groupId, i, dataTable.getLong(rowId, colId));
+            break;
+          case FLOAT:
+            indexedTable.mergeObject(groupId, i, dataTable.getFloat(rowId, colId));
+            break;
+          case DOUBLE:
+            indexedTable.mergeDouble(groupId, i, dataTable.getDouble(rowId, colId));
+            break;
+          case BIG_DECIMAL:
+            indexedTable.mergeObject(groupId, i, dataTable.getBigDecimal(rowId, colId));
+            break;
+          case STRING:
+            indexedTable.mergeObject(groupId, i, dataTable.getString(rowId, colId));
+            break;
+          case BYTES:
+            indexedTable.mergeObject(groupId, i, dataTable.getBytes(rowId, colId));
+            break;
+          case OBJECT:
+            DataTable.CustomObject customObject = dataTable.getCustomObject(rowId, colId);
+            if (customObject != null) {
+              indexedTable.mergeObject(groupId, i, ObjectSerDeUtils.deserialize(customObject));
+            }
+            break;
+          // Add other aggregation intermediate result type supports here
+          default:
+            throw new IllegalStateException();
+        }
+      }
+    }
+  }
+
   /**
    * Computes the number of reduce threads to use per query.
    * <ul>
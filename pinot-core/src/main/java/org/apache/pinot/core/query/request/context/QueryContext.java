@@ -38,6 +38,7 @@ import org.apache.pinot.common.request.context.RequestContextUtils;
 import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunctionFactory;
+import org.apache.pinot.core.query.aggregation.groupby.GlobalDictionary;
 import org.apache.pinot.core.util.MemoizedClassAssociation;
 import org.apache.pinot.core.util.QueryOptionsUtils;
 
@@ -107,6 +108,8 @@ public class QueryContext {
   private boolean _skipScanFilterReorder;
   // Maximum number of threads used to execute the query
   private int _maxExecutionThreads = InstancePlanMakerImplV2.DEFAULT_MAX_EXECUTION_THREADS;
+  // Whether to merge the segment results in the worker threads as a tree instead of in the main thread
+  private boolean _treeMerge;
   // The following properties apply to group-by queries
   // Maximum initial capacity of the group-by result holder
   private int _maxInitialResultHolderCapacity = InstancePlanMakerImplV2.DEFAULT_MAX_INITIAL_RESULT_HOLDER_CAPACITY;
@@ -118,6 +121,10 @@ public class QueryContext {
   private int _minServerGroupTrimSize = InstancePlanMakerImplV2.DEFAULT_MIN_SERVER_GROUP_TRIM_SIZE;
   // Trim threshold to use for server combine for SQL GROUP BY
   private int _groupTrimThreshold = InstancePlanMakerImplV2.DEFAULT_GROUPBY_TRIM_THRESHOLD;
+  // Whether to combine the group-by results into per-thread hash partitions without locking
+  private boolean _partitionedGroupByCombine;
+  // Global dictionaries of the STRING group-by columns shared by all the segments on the server
+  private Map<String, GlobalDictionary> _globalDictionaryMap;
   // Whether null handling is enabled
   private boolean _nullHandlingEnabled;
   // Whether server returns the final result
@@ -329,6 +336,14 @@ public class QueryContext {
     _skipScanFilterReorder = skipScanFilterReorder;
   }
 
+  public boolean isTreeMerge() {
+    return _treeMerge;
+  }
+
+  public void setTreeMerge(boolean treeMerge) {
+    _treeMerge = treeMerge;
+  }
+
   public int getMaxExecutionThreads() {
     return _maxExecutionThreads;
   }
@@ -377,6 +392,43 @@ public class QueryContext {
     _groupTrimThreshold = groupTrimThreshold;
   }
 
+  public boolean isPartitionedGroupByCombine() {
+    return _partitionedGroupByCombine;
+  }
+
+  public void setPartitionedGroupByCombine(boolean partitionedGroupByCombine) {
+    _partitionedGroupByCombine = partitionedGroupByCombine;
+  }
+
+  @Nullable
+  public Map<String, GlobalDictionary> getGlobalDictionaryMap() {
+    return _globalDictionaryMap;
+  }
+
+  public void setGlobalDictionaryMap(Map<String, GlobalDictionary> globalDictionaryMap) {
+    _globalDictionaryMap = globalDictionaryMap;
+  }
+
+  /**
+   * Returns the global dictionary for each group-by expression (null for the expression without global dictionary), or
+   * {@code null} if no group-by expression has global dictionary.
+   */
+  @Nullable
+  public GlobalDictionary[] getGroupByGlobalDictionaries() {
+    if (_globalDictionaryMap == null || _globalDictionaryMap.isEmpty() || _groupByExpressions == null) {
+      return null;
+    }
+    int numGroupByExpressions = _groupByExpressions.size();
+    GlobalDictionary[] globalDictionaries = new GlobalDictionary[numGroupByExpressions];
+    for (int i = 0; i < numGroupByExpressions; i++) {
+      ExpressionContext groupByExpression = _groupByExpressions.get(i);
+      if (groupByExpression.getType() == ExpressionContext.Type.IDENTIFIER) {
+        globalDictionaries[i] = _globalDictionaryMap.get(groupByExpression.getIdentifier());
+      }
+    }
+    return globalDictionaries;
+  }
+
   public boolean isNullHandlingEnabled() {
     return _nullHandlingEnabled;
   }
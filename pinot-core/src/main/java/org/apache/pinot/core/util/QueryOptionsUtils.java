@@ -19,8 +19,11 @@
 package org.apache.pinot.core.util;
 
 import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.pinot.core.common.datatable.DataTableFactory;
 import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
 import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionValue;
@@ -78,6 +81,10 @@ public class QueryOptionsUtils {
     return maxExecutionThreadsString != null ? Integer.parseInt(maxExecutionThreadsString) : null;
   }
 
+  public static boolean isTreeMerge(Map<String, String> queryOptions) {
+    return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.USE_TREE_MERGE));
+  }
+
   @Nullable
   public static Integer getMinSegmentGroupTrimSize(Map<String, String> queryOptions) {
     String minSegmentGroupTrimSizeString = queryOptions.get(QueryOptionKey.MIN_SEGMENT_GROUP_TRIM_SIZE);
@@ -90,6 +97,26 @@ public class QueryOptionsUtils {
     return minServerGroupTrimSizeString != null ? Integer.parseInt(minServerGroupTrimSizeString) : null;
   }
 
+  public static boolean isPartitionedGroupByCombine(Map<String, String> queryOptions) {
+    return Boolean.parseBoolean(queryOptions.get(QueryOptionKey.USE_PARTITIONED_GROUP_BY_COMBINE));
+  }
+
+  /**
+   * Returns the STRING columns (comma separated) to use global dictionary for when grouping by them.
+   */
+  @Nullable
+  public static List<String> getGlobalDictionaryColumns(Map<String, String> queryOptions) {
+    String globalDictionaryColumnsString = queryOptions.get(QueryOptionKey.GLOBAL_DICTIONARY_COLUMNS);
+    if (globalDictionaryColumnsString == null) {
+      return null;
+    }
+    List<String> globalDictionaryColumns = new ArrayList<>();
+    for (String column : StringUtils.split(globalDictionaryColumnsString, ',')) {
+      globalDictionaryColumns.add(column.trim());
+    }
+    return globalDictionaryColumns;
+  }
+
   public static boolean isNullHandlingEnabled(Map<String, String> queryOptions) {
     boolean nullHandlingEnabled = Boolean.parseBoolean(queryOptions.get(QueryOptionKey.ENABLE_NULL_HANDLING));
     if (nullHandlingEnabled) {
@@ -52,6 +52,22 @@ public class BuiltInTracer implements Tracer {
     }
   }
 
+  /**
+   * Logs the recorded values into the {@link TraceContext} of the request, only returned when the trace is enabled.
+   */
+  private static final class TraceContextRecording extends BaseRecording {
+    static final TraceContextRecording INSTANCE = new TraceContextRecording();
+
+    private TraceContextRecording() {
+      super(true);
+    }
+
+    @Override
+    public void setMaxDocsPerCall(int maxDocsPerCall) {
+      TraceContext.logInfo("maxDocsPerCall", maxDocsPerCall);
+    }
+  }
+
   @Override
   public void register(long requestId) {
     TraceContext.register(requestId);
@@ -69,6 +85,6 @@ public class BuiltInTracer implements Tracer {
 
   @Override
   public InvocationRecording activeRecording() {
-    return NoOpRecording.INSTANCE;
+    return TraceContext.traceEnabled() ? TraceContextRecording.INSTANCE : NoOpRecording.INSTANCE;
   }
 }
@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.common.datablock;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.pinot.common.utils.DataSchema;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+
+public class ColumnarDataBlockPartitionerTest {
+  private static final List<DataSchema.ColumnDataType> EXCLUDE_DATA_TYPES = ImmutableList.of(
+      DataSchema.ColumnDataType.OBJECT, DataSchema.ColumnDataType.BYTES_ARRAY);
+  private static final int TEST_ROW_COUNT = 100;
+  private static final int NUM_PARTITIONS = 4;
+  private static final Random RANDOM = new Random();
+
+  @Test(dataProvider = "testTypeNullPercentile")
+  public void testPartitionAllDataTypes(int nullPercentile)
+      throws Exception {
+    DataSchema dataSchema = getAllDataTypesSchema();
+    List<Object[]> rows = DataBlockTestUtils.getRandomRows(dataSchema, TEST_ROW_COUNT, nullPercentile);
+    ColumnarDataBlock columnarBlock =
+        DataBlockBuilder.buildFromColumns(DataBlockTestUtils.convertColumnar(dataSchema, rows), dataSchema);
+    int[] partitionIds = new int[TEST_ROW_COUNT];
+    List<List<Integer>> expectedRowIds = new ArrayList<>();
+    for (int partition = 0; partition < NUM_PARTITIONS; partition++) {
+      expectedRowIds.add(new ArrayList<>());
+    }
+    for (int rowId = 0; rowId < TEST_ROW_COUNT; rowId++) {
+      // Leave the last partition empty
+      partitionIds[rowId] = RANDOM.nextInt(NUM_PARTITIONS - 1);
+      expectedRowIds.get(partitionIds[rowId]).add(rowId);
+    }
+
+    ColumnarDataBlock[] partitionBlocks =
+        ColumnarDataBlockPartitioner.partition(columnarBlock, partitionIds, NUM_PARTITIONS);
+    Assert.assertEquals(partitionBlocks.length, NUM_PARTITIONS);
+    for (int partition = 0; partition < NUM_PARTITIONS; partition++) {
+      // Verify the partition also survives serialization
+      BaseDataBlock partitionBlock = DataBlockUtils.getDataBlock(ByteBuffer.wrap(partitionBlocks[partition].toBytes()));
+      List<Integer> rowIds = expectedRowIds.get(partition);
+      Assert.assertEquals(partitionBlock.getNumberOfRows(), rowIds.size());
+      Assert.assertEquals(partitionBlock.getDataSchema(), dataSchema);
+      for (int colId = 0; colId < dataSchema.size(); colId++) {
+        DataSchema.ColumnDataType columnDataType = dataSchema.getColumnDataType(colId);
+        for (int i = 0; i < rowIds.size(); i++) {
+          Object expected = DataBlockTestUtils.getElement(columnarBlock, rowIds.get(i), colId, columnDataType);
+          Object actual = DataBlockTestUtils.getElement(partitionBlock, i, colId, columnDataType);
+          Assert.assertEquals(actual, expected, "Error comparing partition " + partition + " at (" + i + "," + colId
+              + ") of Type: " + columnDataType);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSelect()
+      throws Exception {
+    DataSchema dataSchema = getAllDataTypesSchema();
+    List<Object[]> rows = DataBlockTestUtils.getRandomRows(dataSchema, TEST_ROW_COUNT, 10);
+    ColumnarDataBlock columnarBlock =
+        DataBlockBuilder.buildFromColumns(DataBlockTestUtils.convertColumnar(dataSchema, rows), dataSchema);
+    int[] rowIds = new int[]{1, 2, 3, 50, 98};
+
+    ColumnarDataBlock selectedBlock = ColumnarDataBlockPartitioner.select(columnarBlock, rowIds);
+    Assert.assertEquals(selectedBlock.getNumberOfRows(), rowIds.length);
+    for (int colId = 0; colId < dataSchema.size(); colId++) {
+      DataSchema.ColumnDataType columnDataType = dataSchema.getColumnDataType(colId);
+      for (int i = 0; i < rowIds.length; i++) {
+        Assert.assertEquals(DataBlockTestUtils.getElement(selectedBlock, i, colId, columnDataType),
+            DataBlockTestUtils.getElement(columnarBlock, rowIds[i], colId, columnDataType));
+      }
+    }
+  }
+
+  @Test(dataProvider = "testTypeNullPercentile")
+  public void testConcatAllDataTypes(int nullPercentile)
+      throws Exception {
+    DataSchema dataSchema = getAllDataTypesSchema();
+    List<ColumnarDataBlock> blocks = new ArrayList<>();
+    List<Object[]> expectedRows = new ArrayList<>();
+    for (int numRows : new int[]{TEST_ROW_COUNT, 0, TEST_ROW_COUNT / 3}) {
+      List<Object[]> rows = DataBlockTestUtils.getRandomRows(dataSchema, numRows, nullPercentile);
+      ColumnarDataBlock columnarBlock =
+          DataBlockBuilder.buildFromColumns(DataBlockTestUtils.convertColumnar(dataSchema, rows), dataSchema);
+      blocks.add(columnarBlock);
+      for (int rowId = 0; rowId < numRows; rowId++) {
+        Object[] row = new Object[dataSchema.size()];
+        for (int colId = 0; colId < dataSchema.size(); colId++) {
+          row[colId] = DataBlockTestUtils.getElement(columnarBlock, rowId, colId, dataSchema.getColumnDataType(colId));
+        }
+        expectedRows.add(row);
+      }
+    }
+
+    // Verify the concatenated block also survives serialization
+    BaseDataBlock concatBlock =
+        DataBlockUtils.getDataBlock(ByteBuffer.wrap(ColumnarDataBlockPartitioner.concat(blocks).toBytes()));
+    Assert.assertEquals(concatBlock.getNumberOfRows(), expectedRows.size());
+    Assert.assertEquals(concatBlock.getDataSchema(), dataSchema);
+    for (int rowId = 0; rowId < expectedRows.size(); rowId++) {
+      for (int colId = 0; colId < dataSchema.size(); colId++) {
+        DataSchema.ColumnDataType columnDataType = dataSchema.getColumnDataType(colId);
+        Assert.assertEquals(DataBlockTestUtils.getElement(concatBlock, rowId, colId, columnDataType),
+            expectedRows.get(rowId)[colId], "Error comparing (" + rowId + "," + colId + ") of Type: " + columnDataType);
+      }
+    }
+  }
+
+  @Test
+  public void testWholeColumnAccess()
+      throws Exception {
+    DataSchema dataSchema = new DataSchema(new String[]{"i", "l", "f", "d", "s"}, new DataSchema.ColumnDataType[]{
+        DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.LONG, DataSchema.ColumnDataType.FLOAT,
+        DataSchema.ColumnDataType.DOUBLE, DataSchema.ColumnDataType.STRING
+    });
+    List<Object[]> rows = DataBlockTestUtils.getRandomRows(dataSchema, TEST_ROW_COUNT, 0);
+    ColumnarDataBlock columnarBlock =
+        DataBlockBuilder.buildFromColumns(DataBlockTestUtils.convertColumnar(dataSchema, rows), dataSchema);
+    int[] ints = columnarBlock.getIntColumn(0);
+    long[] longs = columnarBlock.getLongColumn(1);
+    float[] floats = columnarBlock.getFloatColumn(2);
+    double[] doubles = columnarBlock.getDoubleColumn(3);
+    String[] strings = columnarBlock.getStringColumn(4);
+    for (int rowId = 0; rowId < TEST_ROW_COUNT; rowId++) {
+      Assert.assertEquals(ints[rowId], columnarBlock.getInt(rowId, 0));
+      Assert.assertEquals(longs[rowId], columnarBlock.getLong(rowId, 1));
+      Assert.assertEquals(floats[rowId], columnarBlock.getFloat(rowId, 2));
+      Assert.assertEquals(doubles[rowId], columnarBlock.getDouble(rowId, 3));
+      Assert.assertEquals(strings[rowId], columnarBlock.getString(rowId, 4));
+    }
+  }
+
+  private static DataSchema getAllDataTypesSchema() {
+    List<DataSchema.ColumnDataType> columnDataTypes = new ArrayList<>();
+    List<String> columnNames = new ArrayList<>();
+    for (DataSchema.ColumnDataType columnDataType : DataSchema.ColumnDataType.values()) {
+      if (!EXCLUDE_DATA_TYPES.contains(columnDataType)) {
+        columnNames.add(columnDataType.name());
+        columnDataTypes.add(columnDataType);
+      }
+    }
+    return new DataSchema(columnNames.toArray(new String[0]),
+        columnDataTypes.toArray(new DataSchema.ColumnDataType[0]));
+  }
+
+  @DataProvider(name = "testTypeNullPercentile")
+  public Object[][] provideTestTypeNullPercentile() {
+    return new Object[][]{new Object[]{0}, new Object[]{10}, new Object[]{100}};
+  }
+}
@@ -135,6 +135,40 @@ public class DataBlockTest {
     }
   }
 
+  @Test(dataProvider = "testTypeNullPercentile")
+  public void testExtractColumn(int nullPercentile)
+      throws Exception {
+    DataSchema.ColumnDataType[] allDataTypes = DataSchema.ColumnDataType.values();
+    List<DataSchema.ColumnDataType> columnDataTypes = new ArrayList<DataSchema.ColumnDataType>();
+    List<String> columnNames = new ArrayList<String>();
+    for (int i = 0; i < allDataTypes.length; i++) {
+      if (!EXCLUDE_DATA_TYPES.contains(allDataTypes[i])) {
+        columnNames.add(allDataTypes[i].name());
+        columnDataTypes.add(allDataTypes[i]);
+      }
+    }
+
+    DataSchema dataSchema = new DataSchema(columnNames.toArray(new String[]{}),
+        columnDataTypes.toArray(new DataSchema.ColumnDataType[]{}));
+    List<Object[]> rows = DataBlockTestUtils.getRandomRows(dataSchema, TEST_ROW_COUNT, nullPercentile);
+    List<Object[]> columnars = DataBlockTestUtils.convertColumnar(dataSchema, rows);
+    RowDataBlock rowBlock = DataBlockBuilder.buildFromRows(rows, dataSchema);
+    ColumnarDataBlock columnarBlock = DataBlockBuilder.buildFromColumns(columnars, dataSchema);
+    List<Object[]> extractedRows = DataBlockUtils.extractRows(rowBlock);
+
+    for (int colId = 0; colId < dataSchema.getColumnNames().length; colId++) {
+      Object[] rowBlockColumn = DataBlockUtils.extractColumn(rowBlock, colId);
+      Object[] columnarBlockColumn = DataBlockUtils.extractColumn(columnarBlock, colId);
+      for (int rowId = 0; rowId < TEST_ROW_COUNT; rowId++) {
+        Object expected = extractedRows.get(rowId)[colId];
+        Assert.assertEquals(rowBlockColumn[rowId], expected, "Error extracting column of row block at (" + rowId
+            + "," + colId + ") of Type: " + dataSchema.getColumnDataType(colId));
+        Assert.assertEquals(columnarBlockColumn[rowId], expected, "Error extracting column of columnar block at ("
+            + rowId + "," + colId + ") of Type: " + dataSchema.getColumnDataType(colId));
+      }
+    }
+  }
+
   @DataProvider(name = "testTypeNullPercentile")
   public Object[][] provideTestTypeNullPercentile() {
     return new Object[][]{new Object[]{0}, new Object[]{10}, new Object[]{100}};
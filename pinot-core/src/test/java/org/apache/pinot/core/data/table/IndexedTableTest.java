@@ -116,6 +116,107 @@ public class IndexedTableTest {
     }
   }
 
+  @Test
+  public void testPartitionedIndexedTable()
+      throws Exception {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(
+        "SELECT SUM(m1), MAX(m2) FROM testTable GROUP BY d1 ORDER BY SUM(m1) DESC LIMIT 10");
+    DataSchema dataSchema = new DataSchema(new String[]{"d1", "sum(m1)", "max(m2)"},
+        new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.DOUBLE, ColumnDataType.DOUBLE});
+    int numThreads = 4;
+    int numGroups = 1000;
+    // 4 partitions with trim threshold 200 each, so that the partitions are trimmed while upserting
+    PartitionedIndexedTable indexedTable = new PartitionedIndexedTable(dataSchema, queryContext, 10, 100, 400, 4);
+
+    // Each thread upserts all the groups, where group i has value i
+    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Callable<Void>> callables = new ArrayList<>(numThreads);
+      for (int i = 0; i < numThreads; i++) {
+        callables.add(() -> {
+          for (int group = 0; group < numGroups; group++) {
+            indexedTable.upsert(getRecord(new Object[]{group, (double) group, (double) group}));
+          }
+          return null;
+        });
+      }
+      for (Future<Void> future : executorService.invokeAll(callables)) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+      indexedTable.mergePartitions(executorService, System.currentTimeMillis() + 10_000L);
+    } finally {
+      executorService.shutdown();
+    }
+    Assert.assertTrue(indexedTable.getNumResizes() > 0);
+
+    indexedTable.finish(true);
+    Assert.assertEquals(indexedTable.size(), 10);
+    Iterator<Record> iterator = indexedTable.iterator();
+    for (int group = numGroups - 1; group >= numGroups - 10; group--) {
+      Assert.assertEquals(iterator.next().getValues(),
+          new Object[]{group, (double) numThreads * group, (double) group});
+    }
+  }
+
+  @Test
+  public void testNumericKeyIndexedTable() {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(
+        "SELECT SUM(m1), MAX(m2), COUNT(*) FROM testTable GROUP BY d1 ORDER BY SUM(m1) DESC, d1 LIMIT 5");
+    DataSchema dataSchema = new DataSchema(new String[]{"d1", "sum(m1)", "max(m2)", "count(*)"},
+        new ColumnDataType[]{ColumnDataType.LONG, ColumnDataType.DOUBLE, ColumnDataType.DOUBLE, ColumnDataType.LONG});
+    Assert.assertTrue(NumericKeyIndexedTable.isApplicable(dataSchema, queryContext));
+
+    // Trimming and sorting should give the same result as SimpleIndexedTable
+    IndexedTable expectedTable = new SimpleIndexedTable(dataSchema, queryContext, 5, TRIM_SIZE, TRIM_THRESHOLD);
+    NumericKeyIndexedTable indexedTable =
+        new NumericKeyIndexedTable(dataSchema, queryContext, 5, TRIM_SIZE, TRIM_THRESHOLD);
+    for (long group = 0; group < 100; group++) {
+      // Distinct sum values for the groups
+      Object[] values = new Object[]{group, (double) (group * 37 % 100), (double) group, 3L};
+      expectedTable.upsert(getRecord(values.clone()));
+      indexedTable.upsert(getRecord(values.clone()));
+    }
+    Assert.assertTrue(indexedTable.getNumResizes() > 0);
+    expectedTable.finish(true);
+    indexedTable.finish(true);
+    Assert.assertEquals(indexedTable.size(), 5);
+    Iterator<Record> expectedIterator = expectedTable.iterator();
+    Iterator<Record> iterator = indexedTable.iterator();
+    while (expectedIterator.hasNext()) {
+      Assert.assertEquals(iterator.next(), expectedIterator.next());
+    }
+
+    // Merge the groups of 2 tables with INT key
+    dataSchema = new DataSchema(new String[]{"d1", "sum(m1)", "max(m2)", "count(*)"},
+        new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.DOUBLE, ColumnDataType.DOUBLE, ColumnDataType.LONG});
+    indexedTable = new NumericKeyIndexedTable(dataSchema, queryContext, 5, 1000, 2000);
+    NumericKeyIndexedTable mergeTable = new NumericKeyIndexedTable(dataSchema, queryContext, 5, 1000, 2000);
+    for (int group = 0; group < 200; group++) {
+      indexedTable.upsert(getRecord(new Object[]{group, (double) group, (double) group, 1L}));
+      indexedTable.upsert(getRecord(new Object[]{group, (double) group, 0.0, 1L}));
+      mergeTable.upsert(getRecord(new Object[]{group, (double) group, 1.0, 2L}));
+    }
+    indexedTable.mergeGroups(mergeTable);
+    Assert.assertEquals(indexedTable.size(), 200);
+    indexedTable.finish(true);
+    iterator = indexedTable.iterator();
+    for (int group = 199; group >= 195; group--) {
+      Assert.assertEquals(iterator.next().getValues(), new Object[]{group, 3.0 * group, (double) group, 4L});
+    }
+    Assert.assertFalse(iterator.hasNext());
+
+    // GROUP BY without ORDER BY should not accept new groups after reaching the result size
+    queryContext = QueryContextConverterUtils.getQueryContext("SELECT SUM(m1), MAX(m2), COUNT(*) FROM testTable "
+        + "GROUP BY d1 LIMIT 5");
+    indexedTable = new NumericKeyIndexedTable(dataSchema, queryContext, 5, TRIM_SIZE, TRIM_THRESHOLD);
+    for (int group = 0; group < 7; group++) {
+      indexedTable.upsert(getRecord(new Object[]{group, 1.0, 1.0, 1L}));
+    }
+    Assert.assertEquals(indexedTable.getGroupId(6), -1);
+    Assert.assertEquals(indexedTable.getGroupId(4), 4);
+    Assert.assertEquals(indexedTable.size(), 5);
+  }
+
   @Test(dataProvider = "initDataProvider")
   public void testNonConcurrentIndexedTable(String orderBy, List<String> survivors) {
     QueryContext queryContext = QueryContextConverterUtils.getQueryContext(
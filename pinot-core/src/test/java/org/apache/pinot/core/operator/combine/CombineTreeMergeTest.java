@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.operator.combine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.data.table.Record;
+import org.apache.pinot.core.operator.BaseOperator;
+import org.apache.pinot.core.operator.ExecutionStatistics;
+import org.apache.pinot.core.operator.blocks.results.AggregationResultsBlock;
+import org.apache.pinot.core.operator.blocks.results.BaseResultsBlock;
+import org.apache.pinot.core.operator.blocks.results.DistinctResultsBlock;
+import org.apache.pinot.core.query.aggregation.function.DistinctAggregationFunction;
+import org.apache.pinot.core.query.distinct.DistinctTable;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.query.request.context.utils.QueryContextConverterUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+
+/**
+ * Tests the combine operators merging the results blocks in the worker threads with tree merge.
+ */
+@SuppressWarnings("rawtypes")
+public class CombineTreeMergeTest {
+  private static final int NUM_OPERATORS = 1000;
+  // Less threads than tasks so that the tasks cannot all run at the same time
+  private static final int NUM_THREADS = 3;
+  private static final int MAX_EXECUTION_THREADS = 8;
+  private static final DataSchema DISTINCT_SCHEMA =
+      new DataSchema(new String[]{"column"}, new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT});
+
+  private ExecutorService _executorService;
+
+  @BeforeClass
+  public void setUp() {
+    _executorService = Executors.newFixedThreadPool(NUM_THREADS);
+  }
+
+  @Test
+  public void testAggregationOnlyCombineOperator() {
+    QueryContext queryContext = getQueryContext("SELECT SUM(column) FROM testTable");
+    List<Operator> operators = getOperators(i -> new AggregationResultsBlock(queryContext.getAggregationFunctions(),
+        new ArrayList<>(Collections.singletonList((double) i))));
+    BaseResultsBlock resultsBlock =
+        new AggregationOnlyCombineOperator(operators, queryContext, _executorService).nextBlock();
+    assertNull(resultsBlock.getProcessingExceptions());
+    assertEquals(((AggregationResultsBlock) resultsBlock).getResults().get(0),
+        (double) NUM_OPERATORS * (NUM_OPERATORS - 1) / 2);
+    assertEquals(resultsBlock.getNumSegmentsProcessed(), NUM_OPERATORS);
+  }
+
+  @Test
+  public void testDistinctCombineOperator() {
+    QueryContext queryContext = getQueryContext("SELECT DISTINCT column FROM testTable ORDER BY column LIMIT 10");
+    DistinctAggregationFunction distinctFunction =
+        (DistinctAggregationFunction) queryContext.getAggregationFunctions()[0];
+    // Segment i contains values [NUM_OPERATORS - i, 2 * NUM_OPERATORS - i)
+    List<Operator> operators = getOperators(i -> {
+      List<Record> records = new ArrayList<>(NUM_OPERATORS);
+      for (int value = NUM_OPERATORS - i; value < 2 * NUM_OPERATORS - i; value++) {
+        records.add(new Record(new Object[]{value}));
+      }
+      return new DistinctResultsBlock(distinctFunction, new DistinctTable(DISTINCT_SCHEMA, records));
+    });
+    BaseResultsBlock resultsBlock = new DistinctCombineOperator(operators, queryContext, _executorService).nextBlock();
+    assertNull(resultsBlock.getProcessingExceptions());
+    Iterator<Record> records = ((DistinctResultsBlock) resultsBlock).getDistinctTable().getFinalResult();
+    for (int i = 1; i <= 10; i++) {
+      assertTrue(records.hasNext());
+      assertEquals(records.next().getValues(), new Object[]{i});
+    }
+    assertFalse(records.hasNext());
+  }
+
+  @Test
+  public void testException() {
+    QueryContext queryContext = getQueryContext("SELECT SUM(column) FROM testTable");
+    List<Operator> operators = getOperators(i -> {
+      if (i == NUM_OPERATORS / 2) {
+        throw new IllegalStateException("Segment failed");
+      }
+      return new AggregationResultsBlock(queryContext.getAggregationFunctions(),
+          new ArrayList<>(Collections.singletonList((double) i)));
+    });
+    BaseResultsBlock resultsBlock =
+        new AggregationOnlyCombineOperator(operators, queryContext, _executorService).nextBlock();
+    assertNotNull(resultsBlock.getProcessingExceptions());
+    assertEquals(resultsBlock.getProcessingExceptions().size(), 1);
+    assertTrue(resultsBlock.getProcessingExceptions().get(0).getMessage().contains("Segment failed"));
+  }
+
+  @AfterClass
+  public void tearDown() {
+    _executorService.shutdown();
+  }
+
+  private static QueryContext getQueryContext(String query) {
+    QueryContext queryContext = QueryContextConverterUtils.getQueryContext(query);
+    queryContext.setMaxExecutionThreads(MAX_EXECUTION_THREADS);
+    queryContext.setTreeMerge(true);
+    queryContext.setEndTimeMs(System.currentTimeMillis() + 60_000L);
+    return queryContext;
+  }
+
+  private static List<Operator> getOperators(IntFunction<BaseResultsBlock> resultsBlockFunction) {
+    List<Operator> operators = new ArrayList<>(NUM_OPERATORS);
+    for (int i = 0; i < NUM_OPERATORS; i++) {
+      operators.add(new ResultsBlockOperator(resultsBlockFunction, i));
+    }
+    return operators;
+  }
+
+  private static class ResultsBlockOperator extends BaseOperator<BaseResultsBlock> {
+    private static final String EXPLAIN_NAME = "RESULTS_BLOCK";
+
+    private final IntFunction<BaseResultsBlock> _resultsBlockFunction;
+    private final int _segmentId;
+
+    ResultsBlockOperator(IntFunction<BaseResultsBlock> resultsBlockFunction, int segmentId) {
+      _resultsBlockFunction = resultsBlockFunction;
+      _segmentId = segmentId;
+    }
+
+    @Override
+    protected BaseResultsBlock getNextBlock() {
+      return _resultsBlockFunction.apply(_segmentId);
+    }
+
+    @Override
+    public String toExplainString() {
+      return EXPLAIN_NAME;
+    }
+
+    @Override
+    public List<Operator> getChildOperators() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public ExecutionStatistics getExecutionStatistics() {
+      return new ExecutionStatistics(0, 0, 0, 0);
+    }
+  }
+}
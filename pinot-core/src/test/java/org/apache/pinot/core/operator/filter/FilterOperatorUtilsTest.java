@@ -20,10 +20,23 @@ package org.apache.pinot.core.operator.filter;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import org.apache.pinot.common.request.context.predicate.Predicate;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.filter.predicate.PredicateEvaluator;
 import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.segment.spi.datasource.DataSource;
+import org.apache.pinot.segment.spi.datasource.DataSourceMetadata;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.segment.spi.index.reader.InvertedIndexReader;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 import org.testng.annotations.Test;
 
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 
@@ -101,4 +114,72 @@ public class FilterOperatorUtilsTest {
         Arrays.asList(MATCH_ALL_FILTER_OPERATOR, REGULAR_FILTER_OPERATOR), NUM_DOCS);
     assertTrue(filterOperator instanceof MatchAllFilterOperator);
   }
+
+  @Test
+  public void testReorderAndFilterChildOperatorsBySelectivity() {
+    BaseFilterOperator unselectiveFilterOperator = mockBitmapBasedFilterOperator(0.5);
+    BaseFilterOperator similarFilterOperator = mockBitmapBasedFilterOperator(0.2);
+    BaseFilterOperator selectiveFilterOperator = mockBitmapBasedFilterOperator(0.001);
+    BaseFilterOperator filterOperator = FilterOperatorUtils.getAndFilterOperator(QUERY_CONTEXT,
+        Arrays.asList(unselectiveFilterOperator, similarFilterOperator, selectiveFilterOperator), NUM_DOCS);
+    assertTrue(filterOperator instanceof AndFilterOperator);
+    // Child filter operators with selectivities of the same order of magnitude should keep their order
+    List<Operator> childOperators = filterOperator.getChildOperators();
+    assertSame(childOperators.get(0), selectiveFilterOperator);
+    assertSame(childOperators.get(1), unselectiveFilterOperator);
+    assertSame(childOperators.get(2), similarFilterOperator);
+    assertEquals(filterOperator.getEstimatedSelectivity(), 0.5 * 0.2 * 0.001, 1e-9);
+  }
+
+  @Test
+  public void testEstimateSelectivity() {
+    DataSourceMetadata dataSourceMetadata = mock(DataSourceMetadata.class);
+    when(dataSourceMetadata.getNumDocs()).thenReturn(NUM_DOCS);
+    Dictionary dictionary = mock(Dictionary.class);
+    when(dictionary.length()).thenReturn(4);
+    DataSource dataSource = mock(DataSource.class);
+    when(dataSource.getDataSourceMetadata()).thenReturn(dataSourceMetadata);
+    when(dataSource.getDictionary()).thenReturn(dictionary);
+
+    // Estimated from the fraction of the matching dictionary ids without inverted index
+    PredicateEvaluator eqPredicateEvaluator = mockPredicateEvaluator(Predicate.Type.EQ, false, new int[]{1});
+    assertEquals(FilterOperatorUtils.estimateSelectivity(eqPredicateEvaluator, dataSource), 0.25);
+    PredicateEvaluator notInPredicateEvaluator = mockPredicateEvaluator(Predicate.Type.NOT_IN, true, new int[]{1});
+    assertEquals(FilterOperatorUtils.estimateSelectivity(notInPredicateEvaluator, dataSource), 0.75);
+
+    // Estimated from the inverted index bitmaps
+    InvertedIndexReader<?> invertedIndex = mock(InvertedIndexReader.class);
+    doReturn(MutableRoaringBitmap.bitmapOf(1, 4, 7)).when(invertedIndex).getDocIds(1);
+    doReturn(invertedIndex).when(dataSource).getInvertedIndex();
+    assertEquals(FilterOperatorUtils.estimateSelectivity(eqPredicateEvaluator, dataSource), 0.3, 1e-9);
+    assertEquals(FilterOperatorUtils.estimateSelectivity(notInPredicateEvaluator, dataSource), 0.7, 1e-9);
+
+    // Not estimated for the predicates without cheap matching dictionary ids
+    PredicateEvaluator regexpPredicateEvaluator =
+        mockPredicateEvaluator(Predicate.Type.REGEXP_LIKE, false, new int[]{1});
+    assertEquals(FilterOperatorUtils.estimateSelectivity(regexpPredicateEvaluator, dataSource),
+        FilterOperatorUtils.UNKNOWN_SELECTIVITY);
+  }
+
+  private static BaseFilterOperator mockBitmapBasedFilterOperator(double selectivity) {
+    BitmapBasedFilterOperator filterOperator = mock(BitmapBasedFilterOperator.class);
+    when(filterOperator.getEstimatedSelectivity()).thenReturn(selectivity);
+    return filterOperator;
+  }
+
+  private static PredicateEvaluator mockPredicateEvaluator(Predicate.Type predicateType, boolean exclusive,
+      int[] dictIds) {
+    PredicateEvaluator predicateEvaluator = mock(PredicateEvaluator.class);
+    when(predicateEvaluator.getPredicateType()).thenReturn(predicateType);
+    when(predicateEvaluator.isDictionaryBased()).thenReturn(true);
+    when(predicateEvaluator.isExclusive()).thenReturn(exclusive);
+    if (exclusive) {
+      when(predicateEvaluator.getNumNonMatchingDictIds()).thenReturn(dictIds.length);
+      when(predicateEvaluator.getNonMatchingDictIds()).thenReturn(dictIds);
+    } else {
+      when(predicateEvaluator.getNumMatchingDictIds()).thenReturn(dictIds.length);
+      when(predicateEvaluator.getMatchingDictIds()).thenReturn(dictIds);
+    }
+    return predicateEvaluator;
+  }
 }
@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.plan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.pinot.segment.spi.datasource.DataSource;
+import org.apache.pinot.segment.spi.datasource.DataSourceMetadata;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.spi.data.FieldSpec.DataType;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+
+public class DocIdSetPlanNodeTest {
+
+  @Test
+  public void testGetMaxDocPerCall() {
+    // No projected column
+    assertEquals(DocIdSetPlanNode.getMaxDocPerCall(Collections.emptyList()), DocIdSetPlanNode.MAX_DOC_PER_CALL);
+
+    // Narrow projection
+    assertEquals(DocIdSetPlanNode.getMaxDocPerCall(Collections.singletonList(mockDataSource(DataType.INT, true, -1))),
+        DocIdSetPlanNode.MAX_DOC_PER_CALL);
+
+    // Wide projection: 4 (doc id) + 20 * (8 (long) + 4 (dict id)) + 20 * 32 (string) = 884 bytes per doc
+    List<DataSource> dataSources = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      dataSources.add(mockDataSource(DataType.LONG, true, -1));
+      dataSources.add(mockDataSource(DataType.STRING, false, -1));
+    }
+    assertEquals(DocIdSetPlanNode.getMaxDocPerCall(dataSources), DocIdSetPlanNode.TARGET_BLOCK_SIZE_IN_BYTES / 884);
+
+    // Multi-value column with large entries should not go below the min block size
+    assertEquals(
+        DocIdSetPlanNode.getMaxDocPerCall(Collections.singletonList(mockDataSource(DataType.DOUBLE, false, 1000))),
+        DocIdSetPlanNode.MIN_DOC_PER_CALL);
+  }
+
+  private static DataSource mockDataSource(DataType dataType, boolean hasDictionary, int maxNumValuesPerMVEntry) {
+    DataSourceMetadata dataSourceMetadata = mock(DataSourceMetadata.class);
+    when(dataSourceMetadata.getDataType()).thenReturn(dataType);
+    when(dataSourceMetadata.isSingleValue()).thenReturn(maxNumValuesPerMVEntry < 0);
+    when(dataSourceMetadata.getMaxNumValuesPerMVEntry()).thenReturn(maxNumValuesPerMVEntry);
+    DataSource dataSource = mock(DataSource.class);
+    when(dataSource.getDataSourceMetadata()).thenReturn(dataSourceMetadata);
+    when(dataSource.getDictionary()).thenReturn(hasDictionary ? mock(Dictionary.class) : null);
+    return dataSource;
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.aggregation.function;
+
+import java.util.Collections;
+import java.util.Map;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.core.common.BlockValSet;
+import org.apache.pinot.core.query.aggregation.AggregationResultHolder;
+import org.apache.pinot.core.query.aggregation.groupby.GroupByResultHolder;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.testng.annotations.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+
+public class SumAggregationFunctionTest {
+  private static final ExpressionContext EXPRESSION = ExpressionContext.forIdentifier("column");
+
+  @Test
+  public void testNullHandlingEnabledWithoutNulls() {
+    // the block has no null value, the sum still goes to the nullable result holders
+    BlockValSet blockValSet = mock(BlockValSet.class);
+    when(blockValSet.getValueType()).thenReturn(FieldSpec.DataType.INT);
+    when(blockValSet.getIntValuesSV()).thenReturn(new int[]{1, 2, 3, 4});
+    when(blockValSet.getDoubleValuesSV()).thenReturn(new double[]{1, 2, 3, 4});
+    Map<ExpressionContext, BlockValSet> blockValSetMap = Collections.singletonMap(EXPRESSION, blockValSet);
+    SumAggregationFunction function = new SumAggregationFunction(EXPRESSION, true);
+
+    AggregationResultHolder aggregationResultHolder = function.createAggregationResultHolder();
+    assertNull(function.extractAggregationResult(aggregationResultHolder));
+    function.aggregate(4, aggregationResultHolder, blockValSetMap);
+    function.aggregate(4, aggregationResultHolder, blockValSetMap);
+    assertEquals(function.extractAggregationResult(aggregationResultHolder), 20.0);
+
+    GroupByResultHolder groupByResultHolder = function.createGroupByResultHolder(4, 4);
+    int[] groupKeys = new int[]{0, 1, 0, 1};
+    function.aggregateGroupBySV(4, groupKeys, groupByResultHolder, blockValSetMap);
+    function.aggregateGroupBySV(4, groupKeys, groupByResultHolder, blockValSetMap);
+    assertEquals(function.extractGroupByResult(groupByResultHolder, 0), 8.0);
+    assertEquals(function.extractGroupByResult(groupByResultHolder, 1), 12.0);
+    assertNull(function.extractGroupByResult(groupByResultHolder, 2));
+  }
+}
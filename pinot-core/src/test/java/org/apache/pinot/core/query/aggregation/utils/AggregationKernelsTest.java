@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.core.query.aggregation.utils;
+
+import java.util.Random;
+import org.apache.pinot.core.query.aggregation.groupby.GroupKeyGenerator;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+
+public class AggregationKernelsTest {
+  private static final Random RANDOM = new Random();
+  // Cover both the unrolled loop and the remaining values
+  private static final int[] LENGTHS = new int[]{0, 1, 3, 4, 7, 1000, 10001};
+
+  @Test
+  public void testIntKernels() {
+    for (int length : LENGTHS) {
+      int[] values = new int[length];
+      for (int i = 0; i < length; i++) {
+        values[i] = RANDOM.nextInt();
+      }
+      double sum = 1.0;
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int value : values) {
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+      assertEquals(AggregationKernels.sum(1.0, values, length), sum);
+      assertEquals(AggregationKernels.min(values, length), min);
+      assertEquals(AggregationKernels.max(values, length), max);
+    }
+  }
+
+  @Test
+  public void testLongKernels() {
+    for (int length : LENGTHS) {
+      long[] values = new long[length];
+      for (int i = 0; i < length; i++) {
+        values[i] = RANDOM.nextLong();
+      }
+      double sum = 1.0;
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (long value : values) {
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+      assertEquals(AggregationKernels.sum(1.0, values, length), sum);
+      assertEquals(AggregationKernels.min(values, length), min);
+      assertEquals(AggregationKernels.max(values, length), max);
+    }
+  }
+
+  @Test
+  public void testFloatKernels() {
+    for (int length : LENGTHS) {
+      float[] values = new float[length];
+      for (int i = 0; i < length; i++) {
+        values[i] = RANDOM.nextFloat() - 0.5f;
+      }
+      double sum = 1.0;
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (float value : values) {
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+      assertEquals(AggregationKernels.sum(1.0, values, length), sum);
+      assertEquals(AggregationKernels.min(values, length), min);
+      assertEquals(AggregationKernels.max(values, length), max);
+    }
+  }
+
+  @Test
+  public void testDoubleKernels() {
+    for (int length : LENGTHS) {
+      double[] values = new double[length];
+      for (int i = 0; i < length; i++) {
+        values[i] = RANDOM.nextDouble() - 0.5;
+      }
+      double sum = 1.0;
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (double value : values) {
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+      assertEquals(AggregationKernels.sum(1.0, values, length), sum);
+      assertEquals(AggregationKernels.min(values, length), min);
+      assertEquals(AggregationKernels.max(values, length), max);
+    }
+  }
+
+  @Test
+  public void testScatterAdd() {
+    int numGroups = 100;
+    int length = 10000;
+    int[] groupKeys = new int[length];
+    double[] values = new double[length];
+    double[] expected = new double[numGroups];
+    for (int i = 0; i < length; i++) {
+      // Use -1 as the invalid group key which should be skipped
+      int groupKey = RANDOM.nextInt(numGroups + 1) - 1;
+      groupKeys[i] = groupKey;
+      values[i] = RANDOM.nextDouble();
+      if (groupKey != GroupKeyGenerator.INVALID_ID) {
+        expected[groupKey] += values[i];
+      }
+    }
+    double[] results = new double[numGroups];
+    AggregationKernels.scatterAdd(length, groupKeys, values, results);
+    assertEquals(results, expected);
+  }
+}
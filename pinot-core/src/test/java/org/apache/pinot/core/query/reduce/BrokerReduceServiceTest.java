@@ -39,6 +39,7 @@ import org.apache.pinot.sql.parsers.CalciteSqlCompiler;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 
 public class BrokerReduceServiceTest {
@@ -76,4 +77,41 @@ public class BrokerReduceServiceTest {
     assertEquals(processingExceptions.size(), 1);
     assertEquals(processingExceptions.get(0).getErrorCode(), QueryException.BROKER_TIMEOUT_ERROR_CODE);
   }
+
+  @Test
+  public void testConcurrentReduceWithoutOrderBy()
+      throws IOException {
+    Map<String, Object> properties = new HashMap<>();
+    properties.put(CommonConstants.Broker.CONFIG_OF_MAX_REDUCE_THREADS_PER_QUERY, 2);
+    BrokerReduceService brokerReduceService = new BrokerReduceService(new PinotConfiguration(properties));
+
+    int limit = 10;
+    BrokerRequest brokerRequest =
+        CalciteSqlCompiler.compileToBrokerRequest("SELECT COUNT(*) FROM testTable GROUP BY col1 LIMIT " + limit);
+    DataSchema dataSchema =
+        new DataSchema(new String[]{"col1", "count(*)"}, new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.LONG});
+    // Both servers return all the groups, but in different order so that the first groups of each server differ
+    int numGroups = 2 * limit;
+    Map<ServerRoutingInstance, DataTable> dataTableMap = new HashMap<>();
+    for (int i = 0; i < 2; i++) {
+      DataTableBuilder dataTableBuilder = DataTableFactory.getDataTableBuilder(dataSchema);
+      for (int j = 0; j < numGroups; j++) {
+        dataTableBuilder.startRow();
+        dataTableBuilder.setColumn(0, (j + i * limit) % numGroups);
+        dataTableBuilder.setColumn(1, 1L);
+        dataTableBuilder.finishRow();
+      }
+      dataTableMap.put(new ServerRoutingInstance("localhost", i, TableType.OFFLINE), dataTableBuilder.build());
+    }
+    BrokerResponseNative brokerResponse =
+        brokerReduceService.reduceOnDataTable(brokerRequest, brokerRequest, dataTableMap, 10_000L, null);
+    assertTrue(brokerResponse.getProcessingExceptions().isEmpty());
+    List<Object[]> rows = brokerResponse.getResultTable().getRows();
+    assertEquals(rows.size(), limit);
+    // Each returned group should include the counts from both servers
+    for (Object[] row : rows) {
+      assertEquals(row[1], 2L);
+    }
+    brokerReduceService.shutDown();
+  }
 }
@@ -26,6 +26,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import org.apache.pinot.spi.trace.InvocationRecording;
 import org.apache.pinot.spi.trace.Tracing;
 import org.apache.pinot.spi.utils.JsonUtils;
 import org.testng.Assert;
@@ -71,6 +72,24 @@ public class TraceContextTest {
     Assert.assertTrue(TraceContext.REQUEST_TO_TRACES_MAP.isEmpty());
   }
 
+  @Test
+  public void testActiveRecording() {
+    Assert.assertFalse(Tracing.activeRecording().isEnabled());
+    long requestId = NUM_REQUESTS;
+    Tracing.getTracer().register(requestId);
+    InvocationRecording recording = Tracing.activeRecording();
+    Assert.assertTrue(recording.isEnabled());
+    recording.setMaxDocsPerCall(1000);
+    Queue<TraceContext.Trace> traces = TraceContext.REQUEST_TO_TRACES_MAP.get(requestId);
+    Assert.assertNotNull(traces);
+    Assert.assertEquals(traces.size(), 1);
+    List<TraceContext.Trace.LogEntry> logs = traces.peek()._logs;
+    Assert.assertEquals(logs.size(), 1);
+    Assert.assertEquals(logs.get(0).toJson().toString(), getTraceString("maxDocsPerCall", 1000));
+    TraceContext.unregister();
+    Assert.assertFalse(Tracing.activeRecording().isEnabled());
+  }
+
   private void testSingleRequest(ExecutorService executorService, final long requestId)
       throws Exception {
     Set<String> expectedTraces = new HashSet<>(NUM_CHILDREN_PER_REQUEST + 1);
@@ -22,10 +22,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.apache.pinot.common.response.broker.ResultTable;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
 import org.apache.pinot.core.plan.maker.InstancePlanMakerImplV2;
+import org.apache.pinot.spi.utils.CommonConstants.Broker.Request.QueryOptionKey;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -54,6 +56,23 @@ public class InterSegmentGroupBySingleValueQueriesTest extends BaseSingleValueQu
         expectedNumEntriesScannedPostFilter, 120000L, expectedResultTable);
   }
 
+  @Test(dataProvider = "groupByOrderByDataProvider")
+  public void testGroupByOrderByWithPartitionedCombine(String query, long expectedNumEntriesScannedPostFilter,
+      ResultTable expectedResultTable) {
+    QueriesTestUtils.testInterSegmentsResult(getBrokerResponse("SET usePartitionedGroupByCombine = true; " + query),
+        120000L, 0L, expectedNumEntriesScannedPostFilter, 120000L, expectedResultTable);
+  }
+
+  @Test(dataProvider = "groupByOrderByDataProvider")
+  public void testGroupByOrderByWithGlobalDictionary(String query, long expectedNumEntriesScannedPostFilter,
+      ResultTable expectedResultTable) {
+    // NOTE: column17 is not a STRING column, and should not be applied with global dictionary
+    Map<String, String> queryOptions =
+        Collections.singletonMap(QueryOptionKey.GLOBAL_DICTIONARY_COLUMNS, "column11, column12, column17");
+    QueriesTestUtils.testInterSegmentsResult(getBrokerResponse(query, queryOptions), 120000L, 0L,
+        expectedNumEntriesScannedPostFilter, 120000L, expectedResultTable);
+  }
+
   /**
    * Provides various combinations of order by in ResultTable.
    * In order to calculate the expected results, the results from a group by were taken, and then ordered accordingly.
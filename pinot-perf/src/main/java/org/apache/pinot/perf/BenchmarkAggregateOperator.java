@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.AggregateOperator;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for the multi-stage {@link AggregateOperator}, computing SUM, MAX and COUNT grouped by an INT column with
+ * the given number of groups.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class BenchmarkAggregateOperator {
+  private static final int NUM_ROWS = 1_000_000;
+  private static final int NUM_ROWS_PER_BLOCK = 10_000;
+  private static final DataSchema INPUT_SCHEMA = new DataSchema(new String[]{"key", "value"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.DOUBLE});
+  private static final DataSchema RESULT_SCHEMA = new DataSchema(new String[]{"key", "sum", "max", "count"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.DOUBLE, ColumnDataType.DOUBLE, ColumnDataType.LONG});
+
+  @Param({"10", "1000", "100000"})
+  public int _numGroups;
+
+  private List<RexExpression> _aggCalls;
+  private List<RexExpression> _groupSet;
+  private List<TransferableBlock> _blocks;
+
+  @Setup
+  public void setUp() {
+    _aggCalls = Arrays.asList(getAggCall("SUM", 1), getAggCall("MAX", 1), getAggCall("COUNT", -1));
+    _groupSet = Collections.singletonList(new RexExpression.InputRef(0));
+
+    Random random = new Random(0);
+    List<Object[]> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      rows.add(new Object[]{random.nextInt(_numGroups), random.nextDouble()});
+    }
+    _blocks = BlockListOperator.toBlocks(rows, INPUT_SCHEMA, NUM_ROWS_PER_BLOCK);
+  }
+
+  private static RexExpression getAggCall(String functionName, int inputRef) {
+    List<RexExpression> operands = inputRef >= 0 ? Collections.singletonList(new RexExpression.InputRef(inputRef))
+        : Collections.emptyList();
+    return new RexExpression.FunctionCall(SqlKind.OTHER_FUNCTION, FieldSpec.DataType.DOUBLE, functionName, operands);
+  }
+
+  @Benchmark
+  public int groupBy() {
+    AggregateOperator operator =
+        new AggregateOperator(new BlockListOperator(_blocks, INPUT_SCHEMA), RESULT_SCHEMA, _aggCalls, _groupSet,
+            INPUT_SCHEMA);
+    int numRows = 0;
+    TransferableBlock block = operator.nextBlock();
+    while (!TransferableBlockUtils.isEndOfStream(block)) {
+      numRows += block.getNumRows();
+      block = operator.nextBlock();
+    }
+    return numRows;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    new Runner(new OptionsBuilder().include(BenchmarkAggregateOperator.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.core.plan.DocIdSetPlanNode;
+import org.apache.pinot.core.query.aggregation.groupby.DoubleGroupByResultHolder;
+import org.apache.pinot.core.query.aggregation.groupby.GroupByResultHolder;
+import org.apache.pinot.core.query.aggregation.utils.AggregationKernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Compares the plain aggregation loops with the {@link AggregationKernels} over a block of values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class BenchmarkAggregationKernels {
+  private static final int LENGTH = DocIdSetPlanNode.MAX_DOC_PER_CALL;
+  private static final Random RANDOM = new Random();
+
+  @Param({"100", "10000"})
+  public int _numGroups;
+
+  private final int[] _intValues = new int[LENGTH];
+  private final long[] _longValues = new long[LENGTH];
+  private final double[] _doubleValues = new double[LENGTH];
+  private final int[] _groupKeys = new int[LENGTH];
+  private GroupByResultHolder _groupByResultHolder;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < LENGTH; i++) {
+      _intValues[i] = RANDOM.nextInt();
+      _longValues[i] = RANDOM.nextLong();
+      _doubleValues[i] = RANDOM.nextDouble();
+      _groupKeys[i] = RANDOM.nextInt(_numGroups);
+    }
+    _groupByResultHolder = new DoubleGroupByResultHolder(_numGroups, _numGroups, 0.0);
+  }
+
+  @Benchmark
+  public double sumIntLoop() {
+    double sum = 0.0;
+    for (int i = 0; i < LENGTH; i++) {
+      sum += _intValues[i];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double sumIntKernel() {
+    return AggregationKernels.sum(0.0, _intValues, LENGTH);
+  }
+
+  @Benchmark
+  public double sumDoubleLoop() {
+    double sum = 0.0;
+    for (int i = 0; i < LENGTH; i++) {
+      sum += _doubleValues[i];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double sumDoubleKernel() {
+    return AggregationKernels.sum(0.0, _doubleValues, LENGTH);
+  }
+
+  @Benchmark
+  public double minLongLoop() {
+    long min = _longValues[0];
+    for (int i = 0; i < LENGTH; i++) {
+      min = Math.min(_longValues[i], min);
+    }
+    return min;
+  }
+
+  @Benchmark
+  public double minLongKernel() {
+    return AggregationKernels.min(_longValues, LENGTH);
+  }
+
+  @Benchmark
+  public double maxDoubleLoop() {
+    double max = _doubleValues[0];
+    for (int i = 0; i < LENGTH; i++) {
+      max = Math.max(_doubleValues[i], max);
+    }
+    return max;
+  }
+
+  @Benchmark
+  public double maxDoubleKernel() {
+    return AggregationKernels.max(_doubleValues, LENGTH);
+  }
+
+  @Benchmark
+  public double groupBySumLoop() {
+    for (int i = 0; i < LENGTH; i++) {
+      int groupKey = _groupKeys[i];
+      _groupByResultHolder.setValueForKey(groupKey, _groupByResultHolder.getDoubleResult(groupKey) + _doubleValues[i]);
+    }
+    return _groupByResultHolder.getDoubleResult(0);
+  }
+
+  @Benchmark
+  public double groupBySumKernel() {
+    ((DoubleGroupByResultHolder) _groupByResultHolder).addValues(LENGTH, _groupKeys, _doubleValues);
+    return _groupByResultHolder.getDoubleResult(0);
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    new Runner(new OptionsBuilder().include(BenchmarkAggregationKernels.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.core.common.datablock.DataBlockUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for building, serializing and deserializing the row and columnar data blocks exchanged between the stages
+ * of the multi-stage engine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class BenchmarkDataBlockSerDe {
+  private static final DataSchema SCHEMA = new DataSchema(new String[]{"intCol", "longCol", "doubleCol", "stringCol"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.LONG, ColumnDataType.DOUBLE, ColumnDataType.STRING});
+  private static final int NUM_COLUMNS = 4;
+
+  @Param({"ROW", "COLUMNAR"})
+  public BaseDataBlock.Type _blockType;
+
+  @Param({"1000", "100000"})
+  public int _numRows;
+
+  private List<Object[]> _rows;
+  private List<Object[]> _columns;
+  private byte[] _bytes;
+
+  @Setup
+  public void setUp()
+      throws IOException {
+    Random random = new Random(0);
+    _rows = new ArrayList<>(_numRows);
+    _columns = new ArrayList<>(NUM_COLUMNS);
+    for (int colId = 0; colId < NUM_COLUMNS; colId++) {
+      _columns.add(new Object[_numRows]);
+    }
+    for (int rowId = 0; rowId < _numRows; rowId++) {
+      Object[] row = new Object[]{random.nextInt(), random.nextLong(), random.nextDouble(), "value_" + rowId % 1000};
+      _rows.add(row);
+      for (int colId = 0; colId < NUM_COLUMNS; colId++) {
+        _columns.get(colId)[rowId] = row[colId];
+      }
+    }
+    _bytes = buildDataBlock().toBytes();
+  }
+
+  private BaseDataBlock buildDataBlock()
+      throws IOException {
+    return _blockType == BaseDataBlock.Type.ROW ? DataBlockBuilder.buildFromRows(_rows, SCHEMA)
+        : DataBlockBuilder.buildFromColumns(_columns, SCHEMA);
+  }
+
+  @Benchmark
+  public byte[] serialize()
+      throws IOException {
+    return buildDataBlock().toBytes();
+  }
+
+  @Benchmark
+  public double deserialize()
+      throws IOException {
+    BaseDataBlock dataBlock = DataBlockUtils.getDataBlock(ByteBuffer.wrap(_bytes));
+    double sum = 0;
+    for (int rowId = 0; rowId < _numRows; rowId++) {
+      sum += dataBlock.getInt(rowId, 0) + dataBlock.getLong(rowId, 1) + dataBlock.getDouble(rowId, 2)
+          + dataBlock.getString(rowId, 3).length();
+    }
+    return sum;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    new Runner(new OptionsBuilder().include(BenchmarkDataBlockSerDe.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
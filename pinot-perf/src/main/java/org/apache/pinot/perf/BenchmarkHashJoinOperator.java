@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.planner.partitioning.FieldSelectionKeySelector;
+import org.apache.pinot.query.planner.stage.JoinNode;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.HashJoinOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for the multi-stage {@link HashJoinOperator}, building the hash table from the right side and probing it
+ * with the left side. Every probe key matches exactly one build row.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class BenchmarkHashJoinOperator {
+  private static final int NUM_ROWS_PER_BLOCK = 10_000;
+
+  @Param({"1000", "100000"})
+  public int _numBuildRows;
+
+  @Param({"10000", "1000000"})
+  public int _numProbeRows;
+
+  @Param({"INT", "LONG", "STRING"})
+  public ColumnDataType _keyType;
+
+  private DataSchema _leftSchema;
+  private DataSchema _rightSchema;
+  private DataSchema _joinSchema;
+  private List<JoinNode.JoinClause> _criteria;
+  private List<TransferableBlock> _leftBlocks;
+  private List<TransferableBlock> _rightBlocks;
+
+  @Setup
+  public void setUp() {
+    _leftSchema = new DataSchema(new String[]{"key", "leftValue"}, new ColumnDataType[]{_keyType, ColumnDataType.INT});
+    _rightSchema =
+        new DataSchema(new String[]{"key", "rightValue"}, new ColumnDataType[]{_keyType, ColumnDataType.LONG});
+    _joinSchema = new DataSchema(new String[]{"key", "leftValue", "key0", "rightValue"},
+        new ColumnDataType[]{_keyType, ColumnDataType.INT, _keyType, ColumnDataType.LONG});
+    _criteria = Collections.singletonList(
+        new JoinNode.JoinClause(new FieldSelectionKeySelector(0), new FieldSelectionKeySelector(0)));
+
+    Random random = new Random(0);
+    List<Object[]> leftRows = new ArrayList<>(_numProbeRows);
+    for (int i = 0; i < _numProbeRows; i++) {
+      leftRows.add(new Object[]{getKey(random.nextInt(_numBuildRows)), i});
+    }
+    List<Object[]> rightRows = new ArrayList<>(_numBuildRows);
+    for (int i = 0; i < _numBuildRows; i++) {
+      rightRows.add(new Object[]{getKey(i), (long) i});
+    }
+    _leftBlocks = BlockListOperator.toBlocks(leftRows, _leftSchema, NUM_ROWS_PER_BLOCK);
+    _rightBlocks = BlockListOperator.toBlocks(rightRows, _rightSchema, NUM_ROWS_PER_BLOCK);
+  }
+
+  private Object getKey(int value) {
+    switch (_keyType) {
+      case INT:
+        return value;
+      case LONG:
+        return (long) value;
+      case STRING:
+        return "key_" + value;
+      default:
+        throw new IllegalStateException("Unsupported key type: " + _keyType);
+    }
+  }
+
+  @Benchmark
+  public int innerJoin() {
+    HashJoinOperator operator =
+        new HashJoinOperator(new BlockListOperator(_leftBlocks, _leftSchema), _leftSchema,
+            new BlockListOperator(_rightBlocks, _rightSchema), _rightSchema, _joinSchema, _criteria,
+            JoinRelType.INNER);
+    int numRows = 0;
+    TransferableBlock block = operator.nextBlock();
+    while (!TransferableBlockUtils.isEndOfStream(block)) {
+      numRows += block.getNumRows();
+      block = operator.nextBlock();
+    }
+    return numRows;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    new Runner(new OptionsBuilder().include(BenchmarkHashJoinOperator.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
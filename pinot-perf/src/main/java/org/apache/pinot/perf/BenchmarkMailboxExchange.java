@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.mailbox.GrpcMailboxService;
+import org.apache.pinot.query.mailbox.ReceivingMailbox;
+import org.apache.pinot.query.mailbox.SendingMailbox;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.service.QueryConfig;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for exchanging data blocks between 2 {@link GrpcMailboxService}s over the loopback interface. Each
+ * invocation sends the blocks followed by an end-of-stream block through a new mailbox from a sender thread, and
+ * receives all of them on the benchmark thread. The mailbox is released after each invocation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class BenchmarkMailboxExchange {
+  private static final int NUM_BLOCKS = 100;
+  private static final DataSchema SCHEMA = new DataSchema(new String[]{"key", "value", "name"},
+      new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.DOUBLE, ColumnDataType.STRING});
+
+  @Param({"100", "10000"})
+  public int _numRowsPerBlock;
+
+  @Param({"PASS_THROUGH", "LZ4"})
+  public String _compressionType;
+
+  private GrpcMailboxService _senderService;
+  private GrpcMailboxService _receiverService;
+  private ExecutorService _executorService;
+  private List<TransferableBlock> _blocks;
+  private long _mailboxCount;
+  private String _mailboxId;
+
+  @Setup
+  public void setUp()
+      throws IOException {
+    PinotConfiguration config = new PinotConfiguration(
+        ImmutableMap.of(QueryConfig.KEY_OF_MAILBOX_COMPRESSION_TYPE, _compressionType,
+            QueryConfig.KEY_OF_MAX_INBOUND_QUERY_DATA_BLOCK_BYTES_SIZE, 128 * 1024 * 1024));
+    _senderService = new GrpcMailboxService("localhost", getAvailablePort(), config);
+    _senderService.start();
+    _receiverService = new GrpcMailboxService("localhost", getAvailablePort(), config);
+    _receiverService.start();
+    _executorService = Executors.newSingleThreadExecutor();
+
+    Random random = new Random(0);
+    List<Object[]> rows = new ArrayList<>(NUM_BLOCKS * _numRowsPerBlock);
+    for (int i = 0; i < NUM_BLOCKS * _numRowsPerBlock; i++) {
+      rows.add(new Object[]{random.nextInt(), random.nextDouble(), "name_" + random.nextInt(1000)});
+    }
+    _blocks = BlockListOperator.toBlocks(rows, SCHEMA, _numRowsPerBlock);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUpMailbox() {
+    // mailboxes are closed after the end of stream, so each invocation uses a new one.
+    _mailboxId = String.format("benchmark_%d:localhost:%d:localhost:%d", _mailboxCount++,
+        _senderService.getMailboxPort(), _receiverService.getMailboxPort());
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDownMailbox() {
+    _senderService.releaseSendingMailbox(_mailboxId);
+    _receiverService.releaseReceivingMailbox(_mailboxId);
+  }
+
+  @TearDown
+  public void tearDown() {
+    _executorService.shutdown();
+    _senderService.shutdown();
+    _receiverService.shutdown();
+  }
+
+  private static int getAvailablePort()
+      throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  @Benchmark
+  public int exchange()
+      throws Exception {
+    SendingMailbox<TransferableBlock> sendingMailbox = _senderService.getSendingMailbox(_mailboxId);
+    ReceivingMailbox<TransferableBlock> receivingMailbox = _receiverService.getReceivingMailbox(_mailboxId);
+    Future<?> sendFuture = _executorService.submit(() -> {
+      for (TransferableBlock block : _blocks) {
+        while (!sendingMailbox.isReady()) {
+          Thread.yield();
+        }
+        sendingMailbox.send(block);
+      }
+      sendingMailbox.send(TransferableBlockUtils.getEndOfStreamTransferableBlock(SCHEMA));
+      sendingMailbox.complete();
+      return null;
+    });
+
+    int numRows = 0;
+    while (true) {
+      TransferableBlock block = receivingMailbox.receive();
+      if (block == null) {
+        Thread.yield();
+        continue;
+      }
+      if (block.isErrorBlock()) {
+        throw new IllegalStateException("Got error block: " + block.getDataBlock().getExceptions());
+      }
+      if (block.isEndOfStreamBlock()) {
+        break;
+      }
+      numRows += block.getNumRows();
+    }
+    sendFuture.get();
+    return numRows;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    new Runner(new OptionsBuilder().include(BenchmarkMailboxExchange.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.SortOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Benchmark for the multi-stage {@link SortOperator}, ordering by a LONG column, either for a top-N (fetch > 0) or for
+ * a full sort (fetch = -1).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class BenchmarkSortOperator {
+  private static final int NUM_ROWS_PER_BLOCK = 10_000;
+  private static final DataSchema SCHEMA = new DataSchema(new String[]{"key", "value"},
+      new ColumnDataType[]{ColumnDataType.LONG, ColumnDataType.STRING});
+
+  @Param({"100000", "1000000"})
+  public int _numRows;
+
+  @Param({"10", "-1"})
+  public int _fetch;
+
+  private List<TransferableBlock> _blocks;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(0);
+    List<Object[]> rows = new ArrayList<>(_numRows);
+    for (int i = 0; i < _numRows; i++) {
+      rows.add(new Object[]{random.nextLong(), "value_" + i});
+    }
+    _blocks = BlockListOperator.toBlocks(rows, SCHEMA, NUM_ROWS_PER_BLOCK);
+  }
+
+  @Benchmark
+  public int orderBy() {
+    SortOperator operator = new SortOperator(new BlockListOperator(_blocks, SCHEMA),
+        Collections.singletonList(new RexExpression.InputRef(0)),
+        Collections.singletonList(RelFieldCollation.Direction.ASCENDING), _fetch, 0, SCHEMA);
+    int numRows = 0;
+    TransferableBlock block = operator.nextBlock();
+    while (!TransferableBlockUtils.isEndOfStream(block)) {
+      numRows += block.getNumRows();
+      block = operator.nextBlock();
+    }
+    return numRows;
+  }
+
+  public static void main(String[] args)
+      throws Exception {
+    new Runner(new OptionsBuilder().include(BenchmarkSortOperator.class.getSimpleName())
+        .addProfiler(GCProfiler.class).build()).run();
+  }
+}
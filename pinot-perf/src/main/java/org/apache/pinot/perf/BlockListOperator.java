@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.perf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.operator.BaseOperator;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+
+
+/**
+ * Operator feeding the given blocks, followed by end-of-stream blocks, to the multi-stage operators under benchmark.
+ */
+class BlockListOperator extends BaseOperator<TransferableBlock> {
+  private final Iterator<TransferableBlock> _blocks;
+  private final DataSchema _dataSchema;
+
+  BlockListOperator(List<TransferableBlock> blocks, DataSchema dataSchema) {
+    _blocks = blocks.iterator();
+    _dataSchema = dataSchema;
+  }
+
+  /**
+   * Splits the given rows into row blocks of at most the given number of rows.
+   */
+  static List<TransferableBlock> toBlocks(List<Object[]> rows, DataSchema dataSchema, int numRowsPerBlock) {
+    List<TransferableBlock> blocks = new ArrayList<>();
+    for (int from = 0; from < rows.size(); from += numRowsPerBlock) {
+      List<Object[]> blockRows = new ArrayList<>(rows.subList(from, Math.min(from + numRowsPerBlock, rows.size())));
+      blocks.add(new TransferableBlock(blockRows, dataSchema, BaseDataBlock.Type.ROW));
+    }
+    return blocks;
+  }
+
+  @Override
+  public List<Operator> getChildOperators() {
+    return null;
+  }
+
+  @Nullable
+  @Override
+  public String toExplainString() {
+    return "BLOCK_LIST";
+  }
+
+  @Override
+  protected TransferableBlock getNextBlock() {
+    return _blocks.hasNext() ? _blocks.next() : TransferableBlockUtils.getEndOfStreamTransferableBlock(_dataSchema);
+  }
+}
@@ -67,7 +67,7 @@ public class PinotJoinExchangeNodeInsertRule extends RelOptRule {
     RelNode rightExchange;
     List<RelHint> hints = join.getHints();
     if (hints.contains(PinotRelationalHints.USE_BROADCAST_DISTRIBUTE)) {
-      // TODO: determine which side should be the broadcast table based on table metadata
+      // when table statistics are available, join reordering already placed the smaller input on the right side.
       // TODO: support SINGLETON exchange if the non-broadcast table size is small enough to stay local.
       leftExchange = LogicalExchange.create(leftInput, RelDistributions.RANDOM_DISTRIBUTED);
       rightExchange = LogicalExchange.create(rightInput, RelDistributions.BROADCAST_DISTRIBUTED);
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.logical.LogicalJoin;
+import org.apache.calcite.tools.RelBuilderFactory;
+
+
+/**
+ * Special rule for Pinot, wraps {@link CoreRules#JOIN_TO_MULTI_JOIN} so that an inner join is only collapsed into a
+ * {@link MultiJoin} for cost-based reordering when the row counts of all the tables underneath are known from the table
+ * statistics. Otherwise the join order written in the query is kept.
+ */
+public class PinotJoinToMultiJoinRule extends RelOptRule {
+  public static final PinotJoinToMultiJoinRule INSTANCE =
+      new PinotJoinToMultiJoinRule(PinotRuleUtils.PINOT_REL_FACTORY);
+
+  public PinotJoinToMultiJoinRule(RelBuilderFactory factory) {
+    super(operand(LogicalJoin.class, operand(RelNode.class, any()), operand(RelNode.class, any())), factory, null);
+  }
+
+  @Override
+  public boolean matches(RelOptRuleCall call) {
+    Join join = call.rel(0);
+    // only inner joins are reordered, the runtime doesn't support the RIGHT joins produced by swapping outer joins.
+    return join.getJoinType() == JoinRelType.INNER && CoreRules.JOIN_TO_MULTI_JOIN.matches(call)
+        && PinotRuleUtils.hasKnownRowCount(join);
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    CoreRules.JOIN_TO_MULTI_JOIN.onMatch(call);
+  }
+}
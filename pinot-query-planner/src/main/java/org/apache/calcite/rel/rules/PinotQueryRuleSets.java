@@ -90,9 +90,23 @@ public class PinotQueryRuleSets {
           PruneEmptyRules.UNION_INSTANCE,
 
           // Pinot specific rules
-          PinotFilterExpandSearchRule.INSTANCE,
-          PinotJoinExchangeNodeInsertRule.INSTANCE,
-          PinotAggregateExchangeNodeInsertRule.INSTANCE,
-          PinotSortExchangeNodeInsertRule.INSTANCE
+          PinotFilterExpandSearchRule.INSTANCE
       );
+
+  /**
+   * Cost-based join reordering, must be applied bottom-up so that a tree of inner joins is collapsed into a single
+   * MultiJoin before it is re-planned. The join order and the build side (the smaller input is placed on the
+   * right) are chosen based on the row count estimated from the table statistics.
+   */
+  public static final Collection<RelOptRule> JOIN_REORDER_RULES =
+      Arrays.asList(PinotJoinToMultiJoinRule.INSTANCE, CoreRules.MULTI_JOIN_OPTIMIZE,
+          // merge and remove the projections introduced to restore the field order of reordered joins
+          CoreRules.PROJECT_MERGE, CoreRules.PROJECT_REMOVE);
+
+  /**
+   * Pinot specific rules to insert exchanges, they must be applied after all the logical optimizations.
+   */
+  public static final Collection<RelOptRule> PINOT_EXCHANGE_RULES =
+      Arrays.asList(PinotJoinExchangeNodeInsertRule.INSTANCE, PinotAggregateExchangeNodeInsertRule.INSTANCE,
+          PinotSortExchangeNodeInsertRule.INSTANCE);
 }
@@ -23,6 +23,8 @@ import org.apache.calcite.plan.hep.HepRelVertex;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Exchange;
 import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.tools.RelBuilder;
 import org.apache.calcite.tools.RelBuilderFactory;
 
@@ -45,4 +47,25 @@ public class PinotRuleUtils {
     }
     return reference instanceof Exchange;
   }
+
+  /**
+   * Returns whether the row counts of all the tables scanned underneath the given rel are known from the table
+   * statistics.
+   */
+  public static boolean hasKnownRowCount(RelNode rel) {
+    RelNode reference = rel;
+    if (reference instanceof HepRelVertex) {
+      reference = ((HepRelVertex) reference).getCurrentRel();
+    }
+    if (reference instanceof TableScan) {
+      Table table = reference.getTable().unwrap(Table.class);
+      return table != null && table.getStatistic().getRowCount() != null;
+    }
+    for (RelNode input : reference.getInputs()) {
+      if (!hasKnownRowCount(input)) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
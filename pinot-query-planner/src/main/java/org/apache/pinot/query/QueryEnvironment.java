@@ -21,13 +21,16 @@ package org.apache.pinot.query;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Properties;
+import javax.annotation.Nullable;
 import org.apache.calcite.config.CalciteConnectionConfigImpl;
 import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.jdbc.CalciteSchema;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.hep.HepMatchOrder;
 import org.apache.calcite.plan.hep.HepProgram;
 import org.apache.calcite.plan.hep.HepProgramBuilder;
 import org.apache.calcite.prepare.CalciteCatalogReader;
@@ -50,8 +53,10 @@ import org.apache.calcite.sql2rel.StandardConvertletTable;
 import org.apache.calcite.tools.FrameworkConfig;
 import org.apache.calcite.tools.Frameworks;
 import org.apache.pinot.query.context.PlannerContext;
+import org.apache.pinot.query.parser.QueryParameterizer;
 import org.apache.pinot.query.planner.PlannerUtils;
 import org.apache.pinot.query.planner.QueryPlan;
+import org.apache.pinot.query.planner.logical.LogicalPlanCache;
 import org.apache.pinot.query.planner.logical.StagePlanner;
 import org.apache.pinot.query.routing.WorkerManager;
 import org.apache.pinot.query.type.TypeFactory;
@@ -78,11 +83,18 @@ public class QueryEnvironment {
   // Pinot extensions
   private final Collection<RelOptRule> _logicalRuleSet;
   private final WorkerManager _workerManager;
+  private final LogicalPlanCache _planCache;
 
   public QueryEnvironment(TypeFactory typeFactory, CalciteSchema rootSchema, WorkerManager workerManager) {
+    this(typeFactory, rootSchema, workerManager, null);
+  }
+
+  public QueryEnvironment(TypeFactory typeFactory, CalciteSchema rootSchema, WorkerManager workerManager,
+      @Nullable LogicalPlanCache planCache) {
     _typeFactory = typeFactory;
     _rootSchema = rootSchema;
     _workerManager = workerManager;
+    _planCache = planCache;
 
     // catalog
     Properties catalogReaderConfigProperties = new Properties();
@@ -107,6 +119,15 @@ public class QueryEnvironment {
     for (RelOptRule relOptRule : _logicalRuleSet) {
       hepProgramBuilder.addRuleInstance(relOptRule);
     }
+    // join reordering collapses the join tree bottom-up, restore the default match order afterwards.
+    hepProgramBuilder.addMatchOrder(HepMatchOrder.BOTTOM_UP);
+    for (RelOptRule relOptRule : PinotQueryRuleSets.JOIN_REORDER_RULES) {
+      hepProgramBuilder.addRuleInstance(relOptRule);
+    }
+    hepProgramBuilder.addMatchOrder(HepMatchOrder.DEPTH_FIRST);
+    for (RelOptRule relOptRule : PinotQueryRuleSets.PINOT_EXCHANGE_RULES) {
+      hepProgramBuilder.addRuleInstance(relOptRule);
+    }
     _hepProgram = hepProgramBuilder.build();
   }
 
@@ -118,20 +139,41 @@ public class QueryEnvironment {
    * TODO: follow benchmark and profile to measure whether it make sense for the latency-concurrency trade-off
    * between reusing plannerImpl vs. create a new planner for each query.
    *
+   * <p>When a {@link LogicalPlanCache} is configured, the literals of the query are replaced by parameters and the
+   * optimized logical plan is looked up by the normalized SQL, only the stage planning runs for a cached query.
+   *
    * @param sqlQuery SQL query string.
    * @param sqlNodeAndOptions parsed SQL query.
    * @return a dispatchable query plan
    */
   public QueryPlan planQuery(String sqlQuery, SqlNodeAndOptions sqlNodeAndOptions) {
+    SqlNode sqlNode = sqlNodeAndOptions.getSqlNode();
+    if (_planCache != null) {
+      QueryPlan queryPlan = planQueryWithPlanCache(sqlQuery, sqlNode, sqlNodeAndOptions.getOptions());
+      if (queryPlan != null) {
+        return queryPlan;
+      }
+      // parameterization rewrote the parsed query in place, parse it again to plan it without parameters.
+      sqlNode = CalciteSqlParser.compileToSqlNodeAndOptions(sqlQuery).getSqlNode();
+    }
     try (PlannerContext plannerContext = new PlannerContext(_config, _catalogReader, _typeFactory, _hepProgram)) {
       plannerContext.setOptions(sqlNodeAndOptions.getOptions());
-      RelRoot relRoot = compileQuery(sqlNodeAndOptions.getSqlNode(), plannerContext);
+      RelRoot relRoot = compileQuery(sqlNode, plannerContext);
       return toDispatchablePlan(relRoot, plannerContext);
     } catch (Exception e) {
       throw new RuntimeException("Error composing query plan for: " + sqlQuery, e);
     }
   }
 
+  /**
+   * Invalidates all the cached plans, e.g. when a table config or schema changes.
+   */
+  public void invalidatePlanCache() {
+    if (_planCache != null) {
+      _planCache.invalidateAll();
+    }
+  }
+
   /**
    * Explain a SQL query.
    *
@@ -157,6 +199,25 @@ public class QueryEnvironment {
     }
   }
 
+  /**
+   * Plans the query explained by an EXPLAIN statement, e.g. to run it and report its runtime stats along with its plan.
+   * The plan cache is bypassed.
+   *
+   * @param sqlQuery SQL query string of the EXPLAIN statement.
+   * @param sqlNodeAndOptions parsed EXPLAIN statement, which must not have been compiled yet.
+   * @return a dispatchable query plan of the explained query.
+   */
+  public QueryPlan planExplainedQuery(String sqlQuery, SqlNodeAndOptions sqlNodeAndOptions) {
+    try (PlannerContext plannerContext = new PlannerContext(_config, _catalogReader, _typeFactory, _hepProgram)) {
+      SqlExplain explain = (SqlExplain) sqlNodeAndOptions.getSqlNode();
+      plannerContext.setOptions(sqlNodeAndOptions.getOptions());
+      RelRoot relRoot = compileQuery(explain.getExplicandum(), plannerContext);
+      return toDispatchablePlan(relRoot, plannerContext);
+    } catch (Exception e) {
+      throw new RuntimeException("Error composing query plan for: " + sqlQuery, e);
+    }
+  }
+
   @VisibleForTesting
   public QueryPlan planQuery(String sqlQuery) {
     return planQuery(sqlQuery, CalciteSqlParser.compileToSqlNodeAndOptions(sqlQuery));
@@ -171,6 +232,47 @@ public class QueryEnvironment {
   // steps
   // --------------------------------------------------------------------------
 
+  /**
+   * Plans the query from the cached logical plan of its parameterized form, compiles and caches the logical plan if
+   * it is not cached yet. Returns {@code null} if the query cannot be planned with parameters.
+   */
+  @Nullable
+  private QueryPlan planQueryWithPlanCache(String sqlQuery, SqlNode sqlNode, Map<String, String> options) {
+    QueryParameterizer.ParameterizedQuery parameterizedQuery = QueryParameterizer.parameterize(sqlNode);
+    String normalizedSql = parameterizedQuery.getNormalizedSql();
+    LogicalPlanCache.CachedPlan cachedPlan = _planCache.get(normalizedSql);
+    if (cachedPlan != null && !cachedPlan.isCacheable()) {
+      return null;
+    }
+    try (PlannerContext plannerContext = new PlannerContext(_config, _catalogReader, _typeFactory, _hepProgram)) {
+      plannerContext.setOptions(options);
+      RelRoot relRoot;
+      if (cachedPlan != null) {
+        relRoot = cachedPlan.getRelRoot();
+      } else {
+        try {
+          relRoot = compileQuery(parameterizedQuery.getSqlNode(), plannerContext);
+        } catch (Exception e) {
+          // e.g. the same literal is referenced by both the select list and the group-by, plan it directly.
+          _planCache.putNonCacheable(normalizedSql);
+          return null;
+        }
+      }
+      RelRoot boundRelRoot =
+          LogicalPlanCache.bind(relRoot, parameterizedQuery.getParameters(), new RexBuilder(_typeFactory));
+      if (boundRelRoot == null) {
+        _planCache.putNonCacheable(normalizedSql);
+        return null;
+      }
+      if (cachedPlan == null) {
+        _planCache.put(normalizedSql, relRoot);
+      }
+      return toDispatchablePlan(boundRelRoot, plannerContext);
+    } catch (Exception e) {
+      throw new RuntimeException("Error composing query plan for: " + sqlQuery, e);
+    }
+  }
+
   @VisibleForTesting
   protected RelRoot compileQuery(SqlNode sqlNode, PlannerContext plannerContext)
       throws Exception {
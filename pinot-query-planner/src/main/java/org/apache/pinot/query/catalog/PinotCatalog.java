@@ -29,6 +29,8 @@ import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.SchemaVersion;
 import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.Table;
 import org.apache.pinot.common.config.provider.TableCache;
 import org.apache.pinot.common.function.FunctionRegistry;
@@ -46,13 +48,23 @@ import static java.util.Objects.requireNonNull;
 public class PinotCatalog implements Schema {
 
   private final TableCache _tableCache;
+  private final TableStatisticsProvider _tableStatisticsProvider;
 
   /**
    * PinotCatalog needs have access to the actual {@link TableCache} object because TableCache hosts the actual
    * table available for query and processes table/segment metadata updates when cluster status changes.
    */
   public PinotCatalog(TableCache tableCache) {
+    this(tableCache, null);
+  }
+
+  /**
+   * Same as {@link #PinotCatalog(TableCache)}, additionally attaches the statistics from the
+   * {@link TableStatisticsProvider} to the tables so that the planner can make cost-based decisions.
+   */
+  public PinotCatalog(TableCache tableCache, @Nullable TableStatisticsProvider tableStatisticsProvider) {
     _tableCache = tableCache;
+    _tableStatisticsProvider = tableStatisticsProvider;
   }
 
   /**
@@ -63,7 +75,8 @@ public class PinotCatalog implements Schema {
   @Override
   public Table getTable(String name) {
     String tableName = TableNameBuilder.extractRawTableName(name);
-    return new PinotTable(_tableCache.getSchema(tableName));
+    Statistic statistic = _tableStatisticsProvider != null ? _tableStatisticsProvider.getStatistic(name) : null;
+    return new PinotTable(_tableCache.getSchema(tableName), statistic != null ? statistic : Statistics.UNKNOWN);
   }
 
   /**
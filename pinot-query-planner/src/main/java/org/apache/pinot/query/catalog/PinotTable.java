@@ -24,6 +24,8 @@ import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.pinot.query.type.TypeFactory;
 import org.apache.pinot.spi.data.Schema;
@@ -37,9 +39,15 @@ import org.apache.pinot.spi.data.Schema;
  */
 public class PinotTable extends AbstractTable implements ScannableTable {
   private Schema _schema;
+  private Statistic _statistic;
 
   public PinotTable(Schema schema) {
+    this(schema, Statistics.UNKNOWN);
+  }
+
+  public PinotTable(Schema schema, Statistic statistic) {
     _schema = schema;
+    _statistic = statistic;
   }
 
   @Override
@@ -49,6 +57,11 @@ public class PinotTable extends AbstractTable implements ScannableTable {
     return typeFactory.createRelDataTypeFromSchema(_schema);
   }
 
+  @Override
+  public Statistic getStatistic() {
+    return _statistic;
+  }
+
   @Override
   public boolean isRolledUp(String s) {
     return false;
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.catalog;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.pinot.common.metadata.ZKMetadataProvider;
+import org.apache.pinot.common.metadata.segment.SegmentZKMetadata;
+import org.apache.pinot.common.utils.NamedThreadFactory;
+import org.apache.pinot.spi.config.table.TableType;
+import org.apache.pinot.spi.utils.builder.TableNameBuilder;
+
+
+/**
+ * {@link TableStatisticsProvider} backed by the segment ZK metadata.
+ *
+ * <p>The row count of a table is the sum of the total docs of all its segments. For a hybrid table queried by its raw
+ * name both the OFFLINE and the REALTIME segments are counted. Segments that are still consuming don't have a total
+ * docs count in ZK metadata yet, thus they are not counted.
+ *
+ * <p>Reading all segment ZK metadata is not cheap, the statistics are cached and refreshed periodically in the
+ * background so that query planning never waits on ZK: the stale value is served while a refresh is in progress, and
+ * {@link Statistics#UNKNOWN} is returned for a table until its first load completes.
+ */
+public class ZkTableStatisticsProvider implements TableStatisticsProvider {
+  public static final long DEFAULT_REFRESH_INTERVAL_MS = 300_000L;
+
+  private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
+  private final ExecutorService _refreshExecutor;
+  private final LoadingCache<String, Statistic> _statisticCache;
+
+  public ZkTableStatisticsProvider(ZkHelixPropertyStore<ZNRecord> propertyStore) {
+    this(propertyStore, DEFAULT_REFRESH_INTERVAL_MS);
+  }
+
+  public ZkTableStatisticsProvider(ZkHelixPropertyStore<ZNRecord> propertyStore, long refreshIntervalMs) {
+    _propertyStore = propertyStore;
+    _refreshExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("table_statistics_refresh"));
+    _statisticCache = CacheBuilder.newBuilder().refreshAfterWrite(refreshIntervalMs, TimeUnit.MILLISECONDS)
+        .build(CacheLoader.asyncReloading(new CacheLoader<String, Statistic>() {
+          @Override
+          public Statistic load(String tableName) {
+            return computeStatistic(tableName);
+          }
+        }, _refreshExecutor));
+  }
+
+  @Override
+  public Statistic getStatistic(String tableName) {
+    Statistic statistic = _statisticCache.getIfPresent(tableName);
+    if (statistic == null) {
+      // NOTE: refresh() loads an absent key synchronously, run it on the refresh thread to not block the caller.
+      //       Concurrent refreshes of the same key are de-duplicated by the cache.
+      _refreshExecutor.execute(() -> _statisticCache.refresh(tableName));
+      return Statistics.UNKNOWN;
+    }
+    return statistic;
+  }
+
+  public void shutDown() {
+    _refreshExecutor.shutdownNow();
+  }
+
+  private Statistic computeStatistic(String tableName) {
+    long numRows;
+    if (TableNameBuilder.getTableTypeFromTableName(tableName) != null) {
+      numRows = getNumRows(tableName);
+    } else {
+      numRows = getNumRows(TableNameBuilder.forType(TableType.OFFLINE).tableNameWithType(tableName))
+          + getNumRows(TableNameBuilder.forType(TableType.REALTIME).tableNameWithType(tableName));
+    }
+    return numRows > 0 ? Statistics.of(numRows, Collections.emptyList()) : Statistics.UNKNOWN;
+  }
+
+  private long getNumRows(String tableNameWithType) {
+    long numRows = 0;
+    for (SegmentZKMetadata segmentZKMetadata : ZKMetadataProvider.getSegmentsZKMetadata(_propertyStore,
+        tableNameWithType)) {
+      long totalDocs = segmentZKMetadata.getTotalDocs();
+      if (totalDocs > 0) {
+        numRows += totalDocs;
+      }
+    }
+    return numRows;
+  }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.parser;
+
+import com.google.common.collect.ImmutableSet;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.apache.calcite.sql.SqlBasicTypeNameSpec;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlCharStringLiteral;
+import org.apache.calcite.sql.SqlDataTypeSpec;
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlNumericLiteral;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.parser.SqlParserPos;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.sql2rel.SqlToRelConverter;
+
+
+/**
+ * {@code QueryParameterizer} replaces the literals of a parsed query with typed dynamic parameters, so that queries
+ * only differing in their literals share the same normalized SQL and can share the same compiled plan.
+ *
+ * <p>Only numeric and string literals that are direct operands of comparisons, BETWEEN and (short) IN lists are
+ * replaced, e.g. {@code col > 5} becomes {@code col > CAST(? AS INTEGER)}. Literals anywhere else (function arguments,
+ * LIMIT/OFFSET, ordinals) can change the shape or the type of the plan and are kept as part of the normalized SQL.
+ */
+public class QueryParameterizer {
+  private static final Set<SqlKind> PARAMETERIZABLE_KINDS = ImmutableSet.of(SqlKind.EQUALS, SqlKind.NOT_EQUALS,
+      SqlKind.LESS_THAN, SqlKind.LESS_THAN_OR_EQUAL, SqlKind.GREATER_THAN, SqlKind.GREATER_THAN_OR_EQUAL,
+      SqlKind.BETWEEN, SqlKind.IN, SqlKind.NOT_IN);
+
+  // larger IN lists are converted into a join against a VALUES table, which cannot hold parameters.
+  private static final int MAX_IN_LIST_SIZE = SqlToRelConverter.DEFAULT_IN_SUB_QUERY_THRESHOLD - 1;
+
+  private QueryParameterizer() {
+    // do not instantiate.
+  }
+
+  /**
+   * Parameterizes the given query. The parsed query is rewritten in place and cannot be planned as-is anymore.
+   */
+  public static ParameterizedQuery parameterize(SqlNode sqlNode) {
+    ParameterizedQuery parameterizedQuery = new ParameterizedQuery(sqlNode);
+    parameterizedQuery.visit(sqlNode);
+    parameterizedQuery._normalizedSql = sqlNode.toString();
+    return parameterizedQuery;
+  }
+
+  public static class ParameterizedQuery {
+    private final SqlNode _sqlNode;
+    private final List<Object> _parameters = new ArrayList<>();
+    private String _normalizedSql;
+
+    private ParameterizedQuery(SqlNode sqlNode) {
+      _sqlNode = sqlNode;
+    }
+
+    public SqlNode getSqlNode() {
+      return _sqlNode;
+    }
+
+    /**
+     * Returns the SQL string of the parameterized query, identical for queries that only differ in their literals.
+     */
+    public String getNormalizedSql() {
+      return _normalizedSql;
+    }
+
+    /**
+     * Returns the values of the replaced literals indexed by the dynamic parameter index, numeric values are
+     * {@link BigDecimal} and string values are {@link String}.
+     */
+    public List<Object> getParameters() {
+      return Collections.unmodifiableList(_parameters);
+    }
+
+    private void visit(SqlNode sqlNode) {
+      if (sqlNode instanceof SqlNodeList) {
+        for (SqlNode child : (SqlNodeList) sqlNode) {
+          visit(child);
+        }
+      } else if (sqlNode instanceof SqlCall) {
+        SqlCall sqlCall = (SqlCall) sqlNode;
+        boolean parameterizable = PARAMETERIZABLE_KINDS.contains(sqlCall.getKind());
+        List<SqlNode> operands = sqlCall.getOperandList();
+        for (int i = 0; i < operands.size(); i++) {
+          SqlNode operand = operands.get(i);
+          if (operand == null) {
+            continue;
+          }
+          if (parameterizable) {
+            SqlNode parameter = toParameter(operand);
+            if (parameter != null) {
+              sqlCall.setOperand(i, parameter);
+              continue;
+            }
+            if (operand instanceof SqlNodeList && ((SqlNodeList) operand).size() <= MAX_IN_LIST_SIZE) {
+              parameterizeList((SqlNodeList) operand);
+              continue;
+            }
+          }
+          visit(operand);
+        }
+      }
+    }
+
+    private void parameterizeList(SqlNodeList sqlNodeList) {
+      for (int i = 0; i < sqlNodeList.size(); i++) {
+        SqlNode element = sqlNodeList.get(i);
+        SqlNode parameter = toParameter(element);
+        if (parameter != null) {
+          sqlNodeList.set(i, parameter);
+        } else {
+          visit(element);
+        }
+      }
+    }
+
+    private SqlNode toParameter(SqlNode sqlNode) {
+      SqlBasicTypeNameSpec typeNameSpec;
+      Object value;
+      SqlParserPos pos = sqlNode.getParserPosition();
+      if (sqlNode instanceof SqlNumericLiteral) {
+        SqlNumericLiteral literal = (SqlNumericLiteral) sqlNode;
+        BigDecimal decimal = literal.getValueAs(BigDecimal.class);
+        if (!literal.isExact()) {
+          typeNameSpec = new SqlBasicTypeNameSpec(SqlTypeName.DOUBLE, pos);
+        } else if (literal.getScale() == 0) {
+          typeNameSpec = new SqlBasicTypeNameSpec(isInt(decimal) ? SqlTypeName.INTEGER : SqlTypeName.BIGINT, pos);
+        } else {
+          typeNameSpec = new SqlBasicTypeNameSpec(SqlTypeName.DECIMAL, literal.getPrec(), literal.getScale(), pos);
+        }
+        value = decimal;
+      } else if (sqlNode instanceof SqlCharStringLiteral) {
+        typeNameSpec = new SqlBasicTypeNameSpec(SqlTypeName.VARCHAR, pos);
+        value = ((SqlLiteral) sqlNode).getValueAs(String.class);
+      } else {
+        return null;
+      }
+      SqlDynamicParam dynamicParam = new SqlDynamicParam(_parameters.size(), pos);
+      _parameters.add(value);
+      return SqlStdOperatorTable.CAST.createCall(pos, dynamicParam, new SqlDataTypeSpec(typeNameSpec, pos));
+    }
+
+    private static boolean isInt(BigDecimal decimal) {
+      return decimal.compareTo(BigDecimal.valueOf(Integer.MIN_VALUE)) >= 0
+          && decimal.compareTo(BigDecimal.valueOf(Integer.MAX_VALUE)) <= 0;
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.planner.logical;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.calcite.rel.RelHomogeneousShuttle;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.sql.SqlKind;
+
+
+/**
+ * {@code LogicalPlanCache} caches the optimized logical plan of parameterized queries, keyed by their normalized SQL.
+ *
+ * <p>Only the result of parsing, validation and optimization is cached. The cached plan still holds the dynamic
+ * parameters, and the literals of each query are bound back into a copy of it before it is broken into stages. The
+ * stage plan itself is not cached since worker assignment depends on the routing at the time of the query.
+ *
+ * <p>Entries expire after the given time so that plans follow the table statistics they were optimized with, and the
+ * whole cache is expected to be invalidated when a table config or schema changes.
+ */
+public class LogicalPlanCache {
+  private final Cache<String, CachedPlan> _cache;
+
+  public LogicalPlanCache(int maxSize, long expireAfterWriteMs) {
+    _cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(expireAfterWriteMs, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Returns the cached plan for the normalized SQL, or {@code null} if it is not cached.
+   */
+  @Nullable
+  public CachedPlan get(String normalizedSql) {
+    return _cache.getIfPresent(normalizedSql);
+  }
+
+  public void put(String normalizedSql, RelRoot relRoot) {
+    _cache.put(normalizedSql, new CachedPlan(relRoot));
+  }
+
+  /**
+   * Records that the normalized SQL cannot be planned with parameters, so that it is planned directly next time.
+   */
+  public void putNonCacheable(String normalizedSql) {
+    _cache.put(normalizedSql, new CachedPlan(null));
+  }
+
+  public void invalidateAll() {
+    _cache.invalidateAll();
+  }
+
+  public long size() {
+    return _cache.size();
+  }
+
+  /**
+   * Binds the parameter values into a copy of the plan, returns {@code null} if some parameter cannot be bound.
+   *
+   * @param relRoot plan compiled from the parameterized query.
+   * @param parameters parameter values indexed by the dynamic parameter index.
+   * @param rexBuilder builder used to create the literals.
+   * @return the plan with all dynamic parameters replaced by literals.
+   */
+  @Nullable
+  public static RelRoot bind(RelRoot relRoot, List<Object> parameters, RexBuilder rexBuilder) {
+    ParameterBinder parameterBinder = new ParameterBinder(parameters, rexBuilder);
+    RelNode bound = relRoot.rel.accept(parameterBinder);
+    return parameterBinder._hasUnboundParameter ? null : relRoot.withRel(bound);
+  }
+
+  public static class CachedPlan {
+    private final RelRoot _relRoot;
+
+    private CachedPlan(@Nullable RelRoot relRoot) {
+      _relRoot = relRoot;
+    }
+
+    public boolean isCacheable() {
+      return _relRoot != null;
+    }
+
+    public RelRoot getRelRoot() {
+      return _relRoot;
+    }
+  }
+
+  private static class ParameterBinder extends RelHomogeneousShuttle {
+    private final List<Object> _parameters;
+    private final RexBuilder _rexBuilder;
+    private final RexShuttle _rexShuttle;
+    private boolean _hasUnboundParameter;
+
+    private ParameterBinder(List<Object> parameters, RexBuilder rexBuilder) {
+      _parameters = parameters;
+      _rexBuilder = rexBuilder;
+      _rexShuttle = new RexShuttle() {
+        @Override
+        public RexNode visitCall(RexCall call) {
+          // the parameterizer wraps each parameter in a CAST to its literal type, bind it as a literal of that type.
+          if (call.getKind() == SqlKind.CAST && call.getOperands().get(0) instanceof RexDynamicParam) {
+            return toLiteral((RexDynamicParam) call.getOperands().get(0), call.getType());
+          }
+          return super.visitCall(call);
+        }
+
+        @Override
+        public RexNode visitDynamicParam(RexDynamicParam dynamicParam) {
+          return toLiteral(dynamicParam, dynamicParam.getType());
+        }
+      };
+    }
+
+    @Override
+    public RelNode visit(RelNode other) {
+      return super.visit(other).accept(_rexShuttle);
+    }
+
+    private RexNode toLiteral(RexDynamicParam dynamicParam, RelDataType type) {
+      int index = dynamicParam.getIndex();
+      if (index >= _parameters.size()) {
+        _hasUnboundParameter = true;
+        return dynamicParam;
+      }
+      return _rexBuilder.makeLiteral(_parameters.get(index),
+          _rexBuilder.getTypeFactory().createTypeWithNullability(type, false), false);
+    }
+  }
+}
@@ -18,15 +18,20 @@
  */
 package org.apache.pinot.query.planner.logical;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.logical.LogicalExchange;
+import org.apache.calcite.rel.logical.LogicalSort;
 import org.apache.pinot.query.context.PlannerContext;
 import org.apache.pinot.query.planner.QueryPlan;
 import org.apache.pinot.query.planner.StageMetadata;
@@ -38,6 +43,7 @@ import org.apache.pinot.query.planner.stage.JoinNode;
 import org.apache.pinot.query.planner.stage.MailboxReceiveNode;
 import org.apache.pinot.query.planner.stage.MailboxSendNode;
 import org.apache.pinot.query.planner.stage.ProjectNode;
+import org.apache.pinot.query.planner.stage.SortNode;
 import org.apache.pinot.query.planner.stage.StageNode;
 import org.apache.pinot.query.planner.stage.TableScanNode;
 import org.apache.pinot.query.routing.WorkerManager;
@@ -95,11 +101,24 @@ public class StagePlanner {
     globalReceivingStageMetadata.attach(globalReceiverNode);
     _stageMetadataMap.put(globalReceiverNode.getStageId(), globalReceivingStageMetadata);
 
+    // sort the rows of a global ORDER BY on all the workers of the sort stage instead of a single one.
+    planRangePartitionedSort(globalStageRoot, (MailboxReceiveNode) globalReceiverNode);
+
     // assign workers to each stage.
     for (Map.Entry<Integer, StageMetadata> e : _stageMetadataMap.entrySet()) {
       _workerManager.assignWorkerToStage(e.getKey(), e.getValue());
     }
 
+    // run the joins of co-partitioned tables on the servers hosting the partitions, without shuffling the data.
+    for (StageNode stageRoot : _queryStageMap.values()) {
+      colocateJoins(stageRoot);
+    }
+
+    // let the joins filter the table scans of their probe side with the keys of their build side.
+    for (StageNode stageRoot : _queryStageMap.values()) {
+      planRuntimeFilters(stageRoot);
+    }
+
     return new QueryPlan(relRoot.fields, _queryStageMap, _stageMetadataMap);
   }
 
@@ -152,11 +171,174 @@ public class StagePlanner {
       for (RelNode input : inputs) {
         stageNode.addInput(walkRelPlan(input, currentStageId));
       }
+      if (stageNode instanceof SortNode && isExchangeNode(inputs.get(0))) {
+        pushDownSortLimit((SortNode) stageNode, ((LogicalSort) node).getCollation().getFieldCollations());
+      }
       updateStageMetadata(currentStageId, stageNode, _stageMetadataMap);
       return stageNode;
     }
   }
 
+  /**
+   * Pushes a partial top-K sort below the exchange of an ORDER BY ... LIMIT sort. Each sender only needs to ship its
+   * own top (offset + fetch) rows; the global sort above the exchange still applies the original offset and fetch.
+   * On a leaf stage the partial sort is converted into a v1 order-by with limit, so the rows are trimmed inside the
+   * segment engine instead of shipping up to the default leaf limit.
+   */
+  private void pushDownSortLimit(SortNode sortNode, List<RelFieldCollation> fieldCollations) {
+    if (sortNode.getFetch() <= 0 || fieldCollations.isEmpty()) {
+      return;
+    }
+    MailboxReceiveNode mailboxReceiver = (MailboxReceiveNode) sortNode.getInputs().get(0);
+    StageNode mailboxSender = _queryStageMap.get(mailboxReceiver.getSenderStageId());
+    StageNode senderStageRoot = mailboxSender.getInputs().get(0);
+    SortNode partialSortNode = new SortNode(mailboxSender.getStageId(), fieldCollations,
+        sortNode.getFetch() + sortNode.getOffset(), 0, senderStageRoot.getDataSchema());
+    partialSortNode.addInput(senderStageRoot);
+    mailboxSender.getInputs().set(0, partialSortNode);
+    updateStageMetadata(mailboxSender.getStageId(), partialSortNode, _stageMetadataMap);
+  }
+
+  /**
+   * Range partitions the input of a global ORDER BY without LIMIT on the sort keys, so that each worker of the sort
+   * stage sorts one range of keys. The ROOT stage then receives the sorted ranges one after the other, which yields the
+   * rows in the global order without merging or sorting them again. An ORDER BY with LIMIT keeps sorting on a single
+   * worker, as the partial top-K sorts below the exchange already trim its input (see {@link #pushDownSortLimit}).
+   */
+  private void planRangePartitionedSort(StageNode globalStageRoot, MailboxReceiveNode globalReceiverNode) {
+    StageNode node = globalStageRoot;
+    // projects and filters keep the order of the rows.
+    while (node instanceof ProjectNode || node instanceof FilterNode) {
+      node = node.getInputs().get(0);
+    }
+    if (!(node instanceof SortNode)) {
+      return;
+    }
+    SortNode sortNode = (SortNode) node;
+    if (sortNode.getFetch() > 0 || sortNode.getOffset() > 0 || sortNode.getCollationKeys().isEmpty()
+        || !(sortNode.getInputs().get(0) instanceof MailboxReceiveNode)) {
+      return;
+    }
+    MailboxReceiveNode sortReceiver = (MailboxReceiveNode) sortNode.getInputs().get(0);
+    if (sortReceiver.getExchangeType() != RelDistribution.Type.HASH_DISTRIBUTED) {
+      return;
+    }
+    List<Integer> sortKeys = new ArrayList<>(sortNode.getCollationKeys().size());
+    for (RexExpression collationKey : sortNode.getCollationKeys()) {
+      sortKeys.add(((RexExpression.InputRef) collationKey).getIndex());
+    }
+    MailboxSendNode sortSender = (MailboxSendNode) _queryStageMap.get(sortReceiver.getSenderStageId());
+    sortSender.setRangePartitioning(new FieldSelectionKeySelector(sortKeys), sortNode.getCollationDirections());
+    sortReceiver.setExchangeType(RelDistribution.Type.RANGE_DISTRIBUTED);
+    globalReceiverNode.setOrdered(true);
+  }
+
+  private void colocateJoins(StageNode node) {
+    if (node instanceof JoinNode) {
+      colocateJoin((JoinNode) node);
+    }
+    for (StageNode input : node.getInputs()) {
+      colocateJoins(input);
+    }
+  }
+
+  /**
+   * Turns the HASH_DISTRIBUTED exchanges of a join between two table scan stages into local SINGLETON exchanges when
+   * both tables are partitioned on one of the join keys and each partition of both tables is routed to the same server.
+   * The join stage then runs on the servers of the table scan stages, each joining the partitions it hosts.
+   */
+  private void colocateJoin(JoinNode joinNode) {
+    if (!(joinNode.getInputs().get(0) instanceof MailboxReceiveNode)
+        || !(joinNode.getInputs().get(1) instanceof MailboxReceiveNode)) {
+      return;
+    }
+    MailboxReceiveNode leftReceiver = (MailboxReceiveNode) joinNode.getInputs().get(0);
+    MailboxReceiveNode rightReceiver = (MailboxReceiveNode) joinNode.getInputs().get(1);
+    if (leftReceiver.getExchangeType() != RelDistribution.Type.HASH_DISTRIBUTED
+        || rightReceiver.getExchangeType() != RelDistribution.Type.HASH_DISTRIBUTED) {
+      return;
+    }
+    StageMetadata leftStageMetadata = _stageMetadataMap.get(leftReceiver.getSenderStageId());
+    StageMetadata rightStageMetadata = _stageMetadataMap.get(rightReceiver.getSenderStageId());
+    if (leftStageMetadata.getScannedTables().size() != 1 || rightStageMetadata.getScannedTables().size() != 1) {
+      return;
+    }
+    MailboxSendNode leftSender = (MailboxSendNode) _queryStageMap.get(leftReceiver.getSenderStageId());
+    MailboxSendNode rightSender = (MailboxSendNode) _queryStageMap.get(rightReceiver.getSenderStageId());
+    List<Integer> leftKeys = ((FieldSelectionKeySelector) leftReceiver.getPartitionKeySelector()).getColumnIndices();
+    List<Integer> rightKeys = ((FieldSelectionKeySelector) rightReceiver.getPartitionKeySelector()).getColumnIndices();
+    for (int i = 0; i < leftKeys.size(); i++) {
+      String leftColumnName = getTableColumnName(leftSender.getInputs().get(0), leftKeys.get(i));
+      String rightColumnName = getTableColumnName(rightSender.getInputs().get(0), rightKeys.get(i));
+      if (leftColumnName != null && rightColumnName != null
+          && _workerManager.canColocateJoin(leftStageMetadata, leftColumnName, rightStageMetadata, rightColumnName)) {
+        leftReceiver.setExchangeType(RelDistribution.Type.SINGLETON);
+        leftSender.setExchangeType(RelDistribution.Type.SINGLETON);
+        rightReceiver.setExchangeType(RelDistribution.Type.SINGLETON);
+        rightSender.setExchangeType(RelDistribution.Type.SINGLETON);
+        _stageMetadataMap.get(joinNode.getStageId())
+            .setServerInstances(new ArrayList<>(leftStageMetadata.getServerInstances()));
+        return;
+      }
+    }
+  }
+
+  private void planRuntimeFilters(StageNode node) {
+    if (node instanceof JoinNode) {
+      planRuntimeFilter((JoinNode) node);
+    }
+    for (StageNode input : node.getInputs()) {
+      planRuntimeFilters(input);
+    }
+  }
+
+  /**
+   * Makes an INNER or SEMI join send the join keys of its right (build) side to the table scan stage of its left
+   * (probe) side once its hash table is built. The left rows without a matching key are then filtered out inside the
+   * leaf stage, and the segments without any matching key are pruned, instead of shipping them to the join. Only
+   * applies when one of the left join keys directly refers to a table column.
+   */
+  private void planRuntimeFilter(JoinNode joinNode) {
+    if ((joinNode.getJoinRelType() != JoinRelType.INNER && joinNode.getJoinRelType() != JoinRelType.SEMI)
+        || !(joinNode.getInputs().get(0) instanceof MailboxReceiveNode)) {
+      return;
+    }
+    MailboxReceiveNode leftReceiver = (MailboxReceiveNode) joinNode.getInputs().get(0);
+    if (_stageMetadataMap.get(leftReceiver.getSenderStageId()).getScannedTables().size() != 1) {
+      return;
+    }
+    MailboxSendNode leftSender = (MailboxSendNode) _queryStageMap.get(leftReceiver.getSenderStageId());
+    List<Integer> leftKeys =
+        ((FieldSelectionKeySelector) joinNode.getCriteria().get(0).getLeftJoinKeySelector()).getColumnIndices();
+    for (int i = 0; i < leftKeys.size(); i++) {
+      String leftColumnName = getTableColumnName(leftSender.getInputs().get(0), leftKeys.get(i));
+      if (leftColumnName != null) {
+        joinNode.setRuntimeFilter(leftSender.getStageId(), i);
+        leftSender.setRuntimeFilter(leftColumnName, joinNode.getStageId());
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the name of the table column a field of a table scan stage directly refers to, or {@code null} if the field
+   * is computed.
+   */
+  @Nullable
+  private static String getTableColumnName(StageNode node, int fieldIndex) {
+    if (node instanceof TableScanNode) {
+      return ((TableScanNode) node).getTableScanColumns().get(fieldIndex);
+    } else if (node instanceof FilterNode) {
+      return getTableColumnName(node.getInputs().get(0), fieldIndex);
+    } else if (node instanceof ProjectNode) {
+      RexExpression project = ((ProjectNode) node).getProjects().get(fieldIndex);
+      if (project instanceof RexExpression.InputRef) {
+        return getTableColumnName(node.getInputs().get(0), ((RexExpression.InputRef) project).getIndex());
+      }
+    }
+    return null;
+  }
+
   private boolean canSkipShuffle(StageNode stageNode, KeySelector<Object[], Object[]> keySelector) {
     Set<Integer> originSet = stageNode.getPartitionKeys();
     if (!originSet.isEmpty() && keySelector != null) {
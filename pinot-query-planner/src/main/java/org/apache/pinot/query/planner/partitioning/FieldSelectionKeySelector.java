@@ -71,6 +71,7 @@ public class FieldSelectionKeySelector implements KeySelector<Object[], Object[]
     for (int columnIndex : _columnIndices) {
       hashCodeBuilder.append(input[columnIndex]);
     }
-    return Math.abs(hashCodeBuilder.toHashCode());
+    // NOTE: Math.abs() returns a negative value for Integer.MIN_VALUE, mask the sign bit instead.
+    return hashCodeBuilder.toHashCode() & Integer.MAX_VALUE;
   }
 }
@@ -27,10 +27,16 @@ import org.apache.pinot.query.planner.serde.ProtoProperties;
 
 
 public class JoinNode extends AbstractStageNode {
+  public static final int NO_RUNTIME_FILTER = -1;
+
   @ProtoProperties
   private JoinRelType _joinRelType;
   @ProtoProperties
   private List<JoinClause> _criteria;
+  @ProtoProperties
+  private int _runtimeFilterTargetStageId = NO_RUNTIME_FILTER;
+  @ProtoProperties
+  private int _runtimeFilterKeyIndex;
 
   public JoinNode(int stageId) {
     super(stageId);
@@ -50,6 +56,26 @@ public class JoinNode extends AbstractStageNode {
     return _criteria;
   }
 
+  /**
+   * Returns the ID of the left (probe) side table scan stage the runtime filter built from the right (build) side join
+   * keys is sent to, or {@link #NO_RUNTIME_FILTER}.
+   */
+  public int getRuntimeFilterTargetStageId() {
+    return _runtimeFilterTargetStageId;
+  }
+
+  /**
+   * Returns the index of the join key the runtime filter is built on.
+   */
+  public int getRuntimeFilterKeyIndex() {
+    return _runtimeFilterKeyIndex;
+  }
+
+  public void setRuntimeFilter(int runtimeFilterTargetStageId, int runtimeFilterKeyIndex) {
+    _runtimeFilterTargetStageId = runtimeFilterTargetStageId;
+    _runtimeFilterKeyIndex = runtimeFilterKeyIndex;
+  }
+
   public static class JoinClause {
     @ProtoProperties
     private KeySelector<Object[], Object[]> _leftJoinKeySelector;
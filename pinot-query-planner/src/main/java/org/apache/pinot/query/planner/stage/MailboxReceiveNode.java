@@ -32,6 +32,8 @@ public class MailboxReceiveNode extends AbstractStageNode {
   private RelDistribution.Type _exchangeType;
   @ProtoProperties
   private KeySelector<Object[], Object[]> _partitionKeySelector;
+  @ProtoProperties
+  private boolean _isOrdered;
 
   public MailboxReceiveNode(int stageId) {
     super(stageId);
@@ -53,7 +55,23 @@ public class MailboxReceiveNode extends AbstractStageNode {
     return _exchangeType;
   }
 
+  public void setExchangeType(RelDistribution.Type exchangeType) {
+    _exchangeType = exchangeType;
+  }
+
   public KeySelector<Object[], Object[]> getPartitionKeySelector() {
     return _partitionKeySelector;
   }
+
+  /**
+   * Returns whether the rows must be received in the order of the sending workers, i.e. all the rows of the first
+   * sending worker, then all the rows of the second one, etc. Used to merge the outputs of range partitioned sorts.
+   */
+  public boolean isOrdered() {
+    return _isOrdered;
+  }
+
+  public void setOrdered(boolean isOrdered) {
+    _isOrdered = isOrdered;
+  }
 }
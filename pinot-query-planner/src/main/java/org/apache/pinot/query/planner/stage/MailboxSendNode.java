@@ -18,8 +18,10 @@
  */
 package org.apache.pinot.query.planner.stage;
 
+import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.query.planner.partitioning.KeySelector;
 import org.apache.pinot.query.planner.serde.ProtoProperties;
@@ -32,6 +34,12 @@ public class MailboxSendNode extends AbstractStageNode {
   private RelDistribution.Type _exchangeType;
   @ProtoProperties
   private KeySelector<Object[], Object[]> _partitionKeySelector;
+  @ProtoProperties
+  private List<RelFieldCollation.Direction> _collationDirections;
+  @ProtoProperties
+  private String _runtimeFilterColumn;
+  @ProtoProperties
+  private int _runtimeFilterSourceStageId;
 
   public MailboxSendNode(int stageId) {
     super(stageId);
@@ -53,7 +61,52 @@ public class MailboxSendNode extends AbstractStageNode {
     return _exchangeType;
   }
 
+  public void setExchangeType(RelDistribution.Type exchangeType) {
+    _exchangeType = exchangeType;
+  }
+
   public KeySelector<Object[], Object[]> getPartitionKeySelector() {
     return _partitionKeySelector;
   }
+
+  /**
+   * Returns the sort direction of each partition key of a RANGE_DISTRIBUTED exchange, or {@code null} for the other
+   * exchange types.
+   */
+  @Nullable
+  public List<RelFieldCollation.Direction> getCollationDirections() {
+    return _collationDirections;
+  }
+
+  /**
+   * Range partitions the rows on the given keys: the i-th receiving worker gets the i-th range of keys in the sort
+   * order defined by the collation directions.
+   */
+  public void setRangePartitioning(KeySelector<Object[], Object[]> partitionKeySelector,
+      List<RelFieldCollation.Direction> collationDirections) {
+    _exchangeType = RelDistribution.Type.RANGE_DISTRIBUTED;
+    _partitionKeySelector = partitionKeySelector;
+    _collationDirections = collationDirections;
+  }
+
+  /**
+   * Returns the table column the join runtime filter applies to, or {@code null} if this stage doesn't wait for a
+   * runtime filter.
+   */
+  @Nullable
+  public String getRuntimeFilterColumn() {
+    return _runtimeFilterColumn;
+  }
+
+  /**
+   * Returns the ID of the join stage that produces the runtime filter.
+   */
+  public int getRuntimeFilterSourceStageId() {
+    return _runtimeFilterSourceStageId;
+  }
+
+  public void setRuntimeFilter(String runtimeFilterColumn, int runtimeFilterSourceStageId) {
+    _runtimeFilterColumn = runtimeFilterColumn;
+    _runtimeFilterSourceStageId = runtimeFilterSourceStageId;
+  }
 }
@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.routing;
+
+import javax.annotation.Nullable;
+import org.apache.pinot.spi.config.table.ColumnPartitionConfig;
+
+
+/**
+ * Provides the partitioning of tables and segments, used by the {@link WorkerManager} to detect joins whose inputs are
+ * partitioned on the join key and whose partitions are hosted together, so that they can run without a shuffle.
+ */
+public interface TablePartitionInfoProvider {
+
+  /**
+   * Returns the partition config of a column from the table config.
+   *
+   * @param tableNameWithType table name with type.
+   * @param columnName column name.
+   * @return the partition config of the column, or {@code null} if the table is not partitioned on the column.
+   */
+  @Nullable
+  ColumnPartitionConfig getColumnPartitionConfig(String tableNameWithType, String columnName);
+
+  /**
+   * Returns the partition id of a segment on a column.
+   *
+   * @param tableNameWithType table name with type.
+   * @param segmentName segment name.
+   * @param columnName column name.
+   * @return the partition id of the segment, or {@code null} if it is unknown or the segment contains more than one
+   *         partition, or the segment partitioning is inconsistent with the table config.
+   */
+  @Nullable
+  Integer getSegmentPartitionId(String tableNameWithType, String segmentName, String columnName);
+}
@@ -23,14 +23,19 @@ import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
 import org.apache.pinot.core.routing.RoutingManager;
 import org.apache.pinot.core.routing.RoutingTable;
 import org.apache.pinot.core.routing.TimeBoundaryInfo;
 import org.apache.pinot.core.transport.ServerInstance;
 import org.apache.pinot.query.planner.PlannerUtils;
 import org.apache.pinot.query.planner.StageMetadata;
+import org.apache.pinot.spi.config.table.ColumnPartitionConfig;
 import org.apache.pinot.spi.config.table.TableType;
 import org.apache.pinot.spi.utils.CommonConstants;
 import org.apache.pinot.spi.utils.builder.TableNameBuilder;
@@ -51,11 +56,18 @@ public class WorkerManager {
   private final String _hostName;
   private final int _port;
   private final RoutingManager _routingManager;
+  private final TablePartitionInfoProvider _tablePartitionInfoProvider;
 
   public WorkerManager(String hostName, int port, RoutingManager routingManager) {
+    this(hostName, port, routingManager, null);
+  }
+
+  public WorkerManager(String hostName, int port, RoutingManager routingManager,
+      @Nullable TablePartitionInfoProvider tablePartitionInfoProvider) {
     _hostName = hostName;
     _port = port;
     _routingManager = routingManager;
+    _tablePartitionInfoProvider = tablePartitionInfoProvider;
   }
 
   public void assignWorkerToStage(int stageId, StageMetadata stageMetadata) {
@@ -104,6 +116,91 @@ public class WorkerManager {
     }
   }
 
+  /**
+   * Returns whether a join of two table scan stages on the given columns can run on the servers of the table scan
+   * stages without a shuffle. This requires:
+   * <ul>
+   *   <li>both tables are partitioned on the join columns with the same partition function and number of
+   *   partitions;</li>
+   *   <li>the partition of every routed segment is known;</li>
+   *   <li>both table scan stages are assigned to the same servers, and each partition of both tables is routed to the
+   *   same server.</li>
+   * </ul>
+   */
+  public boolean canColocateJoin(StageMetadata leftStageMetadata, String leftColumnName,
+      StageMetadata rightStageMetadata, String rightColumnName) {
+    if (_tablePartitionInfoProvider == null) {
+      return false;
+    }
+    List<ColumnPartitionConfig> columnPartitionConfigs = new ArrayList<>();
+    Map<Integer, ServerInstance> leftPartitionToServerMap =
+        getPartitionToServerMap(leftStageMetadata, leftColumnName, columnPartitionConfigs);
+    Map<Integer, ServerInstance> rightPartitionToServerMap =
+        getPartitionToServerMap(rightStageMetadata, rightColumnName, columnPartitionConfigs);
+    if (leftPartitionToServerMap == null || rightPartitionToServerMap == null) {
+      return false;
+    }
+    ColumnPartitionConfig firstConfig = columnPartitionConfigs.get(0);
+    for (ColumnPartitionConfig config : columnPartitionConfigs) {
+      if (!firstConfig.getFunctionName().equalsIgnoreCase(config.getFunctionName())
+          || firstConfig.getNumPartitions() != config.getNumPartitions()
+          || !Objects.equals(firstConfig.getFunctionConfig(), config.getFunctionConfig())) {
+        return false;
+      }
+    }
+    if (!new HashSet<>(leftStageMetadata.getServerInstances()).equals(
+        new HashSet<>(rightStageMetadata.getServerInstances()))) {
+      return false;
+    }
+    for (Map.Entry<Integer, ServerInstance> entry : leftPartitionToServerMap.entrySet()) {
+      ServerInstance rightServerInstance = rightPartitionToServerMap.get(entry.getKey());
+      if (rightServerInstance != null && !rightServerInstance.equals(entry.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the server each partition of the scanned table is routed to, or {@code null} if the partitions are unknown
+   * or a partition is routed to more than one server. The partition config of each physical table is added to the
+   * given list.
+   */
+  @Nullable
+  private Map<Integer, ServerInstance> getPartitionToServerMap(StageMetadata stageMetadata, String columnName,
+      List<ColumnPartitionConfig> columnPartitionConfigs) {
+    String rawTableName = TableNameBuilder.extractRawTableName(stageMetadata.getScannedTables().get(0));
+    Map<Integer, ServerInstance> partitionToServerMap = new HashMap<>();
+    Set<String> tableTypes = new HashSet<>();
+    for (Map.Entry<ServerInstance, Map<String, List<String>>> serverEntry
+        : stageMetadata.getServerInstanceToSegmentsMap().entrySet()) {
+      for (Map.Entry<String, List<String>> tableTypeEntry : serverEntry.getValue().entrySet()) {
+        String tableNameWithType =
+            TableNameBuilder.forType(TableType.valueOf(tableTypeEntry.getKey())).tableNameWithType(rawTableName);
+        if (tableTypes.add(tableTypeEntry.getKey())) {
+          ColumnPartitionConfig columnPartitionConfig =
+              _tablePartitionInfoProvider.getColumnPartitionConfig(tableNameWithType, columnName);
+          if (columnPartitionConfig == null) {
+            return null;
+          }
+          columnPartitionConfigs.add(columnPartitionConfig);
+        }
+        for (String segmentName : tableTypeEntry.getValue()) {
+          Integer partitionId =
+              _tablePartitionInfoProvider.getSegmentPartitionId(tableNameWithType, segmentName, columnName);
+          if (partitionId == null) {
+            return null;
+          }
+          ServerInstance serverInstance = partitionToServerMap.putIfAbsent(partitionId, serverEntry.getKey());
+          if (serverInstance != null && !serverInstance.equals(serverEntry.getKey())) {
+            return null;
+          }
+        }
+      }
+    }
+    return partitionToServerMap;
+  }
+
   private static List<ServerInstance> filterServers(Collection<ServerInstance> servers) {
     List<ServerInstance> serverInstances = new ArrayList<>();
     for (ServerInstance server : servers) {
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.routing;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.pinot.common.config.provider.TableCache;
+import org.apache.pinot.common.metadata.ZKMetadataProvider;
+import org.apache.pinot.common.metadata.segment.SegmentPartitionMetadata;
+import org.apache.pinot.common.metadata.segment.SegmentZKMetadata;
+import org.apache.pinot.spi.config.table.ColumnPartitionConfig;
+import org.apache.pinot.spi.config.table.IndexingConfig;
+import org.apache.pinot.spi.config.table.SegmentPartitionConfig;
+import org.apache.pinot.spi.config.table.TableConfig;
+
+
+/**
+ * {@link TablePartitionInfoProvider} backed by the table config from the {@link TableCache} and the segment ZK
+ * metadata.
+ *
+ * <p>The partition metadata of a segment doesn't change once the segment is committed, the segment ZK metadata is
+ * cached so that it is not read for every query.
+ */
+public class ZkTablePartitionInfoProvider implements TablePartitionInfoProvider {
+  private static final long DEFAULT_SEGMENT_CACHE_SIZE = 100_000L;
+  private static final long DEFAULT_SEGMENT_CACHE_EXPIRE_MS = 3_600_000L;
+
+  private final TableCache _tableCache;
+  private final ZkHelixPropertyStore<ZNRecord> _propertyStore;
+  private final LoadingCache<String, Optional<SegmentPartitionMetadata>> _segmentPartitionMetadataCache;
+
+  public ZkTablePartitionInfoProvider(TableCache tableCache, ZkHelixPropertyStore<ZNRecord> propertyStore) {
+    _tableCache = tableCache;
+    _propertyStore = propertyStore;
+    _segmentPartitionMetadataCache = CacheBuilder.newBuilder().maximumSize(DEFAULT_SEGMENT_CACHE_SIZE)
+        .expireAfterWrite(DEFAULT_SEGMENT_CACHE_EXPIRE_MS, TimeUnit.MILLISECONDS)
+        .build(new CacheLoader<String, Optional<SegmentPartitionMetadata>>() {
+          @Override
+          public Optional<SegmentPartitionMetadata> load(String segmentKey) {
+            int separatorIndex = segmentKey.indexOf('/');
+            SegmentZKMetadata segmentZKMetadata = ZKMetadataProvider.getSegmentZKMetadata(_propertyStore,
+                segmentKey.substring(0, separatorIndex), segmentKey.substring(separatorIndex + 1));
+            return Optional.ofNullable(segmentZKMetadata != null ? segmentZKMetadata.getPartitionMetadata() : null);
+          }
+        });
+  }
+
+  @Nullable
+  @Override
+  public ColumnPartitionConfig getColumnPartitionConfig(String tableNameWithType, String columnName) {
+    TableConfig tableConfig = _tableCache.getTableConfig(tableNameWithType);
+    if (tableConfig == null) {
+      return null;
+    }
+    IndexingConfig indexingConfig = tableConfig.getIndexingConfig();
+    SegmentPartitionConfig segmentPartitionConfig =
+        indexingConfig != null ? indexingConfig.getSegmentPartitionConfig() : null;
+    if (segmentPartitionConfig == null || segmentPartitionConfig.getColumnPartitionMap() == null) {
+      return null;
+    }
+    return segmentPartitionConfig.getColumnPartitionMap().get(columnName);
+  }
+
+  @Nullable
+  @Override
+  public Integer getSegmentPartitionId(String tableNameWithType, String segmentName, String columnName) {
+    ColumnPartitionConfig columnPartitionConfig = getColumnPartitionConfig(tableNameWithType, columnName);
+    SegmentPartitionMetadata segmentPartitionMetadata =
+        _segmentPartitionMetadataCache.getUnchecked(tableNameWithType + '/' + segmentName).orElse(null);
+    if (columnPartitionConfig == null || segmentPartitionMetadata == null) {
+      return null;
+    }
+    Set<Integer> partitions = segmentPartitionMetadata.getPartitions(columnName);
+    if (partitions == null || partitions.size() != 1) {
+      return null;
+    }
+    // the segment must have been partitioned the same way as the table config specifies.
+    String functionName = segmentPartitionMetadata.getFunctionName(columnName);
+    if (!columnPartitionConfig.getFunctionName().equalsIgnoreCase(functionName)
+        || columnPartitionConfig.getNumPartitions() != segmentPartitionMetadata.getNumPartitions(columnName)) {
+      return null;
+    }
+    return partitions.iterator().next();
+  }
+}
@@ -19,25 +19,39 @@
 package org.apache.pinot.query;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import org.apache.calcite.jdbc.CalciteSchemaBuilder;
 import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.calcite.schema.Statistics;
 import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.query.catalog.PinotCatalog;
 import org.apache.pinot.query.planner.PlannerUtils;
 import org.apache.pinot.query.planner.QueryPlan;
 import org.apache.pinot.query.planner.StageMetadata;
+import org.apache.pinot.query.planner.partitioning.FieldSelectionKeySelector;
 import org.apache.pinot.query.planner.stage.AbstractStageNode;
 import org.apache.pinot.query.planner.stage.AggregateNode;
 import org.apache.pinot.query.planner.stage.FilterNode;
 import org.apache.pinot.query.planner.stage.JoinNode;
 import org.apache.pinot.query.planner.stage.MailboxReceiveNode;
+import org.apache.pinot.query.planner.stage.MailboxSendNode;
 import org.apache.pinot.query.planner.stage.ProjectNode;
+import org.apache.pinot.query.planner.stage.SortNode;
 import org.apache.pinot.query.planner.stage.StageNode;
+import org.apache.pinot.query.routing.TablePartitionInfoProvider;
+import org.apache.pinot.query.routing.WorkerManager;
+import org.apache.pinot.query.type.TypeFactory;
+import org.apache.pinot.query.type.TypeSystem;
+import org.apache.pinot.spi.config.table.ColumnPartitionConfig;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -152,6 +166,183 @@ public class QueryCompilationTest extends QueryEnvironmentTestBase {
     }
   }
 
+  @Test
+  public void testQuerySortLimitPushDown() {
+    String query = "SELECT col1, col3 FROM a WHERE col3 > 0 ORDER BY col3 DESC LIMIT 10 OFFSET 5";
+    QueryPlan queryPlan = _queryEnvironment.planQuery(query);
+    for (Map.Entry<Integer, StageMetadata> e : queryPlan.getStageMetadataMap().entrySet()) {
+      StageNode node = queryPlan.getQueryStageMap().get(e.getKey());
+      while (node != null && !(node instanceof SortNode)) {
+        node = node.getInputs().isEmpty() ? null : node.getInputs().get(0);
+      }
+      if (e.getValue().getScannedTables().size() == 1) {
+        // leaf stage should carry a partial sort that keeps the top (offset + fetch) rows.
+        SortNode sortNode = (SortNode) node;
+        Assert.assertEquals(sortNode.getFetch(), 15);
+        Assert.assertEquals(sortNode.getOffset(), 0);
+        Assert.assertEquals(sortNode.getCollationDirections(),
+            ImmutableList.of(RelFieldCollation.Direction.DESCENDING));
+      } else if (!PlannerUtils.isRootStage(e.getKey())) {
+        // final sort still applies the original offset and fetch.
+        SortNode sortNode = (SortNode) node;
+        Assert.assertEquals(sortNode.getFetch(), 10);
+        Assert.assertEquals(sortNode.getOffset(), 5);
+        Assert.assertTrue(sortNode.getInputs().get(0) instanceof MailboxReceiveNode);
+      }
+    }
+  }
+
+  @Test
+  public void testQueryRangePartitionedSort() {
+    String query = "SELECT col1, col3 FROM a WHERE col3 > 0 ORDER BY col3 DESC, col1";
+    QueryPlan queryPlan = _queryEnvironment.planQuery(query);
+    for (Map.Entry<Integer, StageMetadata> e : queryPlan.getStageMetadataMap().entrySet()) {
+      StageNode node = queryPlan.getQueryStageMap().get(e.getKey());
+      if (PlannerUtils.isRootStage(e.getKey())) {
+        // the ROOT stage receives the sorted ranges in the order of the sort workers.
+        Assert.assertTrue(((MailboxReceiveNode) node).isOrdered());
+      } else if (e.getValue().getScannedTables().size() == 1) {
+        // leaf stage range partitions the rows on the sort keys.
+        MailboxSendNode sendNode = (MailboxSendNode) node;
+        Assert.assertEquals(sendNode.getExchangeType(), RelDistribution.Type.RANGE_DISTRIBUTED);
+        Assert.assertEquals(
+            ((FieldSelectionKeySelector) sendNode.getPartitionKeySelector()).getColumnIndices().size(), 2);
+        Assert.assertEquals(sendNode.getCollationDirections(),
+            ImmutableList.of(RelFieldCollation.Direction.DESCENDING, RelFieldCollation.Direction.ASCENDING));
+      } else {
+        while (!(node instanceof SortNode)) {
+          node = node.getInputs().get(0);
+        }
+        Assert.assertEquals(((MailboxReceiveNode) node.getInputs().get(0)).getExchangeType(),
+            RelDistribution.Type.RANGE_DISTRIBUTED);
+      }
+    }
+
+    // an ORDER BY with LIMIT still sorts on a single worker.
+    queryPlan = _queryEnvironment.planQuery(query + " LIMIT 10");
+    for (StageNode node : queryPlan.getQueryStageMap().values()) {
+      if (node instanceof MailboxSendNode) {
+        Assert.assertNotEquals(((MailboxSendNode) node).getExchangeType(), RelDistribution.Type.RANGE_DISTRIBUTED);
+      } else {
+        Assert.assertFalse(((MailboxReceiveNode) node).isOrdered());
+      }
+    }
+  }
+
+  @Test
+  public void testJoinReorderWithTableStatistics() {
+    Map<String, Double> tableRowCounts = ImmutableMap.of("a", 1_000_000d, "b", 100d, "c", 10_000d);
+    QueryEnvironment queryEnvironment = new QueryEnvironment(new TypeFactory(new TypeSystem()),
+        CalciteSchemaBuilder.asRootSchema(new PinotCatalog(QueryEnvironmentTestUtils.mockTableCache(),
+            tableName -> Statistics.of(tableRowCounts.get(tableName), Collections.emptyList()))),
+        new WorkerManager("localhost", 3, QueryEnvironmentTestUtils.getMockRoutingManager(1, 2)));
+
+    // the smaller table is always placed on the right (build) side of the join.
+    String explain = queryEnvironment.explainQuery("EXPLAIN PLAN FOR SELECT a.col1, b.col3 FROM b JOIN a "
+        + "ON a.col1 = b.col2");
+    Assert.assertTrue(explain.indexOf("table=[[a]]") < explain.indexOf("table=[[b]]"), explain);
+
+    // the largest table is the left-most (probe) input of the reordered join tree, it is never built into a hash table.
+    explain = queryEnvironment.explainQuery("EXPLAIN PLAN FOR SELECT a.col1, b.col3, c.col3 FROM c JOIN b "
+        + "ON b.col2 = c.col2 JOIN a ON a.col1 = b.col1");
+    Assert.assertTrue(explain.indexOf("table=[[a]]") < explain.indexOf("table=[[b]]"), explain);
+    Assert.assertTrue(explain.indexOf("table=[[a]]") < explain.indexOf("table=[[c]]"), explain);
+
+    // outer joins are not reordered.
+    explain = queryEnvironment.explainQuery("EXPLAIN PLAN FOR SELECT a.col1, b.col3 FROM b LEFT JOIN a "
+        + "ON a.col1 = b.col2");
+    Assert.assertTrue(explain.indexOf("table=[[b]]") < explain.indexOf("table=[[a]]"), explain);
+
+    // without table statistics the written join order is kept.
+    explain = _queryEnvironment.explainQuery("EXPLAIN PLAN FOR SELECT a.col1, b.col3 FROM b JOIN a "
+        + "ON a.col1 = b.col2");
+    Assert.assertTrue(explain.indexOf("table=[[b]]") < explain.indexOf("table=[[a]]"), explain);
+  }
+
+  @Test
+  public void testColocatedJoinOfPartitionedTables() {
+    // table a and c are partitioned on col1 into 2 partitions, partition 0 is on server 1 and partition 1 on server 2.
+    Map<String, Integer> segmentPartitions =
+        ImmutableMap.<String, Integer>builder().put("a1", 0).put("a2", 0).put("a3", 1).put("c1", 0).put("c2", 1)
+            .put("c3", 1).build();
+    TablePartitionInfoProvider tablePartitionInfoProvider = new TablePartitionInfoProvider() {
+      @Override
+      public ColumnPartitionConfig getColumnPartitionConfig(String tableNameWithType, String columnName) {
+        return columnName.equals("col1") && !tableNameWithType.startsWith("b") ? new ColumnPartitionConfig("Murmur", 2)
+            : null;
+      }
+
+      @Override
+      public Integer getSegmentPartitionId(String tableNameWithType, String segmentName, String columnName) {
+        return columnName.equals("col1") ? segmentPartitions.get(segmentName) : null;
+      }
+    };
+    QueryEnvironment queryEnvironment = new QueryEnvironment(new TypeFactory(new TypeSystem()),
+        CalciteSchemaBuilder.asRootSchema(new PinotCatalog(QueryEnvironmentTestUtils.mockTableCache())),
+        new WorkerManager("localhost", 3, QueryEnvironmentTestUtils.getMockRoutingManager(1, 2),
+            tablePartitionInfoProvider));
+
+    // joined on the partition column: both sides are exchanged locally and the join runs on both servers.
+    QueryPlan queryPlan = queryEnvironment.planQuery("SELECT a.col1, c.col3 FROM a JOIN c ON a.col1 = c.col1");
+    JoinNode joinNode = findJoinNode(queryPlan);
+    for (StageNode input : joinNode.getInputs()) {
+      Assert.assertEquals(((MailboxReceiveNode) input).getExchangeType(), RelDistribution.Type.SINGLETON);
+      int senderStageId = ((MailboxReceiveNode) input).getSenderStageId();
+      Assert.assertEquals(((MailboxSendNode) queryPlan.getQueryStageMap().get(senderStageId)).getExchangeType(),
+          RelDistribution.Type.SINGLETON);
+    }
+    Assert.assertEquals(queryPlan.getStageMetadataMap().get(joinNode.getStageId()).getServerInstances().stream()
+        .map(ServerInstance::toString).sorted().collect(Collectors.toList()),
+        ImmutableList.of("Server_localhost_1", "Server_localhost_2"));
+
+    // joined on a non-partition column, or with a table that is not co-partitioned: data is shuffled.
+    for (String query : ImmutableList.of("SELECT a.col1, c.col3 FROM a JOIN c ON a.col2 = c.col2",
+        "SELECT a.col1, b.col3 FROM a JOIN b ON a.col1 = b.col1")) {
+      joinNode = findJoinNode(queryEnvironment.planQuery(query));
+      for (StageNode input : joinNode.getInputs()) {
+        Assert.assertEquals(((MailboxReceiveNode) input).getExchangeType(), RelDistribution.Type.HASH_DISTRIBUTED);
+      }
+    }
+  }
+
+  @Test
+  public void testJoinRuntimeFilter() {
+    // the join keys of b are sent to the table scan of a, on its col2 column.
+    QueryPlan queryPlan = _queryEnvironment.planQuery("SELECT a.col1, b.col3 FROM a JOIN b ON a.col2 = b.col1");
+    JoinNode joinNode = findJoinNode(queryPlan);
+    int leftStageId = ((MailboxReceiveNode) joinNode.getInputs().get(0)).getSenderStageId();
+    Assert.assertEquals(joinNode.getRuntimeFilterTargetStageId(), leftStageId);
+    Assert.assertEquals(joinNode.getRuntimeFilterKeyIndex(), 0);
+    MailboxSendNode leftSender = (MailboxSendNode) queryPlan.getQueryStageMap().get(leftStageId);
+    Assert.assertEquals(leftSender.getRuntimeFilterColumn(), "col2");
+    Assert.assertEquals(leftSender.getRuntimeFilterSourceStageId(), joinNode.getStageId());
+    int rightStageId = ((MailboxReceiveNode) joinNode.getInputs().get(1)).getSenderStageId();
+    Assert.assertNull(((MailboxSendNode) queryPlan.getQueryStageMap().get(rightStageId)).getRuntimeFilterColumn());
+
+    // the unmatched left rows are kept by a LEFT join, and a computed join key is not a table column.
+    for (String query : ImmutableList.of("SELECT a.col1, b.col3 FROM a LEFT JOIN b ON a.col2 = b.col1",
+        "SELECT a.col1, b.col3 FROM a JOIN b ON MOD(a.col3, 2) = b.col3")) {
+      queryPlan = _queryEnvironment.planQuery(query);
+      joinNode = findJoinNode(queryPlan);
+      Assert.assertEquals(joinNode.getRuntimeFilterTargetStageId(), JoinNode.NO_RUNTIME_FILTER);
+      leftStageId = ((MailboxReceiveNode) joinNode.getInputs().get(0)).getSenderStageId();
+      Assert.assertNull(((MailboxSendNode) queryPlan.getQueryStageMap().get(leftStageId)).getRuntimeFilterColumn());
+    }
+  }
+
+  private static JoinNode findJoinNode(QueryPlan queryPlan) {
+    for (StageNode stageRoot : queryPlan.getQueryStageMap().values()) {
+      StageNode node = stageRoot;
+      while (node != null && !(node instanceof JoinNode)) {
+        node = node.getInputs().isEmpty() ? null : node.getInputs().get(0);
+      }
+      if (node != null) {
+        return (JoinNode) node;
+      }
+    }
+    throw new IllegalStateException("Unable to find join node in query plan");
+  }
+
   @Test
   public void testQueryRoutingManagerCompilation() {
     String query = "SELECT * FROM d_OFFLINE";
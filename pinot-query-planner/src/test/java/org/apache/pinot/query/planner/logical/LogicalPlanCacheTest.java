@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.planner.logical;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.calcite.jdbc.CalciteSchemaBuilder;
+import org.apache.pinot.common.proto.Plan;
+import org.apache.pinot.query.QueryEnvironment;
+import org.apache.pinot.query.QueryEnvironmentTestBase;
+import org.apache.pinot.query.QueryEnvironmentTestUtils;
+import org.apache.pinot.query.catalog.PinotCatalog;
+import org.apache.pinot.query.planner.QueryPlan;
+import org.apache.pinot.query.planner.stage.AbstractStageNode;
+import org.apache.pinot.query.planner.stage.FilterNode;
+import org.apache.pinot.query.planner.stage.StageNode;
+import org.apache.pinot.query.planner.stage.StageNodeSerDeUtils;
+import org.apache.pinot.query.routing.WorkerManager;
+import org.apache.pinot.query.type.TypeFactory;
+import org.apache.pinot.query.type.TypeSystem;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class LogicalPlanCacheTest extends QueryEnvironmentTestBase {
+  private LogicalPlanCache _planCache;
+  private QueryEnvironment _cachedQueryEnvironment;
+
+  @BeforeClass
+  @Override
+  public void setUp() {
+    super.setUp();
+    _planCache = new LogicalPlanCache(100, 60_000L);
+    _cachedQueryEnvironment = new QueryEnvironment(new TypeFactory(new TypeSystem()),
+        CalciteSchemaBuilder.asRootSchema(new PinotCatalog(QueryEnvironmentTestUtils.mockTableCache())),
+        new WorkerManager("localhost", 3, QueryEnvironmentTestUtils.getMockRoutingManager(1, 2)), _planCache);
+  }
+
+  @Test(dataProvider = "testQueryDataProvider")
+  public void testCachedPlanMatchesCompiledPlan(String query) {
+    // the first call compiles and caches the plan, the second call is bound from the cache.
+    QueryPlan compiledPlan = _cachedQueryEnvironment.planQuery(query);
+    QueryPlan cachedPlan = _cachedQueryEnvironment.planQuery(query);
+    Assert.assertEquals(serialize(cachedPlan), serialize(compiledPlan));
+    Assert.assertEquals(cachedPlan.getQueryStageMap().size(), _queryEnvironment.planQuery(query).getQueryStageMap()
+        .size());
+  }
+
+  @Test
+  public void testLiteralsAreRebound() {
+    _planCache.invalidateAll();
+    _cachedQueryEnvironment.planQuery("SELECT a.col1, a.col3 FROM a WHERE a.col3 >= 0 AND a.col2 = 'a'");
+    Assert.assertEquals(_planCache.size(), 1);
+
+    // only the literals differ, the plan is served from the cache.
+    String query = "SELECT a.col1, a.col3 FROM a WHERE a.col3 >= 7 AND a.col2 = 'foo'";
+    QueryPlan queryPlan = _cachedQueryEnvironment.planQuery(query);
+    Assert.assertEquals(_planCache.size(), 1);
+    Set<Object> literals = new HashSet<>();
+    for (StageNode stageRoot : queryPlan.getQueryStageMap().values()) {
+      collectFilterLiterals(stageRoot, literals);
+    }
+    Assert.assertTrue(literals.contains(7), literals.toString());
+    Assert.assertTrue(literals.contains("foo"), literals.toString());
+    Assert.assertFalse(literals.contains(0), literals.toString());
+    Assert.assertEquals(serialize(queryPlan), serialize(_queryEnvironment.planQuery(query)));
+
+    // a different query shape is cached separately.
+    _cachedQueryEnvironment.planQuery("SELECT a.col1 FROM a WHERE a.col3 >= 7 AND a.col2 = 'foo' LIMIT 10");
+    Assert.assertEquals(_planCache.size(), 2);
+
+    _cachedQueryEnvironment.invalidatePlanCache();
+    Assert.assertEquals(_planCache.size(), 0);
+  }
+
+  @Test
+  public void testQueryNotPlannableWithParameters() {
+    // the select list and the group-by share the literal, they no longer match once parameterized.
+    String query = "SELECT a.col3 > 5, COUNT(*) FROM a GROUP BY a.col3 > 5";
+    QueryPlan queryPlan = _cachedQueryEnvironment.planQuery(query);
+    Assert.assertEquals(serialize(queryPlan), serialize(_queryEnvironment.planQuery(query)));
+    Assert.assertEquals(serialize(_cachedQueryEnvironment.planQuery(query)), serialize(queryPlan));
+  }
+
+  private static List<Plan.StageNode> serialize(QueryPlan queryPlan) {
+    List<Plan.StageNode> serializedStageNodes = new ArrayList<>();
+    for (Map.Entry<Integer, StageNode> entry : queryPlan.getQueryStageMap().entrySet()) {
+      serializedStageNodes.add(StageNodeSerDeUtils.serializeStageNode((AbstractStageNode) entry.getValue()));
+    }
+    return serializedStageNodes;
+  }
+
+  private static void collectFilterLiterals(StageNode stageNode, Set<Object> literals) {
+    if (stageNode instanceof FilterNode) {
+      collectLiterals(((FilterNode) stageNode).getCondition(), literals);
+    }
+    for (StageNode input : stageNode.getInputs()) {
+      collectFilterLiterals(input, literals);
+    }
+  }
+
+  private static void collectLiterals(RexExpression rexExpression, Set<Object> literals) {
+    if (rexExpression instanceof RexExpression.Literal) {
+      literals.add(((RexExpression.Literal) rexExpression).getValue());
+    } else if (rexExpression instanceof RexExpression.FunctionCall) {
+      for (RexExpression operand : ((RexExpression.FunctionCall) rexExpression).getFunctionOperands()) {
+        collectLiterals(operand, literals);
+      }
+    }
+  }
+}
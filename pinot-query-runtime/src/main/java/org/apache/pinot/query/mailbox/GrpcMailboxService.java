@@ -18,10 +18,14 @@
  */
 package org.apache.pinot.query.mailbox;
 
+import com.google.common.base.Preconditions;
 import io.grpc.ManagedChannel;
 import java.util.concurrent.ConcurrentHashMap;
-import org.apache.pinot.common.proto.Mailbox.MailboxContent;
+import java.util.function.Consumer;
 import org.apache.pinot.query.mailbox.channel.ChannelManager;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.service.QueryConfig;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
 import org.apache.pinot.spi.env.PinotConfiguration;
 
 
@@ -41,22 +45,53 @@ import org.apache.pinot.spi.env.PinotConfiguration;
  *   <li>the job_id should be uniquely identifying a send/receving pair, for example if one bundle job requires
  *   to open 2 mailboxes, they should use {job_id}_1 and {job_id}_2 to distinguish the 2 different mailbox.</li>
  * </ul>
+ *
+ * <p>Flow control: a receiving mailbox only pulls as many messages from the stream as it has room for in its buffer,
+ * the sender is then held back by the gRPC transport and reports via {@link SendingMailbox#isReady()} that it should
+ * yield. Small blocks are coalesced up to a target size on the sending side, and the block payloads can optionally be
+ * compressed.
  */
-public class GrpcMailboxService implements MailboxService<MailboxContent> {
+public class GrpcMailboxService implements MailboxService<TransferableBlock> {
   // channel manager
   private final ChannelManager _channelManager;
   private final String _hostname;
   private final int _mailboxPort;
+  private final Consumer<String> _receivedMailContentCallback;
+  private final long _sendBlockTargetBytes;
+  private final int _receiveBufferCapacity;
+  private final ChunkCompressionType _compressionType;
 
   // maintaining a list of registered mailboxes.
-  private final ConcurrentHashMap<String, ReceivingMailbox<MailboxContent>> _receivingMailboxMap =
+  private final ConcurrentHashMap<String, ReceivingMailbox<TransferableBlock>> _receivingMailboxMap =
       new ConcurrentHashMap<>();
-  private final ConcurrentHashMap<String, SendingMailbox<MailboxContent>> _sendingMailboxMap =
+  private final ConcurrentHashMap<String, SendingMailbox<TransferableBlock>> _sendingMailboxMap =
       new ConcurrentHashMap<>();
 
   public GrpcMailboxService(String hostname, int mailboxPort, PinotConfiguration extraConfig) {
+    this(hostname, mailboxPort, extraConfig, mailboxId -> {
+    });
+  }
+
+  /**
+   * @param receivedMailContentCallback invoked with the mailbox ID whenever new content (including end of stream)
+   *                                    arrives at a receiving mailbox or a sending mailbox becomes ready to send
+   *                                    again, e.g. to resume the operator chain using it.
+   */
+  public GrpcMailboxService(String hostname, int mailboxPort, PinotConfiguration extraConfig,
+      Consumer<String> receivedMailContentCallback) {
     _hostname = hostname;
     _mailboxPort = mailboxPort;
+    _receivedMailContentCallback = receivedMailContentCallback;
+    _sendBlockTargetBytes = extraConfig.getProperty(QueryConfig.KEY_OF_MAILBOX_SEND_BLOCK_TARGET_BYTES,
+        QueryConfig.DEFAULT_MAILBOX_SEND_BLOCK_TARGET_BYTES);
+    _receiveBufferCapacity = extraConfig.getProperty(QueryConfig.KEY_OF_MAILBOX_RECEIVE_BUFFER_CAPACITY,
+        QueryConfig.DEFAULT_MAILBOX_RECEIVE_BUFFER_CAPACITY);
+    _compressionType = ChunkCompressionType.valueOf(extraConfig.getProperty(
+        QueryConfig.KEY_OF_MAILBOX_COMPRESSION_TYPE, QueryConfig.DEFAULT_MAILBOX_COMPRESSION_TYPE).toUpperCase());
+    Preconditions.checkArgument(_compressionType == ChunkCompressionType.PASS_THROUGH
+            || _compressionType == ChunkCompressionType.LZ4 || _compressionType == ChunkCompressionType.ZSTANDARD,
+        "Unsupported mailbox compression type: %s", _compressionType);
+    Preconditions.checkArgument(_receiveBufferCapacity > 0, "Mailbox receive buffer capacity must be positive");
     _channelManager = new ChannelManager(this, extraConfig);
   }
 
@@ -84,7 +119,7 @@ public class GrpcMailboxService implements MailboxService<MailboxContent> {
    * Register a mailbox, mailbox needs to be registered before use.
    * @param mailboxId the id of the mailbox.
    */
-  public SendingMailbox<MailboxContent> getSendingMailbox(String mailboxId) {
+  public SendingMailbox<TransferableBlock> getSendingMailbox(String mailboxId) {
     return _sendingMailboxMap.computeIfAbsent(mailboxId, (mId) -> new GrpcSendingMailbox(mId, this));
   }
 
@@ -92,10 +127,48 @@ public class GrpcMailboxService implements MailboxService<MailboxContent> {
    * Register a mailbox, mailbox needs to be registered before use.
    * @param mailboxId the id of the mailbox.
    */
-  public ReceivingMailbox<MailboxContent> getReceivingMailbox(String mailboxId) {
+  public ReceivingMailbox<TransferableBlock> getReceivingMailbox(String mailboxId) {
     return _receivingMailboxMap.computeIfAbsent(mailboxId, (mId) -> new GrpcReceivingMailbox(mId, this));
   }
 
+  @Override
+  public void releaseReceivingMailbox(String mailboxId) {
+    _receivingMailboxMap.remove(mailboxId);
+  }
+
+  @Override
+  public void releaseSendingMailbox(String mailboxId) {
+    _sendingMailboxMap.remove(mailboxId);
+  }
+
+  /**
+   * Notifies that new content has arrived at the receiving mailbox.
+   * @param mailboxId the id of the mailbox.
+   */
+  public void onMailContentReceived(String mailboxId) {
+    _receivedMailContentCallback.accept(mailboxId);
+  }
+
+  /**
+   * Notifies that the sending mailbox is ready to send data again after having been held back by flow control.
+   * @param mailboxId the id of the mailbox.
+   */
+  public void onSendingMailboxReady(String mailboxId) {
+    _receivedMailContentCallback.accept(mailboxId);
+  }
+
+  public long getSendBlockTargetBytes() {
+    return _sendBlockTargetBytes;
+  }
+
+  public int getReceiveBufferCapacity() {
+    return _receiveBufferCapacity;
+  }
+
+  public ChunkCompressionType getCompressionType() {
+    return _compressionType;
+  }
+
   public ManagedChannel getChannel(String mailboxId) {
     return _channelManager.getChannel(Utils.constructChannelId(mailboxId));
   }
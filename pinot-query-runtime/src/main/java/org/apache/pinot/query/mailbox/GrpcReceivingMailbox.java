@@ -18,24 +18,39 @@
  */
 package org.apache.pinot.query.mailbox;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.proto.Mailbox.MailboxContent;
+import org.apache.pinot.core.common.datablock.DataBlockUtils;
+import org.apache.pinot.query.mailbox.channel.ChannelUtils;
 import org.apache.pinot.query.mailbox.channel.MailboxContentStreamObserver;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.segment.local.io.compression.ChunkCompressorFactory;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
+import org.apache.pinot.segment.spi.memory.CleanerUtil;
 
 
 /**
  * GRPC implementation of the {@link ReceivingMailbox}.
+ *
+ * <p>The payload of each received {@link MailboxContent} is decompressed if needed, and deserialized back into a
+ * {@link TransferableBlock}.
  */
-public class GrpcReceivingMailbox implements ReceivingMailbox<MailboxContent> {
-  private static final long DEFAULT_MAILBOX_INIT_TIMEOUT = 100L;
+public class GrpcReceivingMailbox implements ReceivingMailbox<TransferableBlock> {
   private final GrpcMailboxService _mailboxService;
   private final String _mailboxId;
   private final CountDownLatch _initializationLatch;
   private final AtomicInteger _totalMsgReceived = new AtomicInteger(0);
+  private long _numBytesReceived;
 
   private MailboxContentStreamObserver _contentStreamObserver;
+  // direct buffers reused to decompress the payloads (some of the codecs only work on direct buffers), only grown when
+  // a payload doesn't fit, and released once the end of stream is received.
+  private ByteBuffer _compressedBuffer;
+  private ByteBuffer _uncompressedBuffer;
 
   public GrpcReceivingMailbox(String mailboxId, GrpcMailboxService mailboxService) {
     _mailboxService = mailboxService;
@@ -51,14 +66,33 @@ public class GrpcReceivingMailbox implements ReceivingMailbox<MailboxContent> {
   }
 
   @Override
-  public MailboxContent receive()
+  public TransferableBlock receive()
       throws Exception {
-    MailboxContent mailboxContent = null;
-    if (waitForInitialize()) {
-      mailboxContent = _contentStreamObserver.poll();
-      _totalMsgReceived.incrementAndGet();
+    if (!isInitialized()) {
+      return null;
+    }
+    MailboxContent mailboxContent = _contentStreamObserver.poll();
+    if (mailboxContent == null) {
+      return null;
+    }
+    _totalMsgReceived.incrementAndGet();
+    _numBytesReceived += mailboxContent.getPayload().size();
+    ByteBuffer byteBuffer;
+    try {
+      byteBuffer = getPayload(mailboxContent);
+    } catch (Exception e) {
+      releaseBuffers();
+      throw e;
     }
-    return mailboxContent;
+    if (mailboxContent.getMetadataMap().containsKey(ChannelUtils.MAILBOX_METADATA_END_OF_STREAM_KEY)) {
+      releaseBuffers();
+    }
+    return byteBuffer.hasRemaining() ? new TransferableBlock(DataBlockUtils.getDataBlock(byteBuffer)) : null;
+  }
+
+  @Override
+  public long getNumBytesReceived() {
+    return _numBytesReceived;
   }
 
   @Override
@@ -71,18 +105,52 @@ public class GrpcReceivingMailbox implements ReceivingMailbox<MailboxContent> {
     return isInitialized() && _contentStreamObserver.isCompleted();
   }
 
-  // TODO: fix busy wait. This should be guarded by timeout.
-  private boolean waitForInitialize()
-      throws Exception {
-    if (_initializationLatch.getCount() > 0) {
-      return _initializationLatch.await(DEFAULT_MAILBOX_INIT_TIMEOUT, TimeUnit.MILLISECONDS);
-    } else {
-      return true;
-    }
-  }
-
   @Override
   public String getMailboxId() {
     return _mailboxId;
   }
+
+  private ByteBuffer getPayload(MailboxContent mailboxContent)
+      throws IOException {
+    String compressionType = mailboxContent.getMetadataMap().get(ChannelUtils.MAILBOX_METADATA_COMPRESSION_TYPE_KEY);
+    if (compressionType == null) {
+      return mailboxContent.getPayload().asReadOnlyByteBuffer();
+    }
+    int uncompressedSize =
+        Integer.parseInt(mailboxContent.getMetadataMap().get(ChannelUtils.MAILBOX_METADATA_UNCOMPRESSED_SIZE_KEY));
+    _compressedBuffer = getDirectBuffer(_compressedBuffer, mailboxContent.getPayload().size());
+    _uncompressedBuffer = getDirectBuffer(_uncompressedBuffer, uncompressedSize);
+    mailboxContent.getPayload().copyTo(_compressedBuffer);
+    _compressedBuffer.flip();
+    ChunkCompressorFactory.getDecompressor(ChunkCompressionType.valueOf(compressionType))
+        .decompress(_compressedBuffer, _uncompressedBuffer);
+    byte[] payload = new byte[uncompressedSize];
+    _uncompressedBuffer.get(payload);
+    return ByteBuffer.wrap(payload);
+  }
+
+  /**
+   * Returns the given buffer cleared if it can hold the given number of bytes, or a new direct buffer otherwise.
+   */
+  private static ByteBuffer getDirectBuffer(@Nullable ByteBuffer buffer, int capacity) {
+    if (buffer != null) {
+      if (buffer.capacity() >= capacity) {
+        buffer.clear();
+        return buffer;
+      }
+      CleanerUtil.cleanQuietly(buffer);
+    }
+    return ByteBuffer.allocateDirect(capacity);
+  }
+
+  private void releaseBuffers() {
+    if (_compressedBuffer != null) {
+      CleanerUtil.cleanQuietly(_compressedBuffer);
+      _compressedBuffer = null;
+    }
+    if (_uncompressedBuffer != null) {
+      CleanerUtil.cleanQuietly(_uncompressedBuffer);
+      _uncompressedBuffer = null;
+    }
+  }
 }
@@ -18,24 +18,62 @@
  */
 package org.apache.pinot.query.mailbox;
 
+import com.google.protobuf.ByteString;
 import io.grpc.ManagedChannel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.proto.Mailbox.MailboxContent;
 import org.apache.pinot.common.proto.PinotMailboxGrpc;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlockPartitioner;
 import org.apache.pinot.query.mailbox.channel.ChannelUtils;
 import org.apache.pinot.query.mailbox.channel.MailboxStatusStreamObserver;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.operator.OperatorUtils;
+import org.apache.pinot.segment.local.io.compression.ChunkCompressorFactory;
+import org.apache.pinot.segment.spi.compression.ChunkCompressionType;
+import org.apache.pinot.segment.spi.compression.ChunkCompressor;
+import org.apache.pinot.segment.spi.memory.CleanerUtil;
 
 /**
  * GRPC implementation of the {@link SendingMailbox}.
+ *
+ * <p>Each {@link TransferableBlock} is serialized into the payload of a {@link MailboxContent} before it is sent.
+ * Row and columnar blocks smaller than {@link GrpcMailboxService#getSendBlockTargetBytes()} are coalesced until the
+ * target size is reached (or the end of stream is sent), so that tiny blocks don't each become a separate message:
+ * blocks holding rows are merged row by row, and columnar blocks that are already binary-packed are concatenated column
+ * by column with {@link ColumnarDataBlockPartitioner#concat(List)}. Payloads are compressed with
+ * {@link GrpcMailboxService#getCompressionType()}, which is recorded in the message metadata.
  */
-public class GrpcSendingMailbox implements SendingMailbox<MailboxContent> {
+public class GrpcSendingMailbox implements SendingMailbox<TransferableBlock> {
+  // payloads smaller than this are not worth compressing, e.g. end of stream blocks.
+  private static final int MIN_COMPRESSION_BYTES = 1024;
+
   private final GrpcMailboxService _mailboxService;
   private final String _mailboxId;
   private final AtomicBoolean _initialized = new AtomicBoolean(false);
   private final AtomicInteger _totalMsgSent = new AtomicInteger(0);
+  private long _numBytesSent;
 
   private MailboxStatusStreamObserver _statusStreamObserver;
+  // rows of the coalesced blocks not sent yet.
+  private List<Object[]> _pendingRows = new ArrayList<>();
+  // binary-packed columnar blocks not sent yet, never pending together with rows.
+  private List<ColumnarDataBlock> _pendingDataBlocks = new ArrayList<>();
+  private long _pendingBytes;
+  private DataSchema _pendingDataSchema;
+  private BaseDataBlock.Type _pendingType;
+  // direct buffers reused to compress the payloads (some of the codecs only work on direct buffers), only grown when a
+  // payload doesn't fit, and released once the mailbox completes.
+  private ByteBuffer _uncompressedBuffer;
+  private ByteBuffer _compressedBuffer;
 
   public GrpcSendingMailbox(String mailboxId, GrpcMailboxService mailboxService) {
     _mailboxService = mailboxService;
@@ -47,7 +85,7 @@ public class GrpcSendingMailbox implements SendingMailbox<MailboxContent> {
       throws UnsupportedOperationException {
     ManagedChannel channel = _mailboxService.getChannel(_mailboxId);
     PinotMailboxGrpc.PinotMailboxStub stub = PinotMailboxGrpc.newStub(channel);
-    _statusStreamObserver = new MailboxStatusStreamObserver();
+    _statusStreamObserver = new MailboxStatusStreamObserver(() -> _mailboxService.onSendingMailboxReady(_mailboxId));
     _statusStreamObserver.init(stub.open(_statusStreamObserver));
     // send a begin-of-stream message.
     _statusStreamObserver.send(MailboxContent.newBuilder()
@@ -58,23 +96,143 @@ public class GrpcSendingMailbox implements SendingMailbox<MailboxContent> {
   }
 
   @Override
-  public void send(MailboxContent data)
-      throws UnsupportedOperationException {
+  public void send(TransferableBlock block)
+      throws UnsupportedOperationException, IOException {
     if (!_initialized.get()) {
       // initialization is special
       init();
     }
-    _statusStreamObserver.send(data);
-    _totalMsgSent.incrementAndGet();
+    BaseDataBlock.Type type = block.getType();
+    boolean canCoalesce = type == BaseDataBlock.Type.ROW || type == BaseDataBlock.Type.COLUMNAR;
+    boolean coalesceRows = type == BaseDataBlock.Type.ROW || block.isContainerBacked();
+    boolean pendingOtherFormat = coalesceRows ? !_pendingDataBlocks.isEmpty() : !_pendingRows.isEmpty();
+    if (!canCoalesce || type != _pendingType || pendingOtherFormat) {
+      flush();
+    }
+    if (!canCoalesce) {
+      sendBlock(block);
+      return;
+    }
+    if (coalesceRows) {
+      DataSchema.ColumnDataType[] storedColumnDataTypes = block.getDataSchema().getStoredColumnDataTypes();
+      for (Object[] row : block.getContainer()) {
+        _pendingRows.add(row);
+        _pendingBytes += OperatorUtils.estimateRowBytes(row, storedColumnDataTypes);
+      }
+    } else {
+      ColumnarDataBlock dataBlock = (ColumnarDataBlock) block.getDataBlock();
+      _pendingDataBlocks.add(dataBlock);
+      _pendingBytes += dataBlock.getDataSizeInBytes();
+    }
+    _pendingDataSchema = block.getDataSchema();
+    _pendingType = type;
+    if (_pendingBytes >= _mailboxService.getSendBlockTargetBytes()) {
+      flush();
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return !_initialized.get() || _statusStreamObserver.isReady();
   }
 
   @Override
   public void complete() {
+    try {
+      flush();
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to send the coalesced block via mailbox: " + _mailboxId, e);
+    } finally {
+      releaseBuffers();
+    }
     _statusStreamObserver.complete();
   }
 
+  @Override
+  public long getNumBytesSent() {
+    // the pending blocks are not serialized yet, count their estimated size.
+    return _numBytesSent + _pendingBytes;
+  }
+
   @Override
   public String getMailboxId() {
     return _mailboxId;
   }
+
+  private void flush()
+      throws IOException {
+    if (!_pendingRows.isEmpty()) {
+      TransferableBlock block = new TransferableBlock(_pendingRows, _pendingDataSchema, _pendingType);
+      _pendingRows = new ArrayList<>();
+      _pendingBytes = 0;
+      sendBlock(block);
+    } else if (!_pendingDataBlocks.isEmpty()) {
+      TransferableBlock block = new TransferableBlock(ColumnarDataBlockPartitioner.concat(_pendingDataBlocks));
+      _pendingDataBlocks = new ArrayList<>();
+      _pendingBytes = 0;
+      sendBlock(block);
+    }
+  }
+
+  private void sendBlock(TransferableBlock block)
+      throws IOException {
+    MailboxContent mailboxContent = toMailboxContent(block);
+    _statusStreamObserver.send(mailboxContent);
+    _numBytesSent += mailboxContent.getPayload().size();
+    _totalMsgSent.incrementAndGet();
+  }
+
+  private MailboxContent toMailboxContent(TransferableBlock block)
+      throws IOException {
+    MailboxContent.Builder builder = MailboxContent.newBuilder().setMailboxId(_mailboxId);
+    byte[] payload = block.getDataBlock().toBytes();
+    ChunkCompressionType compressionType = _mailboxService.getCompressionType();
+    if (compressionType != ChunkCompressionType.PASS_THROUGH && payload.length >= MIN_COMPRESSION_BYTES) {
+      builder.setPayload(compress(payload, compressionType))
+          .putMetadata(ChannelUtils.MAILBOX_METADATA_COMPRESSION_TYPE_KEY, compressionType.name())
+          .putMetadata(ChannelUtils.MAILBOX_METADATA_UNCOMPRESSED_SIZE_KEY, Integer.toString(payload.length));
+    } else {
+      builder.setPayload(ByteString.copyFrom(payload));
+    }
+    if (block.isEndOfStreamBlock()) {
+      builder.putMetadata(ChannelUtils.MAILBOX_METADATA_END_OF_STREAM_KEY, "true");
+    }
+    return builder.build();
+  }
+
+  private ByteString compress(byte[] payload, ChunkCompressionType compressionType)
+      throws IOException {
+    ChunkCompressor compressor = ChunkCompressorFactory.getCompressor(compressionType);
+    _uncompressedBuffer = getDirectBuffer(_uncompressedBuffer, payload.length);
+    _compressedBuffer = getDirectBuffer(_compressedBuffer, compressor.maxCompressedSize(payload.length));
+    _uncompressedBuffer.put(payload);
+    _uncompressedBuffer.flip();
+    compressor.compress(_uncompressedBuffer, _compressedBuffer);
+    return ByteString.copyFrom(_compressedBuffer);
+  }
+
+  /**
+   * Returns the given buffer cleared if it can hold the given number of bytes, or a new direct buffer otherwise.
+   */
+  private static ByteBuffer getDirectBuffer(@Nullable ByteBuffer buffer, int capacity) {
+    if (buffer != null) {
+      if (buffer.capacity() >= capacity) {
+        buffer.clear();
+        return buffer;
+      }
+      CleanerUtil.cleanQuietly(buffer);
+    }
+    return ByteBuffer.allocateDirect(capacity);
+  }
+
+  private void releaseBuffers() {
+    if (_uncompressedBuffer != null) {
+      CleanerUtil.cleanQuietly(_uncompressedBuffer);
+      _uncompressedBuffer = null;
+    }
+    if (_compressedBuffer != null) {
+      CleanerUtil.cleanQuietly(_compressedBuffer);
+      _compressedBuffer = null;
+    }
+  }
 }
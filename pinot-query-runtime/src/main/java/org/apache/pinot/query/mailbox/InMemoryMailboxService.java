@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.mailbox;
+
+import com.google.common.base.Preconditions;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.service.QueryConfig;
+
+
+/**
+ * In-memory implementation of {@link MailboxService}, for mailboxes whose sender and receiver both live in this
+ * process.
+ *
+ * <p>{@link TransferableBlock}s are handed from the {@link InMemorySendingMailbox} to the matching
+ * {@link InMemoryReceivingMailbox} by reference, so they are never serialized nor copied.
+ */
+public class InMemoryMailboxService implements MailboxService<TransferableBlock> {
+  private final String _hostname;
+  private final int _mailboxPort;
+  private final int _receiveBufferCapacity;
+  private final Consumer<String> _receivedMailContentCallback;
+
+  // maintaining a list of registered mailboxes.
+  private final ConcurrentHashMap<String, InMemoryReceivingMailbox> _receivingMailboxMap = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, InMemorySendingMailbox> _sendingMailboxMap = new ConcurrentHashMap<>();
+
+  public InMemoryMailboxService(String hostname, int mailboxPort) {
+    this(hostname, mailboxPort, mailboxId -> {
+    });
+  }
+
+  public InMemoryMailboxService(String hostname, int mailboxPort, Consumer<String> receivedMailContentCallback) {
+    this(hostname, mailboxPort, QueryConfig.DEFAULT_MAILBOX_RECEIVE_BUFFER_CAPACITY, receivedMailContentCallback);
+  }
+
+  /**
+   * @param receiveBufferCapacity max number of blocks buffered by a receiving mailbox before the sender is held back.
+   * @param receivedMailContentCallback invoked with the mailbox ID whenever new content (including end of stream)
+   *                                    arrives at a receiving mailbox or a full receiving mailbox is drained, e.g. to
+   *                                    resume the operator chains using it.
+   */
+  public InMemoryMailboxService(String hostname, int mailboxPort, int receiveBufferCapacity,
+      Consumer<String> receivedMailContentCallback) {
+    Preconditions.checkArgument(receiveBufferCapacity > 0, "Mailbox receive buffer capacity must be positive");
+    _hostname = hostname;
+    _mailboxPort = mailboxPort;
+    _receiveBufferCapacity = receiveBufferCapacity;
+    _receivedMailContentCallback = receivedMailContentCallback;
+  }
+
+  @Override
+  public void start() {
+  }
+
+  @Override
+  public void shutdown() {
+  }
+
+  @Override
+  public String getHostname() {
+    return _hostname;
+  }
+
+  @Override
+  public int getMailboxPort() {
+    return _mailboxPort;
+  }
+
+  @Override
+  public ReceivingMailbox<TransferableBlock> getReceivingMailbox(String mailboxId) {
+    return getInMemoryReceivingMailbox(mailboxId);
+  }
+
+  @Override
+  public SendingMailbox<TransferableBlock> getSendingMailbox(String mailboxId) {
+    return _sendingMailboxMap.computeIfAbsent(mailboxId,
+        (mId) -> new InMemorySendingMailbox(mId, getInMemoryReceivingMailbox(mId)));
+  }
+
+  @Override
+  public void releaseReceivingMailbox(String mailboxId) {
+    // the sending mailbox of the same id holds the receiving mailbox, release it as well.
+    _sendingMailboxMap.remove(mailboxId);
+    _receivingMailboxMap.remove(mailboxId);
+  }
+
+  @Override
+  public void releaseSendingMailbox(String mailboxId) {
+    _sendingMailboxMap.remove(mailboxId);
+  }
+
+  /**
+   * Notifies that new content has arrived at the receiving mailbox.
+   * @param mailboxId the id of the mailbox.
+   */
+  void onMailContentReceived(String mailboxId) {
+    _receivedMailContentCallback.accept(mailboxId);
+  }
+
+  private InMemoryReceivingMailbox getInMemoryReceivingMailbox(String mailboxId) {
+    return _receivingMailboxMap.computeIfAbsent(mailboxId,
+        (mId) -> new InMemoryReceivingMailbox(mId, this, _receiveBufferCapacity));
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.mailbox;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+
+
+/**
+ * In-memory implementation of the {@link ReceivingMailbox}.
+ *
+ * <p>The sender runs on the same (shared) worker threads as the receiver, so it must never block waiting for the
+ * receiver to drain the mailbox. Instead, the mailbox is full once it holds {@code capacity} blocks, and the sender
+ * yields while {@link InMemorySendingMailbox#isReady()} is {@code false} (same as the gRPC mailbox flow control). The
+ * sender is notified once the receiver drains the mailbox below its capacity. A block is always accepted (e.g. the
+ * blocks of a partitioned upstream block, or the end of stream), so the capacity might be exceeded by a few blocks.
+ */
+public class InMemoryReceivingMailbox implements ReceivingMailbox<TransferableBlock> {
+  private final String _mailboxId;
+  private final InMemoryMailboxService _mailboxService;
+  private final int _capacity;
+  private final ConcurrentLinkedQueue<TransferableBlock> _queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger _numBlocks = new AtomicInteger();
+
+  private volatile boolean _initialized;
+  private volatile boolean _completed;
+
+  public InMemoryReceivingMailbox(String mailboxId, InMemoryMailboxService mailboxService, int capacity) {
+    _mailboxId = mailboxId;
+    _mailboxService = mailboxService;
+    _capacity = capacity;
+  }
+
+  void offer(TransferableBlock block) {
+    _numBlocks.incrementAndGet();
+    _queue.offer(block);
+    _initialized = true;
+    _mailboxService.onMailContentReceived(_mailboxId);
+  }
+
+  void complete() {
+    _initialized = true;
+    _completed = true;
+    _mailboxService.onMailContentReceived(_mailboxId);
+  }
+
+  boolean isFull() {
+    return _numBlocks.get() >= _capacity;
+  }
+
+  @Override
+  public TransferableBlock receive() {
+    TransferableBlock block = _queue.poll();
+    if (block != null && _numBlocks.getAndDecrement() == _capacity) {
+      // the mailbox is no longer full, resume the sender.
+      _mailboxService.onMailContentReceived(_mailboxId);
+    }
+    return block;
+  }
+
+  @Override
+  public long getNumBytesReceived() {
+    return 0;
+  }
+
+  @Override
+  public boolean isInitialized() {
+    return _initialized;
+  }
+
+  @Override
+  public boolean isClosed() {
+    return _completed && _queue.isEmpty();
+  }
+
+  @Override
+  public String getMailboxId() {
+    return _mailboxId;
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.mailbox;
+
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+
+
+/**
+ * In-memory implementation of the {@link SendingMailbox}.
+ *
+ * <p>Blocks are enqueued directly into the {@link InMemoryReceivingMailbox} by reference, thus a block (and the rows it
+ * contains) must not be modified once it has been sent. The mailbox is not ready while the receiving mailbox is full.
+ */
+public class InMemorySendingMailbox implements SendingMailbox<TransferableBlock> {
+  private final String _mailboxId;
+  private final InMemoryReceivingMailbox _receivingMailbox;
+
+  public InMemorySendingMailbox(String mailboxId, InMemoryReceivingMailbox receivingMailbox) {
+    _mailboxId = mailboxId;
+    _receivingMailbox = receivingMailbox;
+  }
+
+  @Override
+  public void send(TransferableBlock block) {
+    _receivingMailbox.offer(block);
+  }
+
+  @Override
+  public boolean isReady() {
+    return !_receivingMailbox.isFull();
+  }
+
+  @Override
+  public void complete() {
+    _receivingMailbox.complete();
+  }
+
+  @Override
+  public long getNumBytesSent() {
+    return 0;
+  }
+
+  @Override
+  public String getMailboxId() {
+    return _mailboxId;
+  }
+}
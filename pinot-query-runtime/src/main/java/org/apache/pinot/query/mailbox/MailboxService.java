@@ -67,4 +67,19 @@ public interface MailboxService<T> {
    * @return a sending mailbox.
    */
   SendingMailbox<T> getSendingMailbox(String mailboxId);
+
+  /**
+   * Releases a receiving mailbox by {@link MailboxIdentifier} once it is no longer used, e.g. after its end of stream
+   * is received. Content arriving at the mailbox afterwards would construct it again.
+   *
+   * @param mailboxId mailbox identifier.
+   */
+  void releaseReceivingMailbox(String mailboxId);
+
+  /**
+   * Releases a sending mailbox by {@link MailboxIdentifier} once it is no longer used, i.e. after it is completed.
+   *
+   * @param mailboxId mailbox identifier.
+   */
+  void releaseSendingMailbox(String mailboxId);
 }
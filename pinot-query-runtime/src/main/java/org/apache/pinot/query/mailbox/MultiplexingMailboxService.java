@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.mailbox;
+
+import java.util.function.Consumer;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.service.QueryConfig;
+import org.apache.pinot.spi.env.PinotConfiguration;
+
+
+/**
+ * {@link MailboxService} that picks the transport per mailbox: mailboxes whose sender and receiver are the same
+ * host:port (i.e. both stages run within this process) go through the {@link InMemoryMailboxService}, all the others
+ * go through the {@link GrpcMailboxService}.
+ */
+public class MultiplexingMailboxService implements MailboxService<TransferableBlock> {
+  private final GrpcMailboxService _grpcMailboxService;
+  private final InMemoryMailboxService _inMemoryMailboxService;
+
+  public MultiplexingMailboxService(GrpcMailboxService grpcMailboxService,
+      InMemoryMailboxService inMemoryMailboxService) {
+    _grpcMailboxService = grpcMailboxService;
+    _inMemoryMailboxService = inMemoryMailboxService;
+  }
+
+  /**
+   * @param receivedMailContentCallback invoked with the mailbox ID whenever new content (including end of stream)
+   *                                    arrives at a receiving mailbox, regardless of the transport.
+   */
+  public static MultiplexingMailboxService newInstance(String hostname, int mailboxPort,
+      PinotConfiguration extraConfig, Consumer<String> receivedMailContentCallback) {
+    return new MultiplexingMailboxService(
+        new GrpcMailboxService(hostname, mailboxPort, extraConfig, receivedMailContentCallback),
+        new InMemoryMailboxService(hostname, mailboxPort,
+            extraConfig.getProperty(QueryConfig.KEY_OF_MAILBOX_RECEIVE_BUFFER_CAPACITY,
+                QueryConfig.DEFAULT_MAILBOX_RECEIVE_BUFFER_CAPACITY), receivedMailContentCallback));
+  }
+
+  @Override
+  public void start() {
+    _grpcMailboxService.start();
+    _inMemoryMailboxService.start();
+  }
+
+  @Override
+  public void shutdown() {
+    _grpcMailboxService.shutdown();
+    _inMemoryMailboxService.shutdown();
+  }
+
+  @Override
+  public String getHostname() {
+    return _grpcMailboxService.getHostname();
+  }
+
+  @Override
+  public int getMailboxPort() {
+    return _grpcMailboxService.getMailboxPort();
+  }
+
+  @Override
+  public ReceivingMailbox<TransferableBlock> getReceivingMailbox(String mailboxId) {
+    return isLocal(mailboxId) ? _inMemoryMailboxService.getReceivingMailbox(mailboxId)
+        : _grpcMailboxService.getReceivingMailbox(mailboxId);
+  }
+
+  @Override
+  public SendingMailbox<TransferableBlock> getSendingMailbox(String mailboxId) {
+    return isLocal(mailboxId) ? _inMemoryMailboxService.getSendingMailbox(mailboxId)
+        : _grpcMailboxService.getSendingMailbox(mailboxId);
+  }
+
+  @Override
+  public void releaseReceivingMailbox(String mailboxId) {
+    if (isLocal(mailboxId)) {
+      _inMemoryMailboxService.releaseReceivingMailbox(mailboxId);
+    } else {
+      _grpcMailboxService.releaseReceivingMailbox(mailboxId);
+    }
+  }
+
+  @Override
+  public void releaseSendingMailbox(String mailboxId) {
+    if (isLocal(mailboxId)) {
+      _inMemoryMailboxService.releaseSendingMailbox(mailboxId);
+    } else {
+      _grpcMailboxService.releaseSendingMailbox(mailboxId);
+    }
+  }
+
+  private static boolean isLocal(String mailboxId) {
+    MailboxIdentifier mailboxIdentifier = Utils.toMailboxIdentifier(mailboxId);
+    return mailboxIdentifier.getFromHost().equals(mailboxIdentifier.getToHost())
+        && mailboxIdentifier.getFromPort() == mailboxIdentifier.getToPort();
+  }
+}
@@ -35,13 +35,20 @@ public interface ReceivingMailbox<T> {
   String getMailboxId();
 
   /**
-   * receive a data packet from the mailbox.
-   * @return data packet.
+   * receive a data packet from the mailbox without waiting.
+   * @return data packet, or {@code null} if no data packet is available yet.
    * @throws Exception
    */
   T receive()
       throws Exception;
 
+  /**
+   * Get the number of payload bytes received from the mailbox so far. A mailbox that doesn't deserialize the data
+   * returns 0.
+   * @return number of bytes received.
+   */
+  long getNumBytesReceived();
+
   /**
    * Check if receiving mailbox is initialized.
    * @return
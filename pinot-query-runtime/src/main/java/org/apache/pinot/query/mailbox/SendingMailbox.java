@@ -37,13 +37,27 @@ public interface SendingMailbox<T> {
   /**
    * send a data packet through the mailbox.
    * @param data
-   * @throws UnsupportedOperationException
+   * @throws Exception
    */
   void send(T data)
-      throws UnsupportedOperationException;
+      throws Exception;
+
+  /**
+   * Check if the mailbox can take more data. When it cannot, the receiving end is not keeping up and the sender should
+   * yield instead of sending more data, it will be notified once the mailbox is ready again.
+   * @return true if more data can be sent.
+   */
+  boolean isReady();
 
   /**
    * Complete delivery of the current mailbox.
    */
   void complete();
+
+  /**
+   * Get the number of payload bytes sent through the mailbox so far, including the data not flushed yet. A mailbox
+   * that doesn't serialize the data returns 0.
+   * @return number of bytes sent.
+   */
+  long getNumBytesSent();
 }
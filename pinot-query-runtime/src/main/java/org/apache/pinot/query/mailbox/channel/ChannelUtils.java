@@ -23,6 +23,8 @@ public class ChannelUtils {
   public static final String MAILBOX_METADATA_BUFFER_SIZE_KEY = "buffer.size";
   public static final String MAILBOX_METADATA_BEGIN_OF_STREAM_KEY = "begin.of.stream";
   public static final String MAILBOX_METADATA_END_OF_STREAM_KEY = "end.of.stream";
+  public static final String MAILBOX_METADATA_COMPRESSION_TYPE_KEY = "compression.type";
+  public static final String MAILBOX_METADATA_UNCOMPRESSED_SIZE_KEY = "uncompressed.size";
 
   private ChannelUtils() {
     // do not instantiate.
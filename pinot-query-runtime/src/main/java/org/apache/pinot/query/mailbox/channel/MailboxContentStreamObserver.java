@@ -19,10 +19,10 @@
 package org.apache.pinot.query.mailbox.channel;
 
 import com.google.protobuf.ByteString;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.pinot.common.proto.Mailbox;
 import org.apache.pinot.query.mailbox.GrpcMailboxService;
@@ -38,18 +38,21 @@ import org.slf4j.LoggerFactory;
  * <p>When the observer onNext() is called (e.g. when data packet has arrived at the receiving end), it puts the
  * mailbox content to the receiving mailbox buffer; response with the remaining buffer size of the receiving mailbox
  * to the sender side.
+ *
+ * <p>Inbound flow control is manual: only as many messages as the buffer capacity are requested from the stream, and
+ * one more each time a message is polled out of the buffer. Thus the buffer never grows beyond its capacity, and a
+ * sender faster than the receiver is held back by the gRPC transport.
  */
 public class MailboxContentStreamObserver implements StreamObserver<Mailbox.MailboxContent> {
   private static final Logger LOGGER = LoggerFactory.getLogger(MailboxContentStreamObserver.class);
-  private static final int DEFAULT_MAILBOX_QUEUE_CAPACITY = 5;
-  private static final long DEFAULT_MAILBOX_POLL_TIMEOUT = 1000L;
   private final GrpcMailboxService _mailboxService;
   private final StreamObserver<Mailbox.MailboxStatus> _responseObserver;
   private final boolean _isEnabledFeedback;
+  private final int _bufferCapacity;
+  private final LinkedBlockingQueue<Mailbox.MailboxContent> _receivingBuffer = new LinkedBlockingQueue<>();
 
   private final AtomicBoolean _isCompleted = new AtomicBoolean(false);
   private String _mailboxId;
-  private ArrayBlockingQueue<Mailbox.MailboxContent> _receivingBuffer;
 
   public MailboxContentStreamObserver(GrpcMailboxService mailboxService,
       StreamObserver<Mailbox.MailboxStatus> responseObserver) {
@@ -60,22 +63,26 @@ public class MailboxContentStreamObserver implements StreamObserver<Mailbox.Mail
       StreamObserver<Mailbox.MailboxStatus> responseObserver, boolean isEnabledFeedback) {
     _mailboxService = mailboxService;
     _responseObserver = responseObserver;
-    _receivingBuffer = new ArrayBlockingQueue<>(DEFAULT_MAILBOX_QUEUE_CAPACITY);
     _isEnabledFeedback = isEnabledFeedback;
+    _bufferCapacity = mailboxService.getReceiveBufferCapacity();
+    if (_responseObserver instanceof ServerCallStreamObserver) {
+      ServerCallStreamObserver<Mailbox.MailboxStatus> serverCallStreamObserver =
+          (ServerCallStreamObserver<Mailbox.MailboxStatus>) _responseObserver;
+      serverCallStreamObserver.disableAutoRequest();
+      serverCallStreamObserver.request(_bufferCapacity);
+    }
   }
 
+  /**
+   * Returns the next buffered mailbox content without waiting, or {@code null} if no content is buffered.
+   */
   public Mailbox.MailboxContent poll() {
-    while (!isCompleted()) {
-      try {
-        Mailbox.MailboxContent content = _receivingBuffer.poll(DEFAULT_MAILBOX_POLL_TIMEOUT, TimeUnit.MILLISECONDS);
-        if (content != null) {
-          return content;
-        }
-      } catch (InterruptedException e) {
-        LOGGER.error("Interrupt occurred while waiting for mailbox content", e);
-      }
+    Mailbox.MailboxContent mailboxContent = _receivingBuffer.poll();
+    if (mailboxContent != null) {
+      // there is room for one more message in the buffer.
+      requestNextMessage();
     }
-    return null;
+    return mailboxContent;
   }
 
   public boolean isCompleted() {
@@ -86,14 +93,16 @@ public class MailboxContentStreamObserver implements StreamObserver<Mailbox.Mail
   public void onNext(Mailbox.MailboxContent mailboxContent) {
     _mailboxId = mailboxContent.getMailboxId();
     GrpcReceivingMailbox receivingMailbox = (GrpcReceivingMailbox) _mailboxService.getReceivingMailbox(_mailboxId);
-    receivingMailbox.init(this);
     if (!mailboxContent.getMetadataMap().containsKey(ChannelUtils.MAILBOX_METADATA_BEGIN_OF_STREAM_KEY)) {
-      // when the receiving end receives a message put it in the mailbox queue.
+      // when the receiving end receives a message put it in the mailbox queue, before the mailbox is initialized so
+      // that the content is readable as soon as the mailbox is.
       _receivingBuffer.offer(mailboxContent);
+      receivingMailbox.init(this);
+      _mailboxService.onMailContentReceived(_mailboxId);
       if (_isEnabledFeedback) {
         // TODO: this has race conditions with onCompleted() because sender blindly closes connection channels once
         // it has finished sending all the data packets.
-        int remainingCapacity = _receivingBuffer.remainingCapacity() - 1;
+        int remainingCapacity = _bufferCapacity - _receivingBuffer.size();
         Mailbox.MailboxStatus.Builder builder =
             Mailbox.MailboxStatus.newBuilder().setMailboxId(mailboxContent.getMailboxId())
                 .putMetadata(ChannelUtils.MAILBOX_METADATA_BUFFER_SIZE_KEY, String.valueOf(remainingCapacity));
@@ -104,6 +113,10 @@ public class MailboxContentStreamObserver implements StreamObserver<Mailbox.Mail
         // returns the buffer available size to sender for rate controller / throttling.
         _responseObserver.onNext(status);
       }
+    } else {
+      receivingMailbox.init(this);
+      // the begin-of-stream message is not buffered.
+      requestNextMessage();
     }
   }
 
@@ -114,15 +127,27 @@ public class MailboxContentStreamObserver implements StreamObserver<Mailbox.Mail
           .setPayload(ByteString.copyFrom(
               TransferableBlockUtils.getErrorTransferableBlock(new RuntimeException(e)).toBytes()))
           .putMetadata(ChannelUtils.MAILBOX_METADATA_END_OF_STREAM_KEY, "true").build());
+      if (_mailboxId != null) {
+        _mailboxService.onMailContentReceived(_mailboxId);
+      }
       throw new RuntimeException(e);
     } catch (IOException ioe) {
       throw new RuntimeException("Unable to encode exception for cascade reporting: " + e, ioe);
     }
   }
 
+  private void requestNextMessage() {
+    if (_responseObserver instanceof ServerCallStreamObserver && !_isCompleted.get()) {
+      ((ServerCallStreamObserver<Mailbox.MailboxStatus>) _responseObserver).request(1);
+    }
+  }
+
   @Override
   public void onCompleted() {
     _isCompleted.set(true);
     _responseObserver.onCompleted();
+    if (_mailboxId != null) {
+      _mailboxService.onMailContentReceived(_mailboxId);
+    }
   }
 }
@@ -18,6 +18,8 @@
  */
 package org.apache.pinot.query.mailbox.channel;
 
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -33,17 +35,37 @@ import org.slf4j.LoggerFactory;
  * created based on the opened GRPC connection returned {@link StreamObserver}. From this point, the sending mailbox
  * can use the {@link MailboxStatusStreamObserver#send(Mailbox.MailboxContent)} API to send data packet to the receiving
  * end.
+ *
+ * <p>The sending mailbox checks {@link #isReady()} before sending more data: it turns false once the receiving end
+ * stops pulling messages and the transport buffers are full, and the {@code onReadyHandler} is invoked when it turns
+ * true again.
  */
-public class MailboxStatusStreamObserver implements StreamObserver<Mailbox.MailboxStatus> {
+public class MailboxStatusStreamObserver
+    implements ClientResponseObserver<Mailbox.MailboxContent, Mailbox.MailboxStatus> {
   private static final Logger LOGGER = LoggerFactory.getLogger(MailboxStatusStreamObserver.class);
   private static final int DEFAULT_MAILBOX_QUEUE_CAPACITY = 5;
   private static final long DEFAULT_MAILBOX_POLL_TIMEOUT_MS = 1000L;
   private final AtomicInteger _bufferSize = new AtomicInteger(5);
   private final AtomicBoolean _isCompleted = new AtomicBoolean(false);
 
+  private final Runnable _onReadyHandler;
+
   private StreamObserver<Mailbox.MailboxContent> _mailboxContentStreamObserver;
+  private ClientCallStreamObserver<Mailbox.MailboxContent> _requestStream;
 
   public MailboxStatusStreamObserver() {
+    this(() -> {
+    });
+  }
+
+  public MailboxStatusStreamObserver(Runnable onReadyHandler) {
+    _onReadyHandler = onReadyHandler;
+  }
+
+  @Override
+  public void beforeStart(ClientCallStreamObserver<Mailbox.MailboxContent> requestStream) {
+    _requestStream = requestStream;
+    _requestStream.setOnReadyHandler(_onReadyHandler);
   }
 
   public void init(StreamObserver<Mailbox.MailboxContent> mailboxContentStreamObserver) {
@@ -54,6 +76,10 @@ public class MailboxStatusStreamObserver implements StreamObserver<Mailbox.Mailb
     _mailboxContentStreamObserver.onNext(mailboxContent);
   }
 
+  public boolean isReady() {
+    return _requestStream == null || _requestStream.isReady();
+  }
+
   public void complete() {
     _mailboxContentStreamObserver.onCompleted();
   }
@@ -18,36 +18,58 @@
  */
 package org.apache.pinot.query.runtime;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
+import org.apache.calcite.rel.RelDistribution;
 import org.apache.helix.HelixManager;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.apache.helix.zookeeper.datamodel.ZNRecord;
 import org.apache.pinot.common.metrics.ServerMetrics;
-import org.apache.pinot.common.proto.Mailbox;
+import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.OrderByExpressionContext;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.common.utils.NamedThreadFactory;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
 import org.apache.pinot.core.common.datablock.DataBlockUtils;
 import org.apache.pinot.core.common.datablock.MetadataBlock;
 import org.apache.pinot.core.data.manager.InstanceDataManager;
-import org.apache.pinot.core.operator.BaseOperator;
 import org.apache.pinot.core.query.executor.ServerQueryExecutorV1Impl;
 import org.apache.pinot.core.query.request.ServerQueryRequest;
+import org.apache.pinot.core.query.request.context.QueryContext;
+import org.apache.pinot.core.query.request.context.utils.QueryContextUtils;
+import org.apache.pinot.core.query.scheduler.resources.ResourceManager;
 import org.apache.pinot.core.transport.ServerInstance;
-import org.apache.pinot.query.mailbox.GrpcMailboxService;
 import org.apache.pinot.query.mailbox.MailboxService;
+import org.apache.pinot.query.mailbox.MultiplexingMailboxService;
 import org.apache.pinot.query.planner.StageMetadata;
 import org.apache.pinot.query.planner.stage.MailboxSendNode;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.executor.OpChainSchedulerService;
 import org.apache.pinot.query.runtime.executor.WorkerQueryExecutor;
 import org.apache.pinot.query.runtime.operator.MailboxSendOperator;
+import org.apache.pinot.query.runtime.operator.MultiStageOperator;
+import org.apache.pinot.query.runtime.operator.OperatorStats;
+import org.apache.pinot.query.runtime.operator.join.RuntimeFilter;
 import org.apache.pinot.query.runtime.plan.DistributedStagePlan;
 import org.apache.pinot.query.runtime.utils.ServerRequestUtils;
 import org.apache.pinot.query.service.QueryConfig;
@@ -62,14 +84,21 @@ import org.slf4j.LoggerFactory;
  */
 public class QueryRunner {
   private static final Logger LOGGER = LoggerFactory.getLogger(QueryRunner.class);
+  private static final long SEND_RETRY_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long RUNTIME_FILTER_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
   // This is a temporary before merging the 2 type of executor.
   private ServerQueryExecutorV1Impl _serverExecutor;
   private WorkerQueryExecutor _workerExecutor;
+  private OpChainSchedulerService _scheduler;
   private HelixManager _helixManager;
   private ZkHelixPropertyStore<ZNRecord> _helixPropertyStore;
-  private MailboxService<Mailbox.MailboxContent> _mailboxService;
+  private MailboxService<TransferableBlock> _mailboxService;
+  private ExecutorService _leafStageExecutor;
+  private ScheduledExecutorService _runtimeFilterPoller;
   private String _hostname;
   private int _port;
+  private int _maxRuntimeFilterInValues;
+  private long _runtimeFilterWaitTimeoutNs;
 
   /**
    * Initializes the query executor.
@@ -82,12 +111,27 @@ public class QueryRunner {
         CommonConstants.Helix.SERVER_INSTANCE_PREFIX_LENGTH) : instanceName;
     _port = config.getProperty(QueryConfig.KEY_OF_QUERY_RUNNER_PORT, QueryConfig.DEFAULT_QUERY_RUNNER_PORT);
     _helixManager = helixManager;
+    _maxRuntimeFilterInValues = config.getProperty(QueryConfig.KEY_OF_JOIN_RUNTIME_FILTER_MAX_IN_VALUES,
+        QueryConfig.DEFAULT_JOIN_RUNTIME_FILTER_MAX_IN_VALUES);
+    _runtimeFilterWaitTimeoutNs = TimeUnit.MILLISECONDS.toNanos(
+        config.getProperty(QueryConfig.KEY_OF_JOIN_RUNTIME_FILTER_WAIT_TIMEOUT_MS,
+            QueryConfig.DEFAULT_JOIN_RUNTIME_FILTER_WAIT_TIMEOUT_MS));
     try {
-      _mailboxService = new GrpcMailboxService(_hostname, _port, config);
+      int numWorkerThreads = config.getProperty(QueryConfig.KEY_OF_QUERY_RUNNER_NUM_WORKER_THREADS,
+          ResourceManager.DEFAULT_QUERY_WORKER_THREADS);
+      _scheduler = new OpChainSchedulerService(numWorkerThreads);
+      _mailboxService = MultiplexingMailboxService.newInstance(_hostname, _port, config, _scheduler::onDataAvailable);
+      // the waits of the leaf stages are bounded by the query deadline, the leaf stages queued behind the waiting ones
+      // fail once their deadline is reached.
+      _leafStageExecutor =
+          Executors.newFixedThreadPool(numWorkerThreads, new NamedThreadFactory("leaf_stage_on_" + _port + "_port"));
+      // the runtime filter mailboxes are polled without blocking, a single thread serves all the waiting leaf stages.
+      _runtimeFilterPoller = Executors.newSingleThreadScheduledExecutor(
+          new NamedThreadFactory("runtime_filter_poller_on_" + _port + "_port"));
       _serverExecutor = new ServerQueryExecutorV1Impl();
       _serverExecutor.init(config, instanceDataManager, serverMetrics);
       _workerExecutor = new WorkerQueryExecutor();
-      _workerExecutor.init(config, serverMetrics, _mailboxService, _hostname, _port);
+      _workerExecutor.init(config, _mailboxService, _scheduler, _hostname, _port);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -97,45 +141,239 @@ public class QueryRunner {
     _helixPropertyStore = _helixManager.getHelixPropertyStore();
     _mailboxService.start();
     _serverExecutor.start();
+    _scheduler.start();
     _workerExecutor.start();
   }
 
   public void shutDown() {
     _workerExecutor.shutDown();
+    _scheduler.shutdown();
     _serverExecutor.shutDown();
+    _runtimeFilterPoller.shutdownNow();
+    _leafStageExecutor.shutdownNow();
     _mailboxService.shutdown();
   }
 
   public void processQuery(DistributedStagePlan distributedStagePlan, ExecutorService executorService,
       Map<String, String> requestMetadataMap) {
     if (isLeafStage(distributedStagePlan)) {
-      // TODO: make server query request return via mailbox, this is a hack to gather the non-streaming data table
-      // and package it here for return. But we should really use a MailboxSendOperator directly put into the
-      // server executor.
-      List<ServerQueryRequest> serverQueryRequests =
-          ServerRequestUtils.constructServerQueryRequest(distributedStagePlan, requestMetadataMap,
-              _helixPropertyStore);
-
-      // send the data table via mailbox in one-off fashion (e.g. no block-level split, one data table/partition key)
-      List<BaseDataBlock> serverQueryResults = new ArrayList<>(serverQueryRequests.size());
-      for (ServerQueryRequest request : serverQueryRequests) {
-        serverQueryResults.add(processServerQuery(request, executorService));
+      MailboxSendNode sendNode = (MailboxSendNode) distributedStagePlan.getStageRoot();
+      long deadlineNs = System.nanoTime() + QueryConfig.DEFAULT_TIMEOUT_NANO;
+      if (sendNode.getRuntimeFilterColumn() != null) {
+        // the table scan waits for the runtime filter of the join without holding any thread, the leaf stage only
+        // takes a leaf stage thread once the runtime filter is received (or given up on).
+        long requestId = Long.parseLong(requestMetadataMap.get("REQUEST_ID"));
+        _runtimeFilterPoller.execute(new RuntimeFilterReceiver(distributedStagePlan, sendNode, requestId, deadlineNs,
+            runtimeFilter -> _leafStageExecutor.execute(
+                () -> processLeafStage(distributedStagePlan, executorService, requestMetadataMap, deadlineNs,
+                    runtimeFilter))));
+      } else if (sendNode.getExchangeType() == RelDistribution.Type.RANGE_DISTRIBUTED) {
+        // the range exchange waits for the sample keys of the other table scan workers, do not hold the dispatching
+        // thread meanwhile.
+        _leafStageExecutor.execute(
+            () -> processLeafStage(distributedStagePlan, executorService, requestMetadataMap, deadlineNs, null));
+      } else {
+        processLeafStage(distributedStagePlan, executorService, requestMetadataMap, deadlineNs, null);
       }
+    } else {
+      _workerExecutor.processQuery(distributedStagePlan, requestMetadataMap);
+    }
+  }
 
-      MailboxSendNode sendNode = (MailboxSendNode) distributedStagePlan.getStageRoot();
-      StageMetadata receivingStageMetadata = distributedStagePlan.getMetadataMap().get(sendNode.getReceiverStageId());
-      MailboxSendOperator mailboxSendOperator =
-          new MailboxSendOperator(_mailboxService, sendNode.getDataSchema(),
-              new LeafStageTransferableBlockOperator(serverQueryResults, sendNode.getDataSchema()),
-              receivingStageMetadata.getServerInstances(), sendNode.getExchangeType(),
-              sendNode.getPartitionKeySelector(), _hostname, _port, serverQueryRequests.get(0).getRequestId(),
-              sendNode.getStageId());
+  /**
+   * Runs the leaf stage (filtered with the given runtime filter if any) and sends its results. Any failure terminates
+   * the streams of the receivers with an error block, so that they do not wait for the results until they time out.
+   */
+  private void processLeafStage(DistributedStagePlan distributedStagePlan, ExecutorService executorService,
+      Map<String, String> requestMetadataMap, long deadlineNs, @Nullable RuntimeFilter runtimeFilter) {
+    long requestId = Long.parseLong(requestMetadataMap.get("REQUEST_ID"));
+    MailboxSendNode sendNode = (MailboxSendNode) distributedStagePlan.getStageRoot();
+
+    // TODO: make server query request return via mailbox, this is a hack to gather the non-streaming data table
+    // and package it here for return. But we should really use a MailboxSendOperator directly put into the
+    // server executor.
+    List<BaseDataBlock> serverQueryResults;
+    long serverQueryStartTimeNs = System.nanoTime();
+    try {
+      serverQueryResults =
+          processServerQueries(distributedStagePlan, sendNode, executorService, requestMetadataMap, deadlineNs,
+              runtimeFilter);
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while processing leaf stage: {} of request: {}", sendNode.getStageId(),
+          requestId, e);
+      // same as a failed server query, the error block is sent to all the receivers.
+      serverQueryResults = Collections.singletonList(DataBlockUtils.getErrorDataBlock(e));
+    }
+
+    MailboxSendOperator mailboxSendOperator = getMailboxSendOperator(distributedStagePlan, sendNode, requestId,
+        new LeafStageTransferableBlockOperator(serverQueryResults, sendNode.getDataSchema(),
+            System.nanoTime() - serverQueryStartTimeNs));
+    try {
       int blockCounter = 0;
-      while (!TransferableBlockUtils.isEndOfStream(mailboxSendOperator.nextBlock())) {
-        LOGGER.debug("Acquired transferable block: {}", blockCounter++);
+      TransferableBlock block = mailboxSendOperator.nextBlock();
+      while (!TransferableBlockUtils.isEndOfStream(block)) {
+        if (TransferableBlockUtils.isNoOpBlock(block)) {
+          if (System.nanoTime() >= deadlineNs) {
+            throw new TimeoutException("Timed out sending the results of leaf stage: " + sendNode.getStageId());
+          }
+          // the receiving end is not keeping up, wait before sending more.
+          LockSupport.parkNanos(SEND_RETRY_INTERVAL_NANOS);
+        } else {
+          LOGGER.debug("Acquired transferable block: {}", blockCounter++);
+        }
+        block = mailboxSendOperator.nextBlock();
+      }
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while sending the results of leaf stage: {} of request: {}",
+          sendNode.getStageId(), requestId, e);
+      mailboxSendOperator.sendErrorBlock(e);
+    }
+  }
+
+  private List<BaseDataBlock> processServerQueries(DistributedStagePlan distributedStagePlan,
+      MailboxSendNode sendNode, ExecutorService executorService, Map<String, String> requestMetadataMap,
+      long deadlineNs, @Nullable RuntimeFilter runtimeFilter)
+      throws TimeoutException {
+    if (System.nanoTime() >= deadlineNs) {
+      throw new TimeoutException("Timed out before processing leaf stage: " + sendNode.getStageId());
+    }
+    if (runtimeFilter != null && runtimeFilter.isEmpty()) {
+      // the build side of the join has no key, none of the rows can match.
+      return Collections.emptyList();
+    }
+    List<ServerQueryRequest> serverQueryRequests =
+        ServerRequestUtils.constructServerQueryRequest(distributedStagePlan, requestMetadataMap, _helixPropertyStore,
+            runtimeFilter);
+
+    // send the data table via mailbox in one-off fashion (e.g. no block-level split, one data table/partition key)
+    List<BaseDataBlock> serverQueryResults = new ArrayList<>(serverQueryRequests.size());
+    for (ServerQueryRequest request : serverQueryRequests) {
+      serverQueryResults.add(processServerQuery(request, executorService));
+    }
+    return serverQueryResults;
+  }
+
+  private MailboxSendOperator getMailboxSendOperator(DistributedStagePlan distributedStagePlan,
+      MailboxSendNode sendNode, long requestId, MultiStageOperator leafStageOperator) {
+    StageMetadata receivingStageMetadata = distributedStagePlan.getMetadataMap().get(sendNode.getReceiverStageId());
+    return new MailboxSendOperator(_mailboxService, sendNode.getDataSchema(), leafStageOperator,
+        receivingStageMetadata.getServerInstances(), sendNode.getExchangeType(), sendNode.getPartitionKeySelector(),
+        sendNode.getCollationDirections(),
+        distributedStagePlan.getMetadataMap().get(sendNode.getStageId()).getServerInstances(), _hostname, _port,
+        requestId, sendNode.getStageId());
+  }
+
+  /**
+   * Receives the runtime filters sent by all the workers of the join stage once their hash tables are built, and merges
+   * them. Each run polls the runtime filter mailboxes once without blocking, and schedules the next run on the runtime
+   * filter poller.
+   * <p>The merged runtime filter is handed over once received from all the join workers. {@code null} (no filter) is
+   * handed over instead if any of the join workers cannot produce a runtime filter, or if they are not all received
+   * within the wait timeout (or before the query deadline). The mailboxes are then drained until their end of stream
+   * (or the query deadline) before being released, so that the late runtime filters do not construct them again.
+   */
+  private class RuntimeFilterReceiver implements Runnable {
+    private final int _joinStageId;
+    private final Set<String> _mailboxIds = new HashSet<>();
+    private final Set<String> _pendingMailboxIds;
+    private final long _waitDeadlineNs;
+    private final long _queryDeadlineNs;
+    private final Consumer<RuntimeFilter> _runtimeFilterConsumer;
+
+    private RuntimeFilter _runtimeFilter;
+    private boolean _isHandedOver;
+
+    RuntimeFilterReceiver(DistributedStagePlan distributedStagePlan, MailboxSendNode sendNode, long requestId,
+        long queryDeadlineNs, Consumer<RuntimeFilter> runtimeFilterConsumer) {
+      _joinStageId = sendNode.getRuntimeFilterSourceStageId();
+      for (ServerInstance joinInstance : distributedStagePlan.getMetadataMap().get(_joinStageId)
+          .getServerInstances()) {
+        _mailboxIds.add(RuntimeFilter.toMailboxId(requestId, _joinStageId, joinInstance.getHostname(),
+            joinInstance.getQueryMailboxPort(), _hostname, _port));
+      }
+      _pendingMailboxIds = new HashSet<>(_mailboxIds);
+      _waitDeadlineNs = Math.min(System.nanoTime() + _runtimeFilterWaitTimeoutNs, queryDeadlineNs);
+      _queryDeadlineNs = queryDeadlineNs;
+      _runtimeFilterConsumer = runtimeFilterConsumer;
+    }
+
+    @Override
+    public void run() {
+      try {
+        poll();
+      } catch (Exception e) {
+        // scan without the runtime filter rather than never running the leaf stage.
+        LOGGER.error("Caught exception while receiving the runtime filter of stage: {}", _joinStageId, e);
+        handOver(null);
+        release();
+      }
+    }
+
+    private void poll() {
+      boolean hasReceived = false;
+      Iterator<String> iterator = _pendingMailboxIds.iterator();
+      while (iterator.hasNext()) {
+        String mailboxId = iterator.next();
+        TransferableBlock block;
+        try {
+          block = _mailboxService.getReceivingMailbox(mailboxId).receive();
+        } catch (Exception e) {
+          LOGGER.error("Caught exception while receiving the runtime filter from mailbox: {}", mailboxId, e);
+          handOver(null);
+          release();
+          return;
+        }
+        if (block == null) {
+          continue;
+        }
+        hasReceived = true;
+        if (block.isEndOfStreamBlock()) {
+          iterator.remove();
+        } else if (_isHandedOver) {
+          // the runtime filter is no longer needed, only drain the mailbox.
+          continue;
+        } else if (RuntimeFilter.isNoFilter(block)) {
+          // the join worker has no runtime filter, all the rows need to be scanned.
+          handOver(null);
+        } else {
+          RuntimeFilter workerRuntimeFilter = RuntimeFilter.fromTransferableBlock(block, _maxRuntimeFilterInValues);
+          if (_runtimeFilter == null) {
+            _runtimeFilter = workerRuntimeFilter;
+          } else {
+            _runtimeFilter.merge(workerRuntimeFilter);
+          }
+        }
+      }
+      long currentTimeNs = System.nanoTime();
+      if (!_isHandedOver) {
+        if (_pendingMailboxIds.isEmpty()) {
+          // none of the join workers has a build side key, the data type doesn't matter for an empty runtime filter.
+          handOver(_runtimeFilter != null ? _runtimeFilter
+              : new RuntimeFilter(DataSchema.ColumnDataType.INT, _maxRuntimeFilterInValues));
+        } else if (currentTimeNs >= _waitDeadlineNs) {
+          LOGGER.warn("Timed out waiting for the runtime filter of stage: {}, scanning without it", _joinStageId);
+          handOver(null);
+        }
+      }
+      if (_pendingMailboxIds.isEmpty() || currentTimeNs >= _queryDeadlineNs) {
+        release();
+        return;
+      }
+      _runtimeFilterPoller.schedule(this, hasReceived ? 0 : RUNTIME_FILTER_POLL_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    private void handOver(@Nullable RuntimeFilter runtimeFilter) {
+      if (!_isHandedOver) {
+        _isHandedOver = true;
+        _runtimeFilter = null;
+        _runtimeFilterConsumer.accept(runtimeFilter);
+      }
+    }
+
+    private void release() {
+      for (String mailboxId : _mailboxIds) {
+        _mailboxService.releaseReceivingMailbox(mailboxId);
       }
-    } else {
-      _workerExecutor.processQuery(distributedStagePlan, requestMetadataMap, executorService);
     }
   }
 
@@ -150,7 +388,13 @@ public class QueryRunner {
       } else {
         // this works because default DataTableImplV3 will have a version number at beginning:
         // the new DataBlock encodes lower 16 bits as version and upper 16 bits as type (ROW, COLUMNAR, METADATA)
-        dataBlock = DataBlockUtils.getDataBlock(ByteBuffer.wrap(dataTable.toBytes()));
+        dataBlock = toSelectListOrder(DataBlockUtils.getDataBlock(ByteBuffer.wrap(dataTable.toBytes())),
+            serverQueryRequest.getQueryContext());
+        // keep the number of scanned docs for the leaf stage stats.
+        String numDocsScanned = dataTable.getMetadata().get(DataTable.MetadataKey.NUM_DOCS_SCANNED.getName());
+        if (numDocsScanned != null) {
+          dataBlock.getMetadata().put(DataTable.MetadataKey.NUM_DOCS_SCANNED.getName(), numDocsScanned);
+        }
       }
     } catch (Exception e) {
       dataBlock = DataBlockUtils.getErrorDataBlock(e);
@@ -158,6 +402,53 @@ public class QueryRunner {
     return dataBlock;
   }
 
+  /**
+   * Selection order-by queries (pushed down from a partial sort on top of the leaf stage) return the order-by
+   * expressions first, followed by the remaining select expressions. Rearranges the columns back into the select list
+   * order expected by the stage schema.
+   */
+  private static BaseDataBlock toSelectListOrder(BaseDataBlock dataBlock, QueryContext queryContext)
+      throws IOException {
+    List<OrderByExpressionContext> orderByExpressions = queryContext.getOrderByExpressions();
+    DataSchema dataSchema = dataBlock.getDataSchema();
+    if (orderByExpressions == null || queryContext.getLimit() == 0 || dataSchema == null
+        || !QueryContextUtils.isSelectionQuery(queryContext)) {
+      return dataBlock;
+    }
+    List<ExpressionContext> selectExpressions = queryContext.getSelectExpressions();
+    List<ExpressionContext> resultExpressions = new ArrayList<>(orderByExpressions.size() + selectExpressions.size());
+    for (OrderByExpressionContext orderByExpression : orderByExpressions) {
+      resultExpressions.add(orderByExpression.getExpression());
+    }
+    for (ExpressionContext selectExpression : selectExpressions) {
+      if (!resultExpressions.contains(selectExpression)) {
+        resultExpressions.add(selectExpression);
+      }
+    }
+    if (resultExpressions.size() != dataSchema.size() || resultExpressions.equals(selectExpressions)) {
+      return dataBlock;
+    }
+    int numColumns = selectExpressions.size();
+    int[] columnIndices = new int[numColumns];
+    String[] columnNames = new String[numColumns];
+    DataSchema.ColumnDataType[] columnDataTypes = new DataSchema.ColumnDataType[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      columnIndices[i] = resultExpressions.indexOf(selectExpressions.get(i));
+      columnNames[i] = dataSchema.getColumnName(columnIndices[i]);
+      columnDataTypes[i] = dataSchema.getColumnDataType(columnIndices[i]);
+    }
+    List<Object[]> rows = DataBlockUtils.extractRows(dataBlock);
+    for (int rowId = 0; rowId < rows.size(); rowId++) {
+      Object[] row = rows.get(rowId);
+      Object[] reorderedRow = new Object[numColumns];
+      for (int i = 0; i < numColumns; i++) {
+        reorderedRow[i] = row[columnIndices[i]];
+      }
+      rows.set(rowId, reorderedRow);
+    }
+    return DataBlockBuilder.buildFromRows(rows, new DataSchema(columnNames, columnDataTypes));
+  }
+
   /**
    * Leaf-stage transfer block opreator is used to wrap around the leaf stage process results. They are passed to the
    * Pinot server to execute query thus only one {@link DataTable} were returned. However, to conform with the
@@ -169,25 +460,38 @@ public class QueryRunner {
    *   <li>In case the leaf-stage result contains error or only metadata, we skip the data payload block.</li>
    * </ul>
    */
-  private static class LeafStageTransferableBlockOperator extends BaseOperator<TransferableBlock> {
+  private static class LeafStageTransferableBlockOperator extends MultiStageOperator {
     private static final String EXPLAIN_NAME = "LEAF_STAGE_TRANSFER_OPERATOR";
 
     private final BaseDataBlock _errorBlock;
     private final List<BaseDataBlock> _baseDataBlocks;
     private final DataSchema _dataSchema;
+    private final long _numDocsScanned;
+    private final long _serverQueryTimeNs;
     private boolean _hasTransferred;
     private int _currentIndex;
 
-    private LeafStageTransferableBlockOperator(List<BaseDataBlock> baseDataBlocks, DataSchema dataSchema) {
+    private LeafStageTransferableBlockOperator(List<BaseDataBlock> baseDataBlocks, DataSchema dataSchema,
+        long serverQueryTimeNs) {
       _baseDataBlocks = baseDataBlocks;
       _dataSchema = dataSchema;
       _errorBlock = baseDataBlocks.stream().filter(e -> !e.getExceptions().isEmpty()).findFirst().orElse(null);
+      _numDocsScanned = baseDataBlocks.stream()
+          .map(e -> e.getMetadata().get(DataTable.MetadataKey.NUM_DOCS_SCANNED.getName()))
+          .filter(Objects::nonNull).mapToLong(Long::parseLong).sum();
+      _serverQueryTimeNs = serverQueryTimeNs;
       _currentIndex = 0;
     }
 
     @Override
     public List<Operator> getChildOperators() {
-      return null;
+      return Collections.emptyList();
+    }
+
+    @Override
+    protected void recordStats(OperatorStats operatorStats) {
+      operatorStats.setStat(OperatorStats.NUM_DOCS_SCANNED, _numDocsScanned);
+      operatorStats.setStat(OperatorStats.SERVER_QUERY_TIME_NS, _serverQueryTimeNs);
     }
 
     @Nullable
@@ -197,7 +501,7 @@ public class QueryRunner {
     }
 
     @Override
-    protected TransferableBlock getNextBlock() {
+    protected TransferableBlock getNextTransferableBlock() {
       if (_currentIndex < 0) {
         throw new RuntimeException("Leaf transfer terminated. next block should no longer be called.");
       }
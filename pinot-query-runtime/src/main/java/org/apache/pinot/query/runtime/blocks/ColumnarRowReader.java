@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.blocks;
+
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.core.common.datablock.DataBlockUtils;
+
+
+/**
+ * {@code ColumnarRowReader} reads the rows of a columnar {@link TransferableBlock} one at a time into a reused row
+ * array, for the operators that evaluate row-based expressions over columnar blocks.
+ *
+ * <p>Only the referenced columns are decoded, each one once per block, and the unreferenced columns of the row are left
+ * null. No row array is allocated per row, so the row returned by {@link #readRow(int)} must not be retained.
+ */
+public class ColumnarRowReader {
+  private final ColumnarDataBlock _dataBlock;
+  private final int[] _selection;
+  private final int _numRows;
+  private final int[] _referencedColIds;
+  private final Object[][] _columns;
+  private final Object[] _row;
+
+  public ColumnarRowReader(TransferableBlock block, int[] referencedColIds) {
+    _dataBlock = block.getColumnarDataBlock();
+    _selection = block.getSelection();
+    _numRows = _selection != null ? _selection.length : _dataBlock.getNumberOfRows();
+    _referencedColIds = referencedColIds;
+    int numColumns = _dataBlock.getDataSchema().size();
+    _columns = new Object[numColumns][];
+    for (int colId : referencedColIds) {
+      _columns[colId] = DataBlockUtils.extractColumn(_dataBlock, colId);
+    }
+    _row = new Object[numColumns];
+  }
+
+  public ColumnarDataBlock getDataBlock() {
+    return _dataBlock;
+  }
+
+  public int getNumRows() {
+    return _numRows;
+  }
+
+  /**
+   * Returns the id in {@link #getDataBlock()} of the i-th row of the block.
+   */
+  public int getRowId(int i) {
+    return _selection != null ? _selection[i] : i;
+  }
+
+  /**
+   * Returns the i-th row of the block, with only the referenced columns filled.
+   */
+  public Object[] readRow(int i) {
+    int rowId = getRowId(i);
+    for (int colId : _referencedColIds) {
+      _row[colId] = _columns[colId][rowId];
+    }
+    return _row;
+  }
+}
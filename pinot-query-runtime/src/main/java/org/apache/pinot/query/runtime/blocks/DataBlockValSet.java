@@ -0,0 +1,575 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.blocks;
+
+import java.math.BigDecimal;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.BlockValSet;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.segment.spi.index.reader.Dictionary;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.apache.pinot.spi.utils.ArrayCopyUtils;
+import org.roaringbitmap.RoaringBitmap;
+
+
+/**
+ * {@code DataBlockValSet} provides the {@link BlockValSet} interface over a column of a {@link BaseDataBlock}, so that
+ * the v1 aggregation functions can consume the data blocks of the multi-stage engine. Array columns are exposed as
+ * multi-value columns of their element type, except BYTES_ARRAY which is not supported.
+ *
+ * <p>Values are read column-wise from the data block into primitive arrays, for both row and columnar data blocks. The
+ * columns of a columnar data block are read in bulk when no conversion is needed.
+ * Null values are reported through {@link #getNullBitmap()}, and are read as the default value of the column type.
+ * The values are not dictionary encoded, so the dictionary id accessors are not supported.
+ */
+public class DataBlockValSet implements BlockValSet {
+  private final BaseDataBlock _dataBlock;
+  // set for columnar data blocks, whose columns of the stored type are read in bulk.
+  private final ColumnarDataBlock _columnarDataBlock;
+  private final int _colId;
+  private final int _numRows;
+  private final DataSchema.ColumnDataType _storedType;
+  private final boolean _isSingleValue;
+  private final FieldSpec.DataType _dataType;
+
+  public DataBlockValSet(BaseDataBlock dataBlock, int colId) {
+    _dataBlock = dataBlock;
+    _columnarDataBlock = dataBlock instanceof ColumnarDataBlock ? (ColumnarDataBlock) dataBlock : null;
+    _colId = colId;
+    _numRows = dataBlock.getNumberOfRows();
+    _storedType = dataBlock.getDataSchema().getColumnDataType(colId).getStoredType();
+    _isSingleValue = !_storedType.isArray();
+    _dataType = _isSingleValue ? _storedType.toDataType() : getElementDataType(_storedType);
+  }
+
+  /**
+   * Returns the data type of the elements of the given stored array type.
+   */
+  private static FieldSpec.DataType getElementDataType(DataSchema.ColumnDataType storedArrayType) {
+    switch (storedArrayType) {
+      case INT_ARRAY:
+        return FieldSpec.DataType.INT;
+      case LONG_ARRAY:
+        return FieldSpec.DataType.LONG;
+      case FLOAT_ARRAY:
+        return FieldSpec.DataType.FLOAT;
+      case DOUBLE_ARRAY:
+        return FieldSpec.DataType.DOUBLE;
+      case STRING_ARRAY:
+        return FieldSpec.DataType.STRING;
+      default:
+        throw new IllegalStateException("Unsupported multi-value data type: " + storedArrayType);
+    }
+  }
+
+  @Nullable
+  @Override
+  public RoaringBitmap getNullBitmap() {
+    return _dataBlock.getNullRowIds(_colId);
+  }
+
+  @Override
+  public FieldSpec.DataType getValueType() {
+    return _dataType;
+  }
+
+  @Override
+  public boolean isSingleValue() {
+    return _isSingleValue;
+  }
+
+  @Nullable
+  @Override
+  public Dictionary getDictionary() {
+    return null;
+  }
+
+  @Override
+  public int[] getDictionaryIdsSV() {
+    throw new UnsupportedOperationException("Data block values are not dictionary encoded");
+  }
+
+  @Override
+  public int[] getIntValuesSV() {
+    if (_columnarDataBlock != null && _storedType == DataSchema.ColumnDataType.INT) {
+      return _columnarDataBlock.getIntColumn(_colId);
+    }
+    int[] values = new int[_numRows];
+    switch (_storedType) {
+      case INT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getInt(i, _colId);
+        }
+        break;
+      case LONG:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = (int) _dataBlock.getLong(i, _colId);
+        }
+        break;
+      case FLOAT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = (int) _dataBlock.getFloat(i, _colId);
+        }
+        break;
+      case DOUBLE:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = (int) _dataBlock.getDouble(i, _colId);
+        }
+        break;
+      case BIG_DECIMAL:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getBigDecimal(i, _colId).intValue();
+        }
+        break;
+      case STRING:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = Integer.parseInt(_dataBlock.getString(i, _colId));
+        }
+        break;
+      default:
+        throw new IllegalStateException("Cannot read int values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public long[] getLongValuesSV() {
+    if (_columnarDataBlock != null && _storedType == DataSchema.ColumnDataType.LONG) {
+      return _columnarDataBlock.getLongColumn(_colId);
+    }
+    long[] values = new long[_numRows];
+    switch (_storedType) {
+      case INT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getInt(i, _colId);
+        }
+        break;
+      case LONG:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getLong(i, _colId);
+        }
+        break;
+      case FLOAT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = (long) _dataBlock.getFloat(i, _colId);
+        }
+        break;
+      case DOUBLE:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = (long) _dataBlock.getDouble(i, _colId);
+        }
+        break;
+      case BIG_DECIMAL:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getBigDecimal(i, _colId).longValue();
+        }
+        break;
+      case STRING:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = Long.parseLong(_dataBlock.getString(i, _colId));
+        }
+        break;
+      default:
+        throw new IllegalStateException("Cannot read long values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public float[] getFloatValuesSV() {
+    if (_columnarDataBlock != null && _storedType == DataSchema.ColumnDataType.FLOAT) {
+      return _columnarDataBlock.getFloatColumn(_colId);
+    }
+    float[] values = new float[_numRows];
+    switch (_storedType) {
+      case INT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getInt(i, _colId);
+        }
+        break;
+      case LONG:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getLong(i, _colId);
+        }
+        break;
+      case FLOAT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getFloat(i, _colId);
+        }
+        break;
+      case DOUBLE:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = (float) _dataBlock.getDouble(i, _colId);
+        }
+        break;
+      case BIG_DECIMAL:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getBigDecimal(i, _colId).floatValue();
+        }
+        break;
+      case STRING:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = Float.parseFloat(_dataBlock.getString(i, _colId));
+        }
+        break;
+      default:
+        throw new IllegalStateException("Cannot read float values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public double[] getDoubleValuesSV() {
+    if (_columnarDataBlock != null && _storedType == DataSchema.ColumnDataType.DOUBLE) {
+      return _columnarDataBlock.getDoubleColumn(_colId);
+    }
+    double[] values = new double[_numRows];
+    switch (_storedType) {
+      case INT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getInt(i, _colId);
+        }
+        break;
+      case LONG:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getLong(i, _colId);
+        }
+        break;
+      case FLOAT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getFloat(i, _colId);
+        }
+        break;
+      case DOUBLE:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getDouble(i, _colId);
+        }
+        break;
+      case BIG_DECIMAL:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getBigDecimal(i, _colId).doubleValue();
+        }
+        break;
+      case STRING:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = Double.parseDouble(_dataBlock.getString(i, _colId));
+        }
+        break;
+      default:
+        throw new IllegalStateException("Cannot read double values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public BigDecimal[] getBigDecimalValuesSV() {
+    BigDecimal[] values = new BigDecimal[_numRows];
+    switch (_storedType) {
+      case INT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = BigDecimal.valueOf(_dataBlock.getInt(i, _colId));
+        }
+        break;
+      case LONG:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = BigDecimal.valueOf(_dataBlock.getLong(i, _colId));
+        }
+        break;
+      case FLOAT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = new BigDecimal(Float.toString(_dataBlock.getFloat(i, _colId)));
+        }
+        break;
+      case DOUBLE:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = BigDecimal.valueOf(_dataBlock.getDouble(i, _colId));
+        }
+        break;
+      case BIG_DECIMAL:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getBigDecimal(i, _colId);
+        }
+        break;
+      case STRING:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = new BigDecimal(_dataBlock.getString(i, _colId));
+        }
+        break;
+      default:
+        throw new IllegalStateException("Cannot read BigDecimal values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public String[] getStringValuesSV() {
+    String[] values = new String[_numRows];
+    switch (_storedType) {
+      case INT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = Integer.toString(_dataBlock.getInt(i, _colId));
+        }
+        break;
+      case LONG:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = Long.toString(_dataBlock.getLong(i, _colId));
+        }
+        break;
+      case FLOAT:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = Float.toString(_dataBlock.getFloat(i, _colId));
+        }
+        break;
+      case DOUBLE:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = Double.toString(_dataBlock.getDouble(i, _colId));
+        }
+        break;
+      case BIG_DECIMAL:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getBigDecimal(i, _colId).toPlainString();
+        }
+        break;
+      case STRING:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getString(i, _colId);
+        }
+        break;
+      case BYTES:
+        for (int i = 0; i < _numRows; i++) {
+          values[i] = _dataBlock.getBytes(i, _colId).toHexString();
+        }
+        break;
+      default:
+        throw new IllegalStateException("Cannot read String values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public byte[][] getBytesValuesSV() {
+    if (_storedType != DataSchema.ColumnDataType.BYTES) {
+      throw new IllegalStateException("Cannot read bytes values from data type: " + _storedType);
+    }
+    byte[][] values = new byte[_numRows][];
+    for (int i = 0; i < _numRows; i++) {
+      values[i] = _dataBlock.getBytes(i, _colId).getBytes();
+    }
+    return values;
+  }
+
+  @Override
+  public int[][] getDictionaryIdsMV() {
+    throw new UnsupportedOperationException("Data block values are not dictionary encoded");
+  }
+
+  @Override
+  public int[][] getIntValuesMV() {
+    int[][] values = new int[_numRows][];
+    switch (_storedType) {
+      case INT_ARRAY:
+        return readIntArrays();
+      case LONG_ARRAY:
+        ArrayCopyUtils.copy(readLongArrays(), values, _numRows);
+        break;
+      case FLOAT_ARRAY:
+        ArrayCopyUtils.copy(readFloatArrays(), values, _numRows);
+        break;
+      case DOUBLE_ARRAY:
+        ArrayCopyUtils.copy(readDoubleArrays(), values, _numRows);
+        break;
+      case STRING_ARRAY:
+        ArrayCopyUtils.copy(readStringArrays(), values, _numRows);
+        break;
+      default:
+        throw new IllegalStateException("Cannot read int values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public long[][] getLongValuesMV() {
+    long[][] values = new long[_numRows][];
+    switch (_storedType) {
+      case INT_ARRAY:
+        ArrayCopyUtils.copy(readIntArrays(), values, _numRows);
+        break;
+      case LONG_ARRAY:
+        return readLongArrays();
+      case FLOAT_ARRAY:
+        ArrayCopyUtils.copy(readFloatArrays(), values, _numRows);
+        break;
+      case DOUBLE_ARRAY:
+        ArrayCopyUtils.copy(readDoubleArrays(), values, _numRows);
+        break;
+      case STRING_ARRAY:
+        ArrayCopyUtils.copy(readStringArrays(), values, _numRows);
+        break;
+      default:
+        throw new IllegalStateException("Cannot read long values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public float[][] getFloatValuesMV() {
+    float[][] values = new float[_numRows][];
+    switch (_storedType) {
+      case INT_ARRAY:
+        ArrayCopyUtils.copy(readIntArrays(), values, _numRows);
+        break;
+      case LONG_ARRAY:
+        ArrayCopyUtils.copy(readLongArrays(), values, _numRows);
+        break;
+      case FLOAT_ARRAY:
+        return readFloatArrays();
+      case DOUBLE_ARRAY:
+        ArrayCopyUtils.copy(readDoubleArrays(), values, _numRows);
+        break;
+      case STRING_ARRAY:
+        ArrayCopyUtils.copy(readStringArrays(), values, _numRows);
+        break;
+      default:
+        throw new IllegalStateException("Cannot read float values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public double[][] getDoubleValuesMV() {
+    double[][] values = new double[_numRows][];
+    switch (_storedType) {
+      case INT_ARRAY:
+        ArrayCopyUtils.copy(readIntArrays(), values, _numRows);
+        break;
+      case LONG_ARRAY:
+        ArrayCopyUtils.copy(readLongArrays(), values, _numRows);
+        break;
+      case FLOAT_ARRAY:
+        ArrayCopyUtils.copy(readFloatArrays(), values, _numRows);
+        break;
+      case DOUBLE_ARRAY:
+        return readDoubleArrays();
+      case STRING_ARRAY:
+        ArrayCopyUtils.copy(readStringArrays(), values, _numRows);
+        break;
+      default:
+        throw new IllegalStateException("Cannot read double values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public String[][] getStringValuesMV() {
+    String[][] values = new String[_numRows][];
+    switch (_storedType) {
+      case INT_ARRAY:
+        ArrayCopyUtils.copy(readIntArrays(), values, _numRows);
+        break;
+      case LONG_ARRAY:
+        ArrayCopyUtils.copy(readLongArrays(), values, _numRows);
+        break;
+      case FLOAT_ARRAY:
+        ArrayCopyUtils.copy(readFloatArrays(), values, _numRows);
+        break;
+      case DOUBLE_ARRAY:
+        ArrayCopyUtils.copy(readDoubleArrays(), values, _numRows);
+        break;
+      case STRING_ARRAY:
+        return readStringArrays();
+      default:
+        throw new IllegalStateException("Cannot read String values from data type: " + _storedType);
+    }
+    return values;
+  }
+
+  @Override
+  public byte[][][] getBytesValuesMV() {
+    throw new IllegalStateException("Cannot read bytes values from data type: " + _storedType);
+  }
+
+  @Override
+  public int[] getNumMVEntries() {
+    int[] numEntries = new int[_numRows];
+    for (int i = 0; i < _numRows; i++) {
+      switch (_storedType) {
+        case INT_ARRAY:
+          numEntries[i] = _dataBlock.getIntArray(i, _colId).length;
+          break;
+        case LONG_ARRAY:
+          numEntries[i] = _dataBlock.getLongArray(i, _colId).length;
+          break;
+        case FLOAT_ARRAY:
+          numEntries[i] = _dataBlock.getFloatArray(i, _colId).length;
+          break;
+        case DOUBLE_ARRAY:
+          numEntries[i] = _dataBlock.getDoubleArray(i, _colId).length;
+          break;
+        case STRING_ARRAY:
+          numEntries[i] = _dataBlock.getStringArray(i, _colId).length;
+          break;
+        default:
+          throw new IllegalStateException("Cannot read multi-value entries from data type: " + _storedType);
+      }
+    }
+    return numEntries;
+  }
+
+  private int[][] readIntArrays() {
+    int[][] values = new int[_numRows][];
+    for (int i = 0; i < _numRows; i++) {
+      values[i] = _dataBlock.getIntArray(i, _colId);
+    }
+    return values;
+  }
+
+  private long[][] readLongArrays() {
+    long[][] values = new long[_numRows][];
+    for (int i = 0; i < _numRows; i++) {
+      values[i] = _dataBlock.getLongArray(i, _colId);
+    }
+    return values;
+  }
+
+  private float[][] readFloatArrays() {
+    float[][] values = new float[_numRows][];
+    for (int i = 0; i < _numRows; i++) {
+      values[i] = _dataBlock.getFloatArray(i, _colId);
+    }
+    return values;
+  }
+
+  private double[][] readDoubleArrays() {
+    double[][] values = new double[_numRows][];
+    for (int i = 0; i < _numRows; i++) {
+      values[i] = _dataBlock.getDoubleArray(i, _colId);
+    }
+    return values;
+  }
+
+  private String[][] readStringArrays() {
+    String[][] values = new String[_numRows][];
+    for (int i = 0; i < _numRows; i++) {
+      values[i] = _dataBlock.getStringArray(i, _colId);
+    }
+    return values;
+  }
+}
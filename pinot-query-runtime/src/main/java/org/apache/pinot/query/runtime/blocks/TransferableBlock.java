@@ -19,8 +19,12 @@
 package org.apache.pinot.query.runtime.blocks;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.common.Block;
 import org.apache.pinot.core.common.BlockDocIdSet;
@@ -29,6 +33,7 @@ import org.apache.pinot.core.common.BlockMetadata;
 import org.apache.pinot.core.common.BlockValSet;
 import org.apache.pinot.core.common.datablock.BaseDataBlock;
 import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlockPartitioner;
 import org.apache.pinot.core.common.datablock.DataBlockBuilder;
 import org.apache.pinot.core.common.datablock.DataBlockUtils;
 import org.apache.pinot.core.common.datablock.RowDataBlock;
@@ -37,15 +42,32 @@ import org.apache.pinot.core.common.datablock.RowDataBlock;
 /**
  * A {@code TransferableBlock} is a wrapper around {@link BaseDataBlock} for transferring data using
  * {@link org.apache.pinot.common.proto.Mailbox}.
+ *
+ * <p>The rows of a block are held either as a row container ({@code List<Object[]>}), or as a binary-packed data
+ * block, and each form is constructed from the other on demand. The type of the block decides which data block is
+ * constructed from the container: {@link BaseDataBlock.Type#COLUMNAR} is the native exchange format of the
+ * multi-stage engine, while {@link BaseDataBlock.Type#ROW} is kept for the data tables returned by the leaf stages.
+ *
+ * <p>A columnar block may also carry a selection vector, i.e. the ascending ids of the rows of its
+ * {@link ColumnarDataBlock} that belong to the block. This is how a filter passes its input data block through without
+ * copying it: the data block is only compacted when it has to be serialized (see {@link #getDataBlock()}).
+ *
+ * <p>A block may be consumed by multiple threads, e.g. a broadcast through in-memory mailboxes hands the same instance
+ * to all the receivers, thus the on demand conversions are thread-safe.
  */
 public class TransferableBlock implements Block {
 
   private final BaseDataBlock.Type _type;
   private final DataSchema _dataSchema;
   private final boolean _isErrorBlock;
+  private final boolean _isNoOpBlock;
+  private final boolean _isContainerBacked;
 
-  private BaseDataBlock _dataBlock;
-  private List<Object[]> _container;
+  private volatile BaseDataBlock _dataBlock;
+  private volatile List<Object[]> _container;
+  // the data block the selection vector applies to, only set along with _selection.
+  private ColumnarDataBlock _selectedDataBlock;
+  private int[] _selection;
 
   public TransferableBlock(List<Object[]> container, DataSchema dataSchema, BaseDataBlock.Type containerType) {
     this(container, dataSchema, containerType, false);
@@ -58,6 +80,40 @@ public class TransferableBlock implements Block {
     _dataSchema = dataSchema;
     _type = containerType;
     _isErrorBlock = isErrorBlock;
+    _isNoOpBlock = false;
+    _isContainerBacked = true;
+  }
+
+  private TransferableBlock(DataSchema dataSchema) {
+    _container = Collections.emptyList();
+    _dataSchema = dataSchema;
+    _type = BaseDataBlock.Type.ROW;
+    _isErrorBlock = false;
+    _isNoOpBlock = true;
+    _isContainerBacked = true;
+  }
+
+  /**
+   * Creates a columnar block with the given rows of the data block.
+   *
+   * @param dataBlock columnar data block, which is shared and must not be modified.
+   * @param selection ascending ids of the selected rows of the data block.
+   */
+  public TransferableBlock(ColumnarDataBlock dataBlock, int[] selection) {
+    _selectedDataBlock = dataBlock;
+    _selection = selection;
+    _dataSchema = dataBlock.getDataSchema();
+    _type = BaseDataBlock.Type.COLUMNAR;
+    _isErrorBlock = false;
+    _isNoOpBlock = false;
+    _isContainerBacked = false;
+  }
+
+  /**
+   * Creates a no-op block, which carries no data and signals that the upstream has no data available yet.
+   */
+  static TransferableBlock noOpBlock(DataSchema dataSchema) {
+    return new TransferableBlock(dataSchema);
   }
 
   public TransferableBlock(BaseDataBlock dataBlock) {
@@ -66,60 +122,134 @@ public class TransferableBlock implements Block {
     _type = dataBlock instanceof ColumnarDataBlock ? BaseDataBlock.Type.COLUMNAR
         : dataBlock instanceof RowDataBlock ? BaseDataBlock.Type.ROW : BaseDataBlock.Type.METADATA;
     _isErrorBlock = !_dataBlock.getExceptions().isEmpty();
+    _isNoOpBlock = false;
+    _isContainerBacked = false;
   }
 
   public DataSchema getDataSchema() {
     return _dataSchema;
   }
 
+  /**
+   * Return the number of rows in the block, without converting between the container and the data block format.
+   *
+   * @return number of rows.
+   */
+  public int getNumRows() {
+    if (_container != null) {
+      return _container.size();
+    }
+    return _selection != null ? _selection.length : _dataBlock.getNumberOfRows();
+  }
+
   /**
    * Retrieve the extracted {@link TransferableBlock#_container} of the transferable block.
-   * If not already constructed. It will use {@link DataBlockUtils} to extract the row/columnar data from the
-   * binary-packed format.
+   * If not already constructed. It will use {@link DataBlockUtils} to extract the rows from the binary-packed format,
+   * which boxes every value: operators should prefer the columnar access (see {@link #getColumnarDataBlock()}) where
+   * possible.
    *
    * @return data container.
    */
   public List<Object[]> getContainer() {
-    if (_container == null) {
-      switch (_type) {
-        case ROW:
-          _container = DataBlockUtils.extractRows(_dataBlock);
-          break;
-        case COLUMNAR:
-        default:
-          throw new UnsupportedOperationException("Unable to extract from container with type: " + _type);
+    List<Object[]> container = _container;
+    if (container == null) {
+      synchronized (this) {
+        container = _container;
+        if (container == null) {
+          switch (_type) {
+            case ROW:
+            case COLUMNAR:
+              container = DataBlockUtils.extractRows(getDataBlock());
+              break;
+            default:
+              throw new UnsupportedOperationException("Unable to extract from container with type: " + _type);
+          }
+          _container = container;
+        }
       }
     }
-    return _container;
+    return container;
+  }
+
+  /**
+   * Retrieve the columnar data block of a {@link BaseDataBlock.Type#COLUMNAR} block, without compacting it to the
+   * selection vector: the rows of the block are the rows of {@link #getSelection()} when it is not null.
+   *
+   * @return columnar data block.
+   */
+  public ColumnarDataBlock getColumnarDataBlock() {
+    Preconditions.checkState(_type == BaseDataBlock.Type.COLUMNAR, "Not a columnar block: %s", _type);
+    return _selection != null ? _selectedDataBlock : (ColumnarDataBlock) getDataBlock();
+  }
+
+  /**
+   * Return the ascending ids of the rows of {@link #getColumnarDataBlock()} that belong to this block, or null when all
+   * the rows belong to it.
+   */
+  @Nullable
+  public int[] getSelection() {
+    return _selection;
+  }
+
+  /**
+   * Return whether the block was created from a row container, as opposed to a received or computed data block.
+   */
+  public boolean isContainerBacked() {
+    return _isContainerBacked;
   }
 
   /**
    * Retrieve the binary-packed version of the data block.
    * If not already constructed. It will use {@link DataBlockBuilder} to construct the binary-packed format from
-   * the {@link TransferableBlock#_container}.
+   * the {@link TransferableBlock#_container}, or compact the selected rows of a columnar data block.
    *
    * @return data block.
    */
   public BaseDataBlock getDataBlock() {
-    if (_dataBlock == null) {
-      try {
-        switch (_type) {
-          case ROW:
-            _dataBlock = DataBlockBuilder.buildFromRows(_container, _dataSchema);
-            break;
-          case COLUMNAR:
-            _dataBlock = DataBlockBuilder.buildFromColumns(_container, _dataSchema);
-            break;
-          case METADATA:
-            throw new UnsupportedOperationException("Metadata block cannot be constructed from container");
-          default:
-            throw new UnsupportedOperationException("Unable to build from container with type: " + _type);
+    BaseDataBlock dataBlock = _dataBlock;
+    if (dataBlock == null) {
+      synchronized (this) {
+        dataBlock = _dataBlock;
+        if (dataBlock == null) {
+          dataBlock = buildDataBlock();
+          _dataBlock = dataBlock;
         }
-      } catch (Exception e) {
-        throw new RuntimeException("Unable to create DataBlock");
       }
     }
-    return _dataBlock;
+    return dataBlock;
+  }
+
+  private BaseDataBlock buildDataBlock() {
+    try {
+      switch (_type) {
+        case ROW:
+          return DataBlockBuilder.buildFromRows(_container, _dataSchema);
+        case COLUMNAR:
+          if (_selection != null) {
+            return ColumnarDataBlockPartitioner.select(_selectedDataBlock, _selection);
+          }
+          return DataBlockBuilder.buildFromColumns(toColumns(_container, _dataSchema.size()), _dataSchema);
+        case METADATA:
+          throw new UnsupportedOperationException("Metadata block cannot be constructed from container");
+        default:
+          throw new UnsupportedOperationException("Unable to build from container with type: " + _type);
+      }
+    } catch (Exception e) {
+      throw new RuntimeException("Unable to create DataBlock", e);
+    }
+  }
+
+  private static List<Object[]> toColumns(List<Object[]> rows, int numColumns) {
+    int numRows = rows.size();
+    List<Object[]> columns = new ArrayList<>(numColumns);
+    for (int colId = 0; colId < numColumns; colId++) {
+      Object[] column = new Object[numRows];
+      for (int rowId = 0; rowId < numRows; rowId++) {
+        column[rowId] = rows.get(rowId)[colId];
+      }
+      columns.add(column);
+    }
+    return columns;
   }
 
   /**
@@ -154,9 +284,22 @@ public class TransferableBlock implements Block {
     return _isErrorBlock;
   }
 
+  /**
+   * Return whether a transferable block is a no-op block.
+   *
+   * <p>A no-op block is returned when the upstream has no data available yet (e.g. the receiving mailboxes are all
+   * empty). It is neither data nor end of stream: the operator chain should yield its thread and be resumed later
+   * instead of blocking, and each operator should hand the no-op block to its caller without changing its own state.
+   *
+   * @return true if this block is a no-op block.
+   */
+  public boolean isNoOpBlock() {
+    return _isNoOpBlock;
+  }
+
   public byte[] toBytes()
       throws IOException {
-    return _dataBlock.toBytes();
+    return getDataBlock().toBytes();
   }
 
   @Override
@@ -40,7 +40,15 @@ public final class TransferableBlockUtils {
     return new TransferableBlock(DataBlockUtils.getErrorDataBlock(exceptions));
   }
 
+  public static TransferableBlock getNoOpTransferableBlock(DataSchema dataSchema) {
+    return TransferableBlock.noOpBlock(dataSchema);
+  }
+
   public static boolean isEndOfStream(TransferableBlock transferableBlock) {
     return transferableBlock.isEndOfStreamBlock();
   }
+
+  public static boolean isNoOpBlock(TransferableBlock transferableBlock) {
+    return transferableBlock.isNoOpBlock();
+  }
 }
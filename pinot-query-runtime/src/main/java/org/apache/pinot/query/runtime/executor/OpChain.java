@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.executor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.pinot.core.operator.BaseOperator;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.operator.MultiStageOperator;
+
+
+/**
+ * An {@code OpChain} is the chain of operators of one stage of a query on one worker, run as a resumable task by the
+ * {@link OpChainSchedulerService}.
+ *
+ * <p>Each call to {@link BaseOperator#nextBlock()} on the root operator resumes the chain from where it stopped. When
+ * the chain has no data available (or cannot send more data) it returns a no-op block, and is resumed once new content
+ * arrives at one of its receiving mailboxes or one of its sending mailboxes is ready again.
+ */
+public class OpChain {
+  private final String _id;
+  private final BaseOperator<TransferableBlock> _root;
+  private final List<String> _mailboxIds;
+  // set when new content arrives at a receiving mailbox (or a sending mailbox is ready again), cleared each time the
+  // chain is resumed.
+  private final AtomicBoolean _hasNewData = new AtomicBoolean(false);
+  private final AtomicBoolean _closed = new AtomicBoolean(false);
+  private long _executionTimeNs;
+
+  public OpChain(String id, BaseOperator<TransferableBlock> root, List<String> mailboxIds) {
+    _id = id;
+    _root = root;
+    _mailboxIds = mailboxIds;
+  }
+
+  public String getId() {
+    return _id;
+  }
+
+  public BaseOperator<TransferableBlock> getRoot() {
+    return _root;
+  }
+
+  public List<String> getMailboxIds() {
+    return _mailboxIds;
+  }
+
+  /**
+   * Returns the total thread time spent running the chain.
+   */
+  public long getExecutionTimeNs() {
+    return _executionTimeNs;
+  }
+
+  void addExecutionTimeNs(long executionTimeNs) {
+    _executionTimeNs += executionTimeNs;
+  }
+
+  void markNewData() {
+    _hasNewData.set(true);
+  }
+
+  boolean clearNewData() {
+    return _hasNewData.getAndSet(false);
+  }
+
+  boolean hasNewData() {
+    return _hasNewData.get();
+  }
+
+  /**
+   * Releases the resources of the operators of the chain (see {@link MultiStageOperator#close()}), only the first call
+   * has an effect.
+   */
+  void close() {
+    if (_closed.compareAndSet(false, true) && _root instanceof MultiStageOperator) {
+      ((MultiStageOperator) _root).close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "OpChain{" + _id + "}";
+  }
+}
@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.executor;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.pinot.common.utils.NamedThreadFactory;
+import org.apache.pinot.core.query.request.context.ThreadTimer;
+import org.apache.pinot.core.util.trace.TraceRunnable;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.MailboxSendOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * {@code OpChainSchedulerService} runs the {@link OpChain}s of all the queries on a fixed-size pool of worker threads.
+ *
+ * <p>Instead of holding a thread while waiting on the network, an op chain runs until its root operator returns a
+ * no-op block (no data available), then it is parked and its thread goes back to the pool. A parked op chain is
+ * resumed when new content arrives at one of its receiving mailboxes, or one of its sending mailboxes is ready to send
+ * again (see {@link #onDataAvailable(String)}), or after
+ * {@link #MAX_PARK_TIME_MS} so that timeouts are always checked. An op chain that keeps producing data yields its
+ * thread after {@link #TIME_SLICE_NS} so that it cannot starve the other op chains.
+ */
+public class OpChainSchedulerService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OpChainSchedulerService.class);
+  static final long TIME_SLICE_NS = TimeUnit.MILLISECONDS.toNanos(100);
+  static final long MAX_PARK_TIME_MS = 1000L;
+
+  private final ExecutorService _workerPool;
+  private final ScheduledExecutorService _parkedOpChainChecker;
+  // op chains waiting for data, with the time they got parked.
+  private final Map<OpChain, Long> _parkedOpChains = new ConcurrentHashMap<>();
+  // a mailbox with both ends on this server is used by both the sending and the receiving op chain.
+  private final Map<String, Set<OpChain>> _mailboxIdToOpChains = new ConcurrentHashMap<>();
+
+  public OpChainSchedulerService(int numWorkerThreads) {
+    _workerPool = Executors.newFixedThreadPool(numWorkerThreads, new NamedThreadFactory("op_chain_worker"));
+    _parkedOpChainChecker =
+        Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("op_chain_parked_checker"));
+  }
+
+  public void start() {
+    _parkedOpChainChecker.scheduleWithFixedDelay(this::resumeExpiredOpChains, MAX_PARK_TIME_MS, MAX_PARK_TIME_MS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  public void shutdown() {
+    _parkedOpChainChecker.shutdownNow();
+    _workerPool.shutdownNow();
+    // the op chains not terminated yet are cancelled, release their resources (e.g. spill files).
+    for (OpChain opChain : _parkedOpChains.keySet()) {
+      closeQuietly(opChain);
+    }
+    for (Set<OpChain> opChains : _mailboxIdToOpChains.values()) {
+      for (OpChain opChain : opChains) {
+        closeQuietly(opChain);
+      }
+    }
+    _parkedOpChains.clear();
+    _mailboxIdToOpChains.clear();
+  }
+
+  /**
+   * Registers a new op chain and schedules it to run.
+   */
+  public void register(OpChain opChain) {
+    for (String mailboxId : opChain.getMailboxIds()) {
+      _mailboxIdToOpChains.compute(mailboxId, (k, opChains) -> {
+        Set<OpChain> newOpChains = opChains != null ? opChains : ConcurrentHashMap.newKeySet();
+        newOpChains.add(opChain);
+        return newOpChains;
+      });
+    }
+    schedule(opChain);
+  }
+
+  /**
+   * Notifies that new content has arrived at the receiving mailbox (or that the sending mailbox is ready to send
+   * again), resumes the op chains using it if parked.
+   */
+  public void onDataAvailable(String mailboxId) {
+    Set<OpChain> opChains = _mailboxIdToOpChains.get(mailboxId);
+    if (opChains != null) {
+      for (OpChain opChain : opChains) {
+        opChain.markNewData();
+        resume(opChain);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of op chains parked waiting for data.
+   */
+  public int getNumParkedOpChains() {
+    return _parkedOpChains.size();
+  }
+
+  private void schedule(OpChain opChain) {
+    _workerPool.submit(new TraceRunnable() {
+      @Override
+      public void runJob() {
+        runOpChain(opChain);
+      }
+    });
+  }
+
+  private void runOpChain(OpChain opChain) {
+    // the data arrived so far is going to be consumed by this run.
+    opChain.clearNewData();
+    ThreadTimer threadTimer = new ThreadTimer();
+    long deadlineNs = System.nanoTime() + TIME_SLICE_NS;
+    try {
+      TransferableBlock block = opChain.getRoot().nextBlock();
+      while (!TransferableBlockUtils.isEndOfStream(block)) {
+        if (TransferableBlockUtils.isNoOpBlock(block)) {
+          opChain.addExecutionTimeNs(threadTimer.getThreadTimeNs());
+          park(opChain);
+          return;
+        }
+        LOGGER.debug("Result Block acquired");
+        if (System.nanoTime() >= deadlineNs) {
+          // yield the thread to the other op chains.
+          opChain.addExecutionTimeNs(threadTimer.getThreadTimeNs());
+          schedule(opChain);
+          return;
+        }
+        block = opChain.getRoot().nextBlock();
+      }
+      opChain.addExecutionTimeNs(threadTimer.getThreadTimeNs());
+      LOGGER.debug("Execution time of {}: {}", opChain, opChain.getExecutionTimeNs());
+    } catch (Throwable t) {
+      LOGGER.error("Caught exception while running {}", opChain, t);
+      // the downstream stages would otherwise wait for the end of the stream until they time out.
+      if (opChain.getRoot() instanceof MailboxSendOperator) {
+        ((MailboxSendOperator) opChain.getRoot()).sendErrorBlock(
+            t instanceof Exception ? (Exception) t : new RuntimeException(t));
+      }
+    }
+    closeQuietly(opChain);
+    deregister(opChain);
+  }
+
+  private static void closeQuietly(OpChain opChain) {
+    try {
+      opChain.close();
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while closing {}", opChain, e);
+    }
+  }
+
+  private void park(OpChain opChain) {
+    _parkedOpChains.put(opChain, System.currentTimeMillis());
+    // data might have arrived after the op chain returned the no-op block but before it got parked.
+    if (opChain.hasNewData()) {
+      resume(opChain);
+    }
+  }
+
+  private void resume(OpChain opChain) {
+    // only the one removing the op chain from the parked op chains schedules it, so that it never runs concurrently.
+    if (_parkedOpChains.remove(opChain) != null) {
+      schedule(opChain);
+    }
+  }
+
+  private void deregister(OpChain opChain) {
+    for (String mailboxId : opChain.getMailboxIds()) {
+      _mailboxIdToOpChains.computeIfPresent(mailboxId, (k, opChains) -> {
+        opChains.remove(opChain);
+        return opChains.isEmpty() ? null : opChains;
+      });
+    }
+  }
+
+  private void resumeExpiredOpChains() {
+    long expirationTimeMs = System.currentTimeMillis() - MAX_PARK_TIME_MS;
+    Iterator<Map.Entry<OpChain, Long>> iterator = _parkedOpChains.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<OpChain, Long> entry = iterator.next();
+      if (entry.getValue() <= expirationTimeMs) {
+        resume(entry.getKey());
+      }
+    }
+  }
+}
@@ -18,17 +18,17 @@
  */
 package org.apache.pinot.query.runtime.executor;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import org.apache.pinot.common.metrics.ServerMetrics;
-import org.apache.pinot.common.proto.Mailbox;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.operator.BaseOperator;
-import org.apache.pinot.core.query.request.context.ThreadTimer;
 import org.apache.pinot.core.transport.ServerInstance;
-import org.apache.pinot.core.util.trace.TraceRunnable;
 import org.apache.pinot.query.mailbox.MailboxService;
 import org.apache.pinot.query.planner.StageMetadata;
+import org.apache.pinot.query.planner.partitioning.FieldSelectionKeySelector;
 import org.apache.pinot.query.planner.stage.AggregateNode;
 import org.apache.pinot.query.planner.stage.FilterNode;
 import org.apache.pinot.query.planner.stage.JoinNode;
@@ -39,7 +39,6 @@ import org.apache.pinot.query.planner.stage.SortNode;
 import org.apache.pinot.query.planner.stage.StageNode;
 import org.apache.pinot.query.planner.stage.ValueNode;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
-import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
 import org.apache.pinot.query.runtime.operator.AggregateOperator;
 import org.apache.pinot.query.runtime.operator.FilterOperator;
 import org.apache.pinot.query.runtime.operator.HashJoinOperator;
@@ -48,7 +47,9 @@ import org.apache.pinot.query.runtime.operator.MailboxReceiveOperator;
 import org.apache.pinot.query.runtime.operator.MailboxSendOperator;
 import org.apache.pinot.query.runtime.operator.SortOperator;
 import org.apache.pinot.query.runtime.operator.TransformOperator;
+import org.apache.pinot.query.runtime.operator.join.RuntimeFilterSender;
 import org.apache.pinot.query.runtime.plan.DistributedStagePlan;
+import org.apache.pinot.query.service.QueryConfig;
 import org.apache.pinot.spi.env.PinotConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,19 +63,32 @@ import org.slf4j.LoggerFactory;
  */
 public class WorkerQueryExecutor {
   private static final Logger LOGGER = LoggerFactory.getLogger(WorkerQueryExecutor.class);
-  private PinotConfiguration _config;
-  private ServerMetrics _serverMetrics;
-  private MailboxService<Mailbox.MailboxContent> _mailboxService;
+  private MailboxService<TransferableBlock> _mailboxService;
+  private OpChainSchedulerService _scheduler;
   private String _hostName;
   private int _port;
+  private long _maxInMemoryJoinBuildBytes;
+  private int _numJoinSpillPartitions;
+  private int _maxRuntimeFilterInValues;
+  private long _maxInMemorySortBytes;
+  private File _spillDir;
 
-  public void init(PinotConfiguration config, ServerMetrics serverMetrics,
-      MailboxService<Mailbox.MailboxContent> mailboxService, String hostName, int port) {
-    _config = config;
-    _serverMetrics = serverMetrics;
+  public void init(PinotConfiguration config, MailboxService<TransferableBlock> mailboxService,
+      OpChainSchedulerService scheduler, String hostName, int port) {
+    _scheduler = scheduler;
     _mailboxService = mailboxService;
     _hostName = hostName;
     _port = port;
+    _maxInMemoryJoinBuildBytes = config.getProperty(QueryConfig.KEY_OF_JOIN_MAX_IN_MEMORY_BUILD_BYTES,
+        QueryConfig.DEFAULT_JOIN_MAX_IN_MEMORY_BUILD_BYTES);
+    _numJoinSpillPartitions = config.getProperty(QueryConfig.KEY_OF_JOIN_NUM_SPILL_PARTITIONS,
+        QueryConfig.DEFAULT_JOIN_NUM_SPILL_PARTITIONS);
+    _maxRuntimeFilterInValues = config.getProperty(QueryConfig.KEY_OF_JOIN_RUNTIME_FILTER_MAX_IN_VALUES,
+        QueryConfig.DEFAULT_JOIN_RUNTIME_FILTER_MAX_IN_VALUES);
+    _maxInMemorySortBytes = config.getProperty(QueryConfig.KEY_OF_SORT_MAX_IN_MEMORY_BYTES,
+        QueryConfig.DEFAULT_SORT_MAX_IN_MEMORY_BYTES);
+    String spillDir = config.getProperty(QueryConfig.KEY_OF_QUERY_RUNNER_SPILL_DIR);
+    _spillDir = spillDir != null ? new File(spillDir) : null;
   }
 
   public synchronized void start() {
@@ -86,66 +100,73 @@ public class WorkerQueryExecutor {
   }
 
   // TODO: split this execution from PhysicalPlanner
-  public void processQuery(DistributedStagePlan queryRequest, Map<String, String> requestMetadataMap,
-      ExecutorService executorService) {
+  public void processQuery(DistributedStagePlan queryRequest, Map<String, String> requestMetadataMap) {
     long requestId = Long.parseLong(requestMetadataMap.get("REQUEST_ID"));
     StageNode stageRoot = queryRequest.getStageRoot();
-    BaseOperator<TransferableBlock> rootOperator = getOperator(requestId, stageRoot, queryRequest.getMetadataMap());
-    executorService.submit(new TraceRunnable() {
-      @Override
-      public void runJob() {
-        ThreadTimer executionThreadTimer = new ThreadTimer();
-        while (!TransferableBlockUtils.isEndOfStream(rootOperator.nextBlock())) {
-          LOGGER.debug("Result Block acquired");
-        }
-        LOGGER.info("Execution time:" + executionThreadTimer.getThreadTimeNs());
-      }
-    });
+    List<String> mailboxIds = new ArrayList<>();
+    BaseOperator<TransferableBlock> rootOperator =
+        getOperator(requestId, stageRoot, queryRequest.getMetadataMap(), mailboxIds);
+    _scheduler.register(new OpChain(String.format("%s_%s", requestId, queryRequest.getStageId()), rootOperator,
+        mailboxIds));
   }
 
   // TODO: split this PhysicalPlanner into a separate module
   // TODO: optimize this into a framework. (physical planner)
   private BaseOperator<TransferableBlock> getOperator(long requestId, StageNode stageNode,
-      Map<Integer, StageMetadata> metadataMap) {
+      Map<Integer, StageMetadata> metadataMap, List<String> mailboxIds) {
     if (stageNode instanceof MailboxReceiveNode) {
       MailboxReceiveNode receiveNode = (MailboxReceiveNode) stageNode;
       List<ServerInstance> sendingInstances = metadataMap.get(receiveNode.getSenderStageId()).getServerInstances();
-      return new MailboxReceiveOperator(_mailboxService, receiveNode.getDataSchema(), sendingInstances,
-          receiveNode.getExchangeType(), receiveNode.getPartitionKeySelector(), _hostName, _port, requestId,
+      MailboxReceiveOperator receiveOperator = new MailboxReceiveOperator(_mailboxService,
+          receiveNode.getDataSchema(), sendingInstances, receiveNode.getExchangeType(),
+          receiveNode.getPartitionKeySelector(), receiveNode.isOrdered(), _hostName, _port, requestId,
           receiveNode.getSenderStageId());
+      mailboxIds.addAll(receiveOperator.getMailboxIds());
+      return receiveOperator;
     } else if (stageNode instanceof MailboxSendNode) {
       MailboxSendNode sendNode = (MailboxSendNode) stageNode;
-      BaseOperator<TransferableBlock> nextOperator = getOperator(requestId, sendNode.getInputs().get(0), metadataMap);
+      BaseOperator<TransferableBlock> nextOperator =
+          getOperator(requestId, sendNode.getInputs().get(0), metadataMap, mailboxIds);
       StageMetadata receivingStageMetadata = metadataMap.get(sendNode.getReceiverStageId());
-      return new MailboxSendOperator(_mailboxService, sendNode.getDataSchema(), nextOperator,
-          receivingStageMetadata.getServerInstances(), sendNode.getExchangeType(), sendNode.getPartitionKeySelector(),
-          _hostName, _port, requestId, sendNode.getStageId());
+      MailboxSendOperator sendOperator = new MailboxSendOperator(_mailboxService, sendNode.getDataSchema(),
+          nextOperator, receivingStageMetadata.getServerInstances(), sendNode.getExchangeType(),
+          sendNode.getPartitionKeySelector(), sendNode.getCollationDirections(),
+          metadataMap.get(sendNode.getStageId()).getServerInstances(), _hostName, _port, requestId,
+          sendNode.getStageId());
+      mailboxIds.addAll(sendOperator.getMailboxIds());
+      return sendOperator;
     } else if (stageNode instanceof JoinNode) {
       JoinNode joinNode = (JoinNode) stageNode;
-      BaseOperator<TransferableBlock> leftOperator = getOperator(requestId, joinNode.getInputs().get(0), metadataMap);
-      BaseOperator<TransferableBlock> rightOperator = getOperator(requestId, joinNode.getInputs().get(1), metadataMap);
+      BaseOperator<TransferableBlock> leftOperator =
+          getOperator(requestId, joinNode.getInputs().get(0), metadataMap, mailboxIds);
+      BaseOperator<TransferableBlock> rightOperator =
+          getOperator(requestId, joinNode.getInputs().get(1), metadataMap, mailboxIds);
       return new HashJoinOperator(leftOperator, joinNode.getInputs().get(0).getDataSchema(), rightOperator,
           joinNode.getInputs().get(1).getDataSchema(), joinNode.getDataSchema(), joinNode.getCriteria(),
-          joinNode.getJoinRelType());
+          joinNode.getJoinRelType(), _maxInMemoryJoinBuildBytes, _numJoinSpillPartitions, _spillDir,
+          getRuntimeFilterSender(requestId, joinNode, metadataMap));
     } else if (stageNode instanceof AggregateNode) {
       AggregateNode aggregateNode = (AggregateNode) stageNode;
       BaseOperator<TransferableBlock> inputOperator =
-          getOperator(requestId, aggregateNode.getInputs().get(0), metadataMap);
+          getOperator(requestId, aggregateNode.getInputs().get(0), metadataMap, mailboxIds);
       return new AggregateOperator(inputOperator, aggregateNode.getDataSchema(), aggregateNode.getAggCalls(),
           aggregateNode.getGroupSet(), aggregateNode.getInputs().get(0).getDataSchema());
     } else if (stageNode instanceof FilterNode) {
       FilterNode filterNode = (FilterNode) stageNode;
-      return new FilterOperator(getOperator(requestId, filterNode.getInputs().get(0), metadataMap),
+      return new FilterOperator(
+          getOperator(requestId, filterNode.getInputs().get(0), metadataMap, mailboxIds),
           filterNode.getDataSchema(), filterNode.getCondition());
     } else if (stageNode instanceof ProjectNode) {
       ProjectNode projectNode = (ProjectNode) stageNode;
-      return new TransformOperator(getOperator(requestId, projectNode.getInputs().get(0), metadataMap),
+      return new TransformOperator(
+          getOperator(requestId, projectNode.getInputs().get(0), metadataMap, mailboxIds),
           projectNode.getDataSchema(), projectNode.getProjects(), projectNode.getInputs().get(0).getDataSchema());
     } else if (stageNode instanceof SortNode) {
       SortNode sortNode = (SortNode) stageNode;
-      return new SortOperator(getOperator(requestId, sortNode.getInputs().get(0), metadataMap),
+      return new SortOperator(
+          getOperator(requestId, sortNode.getInputs().get(0), metadataMap, mailboxIds),
           sortNode.getCollationKeys(), sortNode.getCollationDirections(), sortNode.getFetch(), sortNode.getOffset(),
-          sortNode.getDataSchema());
+          sortNode.getDataSchema(), _maxInMemorySortBytes, _spillDir);
     } else if (stageNode instanceof ValueNode) {
       return new LiteralValueOperator(stageNode.getDataSchema(), ((ValueNode) stageNode).getLiteralRows());
     } else {
@@ -153,4 +174,19 @@ public class WorkerQueryExecutor {
           String.format("Stage node type %s is not supported!", stageNode.getClass().getSimpleName()));
     }
   }
+
+  @Nullable
+  private RuntimeFilterSender getRuntimeFilterSender(long requestId, JoinNode joinNode,
+      Map<Integer, StageMetadata> metadataMap) {
+    int targetStageId = joinNode.getRuntimeFilterTargetStageId();
+    if (targetStageId == JoinNode.NO_RUNTIME_FILTER) {
+      return null;
+    }
+    int keyColumnIndex = ((FieldSelectionKeySelector) joinNode.getCriteria().get(0).getRightJoinKeySelector())
+        .getColumnIndices().get(joinNode.getRuntimeFilterKeyIndex());
+    DataSchema.ColumnDataType dataType =
+        joinNode.getInputs().get(1).getDataSchema().getColumnDataType(keyColumnIndex);
+    return new RuntimeFilterSender(_mailboxService, metadataMap.get(targetStageId).getServerInstances(), _hostName,
+        _port, requestId, joinNode.getStageId(), keyColumnIndex, dataType, _maxRuntimeFilterInValues);
+  }
 }
@@ -19,51 +19,79 @@
 package org.apache.pinot.query.runtime.operator;
 
 import com.google.common.base.Preconditions;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 import org.apache.pinot.common.request.context.ExpressionContext;
+import org.apache.pinot.common.request.context.FunctionContext;
 import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.BlockValSet;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.core.common.datablock.DataBlockUtils;
 import org.apache.pinot.core.data.table.Key;
 import org.apache.pinot.core.operator.BaseOperator;
 import org.apache.pinot.core.query.aggregation.function.AggregationFunction;
-import org.apache.pinot.core.query.aggregation.function.MaxAggregationFunction;
-import org.apache.pinot.core.query.aggregation.function.MinAggregationFunction;
-import org.apache.pinot.core.query.aggregation.function.SumAggregationFunction;
-import org.apache.pinot.core.query.selection.SelectionOperatorUtils;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunctionFactory;
+import org.apache.pinot.core.query.aggregation.function.AggregationFunctionUtils;
+import org.apache.pinot.core.query.aggregation.groupby.GroupByResultHolder;
+import org.apache.pinot.core.query.request.context.QueryContext;
 import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.DataBlockValSet;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
-import org.apache.pinot.spi.data.FieldSpec;
 
 
 /**
+ * {@code AggregateOperator} performs the (group-by) aggregation of a stage with the {@link AggregationFunction}s of
+ * the v1 engine.
  *
+ * <p>Each input block is processed column by column: the group-by columns are mapped into dense group ids, then each
+ * aggregation function aggregates its input columns into a {@link GroupByResultHolder} indexed by the group id.
+ *
+ * <p>The aggregation can be split into phases across stages based on the column data types:
+ * <ul>
+ *   <li>An input column of OBJECT type carries the intermediate results of a previous aggregation stage, which are
+ *   merged with {@link AggregationFunction#merge(Object, Object)}; otherwise the raw input values are aggregated.</li>
+ *   <li>A result column of OBJECT type emits the intermediate results for a following stage to merge; otherwise the
+ *   final results are emitted.</li>
+ * </ul>
  */
-public class AggregateOperator extends BaseOperator<TransferableBlock> {
+public class AggregateOperator extends MultiStageOperator {
   private static final String EXPLAIN_NAME = "AGGREGATE_OPERATOR";
+  private static final int INITIAL_RESULT_HOLDER_CAPACITY = 128;
+  private static final int INVALID_GROUP_ID = -1;
 
   private BaseOperator<TransferableBlock> _inputOperator;
   private List<RexExpression> _aggCalls;
   private List<RexExpression> _groupSet;
 
   private final AggregationFunction[] _aggregationFunctions;
-  private final int[] _aggregationFunctionInputRefs;
-  private final Object[] _aggregationFunctionLiterals;
+  // input column of the aggregation functions merging the intermediate results, -1 for raw input aggregation.
+  private final int[] _intermediateResultInputRefs;
+  private final boolean[] _extractIntermediateResults;
+  // $SUM0 returns 0 instead of null when all the input values are null.
+  private final boolean[] _nullAsZeroResults;
+  private final GroupByResultHolder[] _groupByResultHolders;
+  private final List<Object>[] _mergedIntermediateResults;
+  private final int[] _groupKeyInputRefs;
+  private final Object2IntOpenHashMap<Object> _groupKeyToIdMap;
+  private final List<Object[]> _groupKeys;
   private final DataSchema _resultSchema;
-  private final Map<Integer, Object>[] _groupByResultHolders;
-  private final Map<Integer, Object[]> _groupByKeyHolder;
 
   private DataSchema _upstreamDataSchema;
   private TransferableBlock _upstreamErrorBlock;
   private boolean _isCumulativeBlockConstructed;
+  private int[] _groupIds;
 
   // TODO: refactor Pinot Reducer code to support the intermediate stage agg operator.
+  @SuppressWarnings("unchecked")
   public AggregateOperator(BaseOperator<TransferableBlock> inputOperator, DataSchema dataSchema,
       List<RexExpression> aggCalls, List<RexExpression> groupSet, DataSchema upstreamDataSchema) {
     _inputOperator = inputOperator;
@@ -71,39 +99,107 @@ public class AggregateOperator extends BaseOperator<TransferableBlock> {
     _groupSet = groupSet;
     _upstreamDataSchema = upstreamDataSchema;
     _upstreamErrorBlock = null;
+    _resultSchema = dataSchema;
 
-    _aggregationFunctions = new AggregationFunction[_aggCalls.size()];
-    _aggregationFunctionInputRefs = new int[_aggCalls.size()];
-    _aggregationFunctionLiterals = new Object[_aggCalls.size()];
-    _groupByResultHolders = new Map[_aggCalls.size()];
-    _groupByKeyHolder = new HashMap<Integer, Object[]>();
-    for (int i = 0; i < aggCalls.size(); i++) {
-      // agg function operand should either be a InputRef or a Literal
-      RexExpression rexExpression = toAggregationFunctionOperand(aggCalls.get(i));
-      if (rexExpression instanceof RexExpression.InputRef) {
-        _aggregationFunctionInputRefs[i] = ((RexExpression.InputRef) rexExpression).getIndex();
+    int numAggregationFunctions = _aggCalls.size();
+    int numGroupKeys = _groupSet.size();
+    _aggregationFunctions = toAggregationFunctions(aggCalls);
+    _intermediateResultInputRefs = new int[numAggregationFunctions];
+    _extractIntermediateResults = new boolean[numAggregationFunctions];
+    _nullAsZeroResults = new boolean[numAggregationFunctions];
+    _groupByResultHolders = new GroupByResultHolder[numAggregationFunctions];
+    _mergedIntermediateResults = new List[numAggregationFunctions];
+    for (int i = 0; i < numAggregationFunctions; i++) {
+      int inputRef = toAggregationFunctionInputRef(aggCalls.get(i));
+      if (inputRef >= 0 && upstreamDataSchema.getColumnDataType(inputRef) == DataSchema.ColumnDataType.OBJECT) {
+        _intermediateResultInputRefs[i] = inputRef;
+        _mergedIntermediateResults[i] = new ArrayList<>();
       } else {
-        _aggregationFunctionInputRefs[i] = -1;
-        _aggregationFunctionLiterals[i] = ((RexExpression.Literal) rexExpression).getValue();
+        Preconditions.checkState(inputRef < 0
+                || upstreamDataSchema.getColumnDataType(inputRef) != DataSchema.ColumnDataType.BYTES_ARRAY,
+            "Unsupported BYTES_ARRAY input column for aggregation: %s", aggCalls.get(i));
+        _intermediateResultInputRefs[i] = -1;
+        _groupByResultHolders[i] =
+            _aggregationFunctions[i].createGroupByResultHolder(INITIAL_RESULT_HOLDER_CAPACITY, Integer.MAX_VALUE);
       }
-      _aggregationFunctions[i] = toAggregationFunction(aggCalls.get(i), _aggregationFunctionInputRefs[i]);
-      _groupByResultHolders[i] = new HashMap<Integer, Object>();
+      _extractIntermediateResults[i] =
+          dataSchema.getColumnDataType(numGroupKeys + i) == DataSchema.ColumnDataType.OBJECT;
+      _nullAsZeroResults[i] = "$SUM0".equals(((RexExpression.FunctionCall) aggCalls.get(i)).getFunctionName());
     }
-    _resultSchema = dataSchema;
+    _groupKeyInputRefs = new int[numGroupKeys];
+    for (int i = 0; i < numGroupKeys; i++) {
+      _groupKeyInputRefs[i] = ((RexExpression.InputRef) groupSet.get(i)).getIndex();
+    }
+    _groupKeyToIdMap = new Object2IntOpenHashMap<>();
+    _groupKeyToIdMap.defaultReturnValue(INVALID_GROUP_ID);
+    _groupKeys = new ArrayList<>();
+    _groupIds = new int[0];
 
     _isCumulativeBlockConstructed = false;
   }
 
-  private RexExpression toAggregationFunctionOperand(RexExpression rexExpression) {
-    List<RexExpression> functionOperands = ((RexExpression.FunctionCall) rexExpression).getFunctionOperands();
+  /**
+   * Creates the v1 aggregation functions the same way as a v1 query, with the input columns referenced by their index
+   * in the upstream data schema. Null handling is always enabled: the data blocks carry the null bitmaps, which the
+   * functions get from {@link DataBlockValSet#getNullBitmap()} to skip the null values as SQL aggregations do.
+   */
+  private static AggregationFunction[] toAggregationFunctions(List<RexExpression> aggCalls) {
+    if (aggCalls.isEmpty()) {
+      // group-by without aggregation, e.g. DISTINCT.
+      return new AggregationFunction[0];
+    }
+    List<FunctionContext> functions = new ArrayList<>(aggCalls.size());
+    List<ExpressionContext> selectExpressions = new ArrayList<>(aggCalls.size());
+    for (RexExpression aggCall : aggCalls) {
+      Preconditions.checkState(aggCall instanceof RexExpression.FunctionCall);
+      RexExpression.FunctionCall functionCall = (RexExpression.FunctionCall) aggCall;
+      int inputRef = toAggregationFunctionInputRef(aggCall);
+      // COUNT(*) has no operand
+      ExpressionContext argument =
+          ExpressionContext.forIdentifier(inputRef >= 0 ? String.valueOf(inputRef) : "*");
+      FunctionContext function = new FunctionContext(FunctionContext.Type.AGGREGATION,
+          toAggregationFunctionName(functionCall), Collections.singletonList(argument));
+      functions.add(function);
+      selectExpressions.add(ExpressionContext.forFunction(function));
+    }
+    // TODO(Rong Rong): query options are not supported by the new engine at this moment.
+    QueryContext queryContext = new QueryContext.Builder().setSelectExpressions(selectExpressions)
+        .setAliasList(Collections.nCopies(selectExpressions.size(), null)).build();
+    // set directly: the query option checks the v1 data table version, which doesn't apply to the data blocks.
+    queryContext.setNullHandlingEnabled(true);
+    AggregationFunction[] aggregationFunctions = new AggregationFunction[functions.size()];
+    for (int i = 0; i < aggregationFunctions.length; i++) {
+      aggregationFunctions[i] = AggregationFunctionFactory.getAggregationFunction(functions.get(i), queryContext);
+    }
+    return aggregationFunctions;
+  }
+
+  private static String toAggregationFunctionName(RexExpression.FunctionCall functionCall) {
+    String functionName = functionCall.getFunctionName();
+    // Calcite internal aggregations, e.g. $SUM0 (SUM returning 0 on empty input) used when splitting the aggregation.
+    if (functionName.startsWith("$")) {
+      functionName = functionName.substring(1);
+      if (functionName.endsWith("0")) {
+        functionName = functionName.substring(0, functionName.length() - 1);
+      }
+    }
+    return functionName;
+  }
+
+  private static int toAggregationFunctionInputRef(RexExpression aggCall) {
+    List<RexExpression> functionOperands = ((RexExpression.FunctionCall) aggCall).getFunctionOperands();
     Preconditions.checkState(functionOperands.size() < 2);
-    return functionOperands.size() > 0 ? functionOperands.get(0) : new RexExpression.Literal(FieldSpec.DataType.INT, 1);
+    if (functionOperands.isEmpty()) {
+      return -1;
+    }
+    Preconditions.checkState(functionOperands.get(0) instanceof RexExpression.InputRef,
+        "Aggregation function operand must be an input reference: %s", aggCall);
+    return ((RexExpression.InputRef) functionOperands.get(0)).getIndex();
   }
 
   @Override
   public List<Operator> getChildOperators() {
-    // WorkerExecutor doesn't use getChildOperators, returns null here.
-    return null;
+    return Collections.singletonList(_inputOperator);
   }
 
   @Nullable
@@ -113,9 +209,16 @@ public class AggregateOperator extends BaseOperator<TransferableBlock> {
   }
 
   @Override
-  protected TransferableBlock getNextBlock() {
+  protected void recordStats(OperatorStats operatorStats) {
+    operatorStats.setStat(OperatorStats.HASH_TABLE_SIZE, _groupKeys.size());
+  }
+
+  @Override
+  protected TransferableBlock getNextTransferableBlock() {
     try {
-      consumeInputBlocks();
+      if (!consumeInputBlocks()) {
+        return TransferableBlockUtils.getNoOpTransferableBlock(_resultSchema);
+      }
       return produceAggregatedBlock();
     } catch (Exception e) {
       return TransferableBlockUtils.getErrorTransferableBlock(e);
@@ -128,49 +231,64 @@ public class AggregateOperator extends BaseOperator<TransferableBlock> {
       return _upstreamErrorBlock;
     }
     if (!_isCumulativeBlockConstructed) {
-      List<Object[]> rows = new ArrayList<>(_groupByKeyHolder.size());
-      for (Map.Entry<Integer, Object[]> e : _groupByKeyHolder.entrySet()) {
-        Object[] row = new Object[_aggregationFunctions.length + _groupSet.size()];
-        Object[] keyElements = e.getValue();
-        for (int i = 0; i < keyElements.length; i++) {
-          row[i] = keyElements[i];
-        }
-        for (int i = 0; i < _groupByResultHolders.length; i++) {
-          row[i + _groupSet.size()] = _groupByResultHolders[i].get(e.getKey());
-        }
-        rows.add(row);
-      }
+      int numGroups = _groupKeys.size();
+      int numGroupKeys = _groupKeyInputRefs.length;
       _isCumulativeBlockConstructed = true;
-      if (rows.size() == 0) {
+      if (numGroups == 0) {
         return TransferableBlockUtils.getEndOfStreamTransferableBlock(_resultSchema);
-      } else {
-        return new TransferableBlock(rows, _resultSchema, BaseDataBlock.Type.ROW);
       }
+      // the result block is columnar, fill it column by column instead of materializing the rows.
+      List<Object[]> columns = new ArrayList<>(numGroupKeys + _aggregationFunctions.length);
+      for (int keyId = 0; keyId < numGroupKeys; keyId++) {
+        Object[] column = new Object[numGroups];
+        for (int groupId = 0; groupId < numGroups; groupId++) {
+          column[groupId] = _groupKeys.get(groupId)[keyId];
+        }
+        columns.add(column);
+      }
+      for (int i = 0; i < _aggregationFunctions.length; i++) {
+        Object[] column = new Object[numGroups];
+        for (int groupId = 0; groupId < numGroups; groupId++) {
+          Object intermediateResult = _groupByResultHolders[i] != null
+              ? _aggregationFunctions[i].extractGroupByResult(_groupByResultHolders[i], groupId)
+              : _mergedIntermediateResults[i].get(groupId);
+          if (_extractIntermediateResults[i]) {
+            column[groupId] = intermediateResult;
+          } else {
+            Object finalResult = _aggregationFunctions[i].extractFinalResult(intermediateResult);
+            column[groupId] = finalResult == null && _nullAsZeroResults[i] ? 0.0 : finalResult;
+          }
+        }
+        columns.add(column);
+      }
+      return new TransferableBlock(DataBlockBuilder.buildFromColumns(columns, _resultSchema));
     } else {
       return TransferableBlockUtils.getEndOfStreamTransferableBlock(_resultSchema);
     }
   }
 
-  private void consumeInputBlocks() {
-    if (!_isCumulativeBlockConstructed) {
+  /**
+   * Consumes the available input blocks, returns {@code false} if the input has no data available yet and more input
+   * blocks are expected.
+   */
+  private boolean consumeInputBlocks() {
+    if (!_isCumulativeBlockConstructed && _upstreamErrorBlock == null) {
       TransferableBlock block = _inputOperator.nextBlock();
       while (!TransferableBlockUtils.isEndOfStream(block)) {
+        if (TransferableBlockUtils.isNoOpBlock(block)) {
+          return false;
+        }
         BaseDataBlock dataBlock = block.getDataBlock();
         int numRows = dataBlock.getNumberOfRows();
-        for (int rowId = 0; rowId < numRows; rowId++) {
-          Object[] row = SelectionOperatorUtils.extractRowFromDataTable(dataBlock, rowId);
-          Key key = extraRowKey(row, _groupSet);
-          int keyHashCode = key.hashCode();
-          _groupByKeyHolder.put(keyHashCode, key.getValues());
+        if (numRows > 0) {
+          computeGroupIds(dataBlock, numRows);
           for (int i = 0; i < _aggregationFunctions.length; i++) {
-            Object currentRes = _groupByResultHolders[i].get(keyHashCode);
-            if (currentRes == null) {
-              _groupByResultHolders[i].put(keyHashCode, _aggregationFunctionInputRefs[i] == -1
-                  ? _aggregationFunctionLiterals[i] : row[_aggregationFunctionInputRefs[i]]);
+            if (_groupByResultHolders[i] != null) {
+              _groupByResultHolders[i].ensureCapacity(_groupKeys.size());
+              _aggregationFunctions[i].aggregateGroupBySV(numRows, _groupIds, _groupByResultHolders[i],
+                  getBlockValSetMap(_aggregationFunctions[i], dataBlock));
             } else {
-              _groupByResultHolders[i].put(keyHashCode,
-                  merge(_aggCalls.get(i), currentRes, _aggregationFunctionInputRefs[i] == -1
-                      ? _aggregationFunctionLiterals[i] : row[_aggregationFunctionInputRefs[i]]));
+              mergeIntermediateResults(i, dataBlock, numRows);
             }
           }
         }
@@ -181,65 +299,81 @@ public class AggregateOperator extends BaseOperator<TransferableBlock> {
         _upstreamErrorBlock = block;
       }
     }
+    return true;
   }
 
-  private AggregationFunction toAggregationFunction(RexExpression aggCall, int aggregationFunctionInputRef) {
-    Preconditions.checkState(aggCall instanceof RexExpression.FunctionCall);
-    // TODO(Rong Rong): query options are not supported by the new engine at this moment.
-    switch (((RexExpression.FunctionCall) aggCall).getFunctionName()) {
-      case "$SUM":
-      case "$SUM0":
-      case "SUM":
-        return new SumAggregationFunction(
-            ExpressionContext.forIdentifier(String.valueOf(aggregationFunctionInputRef)));
-      case "$MIN":
-      case "$MIN0":
-      case "MIN":
-        return new MinAggregationFunction(
-            ExpressionContext.forIdentifier(String.valueOf(aggregationFunctionInputRef)));
-      case "$MAX":
-      case "$MAX0":
-      case "MAX":
-        return new MaxAggregationFunction(
-            ExpressionContext.forIdentifier(String.valueOf(aggregationFunctionInputRef)));
-      // COUNT(*) is rewritten to SUM(1)
-      case "COUNT":
-        return new SumAggregationFunction(ExpressionContext.forLiteral("1"));
-      default:
-        throw new IllegalStateException(
-            "Unexpected value: " + ((RexExpression.FunctionCall) aggCall).getFunctionName());
+  /**
+   * Maps the group-by columns of each row into a dense group id, assigning new ids to the unseen group keys.
+   */
+  private void computeGroupIds(BaseDataBlock dataBlock, int numRows) {
+    if (_groupIds.length < numRows) {
+      _groupIds = new int[numRows];
+    }
+    int numGroupKeys = _groupKeyInputRefs.length;
+    if (numGroupKeys == 0) {
+      // all the rows belong to the same group for aggregation without group-by.
+      if (_groupKeys.isEmpty()) {
+        _groupKeys.add(new Object[0]);
+      }
+      return;
+    }
+    Object[][] groupKeyColumns = new Object[numGroupKeys][];
+    for (int i = 0; i < numGroupKeys; i++) {
+      groupKeyColumns[i] = DataBlockUtils.extractColumn(dataBlock, _groupKeyInputRefs[i]);
+    }
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      Object groupKey;
+      if (numGroupKeys == 1) {
+        groupKey = groupKeyColumns[0][rowId];
+      } else {
+        Object[] keyValues = new Object[numGroupKeys];
+        for (int i = 0; i < numGroupKeys; i++) {
+          keyValues[i] = groupKeyColumns[i][rowId];
+        }
+        groupKey = new Key(keyValues);
+      }
+      int groupId = _groupKeyToIdMap.getInt(groupKey);
+      if (groupId == INVALID_GROUP_ID) {
+        groupId = _groupKeys.size();
+        _groupKeyToIdMap.put(groupKey, groupId);
+        _groupKeys.add(numGroupKeys == 1 ? new Object[]{groupKey} : ((Key) groupKey).getValues());
+      }
+      _groupIds[rowId] = groupId;
     }
   }
 
-  private Object merge(RexExpression aggCall, Object left, Object right) {
-    Preconditions.checkState(aggCall instanceof RexExpression.FunctionCall);
-    switch (((RexExpression.FunctionCall) aggCall).getFunctionName()) {
-      case "SUM":
-      case "$SUM":
-      case "$SUM0":
-        return ((Number) left).doubleValue() + ((Number) right).doubleValue();
-      case "MIN":
-      case "$MIN":
-      case "$MIN0":
-        return Math.min(((Number) left).doubleValue(), ((Number) right).doubleValue());
-      case "MAX":
-      case "$MAX":
-      case "$MAX0":
-        return Math.max(((Number) left).doubleValue(), ((Number) right).doubleValue());
-      // COUNT(*) doesn't need to parse right object.
-      case "COUNT":
-        return ((Number) left).doubleValue() + 1;
-      default:
-        throw new IllegalStateException(
-            "Unexpected value: " + ((RexExpression.FunctionCall) aggCall).getFunctionName());
+  private static Map<ExpressionContext, BlockValSet> getBlockValSetMap(AggregationFunction aggregationFunction,
+      BaseDataBlock dataBlock) {
+    List<ExpressionContext> inputExpressions = aggregationFunction.getInputExpressions();
+    if (inputExpressions.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<ExpressionContext, BlockValSet> blockValSetMap = new HashMap<>();
+    for (ExpressionContext inputExpression : inputExpressions) {
+      int colId = Integer.parseInt(inputExpression.getIdentifier());
+      blockValSetMap.put(inputExpression, new DataBlockValSet(dataBlock, colId));
     }
+    return blockValSetMap;
   }
 
-  private static Key extraRowKey(Object[] row, List<RexExpression> groupSet) {
-    Object[] keyElements = new Object[groupSet.size()];
-    for (int i = 0; i < groupSet.size(); i++) {
-      keyElements[i] = row[((RexExpression.InputRef) groupSet.get(i)).getIndex()];
+  @SuppressWarnings("unchecked")
+  private void mergeIntermediateResults(int functionId, BaseDataBlock dataBlock, int numRows) {
+    AggregationFunction aggregationFunction = _aggregationFunctions[functionId];
+    List<Object> mergedIntermediateResults = _mergedIntermediateResults[functionId];
+    int colId = _intermediateResultInputRefs[functionId];
+    while (mergedIntermediateResults.size() < _groupKeys.size()) {
+      mergedIntermediateResults.add(null);
+    }
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      Object intermediateResult = AggregationFunctionUtils.getIntermediateResult(dataBlock,
+          DataSchema.ColumnDataType.OBJECT, rowId, colId);
+      if (intermediateResult == null) {
+        continue;
+      }
+      int groupId = _groupIds[rowId];
+      Object mergedIntermediateResult = mergedIntermediateResults.get(groupId);
+      mergedIntermediateResults.set(groupId, mergedIntermediateResult == null ? intermediateResult
+          : aggregationFunction.merge(mergedIntermediateResult, intermediateResult));
     }
-    return new Key(keyElements);
   }
 }
@@ -19,6 +19,8 @@
 package org.apache.pinot.query.runtime.operator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.pinot.common.utils.DataSchema;
@@ -27,15 +29,28 @@ import org.apache.pinot.core.common.datablock.BaseDataBlock;
 import org.apache.pinot.core.common.datablock.DataBlockUtils;
 import org.apache.pinot.core.operator.BaseOperator;
 import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.ColumnarRowReader;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
 import org.apache.pinot.query.runtime.operator.operands.FilterOperand;
+import org.apache.pinot.query.runtime.operator.vector.VectorBatch;
+import org.apache.pinot.query.runtime.operator.vector.VectorFilter;
 
 
-public class FilterOperator extends BaseOperator<TransferableBlock> {
+/**
+ * This {@code FilterOperator} keeps the rows matching the filter.
+ *
+ * <p>A columnar block is filtered without copying its data block: the matching rows are returned as a selection vector
+ * over the input data block (see {@link TransferableBlock#getSelection()}). Unless the referenced columns hold nulls,
+ * the filter is evaluated a block at a time by a {@link VectorFilter}, and by the row-based {@link FilterOperand}
+ * otherwise.
+ */
+public class FilterOperator extends MultiStageOperator {
   private static final String EXPLAIN_NAME = "FILTER";
   private final BaseOperator<TransferableBlock> _upstreamOperator;
   private final FilterOperand _filterOperand;
+  private final VectorFilter _vectorFilter;
+  private final int[] _referencedColIds;
   private final DataSchema _dataSchema;
   private TransferableBlock _upstreamErrorBlock;
 
@@ -43,13 +58,14 @@ public class FilterOperator extends BaseOperator<TransferableBlock> {
     _upstreamOperator = upstreamOperator;
     _dataSchema = dataSchema;
     _filterOperand = FilterOperand.toFilterOperand(filter, dataSchema);
+    _vectorFilter = VectorFilter.compile(filter, dataSchema);
+    _referencedColIds = OperatorUtils.getReferencedColumnIds(Collections.singletonList(filter));
     _upstreamErrorBlock = null;
   }
 
   @Override
   public List<Operator> getChildOperators() {
-    // WorkerExecutor doesn't use getChildOperators, returns null here.
-    return null;
+    return Collections.singletonList(_upstreamOperator);
   }
 
   @Nullable
@@ -59,7 +75,7 @@ public class FilterOperator extends BaseOperator<TransferableBlock> {
   }
 
   @Override
-  protected TransferableBlock getNextBlock() {
+  protected TransferableBlock getNextTransferableBlock() {
     try {
       return transform(_upstreamOperator.nextBlock());
     } catch (Exception e) {
@@ -72,7 +88,13 @@ public class FilterOperator extends BaseOperator<TransferableBlock> {
     if (_upstreamErrorBlock != null) {
       return _upstreamErrorBlock;
     }
+    if (TransferableBlockUtils.isNoOpBlock(block)) {
+      return block;
+    }
     if (!TransferableBlockUtils.isEndOfStream(block)) {
+      if (block.getType() == BaseDataBlock.Type.COLUMNAR && !block.isContainerBacked()) {
+        return filterColumnar(block);
+      }
       List<Object[]> resultRows = new ArrayList<>();
       List<Object[]> container = block.getContainer();
       for (Object[] row : container) {
@@ -80,7 +102,7 @@ public class FilterOperator extends BaseOperator<TransferableBlock> {
           resultRows.add(row);
         }
       }
-      return new TransferableBlock(resultRows, _dataSchema, BaseDataBlock.Type.ROW);
+      return new TransferableBlock(resultRows, _dataSchema, BaseDataBlock.Type.COLUMNAR);
     } else if (block.isErrorBlock()) {
       _upstreamErrorBlock = block;
       return _upstreamErrorBlock;
@@ -88,4 +110,26 @@ public class FilterOperator extends BaseOperator<TransferableBlock> {
       return new TransferableBlock(DataBlockUtils.getEndOfStreamDataBlock(_dataSchema));
     }
   }
+
+  private TransferableBlock filterColumnar(TransferableBlock block) {
+    if (!VectorBatch.hasNulls(block, _referencedColIds)) {
+      VectorBatch batch = new VectorBatch(block);
+      int numRows = batch.getNumRows();
+      int[] selection = batch.getRowIds();
+      int numSelected = _vectorFilter.filter(batch, selection, numRows);
+      return new TransferableBlock(batch.getDataBlock(),
+          numSelected == numRows ? selection : Arrays.copyOf(selection, numSelected));
+    }
+    ColumnarRowReader rowReader = new ColumnarRowReader(block, _referencedColIds);
+    int numRows = rowReader.getNumRows();
+    int[] selection = new int[numRows];
+    int numSelected = 0;
+    for (int i = 0; i < numRows; i++) {
+      if (_filterOperand.apply(rowReader.readRow(i))) {
+        selection[numSelected++] = rowReader.getRowId(i);
+      }
+    }
+    return new TransferableBlock(rowReader.getDataBlock(),
+        numSelected == numRows ? selection : Arrays.copyOf(selection, numSelected));
+  }
 }
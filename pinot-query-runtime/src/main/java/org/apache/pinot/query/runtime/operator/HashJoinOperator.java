@@ -18,9 +18,14 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.calcite.rel.core.JoinRelType;
@@ -33,35 +38,117 @@ import org.apache.pinot.query.planner.partitioning.KeySelector;
 import org.apache.pinot.query.planner.stage.JoinNode;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.join.JoinHashTable;
+import org.apache.pinot.query.runtime.operator.join.RuntimeFilterSender;
+import org.apache.pinot.query.runtime.operator.utils.SpilledRowPartitions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 /**
  * This basic {@code BroadcastJoinOperator} implement a basic broadcast join algorithm.
  *
- * <p>It takes the right table as the broadcast side and materialize a hash table. Then for each of the left table row,
- * it looks up for the corresponding row(s) from the hash table and create a joint row.
+ * <p>It takes the right table as the broadcast side and materialize a {@link JoinHashTable}. Then for each of the left
+ * table row, it looks up for the corresponding row(s) with an equal join key from the hash table and create a joint
+ * row.
  *
- * <p>For each of the data block received from the left table, it will generate a joint data block.
+ * <p>For each of the data block received from the left table, it will generate a joint data block. RIGHT and FULL
+ * joins track the matched right table rows, and emit the unmatched ones after the left table is fully consumed.
+ *
+ * <p>When the estimated size of the hash table goes beyond the configured in-memory budget, the operator switches to a
+ * partitioned (grace) hash join: the right table rows are hash partitioned on the join key into local temporary files,
+ * then the left table rows are partitioned the same way, and each pair of partitions is joined with its own hash
+ * table, one partition at a time. A right table partition that still goes beyond the budget (e.g. because of skewed
+ * join keys) is partitioned again, along with its left table partition, with a different hash function. When it
+ * cannot be split any further (e.g. a single hot join key), it is loaded in chunks within the budget, and its left
+ * table partition is scanned once per chunk.
+ *
+ * <p>When a {@link RuntimeFilterSender} is given, the join keys of the right table are summarized into a runtime
+ * filter, which is sent to the left table scan stage as soon as the right table is fully consumed.
  */
-public class HashJoinOperator extends BaseOperator<TransferableBlock> {
+public class HashJoinOperator extends MultiStageOperator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(HashJoinOperator.class);
   private static final String EXPLAIN_NAME = "BROADCAST_JOIN";
+  // max number of times a spilled partition is partitioned again before falling back to chunked loading.
+  private static final int MAX_REPARTITION_LEVEL = 3;
+  private static final int MAX_ROWS_PER_UNMATCHED_BLOCK = 10_000;
 
-  private final HashMap<Integer, List<Object[]>> _broadcastHashTable;
   private final BaseOperator<TransferableBlock> _leftTableOperator;
   private final BaseOperator<TransferableBlock> _rightTableOperator;
   private final JoinRelType _joinType;
   private final DataSchema _resultSchema;
   private final DataSchema _leftTableSchema;
   private final DataSchema _rightTableSchema;
+  private final DataSchema.ColumnDataType[] _rightStoredColumnDataTypes;
   private final int _resultRowSize;
+  // RIGHT and FULL joins emit the unmatched right table rows, LEFT, FULL and ANTI joins the unmatched left table rows.
+  private final boolean _emitsUnmatchedBuildRows;
+  private final boolean _emitsUnmatchedProbeRows;
+  private final long _maxInMemoryBuildBytes;
+  private final int _numSpillPartitions;
+  private final File _spillDir;
+  private final RuntimeFilterSender _runtimeFilterSender;
+  private JoinHashTable _broadcastHashTable;
   private boolean _isHashTableBuilt;
   private TransferableBlock _upstreamErrorBlock;
   private KeySelector<Object[], Object[]> _leftKeySelector;
   private KeySelector<Object[], Object[]> _rightKeySelector;
 
+  // right table rows with null join key, which are never matched, only kept for RIGHT and FULL joins.
+  private List<Object[]> _nullKeyBuildRows;
+  private long _nullKeyBuildRowBytes;
+  // ids of the matched rows of the hash table, only tracked for RIGHT and FULL joins.
+  private BitSet _matchedBuildRowIds;
+  private int _unmatchedBuildRowCursor;
+  private boolean _isLeftTableFinished;
+
+  // states of the partitioned hash join, only set after the right table is spilled.
+  private SpilledRowPartitions _buildPartitions;
+  private SpilledRowPartitions _probePartitions;
+  private boolean _isLeftTablePartitioned;
+  private final List<SpilledRowPartitions> _repartitions = new ArrayList<>();
+  private final Deque<PartitionPair> _pendingPartitionPairs = new ArrayDeque<>();
+  private PartitionPair _currentPartitionPair;
+  private SpilledRowPartitions.PartitionReader _buildPartitionReader;
+  // next rows of the build partition, read ahead to know whether the loaded chunk is the last one.
+  private List<Object[]> _nextBuildRows;
+  private boolean _isLastBuildChunk = true;
+  private SpilledRowPartitions.PartitionReader _probePartitionReader;
+  private int _probeRowId;
+  // ids of the matched rows of the probe partition, only tracked when the build partition is loaded in chunks.
+  private BitSet _matchedProbeRowIds;
+  private boolean _isEmittingUnmatchedBuildRows;
+  private long _numSpilledBytes;
+  // total rows of the hash tables the spilled partitions (or chunks of them) have been joined with.
+  private long _numPartitionHashTableRows;
+
   public HashJoinOperator(BaseOperator<TransferableBlock> leftTableOperator, DataSchema leftSchema,
       BaseOperator<TransferableBlock> rightTableOperator, DataSchema rightSchema, DataSchema outputSchema,
       List<JoinNode.JoinClause> criteria, JoinRelType joinType) {
+    this(leftTableOperator, leftSchema, rightTableOperator, rightSchema, outputSchema, criteria, joinType,
+        Long.MAX_VALUE, 1, null);
+  }
+
+  public HashJoinOperator(BaseOperator<TransferableBlock> leftTableOperator, DataSchema leftSchema,
+      BaseOperator<TransferableBlock> rightTableOperator, DataSchema rightSchema, DataSchema outputSchema,
+      List<JoinNode.JoinClause> criteria, JoinRelType joinType, long maxInMemoryBuildBytes, int numSpillPartitions,
+      @Nullable File spillDir) {
+    this(leftTableOperator, leftSchema, rightTableOperator, rightSchema, outputSchema, criteria, joinType,
+        maxInMemoryBuildBytes, numSpillPartitions, spillDir, null);
+  }
+
+  /**
+   * @param maxInMemoryBuildBytes max estimated bytes of the in-memory hash table before spilling to disk.
+   * @param numSpillPartitions number of partitions to split both join inputs into when spilling.
+   * @param spillDir directory of the spill files, {@code null} to use the system temporary directory.
+   * @param runtimeFilterSender sender of the runtime filter of the right table join keys, {@code null} if the left
+   *                            table scan does not wait for a runtime filter.
+   */
+  public HashJoinOperator(BaseOperator<TransferableBlock> leftTableOperator, DataSchema leftSchema,
+      BaseOperator<TransferableBlock> rightTableOperator, DataSchema rightSchema, DataSchema outputSchema,
+      List<JoinNode.JoinClause> criteria, JoinRelType joinType, long maxInMemoryBuildBytes, int numSpillPartitions,
+      @Nullable File spillDir, @Nullable RuntimeFilterSender runtimeFilterSender) {
+    Preconditions.checkState(numSpillPartitions > 0, "Number of spill partitions must be positive");
     _leftKeySelector = criteria.get(0).getLeftJoinKeySelector();
     _rightKeySelector = criteria.get(0).getRightJoinKeySelector();
     _leftTableOperator = leftTableOperator;
@@ -69,17 +156,24 @@ public class HashJoinOperator extends BaseOperator<TransferableBlock> {
     _resultSchema = outputSchema;
     _leftTableSchema = leftSchema;
     _rightTableSchema = rightSchema;
+    _rightStoredColumnDataTypes = rightSchema.getStoredColumnDataTypes();
     _joinType = joinType;
     _resultRowSize = _resultSchema.size();
+    _emitsUnmatchedBuildRows = joinType == JoinRelType.RIGHT || joinType == JoinRelType.FULL;
+    _emitsUnmatchedProbeRows =
+        joinType == JoinRelType.LEFT || joinType == JoinRelType.FULL || joinType == JoinRelType.ANTI;
+    _maxInMemoryBuildBytes = maxInMemoryBuildBytes;
+    _numSpillPartitions = numSpillPartitions;
+    _spillDir = spillDir;
+    _runtimeFilterSender = runtimeFilterSender;
     _isHashTableBuilt = false;
-    _broadcastHashTable = new HashMap<>();
+    resetHashTable();
     _upstreamErrorBlock = null;
   }
 
   @Override
   public List<Operator> getChildOperators() {
-    // WorkerExecutor doesn't use getChildOperators, returns null here.
-    return null;
+    return Arrays.asList(_leftTableOperator, _rightTableOperator);
   }
 
   @Nullable
@@ -88,73 +182,501 @@ public class HashJoinOperator extends BaseOperator<TransferableBlock> {
     return EXPLAIN_NAME;
   }
 
+  /**
+   * Returns the number of bytes spilled to disk, 0 if the join is processed in memory.
+   */
+  public long getNumSpilledBytes() {
+    return _numSpilledBytes;
+  }
+
+  @Override
+  protected void recordStats(OperatorStats operatorStats) {
+    operatorStats.setStat(OperatorStats.HASH_TABLE_SIZE,
+        _buildPartitions == null ? _broadcastHashTable.size() : _numPartitionHashTableRows);
+    operatorStats.setStat(OperatorStats.SPILLED_BYTES, _numSpilledBytes);
+  }
+
   @Override
-  protected TransferableBlock getNextBlock() {
+  protected TransferableBlock getNextTransferableBlock() {
     // Build JOIN hash table
     buildBroadcastHashTable();
+    if (!_isHashTableBuilt) {
+      // the right table has no data available yet.
+      return TransferableBlockUtils.getNoOpTransferableBlock(_resultSchema);
+    }
     if (_upstreamErrorBlock != null) {
+      cleanUpSpilledPartitions();
       return _upstreamErrorBlock;
     }
     // JOIN each left block with the right block.
     try {
-      return buildJoinedDataBlock(_leftTableOperator.nextBlock());
+      if (_buildPartitions == null) {
+        if (_isLeftTableFinished) {
+          return buildUnmatchedBuildRowsBlock();
+        }
+        return buildJoinedDataBlock(_leftTableOperator.nextBlock());
+      } else {
+        return buildSpilledJoinedDataBlock();
+      }
     } catch (Exception e) {
+      cleanUpSpilledPartitions();
       return TransferableBlockUtils.getErrorTransferableBlock(e);
     }
   }
 
+  private JoinHashTable createHashTable() {
+    return JoinHashTable.create(_leftKeySelector, _leftTableSchema, _rightKeySelector, _rightTableSchema);
+  }
+
+  private void resetHashTable() {
+    _broadcastHashTable = createHashTable();
+    if (_emitsUnmatchedBuildRows) {
+      _nullKeyBuildRows = new ArrayList<>();
+      _nullKeyBuildRowBytes = 0;
+      _matchedBuildRowIds = new BitSet();
+    }
+  }
+
+  private void addBuildRow(Object[] row) {
+    if (!_broadcastHashTable.addRow(row) && _emitsUnmatchedBuildRows) {
+      _nullKeyBuildRows.add(row);
+      _nullKeyBuildRowBytes += OperatorUtils.estimateRowBytes(row, _rightStoredColumnDataTypes);
+    }
+  }
+
+  private long getEstimatedBuildBytes() {
+    return _broadcastHashTable.getEstimatedMemoryBytes() + _nullKeyBuildRowBytes;
+  }
+
   private void buildBroadcastHashTable() {
     if (!_isHashTableBuilt) {
-      TransferableBlock rightBlock = _rightTableOperator.nextBlock();
-      while (!TransferableBlockUtils.isEndOfStream(rightBlock)) {
-        List<Object[]> container = rightBlock.getContainer();
-        // put all the rows into corresponding hash collections keyed by the key selector function.
-        for (Object[] row : container) {
-          List<Object[]> hashCollection =
-              _broadcastHashTable.computeIfAbsent(_rightKeySelector.computeHash(row), k -> new ArrayList<>());
-          hashCollection.add(row);
+      try {
+        TransferableBlock rightBlock = _rightTableOperator.nextBlock();
+        while (!TransferableBlockUtils.isEndOfStream(rightBlock)) {
+          if (TransferableBlockUtils.isNoOpBlock(rightBlock)) {
+            return;
+          }
+          List<Object[]> container = rightBlock.getContainer();
+          if (_runtimeFilterSender != null) {
+            for (Object[] row : container) {
+              _runtimeFilterSender.addRow(row);
+            }
+          }
+          if (_buildPartitions == null) {
+            // put all the rows into the hash table keyed by the join key.
+            for (Object[] row : container) {
+              addBuildRow(row);
+            }
+            if (getEstimatedBuildBytes() > _maxInMemoryBuildBytes) {
+              spillBroadcastHashTable();
+            }
+          } else {
+            for (Object[] row : container) {
+              addBuildRowToPartition(row);
+            }
+          }
+          rightBlock = _rightTableOperator.nextBlock();
+        }
+        if (rightBlock.isErrorBlock()) {
+          _upstreamErrorBlock = rightBlock;
+        } else if (_buildPartitions != null) {
+          _buildPartitions.finish();
         }
-        rightBlock = _rightTableOperator.nextBlock();
+      } catch (Exception e) {
+        _upstreamErrorBlock = TransferableBlockUtils.getErrorTransferableBlock(e);
       }
-      if (rightBlock.isErrorBlock()) {
-        _upstreamErrorBlock = rightBlock;
+      if (_runtimeFilterSender != null) {
+        _runtimeFilterSender.send(_upstreamErrorBlock == null);
       }
       _isHashTableBuilt = true;
     }
   }
 
+  private void spillBroadcastHashTable()
+      throws IOException {
+    LOGGER.info("Join hash table with {} rows exceeds {} bytes, spilling into {} partitions",
+        _broadcastHashTable.size(), _maxInMemoryBuildBytes, _numSpillPartitions);
+    // the extra last partition holds the RIGHT and FULL join rows with null join key, which are joined with no left
+    // table row.
+    _buildPartitions = new SpilledRowPartitions(_spillDir, _rightTableSchema, _numSpillPartitions + 1);
+    int numRows = _broadcastHashTable.size();
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      addBuildRowToPartition(_broadcastHashTable.getRow(rowId));
+    }
+    if (_emitsUnmatchedBuildRows) {
+      for (Object[] row : _nullKeyBuildRows) {
+        _buildPartitions.addRow(_numSpillPartitions, row);
+      }
+    }
+    // release the rows, the empty hash table is only used to compute the partitions from now on.
+    resetHashTable();
+  }
+
+  private void addBuildRowToPartition(Object[] row)
+      throws IOException {
+    int partitionId = _broadcastHashTable.getBuildPartitionId(row, _numSpillPartitions);
+    if (partitionId == JoinHashTable.NULL_KEY_PARTITION_ID) {
+      // right table rows with null join key never match, they are only needed for RIGHT and FULL join.
+      if (!_emitsUnmatchedBuildRows) {
+        return;
+      }
+      partitionId = _numSpillPartitions;
+    }
+    _buildPartitions.addRow(partitionId, row);
+  }
+
   private TransferableBlock buildJoinedDataBlock(TransferableBlock leftBlock)
       throws Exception {
+    if (TransferableBlockUtils.isNoOpBlock(leftBlock)) {
+      return leftBlock;
+    }
     if (!TransferableBlockUtils.isEndOfStream(leftBlock)) {
-      List<Object[]> rows = new ArrayList<>();
-      List<Object[]> container = leftBlock.getContainer();
-      for (Object[] leftRow : container) {
-        List<Object[]> hashCollection = _broadcastHashTable.getOrDefault(
-            _leftKeySelector.computeHash(leftRow), Collections.emptyList());
-        for (Object[] rightRow : hashCollection) {
-          rows.add(joinRow(leftRow, rightRow));
-        }
-      }
-      return new TransferableBlock(rows, _resultSchema, BaseDataBlock.Type.ROW);
+      return new TransferableBlock(joinRows(leftBlock.getContainer()), _resultSchema, BaseDataBlock.Type.COLUMNAR);
     } else if (leftBlock.isErrorBlock()) {
       _upstreamErrorBlock = leftBlock;
       return _upstreamErrorBlock;
     } else {
-      return new TransferableBlock(DataBlockUtils.getEndOfStreamDataBlock(_resultSchema));
+      _isLeftTableFinished = true;
+      return buildUnmatchedBuildRowsBlock();
+    }
+  }
+
+  /**
+   * Returns the next block of unmatched right table rows for RIGHT and FULL join, or the end of stream block once all
+   * of them are emitted.
+   */
+  private TransferableBlock buildUnmatchedBuildRowsBlock() {
+    List<Object[]> rows = _emitsUnmatchedBuildRows ? nextUnmatchedBuildRows() : null;
+    if (rows != null) {
+      return new TransferableBlock(rows, _resultSchema, BaseDataBlock.Type.COLUMNAR);
+    }
+    return new TransferableBlock(DataBlockUtils.getEndOfStreamDataBlock(_resultSchema));
+  }
+
+  /**
+   * Returns the next batch of right table rows that are not matched by any left table row (including the rows with
+   * null join key), joined with null left columns, or {@code null} if all of them have been returned.
+   */
+  @Nullable
+  private List<Object[]> nextUnmatchedBuildRows() {
+    int numRows = _broadcastHashTable.size();
+    int numTotalRows = numRows + _nullKeyBuildRows.size();
+    List<Object[]> rows = new ArrayList<>();
+    while (_unmatchedBuildRowCursor < numTotalRows && rows.size() < MAX_ROWS_PER_UNMATCHED_BLOCK) {
+      if (_unmatchedBuildRowCursor < numRows) {
+        _unmatchedBuildRowCursor = _matchedBuildRowIds.nextClearBit(_unmatchedBuildRowCursor);
+        if (_unmatchedBuildRowCursor < numRows) {
+          rows.add(joinRow(null, _broadcastHashTable.getRow(_unmatchedBuildRowCursor++)));
+        }
+      } else {
+        rows.add(joinRow(null, _nullKeyBuildRows.get(_unmatchedBuildRowCursor++ - numRows)));
+      }
     }
+    return rows.isEmpty() ? null : rows;
   }
 
-  private Object[] joinRow(Object[] leftRow, Object[] rightRow) {
+  private TransferableBlock buildSpilledJoinedDataBlock()
+      throws IOException {
+    if (!_isLeftTablePartitioned) {
+      partitionLeftTable();
+      if (_upstreamErrorBlock != null) {
+        cleanUpSpilledPartitions();
+        return _upstreamErrorBlock;
+      }
+      if (!_isLeftTablePartitioned) {
+        // the left table has no data available yet.
+        return TransferableBlockUtils.getNoOpTransferableBlock(_resultSchema);
+      }
+    }
+    while (true) {
+      if (_probePartitionReader != null) {
+        List<Object[]> leftRows = _probePartitionReader.nextRows();
+        if (leftRows != null) {
+          List<Object[]> rows = joinRows(leftRows);
+          if (!rows.isEmpty()) {
+            return new TransferableBlock(rows, _resultSchema, BaseDataBlock.Type.COLUMNAR);
+          }
+          continue;
+        }
+        // the probe partition is joined with the current chunk of the build partition.
+        _probePartitionReader.close();
+        _probePartitionReader = null;
+        _unmatchedBuildRowCursor = 0;
+        _isEmittingUnmatchedBuildRows = _emitsUnmatchedBuildRows;
+      }
+      if (_isEmittingUnmatchedBuildRows) {
+        List<Object[]> rows = nextUnmatchedBuildRows();
+        if (rows != null) {
+          return new TransferableBlock(rows, _resultSchema, BaseDataBlock.Type.COLUMNAR);
+        }
+        _isEmittingUnmatchedBuildRows = false;
+      }
+      if (!_isLastBuildChunk) {
+        loadBuildChunk();
+        openProbePartition();
+        continue;
+      }
+      _currentPartitionPair = _pendingPartitionPairs.pollFirst();
+      if (_currentPartitionPair == null) {
+        break;
+      }
+      startPartitionPair();
+    }
+    cleanUpSpilledPartitions();
+    return new TransferableBlock(DataBlockUtils.getEndOfStreamDataBlock(_resultSchema));
+  }
+
+  private void partitionLeftTable()
+      throws IOException {
+    if (_probePartitions == null) {
+      // the extra last partition holds the LEFT, FULL and ANTI join rows with null join key, which are joined with no
+      // right table row.
+      _probePartitions = new SpilledRowPartitions(_spillDir, _leftTableSchema, _numSpillPartitions + 1);
+    }
+    TransferableBlock leftBlock = _leftTableOperator.nextBlock();
+    while (!TransferableBlockUtils.isEndOfStream(leftBlock)) {
+      if (TransferableBlockUtils.isNoOpBlock(leftBlock)) {
+        return;
+      }
+      for (Object[] row : leftBlock.getContainer()) {
+        int partitionId = _broadcastHashTable.getProbePartitionId(row, _numSpillPartitions);
+        if (partitionId == JoinHashTable.NULL_KEY_PARTITION_ID) {
+          if (!_emitsUnmatchedProbeRows) {
+            continue;
+          }
+          partitionId = _numSpillPartitions;
+        }
+        _probePartitions.addRow(partitionId, row);
+      }
+      leftBlock = _leftTableOperator.nextBlock();
+    }
+    if (leftBlock.isErrorBlock()) {
+      _upstreamErrorBlock = leftBlock;
+      return;
+    }
+    _probePartitions.finish();
+    _isLeftTablePartitioned = true;
+    _numSpilledBytes = _buildPartitions.getNumSpilledBytes() + _probePartitions.getNumSpilledBytes();
+    LOGGER.info("Spilled {} bytes for the partitioned hash join", _numSpilledBytes);
+    for (int partitionId = 0; partitionId < _numSpillPartitions; partitionId++) {
+      _pendingPartitionPairs.addLast(new PartitionPair(_buildPartitions, _probePartitions, partitionId, 0));
+    }
+    if (_emitsUnmatchedBuildRows || _emitsUnmatchedProbeRows) {
+      // the null join key partitions cannot be split by hash, never partition them again.
+      _pendingPartitionPairs.addLast(
+          new PartitionPair(_buildPartitions, _probePartitions, _numSpillPartitions, MAX_REPARTITION_LEVEL));
+    }
+  }
+
+  private void startPartitionPair()
+      throws IOException {
+    _buildPartitionReader =
+        _currentPartitionPair._buildPartitions.openPartition(_currentPartitionPair._partitionId);
+    _nextBuildRows = _buildPartitionReader.nextRows();
+    loadBuildChunk();
+    if (!_isLastBuildChunk) {
+      if (_currentPartitionPair._level < MAX_REPARTITION_LEVEL) {
+        repartition();
+        return;
+      }
+      LOGGER.info("Spilled join partition at level {} exceeds {} bytes, joining it in chunks",
+          _currentPartitionPair._level, _maxInMemoryBuildBytes);
+    }
+    // the left rows are joined with multiple chunks, remember the matched ones to emit each of them correctly.
+    _matchedProbeRowIds =
+        !_isLastBuildChunk && (_joinType == JoinRelType.SEMI || _emitsUnmatchedProbeRows) ? new BitSet() : null;
+    openProbePartition();
+  }
+
+  /**
+   * Loads the next chunk of rows of the current build partition into the hash table, until either the in-memory
+   * budget or the end of the partition is reached.
+   */
+  private void loadBuildChunk()
+      throws IOException {
+    resetHashTable();
+    List<Object[]> rows = _nextBuildRows;
+    while (rows != null) {
+      for (Object[] row : rows) {
+        addBuildRow(row);
+      }
+      rows = _buildPartitionReader.nextRows();
+      if (getEstimatedBuildBytes() > _maxInMemoryBuildBytes) {
+        break;
+      }
+    }
+    _nextBuildRows = rows;
+    _isLastBuildChunk = rows == null;
+    if (_isLastBuildChunk) {
+      _buildPartitionReader.close();
+      _buildPartitionReader = null;
+    }
+  }
+
+  private void openProbePartition()
+      throws IOException {
+    _numPartitionHashTableRows += _broadcastHashTable.size();
+    _probePartitionReader = _currentPartitionPair._probePartitions.openPartition(_currentPartitionPair._partitionId);
+    _probeRowId = 0;
+  }
+
+  /**
+   * Partitions the rows of the current pair of partitions again with the hash function of the next level, and
+   * schedules the new pairs of partitions to be joined next.
+   */
+  private void repartition()
+      throws IOException {
+    int level = _currentPartitionPair._level + 1;
+    LOGGER.info("Spilled join partition exceeds {} bytes, partitioning it again into {} partitions at level {}",
+        _maxInMemoryBuildBytes, _numSpillPartitions, level);
+    SpilledRowPartitions buildPartitions = new SpilledRowPartitions(_spillDir, _rightTableSchema, _numSpillPartitions);
+    _repartitions.add(buildPartitions);
+    int numRows = _broadcastHashTable.size();
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      Object[] row = _broadcastHashTable.getRow(rowId);
+      buildPartitions.addRow(_broadcastHashTable.getBuildPartitionId(row, _numSpillPartitions, level), row);
+    }
+    resetHashTable();
+    List<Object[]> rows = _nextBuildRows;
+    while (rows != null) {
+      for (Object[] row : rows) {
+        buildPartitions.addRow(_broadcastHashTable.getBuildPartitionId(row, _numSpillPartitions, level), row);
+      }
+      rows = _buildPartitionReader.nextRows();
+    }
+    _nextBuildRows = null;
+    _isLastBuildChunk = true;
+    _buildPartitionReader.close();
+    _buildPartitionReader = null;
+    buildPartitions.finish();
+
+    SpilledRowPartitions probePartitions = new SpilledRowPartitions(_spillDir, _leftTableSchema, _numSpillPartitions);
+    _repartitions.add(probePartitions);
+    try (SpilledRowPartitions.PartitionReader reader = _currentPartitionPair._probePartitions.openPartition(
+        _currentPartitionPair._partitionId)) {
+      while ((rows = reader.nextRows()) != null) {
+        for (Object[] row : rows) {
+          probePartitions.addRow(_broadcastHashTable.getProbePartitionId(row, _numSpillPartitions, level), row);
+        }
+      }
+    }
+    probePartitions.finish();
+    _numSpilledBytes += buildPartitions.getNumSpilledBytes() + probePartitions.getNumSpilledBytes();
+    for (int partitionId = _numSpillPartitions - 1; partitionId >= 0; partitionId--) {
+      _pendingPartitionPairs.addFirst(new PartitionPair(buildPartitions, probePartitions, partitionId, level));
+    }
+    _currentPartitionPair = null;
+  }
+
+  /**
+   * Deletes the spill files when the op chain ends before the join completes, e.g. on error in another operator.
+   */
+  @Override
+  public void close() {
+    cleanUpSpilledPartitions();
+    super.close();
+  }
+
+  private void cleanUpSpilledPartitions() {
+    closeQuietly(_buildPartitionReader);
+    _buildPartitionReader = null;
+    closeQuietly(_probePartitionReader);
+    _probePartitionReader = null;
+    if (_buildPartitions != null) {
+      _buildPartitions.close();
+    }
+    if (_probePartitions != null) {
+      _probePartitions.close();
+    }
+    for (SpilledRowPartitions partitions : _repartitions) {
+      partitions.close();
+    }
+    _repartitions.clear();
+    _pendingPartitionPairs.clear();
+  }
+
+  private static void closeQuietly(@Nullable SpilledRowPartitions.PartitionReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        LOGGER.warn("Caught exception while closing the spilled partition reader", e);
+      }
+    }
+  }
+
+  private List<Object[]> joinRows(List<Object[]> leftRows) {
+    List<Object[]> rows = new ArrayList<>();
+    for (Object[] leftRow : leftRows) {
+      int probeRowId = _probeRowId++;
+      // whether the left row is matched by a previous chunk of the right table rows.
+      boolean hasMatch = _matchedProbeRowIds != null && _matchedProbeRowIds.get(probeRowId);
+      if (hasMatch && _joinType == JoinRelType.SEMI) {
+        // SEMI join emits each left row at most once.
+        continue;
+      }
+      for (int rowId = _broadcastHashTable.getFirstMatch(leftRow); rowId != JoinHashTable.INVALID_ROW_ID;
+          rowId = _broadcastHashTable.getNextMatch(rowId)) {
+        hasMatch = true;
+        if (_joinType == JoinRelType.ANTI) {
+          break;
+        }
+        rows.add(joinRow(leftRow, _broadcastHashTable.getRow(rowId)));
+        if (_matchedBuildRowIds != null) {
+          _matchedBuildRowIds.set(rowId);
+        }
+        if (_joinType == JoinRelType.SEMI) {
+          break;
+        }
+      }
+      if (hasMatch) {
+        if (_matchedProbeRowIds != null) {
+          _matchedProbeRowIds.set(probeRowId);
+        }
+      } else if (_emitsUnmatchedProbeRows && _isLastBuildChunk) {
+        // the left rows are only known to be unmatched after being joined with the last chunk.
+        rows.add(joinRow(leftRow, null));
+      }
+    }
+    return rows;
+  }
+
+  private Object[] joinRow(@Nullable Object[] leftRow, @Nullable Object[] rightRow) {
     Object[] resultRow = new Object[_resultRowSize];
     int idx = 0;
-    for (Object obj : leftRow) {
-      resultRow[idx++] = obj;
+    // the left columns are left as null when there is no matched left row for RIGHT and FULL join.
+    if (leftRow != null) {
+      for (Object obj : leftRow) {
+        resultRow[idx++] = obj;
+      }
+    } else {
+      idx = _leftTableSchema.size();
     }
-    if (_joinType != JoinRelType.SEMI) {
+    // the right columns are left as null when there is no matched right row for LEFT and FULL join.
+    if (_joinType != JoinRelType.SEMI && _joinType != JoinRelType.ANTI && rightRow != null) {
       for (Object obj : rightRow) {
         resultRow[idx++] = obj;
       }
     }
     return resultRow;
   }
+
+  /**
+   * A pair of build and probe partitions partitioned with the same hash function, to be joined together.
+   */
+  private static class PartitionPair {
+    final SpilledRowPartitions _buildPartitions;
+    final SpilledRowPartitions _probePartitions;
+    final int _partitionId;
+    // number of times the rows have been partitioned again after the first spill.
+    final int _level;
+
+    PartitionPair(SpilledRowPartitions buildPartitions, SpilledRowPartitions probePartitions, int partitionId,
+        int level) {
+      _buildPartitions = buildPartitions;
+      _probePartitions = probePartitions;
+      _partitionId = partitionId;
+      _level = level;
+    }
+  }
 }
@@ -19,18 +19,18 @@
 package org.apache.pinot.query.runtime.operator;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.common.datablock.BaseDataBlock;
-import org.apache.pinot.core.operator.BaseOperator;
 import org.apache.pinot.query.planner.logical.RexExpression;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
 
 
-public class LiteralValueOperator extends BaseOperator<TransferableBlock> {
+public class LiteralValueOperator extends MultiStageOperator {
   private static final String EXPLAIN_NAME = "LITERAL_VALUE_PROVIDER";
 
   private final DataSchema _dataSchema;
@@ -45,8 +45,7 @@ public class LiteralValueOperator extends BaseOperator<TransferableBlock> {
 
   @Override
   public List<Operator> getChildOperators() {
-    // WorkerExecutor doesn't use getChildOperators, returns null here.
-    return null;
+    return Collections.emptyList();
   }
 
   @Nullable
@@ -56,7 +55,7 @@ public class LiteralValueOperator extends BaseOperator<TransferableBlock> {
   }
 
   @Override
-  protected TransferableBlock getNextBlock() {
+  protected TransferableBlock getNextTransferableBlock() {
     if (!_isLiteralBlockReturned) {
       _isLiteralBlockReturned = true;
       return _rexLiteralBlock;
@@ -74,6 +73,6 @@ public class LiteralValueOperator extends BaseOperator<TransferableBlock> {
       }
       blockContent.add(row);
     }
-    return new TransferableBlock(blockContent, _dataSchema, BaseDataBlock.Type.ROW);
+    return new TransferableBlock(blockContent, _dataSchema, BaseDataBlock.Type.COLUMNAR);
   }
 }
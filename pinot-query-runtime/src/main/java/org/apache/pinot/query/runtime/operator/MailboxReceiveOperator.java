@@ -18,20 +18,16 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Preconditions;
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelDistribution;
 import org.apache.pinot.common.exception.QueryException;
-import org.apache.pinot.common.proto.Mailbox;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.common.Operator;
-import org.apache.pinot.core.common.datablock.BaseDataBlock;
-import org.apache.pinot.core.common.datablock.DataBlockUtils;
-import org.apache.pinot.core.common.datablock.MetadataBlock;
-import org.apache.pinot.core.operator.BaseOperator;
 import org.apache.pinot.core.transport.ServerInstance;
 import org.apache.pinot.query.mailbox.MailboxService;
 import org.apache.pinot.query.mailbox.ReceivingMailbox;
@@ -39,6 +35,7 @@ import org.apache.pinot.query.mailbox.StringMailboxIdentifier;
 import org.apache.pinot.query.planner.partitioning.KeySelector;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.utils.OperatorStatsUtils;
 import org.apache.pinot.query.service.QueryConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,13 +43,22 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This {@code MailboxReceiveOperator} receives data from a {@link ReceivingMailbox} and serve it out from the
- * {@link BaseOperator#getNextBlock()} API.
+ * {@link #nextBlock()} API.
+ *
+ * <p>It never blocks waiting for data: when none of the mailboxes has data available yet, a no-op block is returned so
+ * that the operator chain can yield its thread (see {@link TransferableBlock#isNoOpBlock()}).
+ *
+ * <p>An ordered receive operator returns all the blocks of a sending instance before the ones of the next sending
+ * instance, in the order of the sending instances, e.g. to merge the outputs of range partitioned sorts.
+ *
+ * <p>The stats of the upstream stages carried by the end-of-stream blocks are collected (see
+ * {@link #getUpstreamStageStats()}), so that they can be sent further downstream along with the stats of this stage.
  */
-public class MailboxReceiveOperator extends BaseOperator<TransferableBlock> {
+public class MailboxReceiveOperator extends MultiStageOperator {
   private static final Logger LOGGER = LoggerFactory.getLogger(MailboxReceiveOperator.class);
   private static final String EXPLAIN_NAME = "MAILBOX_RECEIVE";
 
-  private final MailboxService<Mailbox.MailboxContent> _mailboxService;
+  private final MailboxService<TransferableBlock> _mailboxService;
   private final RelDistribution.Type _exchangeType;
   private final KeySelector<Object[], Object[]> _keySelector;
   private final List<ServerInstance> _sendingStageInstances;
@@ -61,12 +67,24 @@ public class MailboxReceiveOperator extends BaseOperator<TransferableBlock> {
   private final int _port;
   private final long _jobId;
   private final int _stageId;
-  private final long _timeout;
+  private final long _timeoutWatermark;
+  private final List<String> _mailboxIds;
+  private final boolean _isOrdered;
+  private final List<JsonNode> _upstreamStageStats = new ArrayList<>();
+  private int _nextMailboxIndex;
   private TransferableBlock _upstreamErrorBlock;
 
-  public MailboxReceiveOperator(MailboxService<Mailbox.MailboxContent> mailboxService, DataSchema dataSchema,
+  public MailboxReceiveOperator(MailboxService<TransferableBlock> mailboxService, DataSchema dataSchema,
       List<ServerInstance> sendingStageInstances, RelDistribution.Type exchangeType,
       KeySelector<Object[], Object[]> keySelector, String hostName, int port, long jobId, int stageId) {
+    this(mailboxService, dataSchema, sendingStageInstances, exchangeType, keySelector, false, hostName, port, jobId,
+        stageId);
+  }
+
+  public MailboxReceiveOperator(MailboxService<TransferableBlock> mailboxService, DataSchema dataSchema,
+      List<ServerInstance> sendingStageInstances, RelDistribution.Type exchangeType,
+      KeySelector<Object[], Object[]> keySelector, boolean isOrdered, String hostName, int port, long jobId,
+      int stageId) {
     _dataSchema = dataSchema;
     _mailboxService = mailboxService;
     _exchangeType = exchangeType;
@@ -87,15 +105,19 @@ public class MailboxReceiveOperator extends BaseOperator<TransferableBlock> {
     _port = port;
     _jobId = jobId;
     _stageId = stageId;
-    _timeout = QueryConfig.DEFAULT_TIMEOUT_NANO;
+    _timeoutWatermark = System.nanoTime() + QueryConfig.DEFAULT_TIMEOUT_NANO;
     _upstreamErrorBlock = null;
     _keySelector = keySelector;
+    _isOrdered = isOrdered;
+    _mailboxIds = new ArrayList<>(_sendingStageInstances.size());
+    for (ServerInstance sendingInstance : _sendingStageInstances) {
+      _mailboxIds.add(toMailboxId(sendingInstance));
+    }
   }
 
   @Override
   public List<Operator> getChildOperators() {
-    // WorkerExecutor doesn't use getChildOperators, returns null here.
-    return null;
+    return Collections.emptyList();
   }
 
   @Nullable
@@ -105,52 +127,130 @@ public class MailboxReceiveOperator extends BaseOperator<TransferableBlock> {
   }
 
   @Override
-  protected TransferableBlock getNextBlock() {
+  protected TransferableBlock getNextTransferableBlock() {
     if (_upstreamErrorBlock != null) {
       return _upstreamErrorBlock;
     }
-    // TODO: do a round robin check against all MailboxContentStreamObservers and find which one that has data.
-    boolean hasOpenedMailbox = true;
-    long timeoutWatermark = System.nanoTime() + _timeout;
-    while (hasOpenedMailbox && System.nanoTime() < timeoutWatermark) {
-      hasOpenedMailbox = false;
-      for (ServerInstance sendingInstance : _sendingStageInstances) {
-        try {
-          ReceivingMailbox<Mailbox.MailboxContent> receivingMailbox =
-              _mailboxService.getReceivingMailbox(toMailboxId(sendingInstance));
-          // TODO this is not threadsafe.
-          // make sure only one thread is checking receiving mailbox and calling receive() then close()
-          if (!receivingMailbox.isClosed()) {
-            hasOpenedMailbox = true;
-            Mailbox.MailboxContent mailboxContent = receivingMailbox.receive();
-            if (mailboxContent != null) {
-              ByteBuffer byteBuffer = mailboxContent.getPayload().asReadOnlyByteBuffer();
-              if (byteBuffer.hasRemaining()) {
-                BaseDataBlock dataBlock = DataBlockUtils.getDataBlock(byteBuffer);
-                if (dataBlock instanceof MetadataBlock && !dataBlock.getExceptions().isEmpty()) {
-                  _upstreamErrorBlock = TransferableBlockUtils.getErrorTransferableBlock(dataBlock.getExceptions());
-                  return _upstreamErrorBlock;
-                }
-                if (dataBlock.getNumberOfRows() > 0) {
-                  // here we only return data table block when it is not empty.
-                  return new TransferableBlock(dataBlock);
-                }
-              }
+    if (System.nanoTime() >= _timeoutWatermark) {
+      LOGGER.error("Timed out after polling mailboxes: {}", _sendingStageInstances);
+      return TransferableBlockUtils.getErrorTransferableBlock(QueryException.EXECUTION_TIMEOUT_ERROR);
+    }
+    if (_isOrdered) {
+      return getNextOrderedBlock();
+    }
+    // round robin over the mailboxes, starting after the one that returned data last time, so that a fast sender
+    // cannot starve the others.
+    boolean hasOpenedMailbox = false;
+    int numMailboxes = _mailboxIds.size();
+    for (int i = 0; i < numMailboxes; i++) {
+      int mailboxIndex = (_nextMailboxIndex + i) % numMailboxes;
+      String mailboxId = _mailboxIds.get(mailboxIndex);
+      try {
+        ReceivingMailbox<TransferableBlock> receivingMailbox = _mailboxService.getReceivingMailbox(mailboxId);
+        // TODO this is not threadsafe.
+        // make sure only one thread is checking receiving mailbox and calling receive() then close()
+        if (!receivingMailbox.isClosed()) {
+          hasOpenedMailbox = true;
+          TransferableBlock block = receivingMailbox.receive();
+          if (block != null) {
+            if (block.isErrorBlock()) {
+              _upstreamErrorBlock = block;
+              return _upstreamErrorBlock;
+            }
+            if (block.isEndOfStreamBlock()) {
+              collectUpstreamStageStats(block);
+            } else if (block.getNumRows() > 0) {
+              // here we only return data table block when it is not empty.
+              _nextMailboxIndex = (mailboxIndex + 1) % numMailboxes;
+              return block;
             }
           }
-        } catch (Exception e) {
-          LOGGER.error(String.format("Error receiving data from mailbox %s", sendingInstance), e);
         }
+      } catch (Exception e) {
+        LOGGER.error(String.format("Error receiving data from mailbox %s", mailboxId), e);
       }
     }
-    if (System.nanoTime() >= timeoutWatermark) {
-      LOGGER.error("Timed out after polling mailboxes: {}", _sendingStageInstances);
-      return TransferableBlockUtils.getErrorTransferableBlock(QueryException.EXECUTION_TIMEOUT_ERROR);
+    if (hasOpenedMailbox) {
+      // no data available yet, yield instead of blocking the thread.
+      return TransferableBlockUtils.getNoOpTransferableBlock(_dataSchema);
     } else {
       return TransferableBlockUtils.getEndOfStreamTransferableBlock(_dataSchema);
     }
   }
 
+  /**
+   * Receives from the mailboxes one after the other, moving on to the next mailbox once the current one reaches the end
+   * of stream. The senders of the next mailboxes are held back by the back pressure of their mailboxes meanwhile.
+   */
+  private TransferableBlock getNextOrderedBlock() {
+    while (_nextMailboxIndex < _mailboxIds.size()) {
+      String mailboxId = _mailboxIds.get(_nextMailboxIndex);
+      try {
+        ReceivingMailbox<TransferableBlock> receivingMailbox = _mailboxService.getReceivingMailbox(mailboxId);
+        if (receivingMailbox.isClosed()) {
+          _nextMailboxIndex++;
+          continue;
+        }
+        TransferableBlock block = receivingMailbox.receive();
+        if (block == null) {
+          // no data available yet, yield instead of blocking the thread.
+          return TransferableBlockUtils.getNoOpTransferableBlock(_dataSchema);
+        }
+        if (block.isErrorBlock()) {
+          _upstreamErrorBlock = block;
+          return _upstreamErrorBlock;
+        }
+        if (block.isEndOfStreamBlock()) {
+          collectUpstreamStageStats(block);
+          _nextMailboxIndex++;
+        } else if (block.getNumRows() > 0) {
+          return block;
+        }
+      } catch (Exception e) {
+        LOGGER.error(String.format("Error receiving data from mailbox %s", mailboxId), e);
+        // skipping the rest of the mailbox would silently break the order.
+        _upstreamErrorBlock = TransferableBlockUtils.getErrorTransferableBlock(e);
+        return _upstreamErrorBlock;
+      }
+    }
+    return TransferableBlockUtils.getEndOfStreamTransferableBlock(_dataSchema);
+  }
+
+  private void collectUpstreamStageStats(TransferableBlock endOfStreamBlock) {
+    try {
+      OperatorStatsUtils.fromMetadata(endOfStreamBlock.getDataBlock().getMetadata(), _upstreamStageStats);
+    } catch (Exception e) {
+      LOGGER.warn("Caught exception while extracting the upstream stage stats", e);
+    }
+  }
+
+  @Override
+  protected void recordStats(OperatorStats operatorStats) {
+    long numBytesReceived = 0;
+    for (int i = 0; i < _mailboxIds.size(); i++) {
+      long numMailboxBytes = _mailboxService.getReceivingMailbox(_mailboxIds.get(i)).getNumBytesReceived();
+      ServerInstance sendingInstance = _sendingStageInstances.get(i);
+      operatorStats.setMailboxBytes(sendingInstance.getHostname() + ":" + sendingInstance.getQueryMailboxPort(),
+          numMailboxBytes);
+      numBytesReceived += numMailboxBytes;
+    }
+    operatorStats.setStat(OperatorStats.BYTES_RECEIVED, numBytesReceived);
+  }
+
+  /**
+   * Returns the stats of the upstream stages received so far, see {@link OperatorStatsUtils}.
+   */
+  public List<JsonNode> getUpstreamStageStats() {
+    return _upstreamStageStats;
+  }
+
+  /**
+   * Returns the IDs of the mailboxes this operator receives data from.
+   */
+  public List<String> getMailboxIds() {
+    return _mailboxIds;
+  }
+
   public RelDistribution.Type getExchangeType() {
     return _exchangeType;
   }
@@ -18,47 +18,68 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
-import com.google.protobuf.ByteString;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.TimeoutException;
 import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelDistribution;
-import org.apache.pinot.common.proto.Mailbox;
+import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.common.datablock.BaseDataBlock;
-import org.apache.pinot.core.common.datablock.DataBlockBuilder;
-import org.apache.pinot.core.common.datablock.MetadataBlock;
+import org.apache.pinot.core.common.datablock.DataBlockUtils;
 import org.apache.pinot.core.operator.BaseOperator;
-import org.apache.pinot.core.query.selection.SelectionOperatorUtils;
 import org.apache.pinot.core.transport.ServerInstance;
 import org.apache.pinot.query.mailbox.MailboxService;
+import org.apache.pinot.query.mailbox.ReceivingMailbox;
 import org.apache.pinot.query.mailbox.SendingMailbox;
 import org.apache.pinot.query.mailbox.StringMailboxIdentifier;
-import org.apache.pinot.query.mailbox.channel.ChannelUtils;
+import org.apache.pinot.query.planner.partitioning.FieldSelectionKeySelector;
 import org.apache.pinot.query.planner.partitioning.KeySelector;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.utils.ColumnarHashPartitioner;
+import org.apache.pinot.query.runtime.operator.utils.OperatorStatsUtils;
+import org.apache.pinot.query.runtime.operator.utils.RangePartitioner;
+import org.apache.pinot.query.service.QueryConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
  * This {@code MailboxSendOperator} is created to send {@link TransferableBlock}s to the receiving end.
+ *
+ * <p>When any of the sending mailboxes is not ready (see {@link SendingMailbox#isReady()}), no more data is pulled from
+ * upstream and a no-op block is returned instead, so that the operator chain yields until the receiving end catches
+ * up.
+ *
+ * <p>A RANGE_DISTRIBUTED exchange first buffers the rows (up to {@link #MAX_NUM_BUFFERED_ROWS}) to sample their keys,
+ * and exchanges the sample keys with all the other workers of the sending stage. Once the sample keys of all the
+ * workers are received, each worker picks the same split points (see {@link RangePartitioner}), then sends the
+ * buffered rows and the rest of the rows to the receiving worker of their range.
+ *
+ * <p>The end-of-stream block sent to the first receiver carries the stats of this stage and of its upstream stages,
+ * see {@link OperatorStatsUtils}.
  */
-public class MailboxSendOperator extends BaseOperator<TransferableBlock> {
+public class MailboxSendOperator extends MultiStageOperator {
   private static final Logger LOGGER = LoggerFactory.getLogger(MailboxSendOperator.class);
   private static final String EXPLAIN_NAME = "MAILBOX_SEND";
   private static final Set<RelDistribution.Type> SUPPORTED_EXCHANGE_TYPE =
       ImmutableSet.of(RelDistribution.Type.SINGLETON, RelDistribution.Type.RANDOM_DISTRIBUTED,
-          RelDistribution.Type.BROADCAST_DISTRIBUTED, RelDistribution.Type.HASH_DISTRIBUTED);
+          RelDistribution.Type.BROADCAST_DISTRIBUTED, RelDistribution.Type.HASH_DISTRIBUTED,
+          RelDistribution.Type.RANGE_DISTRIBUTED);
   private static final Random RANDOM = new Random();
+  static final int MAX_NUM_BUFFERED_ROWS = 100_000;
+  static final int NUM_SAMPLE_KEYS_PER_PARTITION = 100;
+  private static final int MAX_ROWS_PER_BUFFERED_BLOCK = 10_000;
 
   private final List<ServerInstance> _receivingStageInstances;
   private final RelDistribution.Type _exchangeType;
@@ -67,14 +88,39 @@ public class MailboxSendOperator extends BaseOperator<TransferableBlock> {
   private final int _serverPort;
   private final long _jobId;
   private final int _stageId;
-  private final MailboxService<Mailbox.MailboxContent> _mailboxService;
+  private final MailboxService<TransferableBlock> _mailboxService;
   private final DataSchema _dataSchema;
+  private final List<String> _mailboxIds;
   private BaseOperator<TransferableBlock> _dataTableBlockBaseOperator;
 
-  public MailboxSendOperator(MailboxService<Mailbox.MailboxContent> mailboxService, DataSchema dataSchema,
+  // only used by the RANGE_DISTRIBUTED exchange.
+  private final RangePartitioner _rangePartitioner;
+  private final List<String> _sampleSendingMailboxIds;
+  private final Set<String> _pendingSampleMailboxIds;
+  private List<Object[]> _sampleKeys;
+  private boolean _isSampleSent;
+  private long _sampleDeadlineNs;
+  private List<Object[]> _bufferedRows;
+  private int _bufferedRowIndex;
+  private TransferableBlock _bufferedEndOfStreamBlock;
+
+  public MailboxSendOperator(MailboxService<TransferableBlock> mailboxService, DataSchema dataSchema,
       BaseOperator<TransferableBlock> dataTableBlockBaseOperator, List<ServerInstance> receivingStageInstances,
       RelDistribution.Type exchangeType, KeySelector<Object[], Object[]> keySelector, String hostName, int port,
       long jobId, int stageId) {
+    this(mailboxService, dataSchema, dataTableBlockBaseOperator, receivingStageInstances, exchangeType, keySelector,
+        null, null, hostName, port, jobId, stageId);
+  }
+
+  /**
+   * The collation directions and the sending stage instances (all the workers of this stage) are only required by the
+   * RANGE_DISTRIBUTED exchange.
+   */
+  public MailboxSendOperator(MailboxService<TransferableBlock> mailboxService, DataSchema dataSchema,
+      BaseOperator<TransferableBlock> dataTableBlockBaseOperator, List<ServerInstance> receivingStageInstances,
+      RelDistribution.Type exchangeType, KeySelector<Object[], Object[]> keySelector,
+      @Nullable List<RelFieldCollation.Direction> collationDirections,
+      @Nullable List<ServerInstance> sendingStageInstances, String hostName, int port, long jobId, int stageId) {
     _dataSchema = dataSchema;
     _mailboxService = mailboxService;
     _dataTableBlockBaseOperator = dataTableBlockBaseOperator;
@@ -99,12 +145,38 @@ public class MailboxSendOperator extends BaseOperator<TransferableBlock> {
     _stageId = stageId;
     Preconditions.checkState(SUPPORTED_EXCHANGE_TYPE.contains(_exchangeType),
         String.format("Exchange type '%s' is not supported yet", _exchangeType));
+    _mailboxIds = new ArrayList<>(_receivingStageInstances.size());
+    for (ServerInstance receivingInstance : _receivingStageInstances) {
+      _mailboxIds.add(toMailboxId(receivingInstance));
+    }
+    if (_exchangeType == RelDistribution.Type.RANGE_DISTRIBUTED) {
+      Preconditions.checkState(collationDirections != null && sendingStageInstances != null,
+          "Range exchange requires the collation directions and the sending stage instances");
+      _rangePartitioner = new RangePartitioner(((FieldSelectionKeySelector) keySelector).getColumnIndices(),
+          collationDirections, dataSchema, _receivingStageInstances.size());
+      _sampleSendingMailboxIds = new ArrayList<>(sendingStageInstances.size());
+      _pendingSampleMailboxIds = new HashSet<>();
+      // no sample is needed when there is a single receiver.
+      if (!_rangePartitioner.hasSplitPoints()) {
+        for (ServerInstance sendingInstance : sendingStageInstances) {
+          _sampleSendingMailboxIds.add(toSampleMailboxId(_serverHostName, _serverPort, sendingInstance.getHostname(),
+              sendingInstance.getQueryMailboxPort()));
+          _pendingSampleMailboxIds.add(toSampleMailboxId(sendingInstance.getHostname(),
+              sendingInstance.getQueryMailboxPort(), _serverHostName, _serverPort));
+        }
+      }
+      _sampleKeys = new ArrayList<>();
+      _bufferedRows = new ArrayList<>();
+    } else {
+      _rangePartitioner = null;
+      _sampleSendingMailboxIds = Collections.emptyList();
+      _pendingSampleMailboxIds = Collections.emptySet();
+    }
   }
 
   @Override
   public List<Operator> getChildOperators() {
-    // WorkerExecutor doesn't use getChildOperators, returns null here.
-    return null;
+    return Collections.singletonList(_dataTableBlockBaseOperator);
   }
 
   @Nullable
@@ -114,45 +186,85 @@ public class MailboxSendOperator extends BaseOperator<TransferableBlock> {
   }
 
   @Override
-  protected TransferableBlock getNextBlock() {
-    BaseDataBlock dataBlock;
-    TransferableBlock transferableBlock = null;
-    boolean isEndOfStream;
-    transferableBlock = _dataTableBlockBaseOperator.nextBlock();
-    dataBlock = transferableBlock.getDataBlock();
-    isEndOfStream = TransferableBlockUtils.isEndOfStream(transferableBlock);
+  protected TransferableBlock getNextTransferableBlock() {
+    for (String mailboxId : _mailboxIds) {
+      if (!_mailboxService.getSendingMailbox(mailboxId).isReady()) {
+        // the receiving end is not keeping up, yield to the scheduler.
+        return TransferableBlockUtils.getNoOpTransferableBlock(_dataSchema);
+      }
+    }
+    if (_rangePartitioner != null && !_rangePartitioner.hasSplitPoints()) {
+      TransferableBlock samplingBlock = sampleSplitPoints();
+      if (samplingBlock != null) {
+        return samplingBlock;
+      }
+    }
+    TransferableBlock transferableBlock =
+        _bufferedRows != null ? nextBufferedBlock() : _dataTableBlockBaseOperator.nextBlock();
+    if (TransferableBlockUtils.isNoOpBlock(transferableBlock)) {
+      // nothing to send yet, yield to the scheduler.
+      return transferableBlock;
+    }
+    boolean isEndOfStream = TransferableBlockUtils.isEndOfStream(transferableBlock);
 
     try {
+      if (isEndOfStream && !transferableBlock.isErrorBlock()) {
+        sendEndOfStreamBlock(transferableBlock);
+        return transferableBlock;
+      }
       switch (_exchangeType) {
         case SINGLETON:
-          sendDataTableBlock(_receivingStageInstances.get(0), dataBlock);
+          sendDataTableBlock(_receivingStageInstances.get(0), transferableBlock);
           break;
         case RANDOM_DISTRIBUTED:
           if (isEndOfStream) {
             for (ServerInstance serverInstance : _receivingStageInstances) {
-              sendDataTableBlock(serverInstance, dataBlock);
+              sendDataTableBlock(serverInstance, transferableBlock);
             }
           } else {
             int randomInstanceIdx = _exchangeType == RelDistribution.Type.SINGLETON ? 0
                 : RANDOM.nextInt(_receivingStageInstances.size());
             ServerInstance randomInstance = _receivingStageInstances.get(randomInstanceIdx);
-            sendDataTableBlock(randomInstance, dataBlock);
+            sendDataTableBlock(randomInstance, transferableBlock);
           }
           break;
         case BROADCAST_DISTRIBUTED:
           for (ServerInstance serverInstance : _receivingStageInstances) {
-            sendDataTableBlock(serverInstance, dataBlock);
+            sendDataTableBlock(serverInstance, transferableBlock);
           }
           break;
         case HASH_DISTRIBUTED:
           // TODO: ensure that server instance list is sorted using same function in sender.
-          List<BaseDataBlock> dataTableList = constructPartitionedDataBlock(dataBlock, _keySelector,
+          List<TransferableBlock> dataTableList = constructPartitionedDataBlock(transferableBlock, _keySelector,
               _receivingStageInstances.size(), isEndOfStream);
           for (int i = 0; i < _receivingStageInstances.size(); i++) {
             sendDataTableBlock(_receivingStageInstances.get(i), dataTableList.get(i));
           }
           break;
         case RANGE_DISTRIBUTED:
+          if (isEndOfStream) {
+            for (ServerInstance serverInstance : _receivingStageInstances) {
+              sendDataTableBlock(serverInstance, transferableBlock);
+            }
+          } else if (transferableBlock.getType() == BaseDataBlock.Type.COLUMNAR
+              && !transferableBlock.isContainerBacked()) {
+            // split the block column by column, without extracting rows.
+            List<TransferableBlock> partitionedBlocks = _rangePartitioner.partition(transferableBlock);
+            for (int i = 0; i < _receivingStageInstances.size(); i++) {
+              if (partitionedBlocks.get(i).getNumRows() > 0) {
+                sendDataTableBlock(_receivingStageInstances.get(i), partitionedBlocks.get(i));
+              }
+            }
+          } else {
+            List<List<Object[]>> partitionedRows = _rangePartitioner.partition(transferableBlock.getContainer());
+            for (int i = 0; i < _receivingStageInstances.size(); i++) {
+              if (!partitionedRows.get(i).isEmpty()) {
+                sendDataTableBlock(_receivingStageInstances.get(i),
+                    new TransferableBlock(partitionedRows.get(i), _dataSchema, BaseDataBlock.Type.COLUMNAR));
+              }
+            }
+          }
+          break;
         case ROUND_ROBIN_DISTRIBUTED:
         case ANY:
         default:
@@ -164,57 +276,233 @@ public class MailboxSendOperator extends BaseOperator<TransferableBlock> {
     return transferableBlock;
   }
 
-  private static List<BaseDataBlock> constructPartitionedDataBlock(BaseDataBlock dataBlock,
+  /**
+   * Buffers the rows and exchanges their sample keys with the other sending workers until the split points of the
+   * ranges are set. Returns the block to return while sampling, or {@code null} once the split points are set.
+   */
+  @Nullable
+  private TransferableBlock sampleSplitPoints() {
+    if (!_isSampleSent) {
+      TransferableBlock block = _dataTableBlockBaseOperator.nextBlock();
+      if (TransferableBlockUtils.isNoOpBlock(block)) {
+        return block;
+      }
+      if (TransferableBlockUtils.isEndOfStream(block)) {
+        _bufferedEndOfStreamBlock = block;
+      } else {
+        _bufferedRows.addAll(block.getContainer());
+        if (_bufferedRows.size() < MAX_NUM_BUFFERED_ROWS) {
+          // keep buffering, the block is sent along with the rest once the split points are set.
+          return block;
+        }
+      }
+      sendSampleKeys();
+    }
+    try {
+      if (!receiveSampleKeys()) {
+        if (System.nanoTime() < _sampleDeadlineNs) {
+          // wait for the sample keys of the other sending workers.
+          return TransferableBlockUtils.getNoOpTransferableBlock(_dataSchema);
+        }
+        throw new TimeoutException("Timed out waiting for the range partitioning sample keys");
+      }
+      _rangePartitioner.setSplitPoints(_sampleKeys);
+    } catch (Exception e) {
+      LOGGER.error("Caught exception while sampling the range partitioning split points", e);
+      // the receivers are not going to get any row, terminate all the streams with the error.
+      _rangePartitioner.setSplitPoints(Collections.emptyList());
+      _bufferedRows.clear();
+      _bufferedEndOfStreamBlock = TransferableBlockUtils.getErrorTransferableBlock(e);
+    }
+    _sampleKeys = null;
+    return null;
+  }
+
+  /**
+   * Sends the sample keys of the buffered rows to every sending worker, including this one. A worker without any row
+   * only sends the end-of-stream block.
+   */
+  private void sendSampleKeys() {
+    _isSampleSent = true;
+    _sampleDeadlineNs = System.nanoTime() + QueryConfig.DEFAULT_TIMEOUT_NANO;
+    DataSchema keyDataSchema = _rangePartitioner.getKeyDataSchema();
+    List<Object[]> sampleKeys =
+        _rangePartitioner.sampleKeys(_bufferedRows, NUM_SAMPLE_KEYS_PER_PARTITION * _receivingStageInstances.size());
+    for (String mailboxId : _sampleSendingMailboxIds) {
+      try {
+        SendingMailbox<TransferableBlock> sendingMailbox = _mailboxService.getSendingMailbox(mailboxId);
+        if (!sampleKeys.isEmpty()) {
+          sendingMailbox.send(new TransferableBlock(sampleKeys, keyDataSchema, BaseDataBlock.Type.COLUMNAR));
+        }
+        sendingMailbox.send(TransferableBlockUtils.getEndOfStreamTransferableBlock(keyDataSchema));
+        sendingMailbox.complete();
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while sending the sample keys to mailbox: {}", mailboxId, e);
+      }
+    }
+  }
+
+  /**
+   * Collects the sample keys received so far, returns whether the sample keys of all the sending workers are received.
+   */
+  private boolean receiveSampleKeys()
+      throws Exception {
+    Iterator<String> iterator = _pendingSampleMailboxIds.iterator();
+    while (iterator.hasNext()) {
+      ReceivingMailbox<TransferableBlock> receivingMailbox = _mailboxService.getReceivingMailbox(iterator.next());
+      TransferableBlock block = receivingMailbox.receive();
+      while (block != null) {
+        if (block.isEndOfStreamBlock()) {
+          iterator.remove();
+          break;
+        }
+        _sampleKeys.addAll(block.getContainer());
+        block = receivingMailbox.receive();
+      }
+    }
+    return _pendingSampleMailboxIds.isEmpty();
+  }
+
+  /**
+   * Returns the next block of the rows buffered for sampling, then the buffered end-of-stream block if any, then the
+   * blocks of the upstream operator.
+   */
+  private TransferableBlock nextBufferedBlock() {
+    int numBufferedRows = _bufferedRows.size();
+    if (_bufferedRowIndex == numBufferedRows) {
+      _bufferedRows = null;
+      return _bufferedEndOfStreamBlock != null ? _bufferedEndOfStreamBlock : _dataTableBlockBaseOperator.nextBlock();
+    }
+    int endIndex = Math.min(_bufferedRowIndex + MAX_ROWS_PER_BUFFERED_BLOCK, numBufferedRows);
+    List<Object[]> rows = new ArrayList<>(_bufferedRows.subList(_bufferedRowIndex, endIndex));
+    _bufferedRowIndex = endIndex;
+    return new TransferableBlock(rows, _dataSchema, BaseDataBlock.Type.COLUMNAR);
+  }
+
+  private static List<TransferableBlock> constructPartitionedDataBlock(TransferableBlock transferableBlock,
       KeySelector<Object[], Object[]> keySelector, int partitionSize, boolean isEndOfStream)
       throws Exception {
     if (isEndOfStream) {
-      List<BaseDataBlock> dataTableList = new ArrayList<>(partitionSize);
+      List<TransferableBlock> dataTableList = new ArrayList<>(partitionSize);
       for (int i = 0; i < partitionSize; i++) {
-        dataTableList.add(dataBlock);
+        dataTableList.add(transferableBlock);
       }
       return dataTableList;
+    } else if (transferableBlock.getType() == BaseDataBlock.Type.COLUMNAR
+        && ColumnarHashPartitioner.isSupported(transferableBlock.getDataSchema(), keySelector)) {
+      // hash the key columns and scatter the block column by column, without extracting rows.
+      return ColumnarHashPartitioner.partition(transferableBlock.getColumnarDataBlock(),
+          transferableBlock.getSelection(), keySelector, partitionSize);
     } else {
-      List<List<Object[]>> temporaryRows = new ArrayList<>(partitionSize);
-      for (int i = 0; i < partitionSize; i++) {
-        temporaryRows.add(new ArrayList<>());
-      }
-      for (int rowId = 0; rowId < dataBlock.getNumberOfRows(); rowId++) {
-        Object[] row = SelectionOperatorUtils.extractRowFromDataTable(dataBlock, rowId);
-        int partitionId = keySelector.computeHash(row) % partitionSize;
-        temporaryRows.get(partitionId).add(row);
+      return constructPartitionedRows(transferableBlock.getContainer(), transferableBlock.getDataSchema(),
+          transferableBlock.getType(), keySelector, partitionSize);
+    }
+  }
+
+  private static List<TransferableBlock> constructPartitionedRows(List<Object[]> rows, DataSchema dataSchema,
+      BaseDataBlock.Type type, KeySelector<Object[], Object[]> keySelector, int partitionSize) {
+    List<List<Object[]>> temporaryRows = new ArrayList<>(partitionSize);
+    for (int i = 0; i < partitionSize; i++) {
+      temporaryRows.add(new ArrayList<>());
+    }
+    for (Object[] row : rows) {
+      int partitionId = keySelector.computeHash(row) % partitionSize;
+      temporaryRows.get(partitionId).add(row);
+    }
+    List<TransferableBlock> dataTableList = new ArrayList<>(partitionSize);
+    for (int i = 0; i < partitionSize; i++) {
+      dataTableList.add(new TransferableBlock(temporaryRows.get(i), dataSchema, type));
+    }
+    return dataTableList;
+  }
+
+  /**
+   * Sends the end-of-stream block to all the receivers. The stats of this stage and its upstream stages only need to
+   * reach the broker once, thus they are only attached to the end-of-stream block sent to the first receiver.
+   */
+  private void sendEndOfStreamBlock(TransferableBlock endOfStreamBlock)
+      throws Exception {
+    List<JsonNode> stageStats = new ArrayList<>();
+    stageStats.add(OperatorStatsUtils.getStageStats(_stageId, _serverHostName + ":" + _serverPort, this));
+    OperatorStatsUtils.collectUpstreamStageStats(this, stageStats);
+    TransferableBlock statsEndOfStreamBlock = new TransferableBlock(
+        DataBlockUtils.getEndOfStreamDataBlock(_dataSchema, OperatorStatsUtils.toMetadata(stageStats)));
+    for (int i = 0; i < _receivingStageInstances.size(); i++) {
+      sendDataTableBlock(_receivingStageInstances.get(i), i == 0 ? statsEndOfStreamBlock : endOfStreamBlock);
+    }
+  }
+
+  /**
+   * Terminates the streams of all the receivers (and of the other sending workers waiting for the range partitioning
+   * sample keys) with the error, e.g. when the operator chain fails. Failures to send are only logged as the receivers
+   * time out eventually.
+   */
+  public void sendErrorBlock(Exception e) {
+    TransferableBlock errorBlock = TransferableBlockUtils.getErrorTransferableBlock(e);
+    for (ServerInstance serverInstance : _receivingStageInstances) {
+      try {
+        sendDataTableBlock(serverInstance, errorBlock);
+      } catch (Exception sendException) {
+        LOGGER.error("Caught exception while sending the error block to: {}", serverInstance, sendException);
       }
-      List<BaseDataBlock> dataTableList = new ArrayList<>(partitionSize);
-      for (int i = 0; i < partitionSize; i++) {
-        List<Object[]> objects = temporaryRows.get(i);
-        dataTableList.add(DataBlockBuilder.buildFromRows(objects, dataBlock.getDataSchema()));
+    }
+    if (!_isSampleSent) {
+      _isSampleSent = true;
+      for (String mailboxId : _sampleSendingMailboxIds) {
+        try {
+          SendingMailbox<TransferableBlock> sendingMailbox = _mailboxService.getSendingMailbox(mailboxId);
+          sendingMailbox.send(TransferableBlockUtils.getEndOfStreamTransferableBlock(
+              _rangePartitioner.getKeyDataSchema()));
+          sendingMailbox.complete();
+        } catch (Exception sendException) {
+          LOGGER.error("Caught exception while sending the sample keys to mailbox: {}", mailboxId, sendException);
+        }
       }
-      return dataTableList;
     }
   }
 
-  private void sendDataTableBlock(ServerInstance serverInstance, BaseDataBlock dataBlock)
-      throws IOException {
+  @Override
+  protected void recordStats(OperatorStats operatorStats) {
+    long numBytesSent = 0;
+    for (int i = 0; i < _mailboxIds.size(); i++) {
+      long numMailboxBytes = _mailboxService.getSendingMailbox(_mailboxIds.get(i)).getNumBytesSent();
+      ServerInstance receivingInstance = _receivingStageInstances.get(i);
+      operatorStats.setMailboxBytes(receivingInstance.getHostname() + ":" + receivingInstance.getQueryMailboxPort(),
+          numMailboxBytes);
+      numBytesSent += numMailboxBytes;
+    }
+    operatorStats.setStat(OperatorStats.BYTES_SENT, numBytesSent);
+  }
+
+  private void sendDataTableBlock(ServerInstance serverInstance, TransferableBlock transferableBlock)
+      throws Exception {
     String mailboxId = toMailboxId(serverInstance);
-    SendingMailbox<Mailbox.MailboxContent> sendingMailbox = _mailboxService.getSendingMailbox(mailboxId);
-    Mailbox.MailboxContent mailboxContent = toMailboxContent(mailboxId, dataBlock);
-    sendingMailbox.send(mailboxContent);
-    if (mailboxContent.getMetadataMap().containsKey(ChannelUtils.MAILBOX_METADATA_END_OF_STREAM_KEY)) {
+    SendingMailbox<TransferableBlock> sendingMailbox = _mailboxService.getSendingMailbox(mailboxId);
+    sendingMailbox.send(transferableBlock);
+    if (transferableBlock.isEndOfStreamBlock()) {
       sendingMailbox.complete();
     }
   }
 
-  private Mailbox.MailboxContent toMailboxContent(String mailboxId, BaseDataBlock dataBlock)
-      throws IOException {
-    Mailbox.MailboxContent.Builder builder = Mailbox.MailboxContent.newBuilder().setMailboxId(mailboxId)
-        .setPayload(ByteString.copyFrom(new TransferableBlock(dataBlock).toBytes()));
-    if (dataBlock instanceof MetadataBlock) {
-      builder.putMetadata(ChannelUtils.MAILBOX_METADATA_END_OF_STREAM_KEY, "true");
+  /**
+   * Returns the IDs of the mailboxes this operator sends data to, and receives the range partitioning sample keys from.
+   */
+  public List<String> getMailboxIds() {
+    if (_pendingSampleMailboxIds.isEmpty()) {
+      return _mailboxIds;
     }
-    return builder.build();
+    List<String> mailboxIds = new ArrayList<>(_mailboxIds);
+    mailboxIds.addAll(_pendingSampleMailboxIds);
+    return mailboxIds;
   }
 
   private String toMailboxId(ServerInstance serverInstance) {
     return new StringMailboxIdentifier(String.format("%s_%s", _jobId, _stageId), _serverHostName, _serverPort,
         serverInstance.getHostname(), serverInstance.getQueryMailboxPort()).toString();
   }
+
+  private String toSampleMailboxId(String fromHost, int fromPort, String toHost, int toPort) {
+    return new StringMailboxIdentifier(String.format("%s_%s_range_sample", _jobId, _stageId), fromHost, fromPort,
+        toHost, toPort).toString();
+  }
 }
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.operator.BaseOperator;
+import org.apache.pinot.core.query.request.context.ThreadTimer;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.operator.utils.OperatorStatsUtils;
+import org.apache.pinot.spi.utils.JsonUtils;
+
+
+/**
+ * Base class of the multi-stage engine operators, which collects the {@link OperatorStats} of the operator.
+ *
+ * <p>Each call to {@link #nextBlock()} is timed, and the returned block is counted. The upstream operators of the same
+ * stage must be returned by {@link #getChildOperators()}, so that the stats of the whole stage can be reported as a
+ * tree (see {@link #getStatsTree()}).
+ */
+public abstract class MultiStageOperator extends BaseOperator<TransferableBlock> {
+  protected final OperatorStats _operatorStats = new OperatorStats();
+
+  @Override
+  protected final TransferableBlock getNextBlock() {
+    long startTimeNs = System.nanoTime();
+    ThreadTimer threadTimer = new ThreadTimer();
+    TransferableBlock block = getNextTransferableBlock();
+    _operatorStats.recordBlock(block, System.nanoTime() - startTimeNs, threadTimer.getThreadTimeNs());
+    return block;
+  }
+
+  // Make it protected because we should always call nextBlock()
+  protected abstract TransferableBlock getNextTransferableBlock();
+
+  /**
+   * Records the stats specific to the operator (e.g. hash table size, spilled bytes) before the stats are reported.
+   */
+  protected void recordStats(OperatorStats operatorStats) {
+  }
+
+  /**
+   * Releases the resources held by this operator and its upstream operators within the stage, e.g. spill files. It is
+   * called once the op chain terminates, whether it completed, failed or got cancelled, so it must be idempotent.
+   */
+  public void close() {
+    List<Operator> childOperators = getChildOperators();
+    if (childOperators != null) {
+      for (Operator childOperator : childOperators) {
+        if (childOperator instanceof MultiStageOperator) {
+          ((MultiStageOperator) childOperator).close();
+        }
+      }
+    }
+  }
+
+  public OperatorStats getOperatorStats() {
+    recordStats(_operatorStats);
+    return _operatorStats;
+  }
+
+  /**
+   * Returns the stats of this operator and its upstream operators within the stage as a JSON tree. The wall and CPU
+   * time of each operator exclude the time spent in its upstream operators, and the rows in of an operator are the rows
+   * out of its upstream operators.
+   */
+  public ObjectNode getStatsTree() {
+    OperatorStats operatorStats = getOperatorStats();
+    ObjectNode statsTree = JsonUtils.newObjectNode();
+    statsTree.put(OperatorStatsUtils.OPERATOR, toExplainString());
+    ArrayNode children = JsonUtils.newArrayNode();
+    long numRowsIn = 0;
+    long upstreamWallTimeNs = 0;
+    long upstreamCpuTimeNs = 0;
+    List<Operator> childOperators = getChildOperators();
+    if (childOperators != null) {
+      for (Operator childOperator : childOperators) {
+        if (childOperator instanceof MultiStageOperator) {
+          MultiStageOperator upstreamOperator = (MultiStageOperator) childOperator;
+          OperatorStats upstreamStats = upstreamOperator.getOperatorStats();
+          numRowsIn += upstreamStats.getNumRows();
+          upstreamWallTimeNs += upstreamStats.getWallTimeNs();
+          upstreamCpuTimeNs += upstreamStats.getCpuTimeNs();
+          children.add(upstreamOperator.getStatsTree());
+        }
+      }
+    }
+    if (children.size() > 0) {
+      statsTree.put(OperatorStatsUtils.ROWS_IN, numRowsIn);
+    }
+    statsTree.put(OperatorStatsUtils.ROWS_OUT, operatorStats.getNumRows());
+    statsTree.put(OperatorStatsUtils.NUM_BLOCKS, operatorStats.getNumBlocks());
+    statsTree.put(OperatorStatsUtils.WALL_TIME_NS, Math.max(operatorStats.getWallTimeNs() - upstreamWallTimeNs, 0));
+    statsTree.put(OperatorStatsUtils.CPU_TIME_NS, Math.max(operatorStats.getCpuTimeNs() - upstreamCpuTimeNs, 0));
+    for (Map.Entry<String, Long> entry : operatorStats.getStats().entrySet()) {
+      statsTree.put(entry.getKey(), entry.getValue());
+    }
+    if (!operatorStats.getMailboxBytes().isEmpty()) {
+      ObjectNode mailboxBytes = statsTree.putObject(OperatorStatsUtils.MAILBOX_BYTES);
+      for (Map.Entry<String, Long> entry : operatorStats.getMailboxBytes().entrySet()) {
+        mailboxBytes.put(entry.getKey(), entry.getValue());
+      }
+    }
+    if (children.size() > 0) {
+      statsTree.set(OperatorStatsUtils.CHILDREN, children);
+    }
+    return statsTree;
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+
+
+/**
+ * The {@code OperatorStats} holds the runtime statistics of a {@link MultiStageOperator} on a single worker.
+ *
+ * <p>The blocks and rows returned by the operator are counted, along with the wall and CPU time spent in the operator
+ * (including its upstream operators). No-op and end-of-stream blocks carry no data and are not counted. On top of that,
+ * each operator may record its own stats, e.g. the size of its hash table, or the bytes it sent to each mailbox.
+ */
+public class OperatorStats {
+  public static final String HASH_TABLE_SIZE = "hashTableSize";
+  public static final String SPILLED_BYTES = "spilledBytes";
+  public static final String NUM_DOCS_SCANNED = "numDocsScanned";
+  public static final String SERVER_QUERY_TIME_NS = "serverQueryTimeNs";
+  public static final String BYTES_SENT = "bytesSent";
+  public static final String BYTES_RECEIVED = "bytesReceived";
+
+  private long _numBlocks;
+  private long _numRows;
+  private long _wallTimeNs;
+  private long _cpuTimeNs;
+  private final Map<String, Long> _stats = new LinkedHashMap<>();
+  // bytes sent to or received from each peer server, keyed by "host:port".
+  private final Map<String, Long> _mailboxBytes = new LinkedHashMap<>();
+
+  public void recordBlock(TransferableBlock block, long wallTimeNs, long cpuTimeNs) {
+    _wallTimeNs += wallTimeNs;
+    _cpuTimeNs += cpuTimeNs;
+    if (!block.isNoOpBlock() && !block.isEndOfStreamBlock()) {
+      _numBlocks++;
+      _numRows += block.getNumRows();
+    }
+  }
+
+  public void setStat(String name, long value) {
+    _stats.put(name, value);
+  }
+
+  public void setMailboxBytes(String server, long numBytes) {
+    _mailboxBytes.put(server, numBytes);
+  }
+
+  public long getNumBlocks() {
+    return _numBlocks;
+  }
+
+  public long getNumRows() {
+    return _numRows;
+  }
+
+  public long getWallTimeNs() {
+    return _wallTimeNs;
+  }
+
+  public long getCpuTimeNs() {
+    return _cpuTimeNs;
+  }
+
+  public Map<String, Long> getStats() {
+    return _stats;
+  }
+
+  public Map<String, Long> getMailboxBytes() {
+    return _mailboxBytes;
+  }
+}
@@ -18,14 +18,26 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import it.unimi.dsi.fastutil.ints.IntAVLTreeSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.commons.lang.StringUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.query.planner.logical.RexExpression;
 
 
 public class OperatorUtils {
 
   private static final Map<String, String> OPERATOR_TOKEN_MAPPING = new HashMap<>();
+  // Rough estimates of the JVM footprint of the rows used for memory accounting.
+  private static final long ARRAY_HEADER_BYTES = 16;
+  private static final long REFERENCE_BYTES = 8;
+  private static final long BOXED_4_BYTES_VALUE_BYTES = 16;
+  private static final long BOXED_8_BYTES_VALUE_BYTES = 24;
+  private static final long STRING_OVERHEAD_BYTES = 40;
+  private static final long DEFAULT_VALUE_BYTES = 64;
 
   static {
     OPERATOR_TOKEN_MAPPING.put("=", "equals");
@@ -56,4 +68,62 @@ public class OperatorUtils {
     functionName = OPERATOR_TOKEN_MAPPING.getOrDefault(functionName, functionName);
     return functionName;
   }
+
+  /**
+   * Returns the estimated number of bytes held in the JVM heap by the given row.
+   *
+   * @param row row of values.
+   * @param storedColumnDataTypes stored column data types of the row.
+   * @return estimated number of bytes of the row.
+   */
+  public static long estimateRowBytes(Object[] row, DataSchema.ColumnDataType[] storedColumnDataTypes) {
+    long numBytes = ARRAY_HEADER_BYTES + REFERENCE_BYTES * row.length;
+    for (int i = 0; i < row.length; i++) {
+      Object value = row[i];
+      if (value == null) {
+        continue;
+      }
+      switch (storedColumnDataTypes[i]) {
+        case INT:
+        case FLOAT:
+          numBytes += BOXED_4_BYTES_VALUE_BYTES;
+          break;
+        case LONG:
+        case DOUBLE:
+          numBytes += BOXED_8_BYTES_VALUE_BYTES;
+          break;
+        case STRING:
+          numBytes += STRING_OVERHEAD_BYTES + ((String) value).length();
+          break;
+        default:
+          numBytes += DEFAULT_VALUE_BYTES;
+          break;
+      }
+    }
+    return numBytes;
+  }
+
+  /**
+   * Returns the ascending distinct ids of the input columns referenced by the given expressions.
+   *
+   * @param expressions expressions over the input columns.
+   * @return ids of the referenced input columns.
+   */
+  public static int[] getReferencedColumnIds(List<RexExpression> expressions) {
+    IntSortedSet colIds = new IntAVLTreeSet();
+    for (RexExpression expression : expressions) {
+      collectReferencedColumnIds(expression, colIds);
+    }
+    return colIds.toIntArray();
+  }
+
+  private static void collectReferencedColumnIds(RexExpression expression, IntSortedSet colIds) {
+    if (expression instanceof RexExpression.InputRef) {
+      colIds.add(((RexExpression.InputRef) expression).getIndex());
+    } else if (expression instanceof RexExpression.FunctionCall) {
+      for (RexExpression operand : ((RexExpression.FunctionCall) expression).getFunctionOperands()) {
+        collectReferencedColumnIds(operand, colIds);
+      }
+    }
+  }
 }
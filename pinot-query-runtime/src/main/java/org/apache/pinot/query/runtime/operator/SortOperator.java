@@ -18,9 +18,12 @@
  */
 package org.apache.pinot.query.runtime.operator;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.PriorityQueue;
 import javax.annotation.Nullable;
@@ -33,38 +36,98 @@ import org.apache.pinot.core.query.selection.SelectionOperatorUtils;
 import org.apache.pinot.query.planner.logical.RexExpression;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.utils.SpilledRowPartitions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
-public class SortOperator extends BaseOperator<TransferableBlock> {
+/**
+ * Sort operator of the multi-stage engine.
+ *
+ * <p>When the query has a small LIMIT (fetch + offset within
+ * {@link SelectionOperatorUtils#MAX_ROW_HOLDER_INITIAL_CAPACITY}), only the top rows are kept in a bounded priority
+ * queue. Once the queue is full, the sort keys of an input row are compared with the last kept row directly from the
+ * data block, and the row is only extracted when it is kept. Otherwise all the rows are sorted: rows are buffered in
+ * memory until their estimated size exceeds the configured budget, at which point the buffer is sorted and spilled to
+ * local disk as a sorted run. At the end of the input, the sorted runs and the in-memory buffer are k-way merged. At
+ * most {@link #MAX_MERGE_FAN_IN} of them are merged at once, more sorted runs are first merged into larger sorted runs
+ * in multiple passes.
+ *
+ * <p>In both cases the sorted rows are emitted incrementally in blocks of at most {@link #MAX_ROWS_PER_BLOCK} rows.
+ */
+public class SortOperator extends MultiStageOperator {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SortOperator.class);
   private static final String EXPLAIN_NAME = "SORT";
+  static final int MAX_ROWS_PER_BLOCK = 10_000;
+  // max number of sorted runs (or in-memory buffer) read at once when merging.
+  static final int MAX_MERGE_FAN_IN = 64;
+
   private final BaseOperator<TransferableBlock> _upstreamOperator;
   private final int _fetch;
   private final int _offset;
   private final DataSchema _dataSchema;
-  private final PriorityQueue<Object[]> _rows;
+  private final DataSchema.ColumnDataType[] _storedColumnDataTypes;
+  // Comparator in the output order.
+  private final Comparator<Object[]> _comparator;
+  private final long _maxInMemoryBytes;
+  private final File _spillDir;
+
+  // Top-K path: the head of the queue is the last row in the output order.
+  private final SortComparator _topKComparator;
+  private final PriorityQueue<Object[]> _topKRows;
   private final int _numRowsToKeep;
 
-  private boolean _isSortedBlockConstructed;
+  // Full sort path.
+  private final List<Object[]> _bufferedRows;
+  private final List<SpilledRowPartitions> _sortedRuns;
+  private long _bufferedBytes;
+  private long _numSpilledBytes;
+
+  private boolean _isInputConsumed;
+  private SortedRowIterator _sortedRowIterator;
+  private int _numRowsToSkip;
+  private long _numRowsRemaining;
   private TransferableBlock _upstreamErrorBlock;
 
   public SortOperator(BaseOperator<TransferableBlock> upstreamOperator, List<RexExpression> collationKeys,
       List<RelFieldCollation.Direction> collationDirections, int fetch, int offset, DataSchema dataSchema) {
+    this(upstreamOperator, collationKeys, collationDirections, fetch, offset, dataSchema, Long.MAX_VALUE, null);
+  }
+
+  public SortOperator(BaseOperator<TransferableBlock> upstreamOperator, List<RexExpression> collationKeys,
+      List<RelFieldCollation.Direction> collationDirections, int fetch, int offset, DataSchema dataSchema,
+      long maxInMemoryBytes, @Nullable File spillDir) {
     _upstreamOperator = upstreamOperator;
     _fetch = fetch;
-    _offset = offset;
+    _offset = Math.max(offset, 0);
     _dataSchema = dataSchema;
+    _storedColumnDataTypes = dataSchema.getStoredColumnDataTypes();
+    _maxInMemoryBytes = maxInMemoryBytes;
+    _spillDir = spillDir;
     _upstreamErrorBlock = null;
-    _isSortedBlockConstructed = false;
-    _numRowsToKeep = _fetch > 0 ? Math.min(SelectionOperatorUtils.MAX_ROW_HOLDER_INITIAL_CAPACITY,
-        _fetch + (Math.max(_offset, 0))) : SelectionOperatorUtils.MAX_ROW_HOLDER_INITIAL_CAPACITY;
-    _rows = new PriorityQueue<>(_numRowsToKeep,
-        new SortComparator(collationKeys, collationDirections, dataSchema, false));
+    _isInputConsumed = false;
+    SortComparator sortComparator = new SortComparator(collationKeys, collationDirections, dataSchema, false);
+    _comparator = Collections.reverseOrder(sortComparator);
+    if (_fetch > 0 && (long) _fetch + _offset <= SelectionOperatorUtils.MAX_ROW_HOLDER_INITIAL_CAPACITY) {
+      _numRowsToKeep = _fetch + _offset;
+      _topKComparator = sortComparator;
+      _topKRows = new PriorityQueue<>(_numRowsToKeep, sortComparator);
+      _bufferedRows = null;
+      _sortedRuns = null;
+    } else {
+      _numRowsToKeep = _fetch > 0 ? _fetch + _offset : Integer.MAX_VALUE;
+      _topKComparator = null;
+      _topKRows = null;
+      _bufferedRows = new ArrayList<>();
+      _sortedRuns = new ArrayList<>();
+    }
+    _numRowsToSkip = _offset;
+    _numRowsRemaining = _fetch > 0 ? _fetch : Long.MAX_VALUE;
   }
 
   @Override
   public List<Operator> getChildOperators() {
-    // WorkerExecutor doesn't use getChildOperators, returns null here.
-    return null;
+    return Collections.singletonList(_upstreamOperator);
   }
 
   @Nullable
@@ -74,52 +137,319 @@ public class SortOperator extends BaseOperator<TransferableBlock> {
   }
 
   @Override
-  protected TransferableBlock getNextBlock() {
+  protected TransferableBlock getNextTransferableBlock() {
     try {
-      consumeInputBlocks();
+      if (!_isInputConsumed) {
+        if (!consumeInputBlocks()) {
+          return TransferableBlockUtils.getNoOpTransferableBlock(_dataSchema);
+        }
+        _isInputConsumed = true;
+        if (_upstreamErrorBlock == null) {
+          _sortedRowIterator = createSortedRowIterator();
+        }
+      }
+      if (_upstreamErrorBlock != null) {
+        cleanUpSortedRuns();
+        return _upstreamErrorBlock;
+      }
       return produceSortedBlock();
     } catch (Exception e) {
+      cleanUpSortedRuns();
       return TransferableBlockUtils.getErrorTransferableBlock(e);
     }
   }
 
+  /**
+   * Returns the number of bytes of the sorted runs spilled to disk.
+   */
+  public long getNumSpilledBytes() {
+    return _numSpilledBytes;
+  }
+
+  @Override
+  protected void recordStats(OperatorStats operatorStats) {
+    operatorStats.setStat(OperatorStats.SPILLED_BYTES, _numSpilledBytes);
+  }
+
   private TransferableBlock produceSortedBlock()
       throws IOException {
-    if (_upstreamErrorBlock != null) {
-      return _upstreamErrorBlock;
+    if (_sortedRowIterator == null) {
+      return TransferableBlockUtils.getEndOfStreamTransferableBlock(_dataSchema);
     }
-    if (!_isSortedBlockConstructed) {
-      LinkedList<Object[]> rows = new LinkedList<>();
-      while (_rows.size() > _offset) {
-        Object[] row = _rows.poll();
-          rows.addFirst(row);
-      }
-      _isSortedBlockConstructed = true;
-      if (rows.size() == 0) {
-        return TransferableBlockUtils.getEndOfStreamTransferableBlock(_dataSchema);
-      } else {
-        return new TransferableBlock(rows, _dataSchema, BaseDataBlock.Type.ROW);
+    while (_numRowsToSkip > 0 && _sortedRowIterator.next() != null) {
+      _numRowsToSkip--;
+    }
+    List<Object[]> rows = new ArrayList<>((int) Math.min(_numRowsRemaining, MAX_ROWS_PER_BLOCK));
+    while (_numRowsRemaining > 0 && rows.size() < MAX_ROWS_PER_BLOCK) {
+      Object[] row = _sortedRowIterator.next();
+      if (row == null) {
+        break;
       }
-    } else {
+      rows.add(row);
+      _numRowsRemaining--;
+    }
+    if (rows.isEmpty()) {
+      cleanUpSortedRuns();
       return TransferableBlockUtils.getEndOfStreamTransferableBlock(_dataSchema);
+    } else {
+      return new TransferableBlock(rows, _dataSchema, BaseDataBlock.Type.COLUMNAR);
     }
   }
 
-  private void consumeInputBlocks() {
-    if (!_isSortedBlockConstructed) {
-      TransferableBlock block = _upstreamOperator.nextBlock();
-      while (!TransferableBlockUtils.isEndOfStream(block)) {
-        BaseDataBlock dataBlock = block.getDataBlock();
-        int numRows = dataBlock.getNumberOfRows();
-        for (int rowId = 0; rowId < numRows; rowId++) {
+  /**
+   * Consumes the available input blocks, returns {@code false} if the input has no data available yet and more input
+   * blocks are expected.
+   */
+  private boolean consumeInputBlocks()
+      throws IOException {
+    TransferableBlock block = _upstreamOperator.nextBlock();
+    while (!TransferableBlockUtils.isEndOfStream(block)) {
+      if (TransferableBlockUtils.isNoOpBlock(block)) {
+        return false;
+      }
+      BaseDataBlock dataBlock = block.getDataBlock();
+      int numRows = dataBlock.getNumberOfRows();
+      for (int rowId = 0; rowId < numRows; rowId++) {
+        if (_topKRows != null) {
+          if (_topKRows.size() < _numRowsToKeep) {
+            _topKRows.add(SelectionOperatorUtils.extractRowFromDataTable(dataBlock, rowId));
+          } else if (_topKComparator.compare(_topKRows.peek(), dataBlock, rowId) < 0) {
+            _topKRows.poll();
+            _topKRows.offer(SelectionOperatorUtils.extractRowFromDataTable(dataBlock, rowId));
+          }
+        } else {
           Object[] row = SelectionOperatorUtils.extractRowFromDataTable(dataBlock, rowId);
-          SelectionOperatorUtils.addToPriorityQueue(row, _rows, _numRowsToKeep);
+          _bufferedRows.add(row);
+          _bufferedBytes += OperatorUtils.estimateRowBytes(row, _storedColumnDataTypes);
+          if (_bufferedBytes > _maxInMemoryBytes) {
+            spillSortedRun();
+          }
+        }
+      }
+      block = _upstreamOperator.nextBlock();
+    }
+    // setting upstream error block
+    if (block.isErrorBlock()) {
+      _upstreamErrorBlock = block;
+    }
+    return true;
+  }
+
+  private void spillSortedRun()
+      throws IOException {
+    _bufferedRows.sort(_comparator);
+    int numRowsToSpill = Math.min(_bufferedRows.size(), _numRowsToKeep);
+    SpilledRowPartitions sortedRun = new SpilledRowPartitions(_spillDir, _dataSchema, 1);
+    _sortedRuns.add(sortedRun);
+    for (int i = 0; i < numRowsToSpill; i++) {
+      sortedRun.addRow(0, _bufferedRows.get(i));
+    }
+    sortedRun.finish();
+    _numSpilledBytes += sortedRun.getNumSpilledBytes();
+    LOGGER.debug("Spilled sorted run of {} rows ({} bytes) for sort", numRowsToSpill, sortedRun.getNumSpilledBytes());
+    _bufferedRows.clear();
+    _bufferedBytes = 0;
+  }
+
+  private SortedRowIterator createSortedRowIterator()
+      throws IOException {
+    if (_topKRows != null) {
+      Object[][] rows = new Object[_topKRows.size()][];
+      for (int i = rows.length - 1; i >= 0; i--) {
+        rows[i] = _topKRows.poll();
+      }
+      return new ListRowIterator(Arrays.asList(rows));
+    }
+    _bufferedRows.sort(_comparator);
+    if (_sortedRuns.isEmpty()) {
+      return new ListRowIterator(_bufferedRows);
+    }
+    LOGGER.info("Merging {} sorted runs ({} bytes) spilled for sort", _sortedRuns.size(), _numSpilledBytes);
+    // the in-memory buffer takes one of the merged iterators, merge the oldest runs until the rest can be merged at
+    // once. The first pass only merges the runs in excess, so that the last pass reads exactly MAX_MERGE_FAN_IN of
+    // them.
+    while (_sortedRuns.size() >= MAX_MERGE_FAN_IN) {
+      mergeSortedRuns(Math.min(MAX_MERGE_FAN_IN, _sortedRuns.size() - MAX_MERGE_FAN_IN + 2));
+    }
+    List<SortedRowIterator> iterators = new ArrayList<>(_sortedRuns.size() + 1);
+    for (SpilledRowPartitions sortedRun : _sortedRuns) {
+      iterators.add(new SortedRunIterator(sortedRun.openPartition(0)));
+    }
+    iterators.add(new ListRowIterator(_bufferedRows));
+    return new MergingRowIterator(iterators, _comparator);
+  }
+
+  /**
+   * Merges the first given number of sorted runs into a new sorted run at the end of the sorted runs.
+   */
+  private void mergeSortedRuns(int numRunsToMerge)
+      throws IOException {
+    List<SpilledRowPartitions> sortedRunsToMerge = new ArrayList<>(_sortedRuns.subList(0, numRunsToMerge));
+    _sortedRuns.subList(0, numRunsToMerge).clear();
+    SpilledRowPartitions mergedRun = new SpilledRowPartitions(_spillDir, _dataSchema, 1);
+    _sortedRuns.add(mergedRun);
+    List<SortedRowIterator> iterators = new ArrayList<>(numRunsToMerge);
+    try {
+      for (SpilledRowPartitions sortedRun : sortedRunsToMerge) {
+        iterators.add(new SortedRunIterator(sortedRun.openPartition(0)));
+      }
+      MergingRowIterator mergingRowIterator = new MergingRowIterator(iterators, _comparator);
+      Object[] row;
+      int numRows = 0;
+      // rows after the limit are never emitted.
+      while (numRows < _numRowsToKeep && (row = mergingRowIterator.next()) != null) {
+        mergedRun.addRow(0, row);
+        numRows++;
+      }
+      mergedRun.finish();
+    } finally {
+      for (SortedRowIterator iterator : iterators) {
+        iterator.close();
+      }
+      for (SpilledRowPartitions sortedRun : sortedRunsToMerge) {
+        sortedRun.close();
+      }
+    }
+    _numSpilledBytes += mergedRun.getNumSpilledBytes();
+  }
+
+  private void cleanUpSortedRuns() {
+    if (_sortedRowIterator != null) {
+      try {
+        _sortedRowIterator.close();
+      } catch (IOException e) {
+        LOGGER.warn("Caught exception while closing the sorted row iterator", e);
+      }
+      _sortedRowIterator = null;
+    }
+    if (_sortedRuns != null) {
+      for (SpilledRowPartitions sortedRun : _sortedRuns) {
+        sortedRun.close();
+      }
+      _sortedRuns.clear();
+    }
+    if (_bufferedRows != null) {
+      _bufferedRows.clear();
+    }
+  }
+
+  /**
+   * Iterates over rows in the output order, returns {@code null} after the last row.
+   */
+  private interface SortedRowIterator {
+    @Nullable
+    Object[] next()
+        throws IOException;
+
+    default void close()
+        throws IOException {
+    }
+  }
+
+  private static class ListRowIterator implements SortedRowIterator {
+    private final List<Object[]> _rows;
+    private int _index;
+
+    ListRowIterator(List<Object[]> rows) {
+      _rows = rows;
+    }
+
+    @Nullable
+    @Override
+    public Object[] next() {
+      return _index < _rows.size() ? _rows.get(_index++) : null;
+    }
+  }
+
+  private static class SortedRunIterator implements SortedRowIterator {
+    private final SpilledRowPartitions.PartitionReader _reader;
+    private List<Object[]> _rows = Collections.emptyList();
+    private int _index;
+
+    SortedRunIterator(SpilledRowPartitions.PartitionReader reader) {
+      _reader = reader;
+    }
+
+    @Nullable
+    @Override
+    public Object[] next()
+        throws IOException {
+      while (_index == _rows.size()) {
+        List<Object[]> rows = _reader.nextRows();
+        if (rows == null) {
+          return null;
         }
-        block = _upstreamOperator.nextBlock();
+        _rows = rows;
+        _index = 0;
+      }
+      return _rows.get(_index++);
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      _reader.close();
+    }
+  }
+
+  /**
+   * K-way merges sorted row iterators with a priority queue keyed on the current row of each iterator.
+   */
+  private static class MergingRowIterator implements SortedRowIterator {
+    private final List<SortedRowIterator> _iterators;
+    private final PriorityQueue<Cursor> _cursors;
+
+    MergingRowIterator(List<SortedRowIterator> iterators, Comparator<Object[]> comparator)
+        throws IOException {
+      _iterators = iterators;
+      _cursors = new PriorityQueue<>(iterators.size(), (c1, c2) -> comparator.compare(c1._row, c2._row));
+      for (SortedRowIterator iterator : iterators) {
+        Object[] row = iterator.next();
+        if (row != null) {
+          _cursors.add(new Cursor(iterator, row));
+        }
+      }
+    }
+
+    @Nullable
+    @Override
+    public Object[] next()
+        throws IOException {
+      Cursor cursor = _cursors.poll();
+      if (cursor == null) {
+        return null;
       }
-      // setting upstream error block
-      if (block.isErrorBlock()) {
-        _upstreamErrorBlock = block;
+      Object[] row = cursor._row;
+      cursor._row = cursor._iterator.next();
+      if (cursor._row != null) {
+        _cursors.add(cursor);
+      }
+      return row;
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      IOException exception = null;
+      for (SortedRowIterator iterator : _iterators) {
+        try {
+          iterator.close();
+        } catch (IOException e) {
+          exception = e;
+        }
+      }
+      if (exception != null) {
+        throw exception;
+      }
+    }
+
+    private static class Cursor {
+      final SortedRowIterator _iterator;
+      Object[] _row;
+
+      Cursor(SortedRowIterator iterator, Object[] row) {
+        _iterator = iterator;
+        _row = row;
       }
     }
   }
@@ -129,10 +459,12 @@ public class SortOperator extends BaseOperator<TransferableBlock> {
     private final int[] _valueIndices;
     private final int[] _multipliers;
     private final boolean[] _useDoubleComparison;
+    private final DataSchema.ColumnDataType[] _storedColumnDataTypes;
 
     public SortComparator(List<RexExpression> collationKeys, List<RelFieldCollation.Direction> collationDirections,
         DataSchema dataSchema, boolean isNullHandlingEnabled) {
       DataSchema.ColumnDataType[] columnDataTypes = dataSchema.getColumnDataTypes();
+      _storedColumnDataTypes = dataSchema.getStoredColumnDataTypes();
       _size = collationKeys.size();
       _valueIndices = new int[_size];
       _multipliers = new int[_size];
@@ -144,6 +476,65 @@ public class SortOperator extends BaseOperator<TransferableBlock> {
       }
     }
 
+    /**
+     * Compares the row with the given row of the data block, reading only the sort keys from the data block.
+     */
+    public int compare(Object[] row, BaseDataBlock dataBlock, int rowId) {
+      for (int i = 0; i < _size; i++) {
+        int index = _valueIndices[i];
+        Object v1 = row[index];
+        int result;
+        if (_useDoubleComparison[i]) {
+          result = Double.compare(((Number) v1).doubleValue(), getDoubleValue(dataBlock, rowId, index));
+        } else {
+          //noinspection unchecked
+          result = ((Comparable) v1).compareTo(getValue(dataBlock, rowId, index));
+        }
+        if (result != 0) {
+          return result * _multipliers[i];
+        }
+      }
+      return 0;
+    }
+
+    private double getDoubleValue(BaseDataBlock dataBlock, int rowId, int colId) {
+      switch (_storedColumnDataTypes[colId]) {
+        case INT:
+          return dataBlock.getInt(rowId, colId);
+        case LONG:
+          return dataBlock.getLong(rowId, colId);
+        case FLOAT:
+          return dataBlock.getFloat(rowId, colId);
+        case DOUBLE:
+          return dataBlock.getDouble(rowId, colId);
+        case BIG_DECIMAL:
+          return dataBlock.getBigDecimal(rowId, colId).doubleValue();
+        default:
+          throw new IllegalStateException("Unsupported numeric sort key type: " + _storedColumnDataTypes[colId]);
+      }
+    }
+
+    private Object getValue(BaseDataBlock dataBlock, int rowId, int colId) {
+      switch (_storedColumnDataTypes[colId]) {
+        case INT:
+          return dataBlock.getInt(rowId, colId);
+        case LONG:
+          return dataBlock.getLong(rowId, colId);
+        case FLOAT:
+          return dataBlock.getFloat(rowId, colId);
+        case DOUBLE:
+          return dataBlock.getDouble(rowId, colId);
+        case BIG_DECIMAL:
+          return dataBlock.getBigDecimal(rowId, colId);
+        case STRING:
+          return dataBlock.getString(rowId, colId);
+        case BYTES:
+          return dataBlock.getBytes(rowId, colId);
+        default:
+          throw new IllegalStateException("Unsupported sort key type: " + _storedColumnDataTypes[colId]);
+      }
+    }
+
     @Override
     public int compare(Object[] o1, Object[] o2) {
       for (int i = 0; i < _size; i++) {
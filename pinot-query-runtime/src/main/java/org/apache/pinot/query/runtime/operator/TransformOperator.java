@@ -19,26 +19,39 @@
 package org.apache.pinot.query.runtime.operator;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.common.Operator;
 import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
 import org.apache.pinot.core.common.datablock.DataBlockUtils;
 import org.apache.pinot.core.operator.BaseOperator;
 import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.ColumnarRowReader;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
 import org.apache.pinot.query.runtime.operator.operands.TransformOperand;
+import org.apache.pinot.query.runtime.operator.vector.VectorBatch;
+import org.apache.pinot.query.runtime.operator.vector.VectorExpression;
 
 
 /**
  * This basic {@code TransformOperator} implement basic transformations.
+ *
+ * <p>The input columns of a columnar block are decoded only when they are referenced by the transforms. Unless the
+ * referenced columns hold nulls, the transforms supported by {@link VectorExpression} are evaluated a block at a time,
+ * and the other ones by their row-based {@link TransformOperand}. The results are written column by column into a
+ * columnar data block, without materializing the result rows.
  */
-public class TransformOperator extends BaseOperator<TransferableBlock> {
+public class TransformOperator extends MultiStageOperator {
   private static final String EXPLAIN_NAME = "TRANSFORM";
   private final BaseOperator<TransferableBlock> _upstreamOperator;
   private final List<TransformOperand> _transformOperandsList;
+  // vectorized transforms, null for the ones evaluated one row at a time.
+  private final List<VectorExpression> _vectorExpressions;
+  private final int[] _referencedColIds;
   private final int _resultColumnSize;
   private final DataSchema _resultSchema;
   private TransferableBlock _upstreamErrorBlock;
@@ -48,16 +61,18 @@ public class TransformOperator extends BaseOperator<TransferableBlock> {
     _upstreamOperator = upstreamOperator;
     _resultColumnSize = transforms.size();
     _transformOperandsList = new ArrayList<>(_resultColumnSize);
+    _vectorExpressions = new ArrayList<>(_resultColumnSize);
     for (RexExpression rexExpression : transforms) {
       _transformOperandsList.add(TransformOperand.toTransformOperand(rexExpression, upstreamDataSchema));
+      _vectorExpressions.add(VectorExpression.compile(rexExpression, upstreamDataSchema));
     }
+    _referencedColIds = OperatorUtils.getReferencedColumnIds(transforms);
     _resultSchema = dataSchema;
   }
 
   @Override
   public List<Operator> getChildOperators() {
-    // WorkerExecutor doesn't use getChildOperators, returns null here.
-    return null;
+    return Collections.singletonList(_upstreamOperator);
   }
 
   @Nullable
@@ -67,7 +82,7 @@ public class TransformOperator extends BaseOperator<TransferableBlock> {
   }
 
   @Override
-  protected TransferableBlock getNextBlock() {
+  protected TransferableBlock getNextTransferableBlock() {
     try {
       return transform(_upstreamOperator.nextBlock());
     } catch (Exception e) {
@@ -80,17 +95,30 @@ public class TransformOperator extends BaseOperator<TransferableBlock> {
     if (_upstreamErrorBlock != null) {
       return _upstreamErrorBlock;
     }
+    if (TransferableBlockUtils.isNoOpBlock(block)) {
+      return block;
+    }
     if (!TransferableBlockUtils.isEndOfStream(block)) {
-      List<Object[]> resultRows = new ArrayList<>();
-      List<Object[]> container = block.getContainer();
-      for (Object[] row : container) {
-        Object[] resultRow = new Object[_resultColumnSize];
-        for (int i = 0; i < _resultColumnSize; i++) {
-          resultRow[i] = _transformOperandsList.get(i).apply(row);
+      List<Object[]> resultColumns;
+      if (block.getType() == BaseDataBlock.Type.COLUMNAR && !block.isContainerBacked()
+          && !VectorBatch.hasNulls(block, _referencedColIds)) {
+        resultColumns = transformVectorized(block);
+      } else if (block.getType() == BaseDataBlock.Type.COLUMNAR && !block.isContainerBacked()) {
+        ColumnarRowReader rowReader = new ColumnarRowReader(block, _referencedColIds);
+        int numRows = rowReader.getNumRows();
+        resultColumns = newResultColumns(numRows);
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          transformRow(rowReader.readRow(rowId), resultColumns, rowId);
+        }
+      } else {
+        List<Object[]> container = block.getContainer();
+        int numRows = container.size();
+        resultColumns = newResultColumns(numRows);
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          transformRow(container.get(rowId), resultColumns, rowId);
         }
-        resultRows.add(resultRow);
       }
-      return new TransferableBlock(resultRows, _resultSchema, BaseDataBlock.Type.ROW);
+      return new TransferableBlock(DataBlockBuilder.buildFromColumns(resultColumns, _resultSchema));
     } else if (block.isErrorBlock()) {
       _upstreamErrorBlock = block;
       return _upstreamErrorBlock;
@@ -98,4 +126,43 @@ public class TransformOperator extends BaseOperator<TransferableBlock> {
       return new TransferableBlock(DataBlockUtils.getEndOfStreamDataBlock(_resultSchema));
     }
   }
+
+  private List<Object[]> transformVectorized(TransferableBlock block) {
+    VectorBatch batch = new VectorBatch(block);
+    int numRows = batch.getNumRows();
+    int[] rowIds = batch.getRowIds();
+    List<Object[]> resultColumns = new ArrayList<>(_resultColumnSize);
+    ColumnarRowReader rowReader = null;
+    for (int i = 0; i < _resultColumnSize; i++) {
+      VectorExpression vectorExpression = _vectorExpressions.get(i);
+      if (vectorExpression != null) {
+        resultColumns.add(vectorExpression.evaluateObject(batch, rowIds, numRows));
+      } else {
+        if (rowReader == null) {
+          rowReader = new ColumnarRowReader(block, _referencedColIds);
+        }
+        TransformOperand transformOperand = _transformOperandsList.get(i);
+        Object[] values = new Object[numRows];
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          values[rowId] = transformOperand.apply(rowReader.readRow(rowId));
+        }
+        resultColumns.add(values);
+      }
+    }
+    return resultColumns;
+  }
+
+  private List<Object[]> newResultColumns(int numRows) {
+    List<Object[]> resultColumns = new ArrayList<>(_resultColumnSize);
+    for (int i = 0; i < _resultColumnSize; i++) {
+      resultColumns.add(new Object[numRows]);
+    }
+    return resultColumns;
+  }
+
+  private void transformRow(Object[] row, List<Object[]> resultColumns, int rowId) {
+    for (int i = 0; i < _resultColumnSize; i++) {
+      resultColumns.get(i)[rowId] = _transformOperandsList.get(i).apply(row);
+    }
+  }
 }
@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.join;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.query.planner.partitioning.FieldSelectionKeySelector;
+import org.apache.pinot.query.planner.partitioning.KeySelector;
+import org.apache.pinot.query.runtime.operator.OperatorUtils;
+
+
+/**
+ * {@code JoinHashTable} is the build-side hash table of an equality JOIN.
+ *
+ * <p>Rows are kept in insertion arrays and chained per distinct key through an int array, so adding a row does not
+ * allocate any per-row collection. The key to chain-head mapping is delegated to the implementations, which specialize
+ * single numeric keys into primitive open-addressing maps and compare the full key (not only its hash) on lookup.
+ *
+ * <p>Row ids returned by {@link #getFirstMatch(Object[])} and {@link #getNextMatch(int)} can be used to iterate over
+ * the matched rows without allocation:
+ * <pre>
+ *   for (int rowId = table.getFirstMatch(probeRow); rowId != -1; rowId = table.getNextMatch(rowId)) {
+ *     Object[] buildRow = table.getRow(rowId);
+ *   }
+ * </pre>
+ *
+ * <p>Rows with a {@code null} join key are never matched, following SQL equality semantics.
+ */
+public abstract class JoinHashTable {
+  public static final int INVALID_ROW_ID = -1;
+  // returned by putKey() when the join key of the row is null.
+  protected static final int KEY_IS_NULL = -2;
+  // returned by getBuildPartitionId()/getProbePartitionId() when the join key of the row is null.
+  public static final int NULL_KEY_PARTITION_ID = -1;
+  // returned by hashBuildKey()/hashProbeKey() when the join key of the row is null, never collides with an int hash.
+  protected static final long NULL_KEY_HASH = Long.MIN_VALUE;
+  // rows of a stage are already hash distributed on the join keys by the upstream exchange, re-mix the key hash with a
+  // seed so that the spill partitions are not correlated with the worker assignment.
+  private static final int PARTITION_HASH_SEED = 0x5bd1e995;
+  // added to the seed for each level of repartitioning, so that the rows of a partition are spread again.
+  private static final int PARTITION_HASH_SEED_INCREMENT = 0x9e3779b9;
+
+  private static final int INITIAL_CAPACITY = 1024;
+  // Rough estimates of the JVM footprint used for memory accounting.
+  private static final long ARRAY_HEADER_BYTES = 16;
+  private static final long REFERENCE_BYTES = 8;
+  // Each row costs one slot in the row array and one slot in the chain array.
+  private static final long PER_ROW_INDEX_BYTES = REFERENCE_BYTES + Integer.BYTES;
+
+  private final DataSchema.ColumnDataType[] _buildColumnDataTypes;
+
+  private Object[][] _rows;
+  private int[] _nextRowIds;
+  private int _numRows;
+  private long _rowBytes;
+
+  protected JoinHashTable(DataSchema buildSchema) {
+    _buildColumnDataTypes = buildSchema.getStoredColumnDataTypes();
+    _rows = new Object[INITIAL_CAPACITY][];
+    _nextRowIds = new int[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Creates the {@link JoinHashTable} for the given join keys.
+   *
+   * <p>When the join key is a single column of the same stored type on both sides, INT/LONG/FLOAT/DOUBLE keys are
+   * stored in primitive maps and other types (e.g. STRING) are stored directly without wrapping. Otherwise the generic
+   * multi-column implementation is used.
+   *
+   * @param probeKeySelector key selector of the probe (left) side.
+   * @param probeSchema data schema of the probe (left) side.
+   * @param buildKeySelector key selector of the build (right) side.
+   * @param buildSchema data schema of the build (right) side.
+   * @return a join hash table.
+   */
+  public static JoinHashTable create(KeySelector<Object[], Object[]> probeKeySelector, DataSchema probeSchema,
+      KeySelector<Object[], Object[]> buildKeySelector, DataSchema buildSchema) {
+    int[] probeKeyIds = getKeyColumnIds(probeKeySelector);
+    int[] buildKeyIds = getKeyColumnIds(buildKeySelector);
+    if (probeKeyIds != null && buildKeyIds != null && probeKeyIds.length == buildKeyIds.length) {
+      DataSchema.ColumnDataType[] probeTypes = new DataSchema.ColumnDataType[probeKeyIds.length];
+      DataSchema.ColumnDataType[] buildTypes = new DataSchema.ColumnDataType[buildKeyIds.length];
+      boolean isSameType = true;
+      for (int i = 0; i < probeKeyIds.length; i++) {
+        probeTypes[i] = probeSchema.getColumnDataType(probeKeyIds[i]).getStoredType();
+        buildTypes[i] = buildSchema.getColumnDataType(buildKeyIds[i]).getStoredType();
+        isSameType &= probeTypes[i] == buildTypes[i];
+      }
+      if (probeKeyIds.length == 1 && isSameType) {
+        switch (buildTypes[0]) {
+          case INT:
+            return new IntKeyJoinHashTable(probeKeyIds[0], buildKeyIds[0], buildSchema);
+          case LONG:
+            return new LongKeyJoinHashTable(probeKeyIds[0], buildKeyIds[0], buildSchema);
+          case FLOAT:
+          case DOUBLE:
+            return new DoubleKeyJoinHashTable(probeKeyIds[0], buildKeyIds[0], buildSchema);
+          case BIG_DECIMAL:
+          case STRING:
+          case BYTES:
+            return new ObjectKeyJoinHashTable(probeKeyIds[0], buildKeyIds[0], buildSchema);
+          default:
+            break;
+        }
+      }
+      return new MultiKeyJoinHashTable(probeKeyIds, buildKeyIds, !isSameType, buildSchema);
+    }
+    throw new UnsupportedOperationException(
+        "Unsupported join key selector: " + probeKeySelector + ", " + buildKeySelector);
+  }
+
+  private static int[] getKeyColumnIds(KeySelector<Object[], Object[]> keySelector) {
+    if (keySelector instanceof FieldSelectionKeySelector) {
+      List<Integer> columnIndices = ((FieldSelectionKeySelector) keySelector).getColumnIndices();
+      int[] keyColumnIds = new int[columnIndices.size()];
+      for (int i = 0; i < keyColumnIds.length; i++) {
+        keyColumnIds[i] = columnIndices.get(i);
+      }
+      return keyColumnIds;
+    }
+    return null;
+  }
+
+  /**
+   * Adds a build-side row into the hash table. Rows with {@code null} join key are ignored.
+   *
+   * @return whether the row is added, i.e. {@code false} if its join key is {@code null}.
+   */
+  public boolean addRow(Object[] row) {
+    int rowId = _numRows;
+    int previousHead = putKey(row, rowId);
+    if (previousHead == KEY_IS_NULL) {
+      return false;
+    }
+    if (rowId == _rows.length) {
+      int newCapacity = rowId << 1;
+      _rows = Arrays.copyOf(_rows, newCapacity);
+      _nextRowIds = Arrays.copyOf(_nextRowIds, newCapacity);
+    }
+    _rows[rowId] = row;
+    _nextRowIds[rowId] = previousHead;
+    _numRows++;
+    _rowBytes += OperatorUtils.estimateRowBytes(row, _buildColumnDataTypes);
+    return true;
+  }
+
+  /**
+   * Returns the id of the first build-side row matching the join key of the probe row, or {@link #INVALID_ROW_ID} if
+   * there is no match.
+   */
+  public int getFirstMatch(Object[] probeRow) {
+    return getHead(probeRow);
+  }
+
+  /**
+   * Returns the id of the next build-side row with the same join key as the given row, or {@link #INVALID_ROW_ID} if
+   * there is no more match.
+   */
+  public int getNextMatch(int rowId) {
+    return _nextRowIds[rowId];
+  }
+
+  public Object[] getRow(int rowId) {
+    return _rows[rowId];
+  }
+
+  /**
+   * Returns the number of rows stored in the hash table.
+   */
+  public int size() {
+    return _numRows;
+  }
+
+  /**
+   * Returns the partition (in {@code [0, numPartitions)}) of the build-side row based on its join key, or
+   * {@link #NULL_KEY_PARTITION_ID} if the join key is {@code null}. A build-side row and a probe-side row with equal
+   * join keys are always assigned to the same partition.
+   */
+  public int getBuildPartitionId(Object[] buildRow, int numPartitions) {
+    return getBuildPartitionId(buildRow, numPartitions, 0);
+  }
+
+  /**
+   * Same as {@link #getBuildPartitionId(Object[], int)}, with a different hash function for each level of
+   * repartitioning: the rows of a partition of the given level minus 1 are spread over all the partitions.
+   */
+  public int getBuildPartitionId(Object[] buildRow, int numPartitions, int level) {
+    return toPartitionId(hashBuildKey(buildRow), numPartitions, level);
+  }
+
+  /**
+   * Returns the partition (in {@code [0, numPartitions)}) of the probe-side row based on its join key, or
+   * {@link #NULL_KEY_PARTITION_ID} if the join key is {@code null}.
+   */
+  public int getProbePartitionId(Object[] probeRow, int numPartitions) {
+    return getProbePartitionId(probeRow, numPartitions, 0);
+  }
+
+  /**
+   * Same as {@link #getProbePartitionId(Object[], int)}, consistent with
+   * {@link #getBuildPartitionId(Object[], int, int)} for the same level.
+   */
+  public int getProbePartitionId(Object[] probeRow, int numPartitions, int level) {
+    return toPartitionId(hashProbeKey(probeRow), numPartitions, level);
+  }
+
+  private static int toPartitionId(long hash, int numPartitions, int level) {
+    if (hash == NULL_KEY_HASH) {
+      return NULL_KEY_PARTITION_ID;
+    }
+    int seed = PARTITION_HASH_SEED + level * PARTITION_HASH_SEED_INCREMENT;
+    return (HashCommon.murmurHash3((int) hash ^ seed) & Integer.MAX_VALUE) % numPartitions;
+  }
+
+  /**
+   * Returns the number of distinct join keys stored in the hash table.
+   */
+  public abstract int getNumKeys();
+
+  /**
+   * Returns the estimated number of bytes held by the hash table, including the stored rows.
+   */
+  public long getEstimatedMemoryBytes() {
+    return ARRAY_HEADER_BYTES * 2 + (long) _rows.length * PER_ROW_INDEX_BYTES + _rowBytes
+        + getEstimatedKeyBytes();
+  }
+
+  /**
+   * Returns the estimated number of bytes held by the key to chain-head mapping.
+   */
+  protected abstract long getEstimatedKeyBytes();
+
+  /**
+   * Associates the join key of the build-side row with the given row id, and returns the row id previously associated
+   * with the key ({@link #INVALID_ROW_ID} if none), or {@link #KEY_IS_NULL} if the join key is {@code null}.
+   */
+  protected abstract int putKey(Object[] buildRow, int rowId);
+
+  /**
+   * Returns the row id associated with the join key of the probe-side row, or {@link #INVALID_ROW_ID} if none.
+   */
+  protected abstract int getHead(Object[] probeRow);
+
+  /**
+   * Returns the hash of the join key of the build-side row, or {@link #NULL_KEY_HASH} if the join key is {@code null}.
+   * Must be consistent with the key equality of the hash table, i.e. equal keys on both sides have the same hash.
+   */
+  protected abstract long hashBuildKey(Object[] buildRow);
+
+  /**
+   * Returns the hash of the join key of the probe-side row, or {@link #NULL_KEY_HASH} if the join key is {@code null}.
+   */
+  protected abstract long hashProbeKey(Object[] probeRow);
+}
@@ -0,0 +1,80 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.join;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.apache.pinot.common.utils.DataSchema;
+
+
+/**
+ * {@link JoinHashTable} for a single LONG join key, backed by a primitive open-addressing map.
+ *
+ * <p>A key value that is not a number (i.e. the value does not match the declared key type) never matches, the same
+ * as a {@code null} key.
+ */
+public class LongKeyJoinHashTable extends JoinHashTable {
+  // long key + int value per slot, with the default load factor of 0.75
+  private static final long BYTES_PER_KEY = 16;
+
+  private final int _probeKeyId;
+  private final int _buildKeyId;
+  private final Long2IntOpenHashMap _keyToHeadMap;
+
+  public LongKeyJoinHashTable(int probeKeyId, int buildKeyId, DataSchema buildSchema) {
+    super(buildSchema);
+    _probeKeyId = probeKeyId;
+    _buildKeyId = buildKeyId;
+    _keyToHeadMap = new Long2IntOpenHashMap();
+    _keyToHeadMap.defaultReturnValue(INVALID_ROW_ID);
+  }
+
+  @Override
+  public int getNumKeys() {
+    return _keyToHeadMap.size();
+  }
+
+  @Override
+  protected long getEstimatedKeyBytes() {
+    return _keyToHeadMap.size() * BYTES_PER_KEY;
+  }
+
+  @Override
+  protected int putKey(Object[] buildRow, int rowId) {
+    Object key = buildRow[_buildKeyId];
+    return key instanceof Number ? _keyToHeadMap.put(((Number) key).longValue(), rowId) : KEY_IS_NULL;
+  }
+
+  @Override
+  protected int getHead(Object[] probeRow) {
+    Object key = probeRow[_probeKeyId];
+    return key instanceof Number ? _keyToHeadMap.get(((Number) key).longValue()) : INVALID_ROW_ID;
+  }
+
+  @Override
+  protected long hashBuildKey(Object[] buildRow) {
+    Object key = buildRow[_buildKeyId];
+    return key instanceof Number ? Long.hashCode(((Number) key).longValue()) : NULL_KEY_HASH;
+  }
+
+  @Override
+  protected long hashProbeKey(Object[] probeRow) {
+    Object key = probeRow[_probeKeyId];
+    return key instanceof Number ? Long.hashCode(((Number) key).longValue()) : NULL_KEY_HASH;
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.join;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.math.BigDecimal;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.data.table.Key;
+
+
+/**
+ * {@link JoinHashTable} for composite join keys, or join keys whose stored types differ between the 2 sides.
+ *
+ * <p>The join key is wrapped into a {@link Key} so that all the key columns are compared on lookup. When the key types
+ * differ between the probe and the build side, numeric values are normalized to {@link BigDecimal} so that e.g. an INT
+ * key can match a LONG key with the same value.
+ */
+public class MultiKeyJoinHashTable extends JoinHashTable {
+  // key reference + int value per slot with the default load factor of 0.75, plus the Key and its value array.
+  private static final long BYTES_PER_KEY = 16 + 16 + 16;
+
+  private final int[] _probeKeyIds;
+  private final int[] _buildKeyIds;
+  private final boolean _normalizeNumbers;
+  private final Object2IntOpenHashMap<Key> _keyToHeadMap;
+  // the probe key is only used for lookups, so its values can be overwritten for each probe row.
+  private final Object[] _probeKeyValues;
+  private final Key _probeKey;
+
+  public MultiKeyJoinHashTable(int[] probeKeyIds, int[] buildKeyIds, boolean normalizeNumbers,
+      DataSchema buildSchema) {
+    super(buildSchema);
+    _probeKeyIds = probeKeyIds;
+    _buildKeyIds = buildKeyIds;
+    _normalizeNumbers = normalizeNumbers;
+    _keyToHeadMap = new Object2IntOpenHashMap<>();
+    _keyToHeadMap.defaultReturnValue(INVALID_ROW_ID);
+    _probeKeyValues = new Object[probeKeyIds.length];
+    _probeKey = new Key(_probeKeyValues);
+  }
+
+  @Override
+  public int getNumKeys() {
+    return _keyToHeadMap.size();
+  }
+
+  @Override
+  protected long getEstimatedKeyBytes() {
+    return _keyToHeadMap.size() * (BYTES_PER_KEY + (long) _buildKeyIds.length * Long.BYTES);
+  }
+
+  @Override
+  protected int putKey(Object[] buildRow, int rowId) {
+    int numKeys = _buildKeyIds.length;
+    Object[] keyValues = new Object[numKeys];
+    for (int i = 0; i < numKeys; i++) {
+      Object value = buildRow[_buildKeyIds[i]];
+      if (value == null) {
+        return KEY_IS_NULL;
+      }
+      keyValues[i] = normalize(value);
+    }
+    return _keyToHeadMap.put(new Key(keyValues), rowId);
+  }
+
+  @Override
+  protected int getHead(Object[] probeRow) {
+    int numKeys = _probeKeyIds.length;
+    for (int i = 0; i < numKeys; i++) {
+      Object value = probeRow[_probeKeyIds[i]];
+      if (value == null) {
+        return INVALID_ROW_ID;
+      }
+      _probeKeyValues[i] = normalize(value);
+    }
+    return _keyToHeadMap.getInt(_probeKey);
+  }
+
+  @Override
+  protected long hashBuildKey(Object[] buildRow) {
+    return hashKey(buildRow, _buildKeyIds);
+  }
+
+  @Override
+  protected long hashProbeKey(Object[] probeRow) {
+    return hashKey(probeRow, _probeKeyIds);
+  }
+
+  // same as the hash of the Key wrapping the normalized values.
+  private long hashKey(Object[] row, int[] keyIds) {
+    int hash = 1;
+    for (int keyId : keyIds) {
+      Object value = row[keyId];
+      if (value == null) {
+        return NULL_KEY_HASH;
+      }
+      hash = 31 * hash + normalize(value).hashCode();
+    }
+    return hash;
+  }
+
+  private Object normalize(Object value) {
+    if (!_normalizeNumbers || !(value instanceof Number)) {
+      return value;
+    }
+    if (value instanceof BigDecimal) {
+      return ((BigDecimal) value).stripTrailingZeros();
+    }
+    if ((value instanceof Double || value instanceof Float) && !Double.isFinite(((Number) value).doubleValue())) {
+      return value;
+    }
+    return new BigDecimal(value.toString()).stripTrailingZeros();
+  }
+}
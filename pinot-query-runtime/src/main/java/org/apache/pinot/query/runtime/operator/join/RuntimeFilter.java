@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.join;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.query.mailbox.StringMailboxIdentifier;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+
+
+/**
+ * {@code RuntimeFilter} summarizes the values of a join key on the build side of a join, so that the rows of the probe
+ * side that cannot match can be filtered out before they are shipped to the join.
+ *
+ * <p>It keeps the exact set of distinct values as long as there are no more than {@code maxNumValues} of them, then
+ * falls back to the [min, max] range of the values. {@code null} values are ignored as they never match.
+ *
+ * <p>Only numeric and STRING keys are supported, as they can be expressed as v1 IN and BETWEEN predicates.
+ */
+public class RuntimeFilter {
+  public static final String IN_COLUMN_NAME = "IN";
+  public static final String RANGE_COLUMN_NAME = "RANGE";
+  public static final String NONE_COLUMN_NAME = "NONE";
+
+  private final DataSchema.ColumnDataType _dataType;
+  private final int _maxNumValues;
+  private Set<Object> _values;
+  private Comparable<Object> _minValue;
+  private Comparable<Object> _maxValue;
+
+  public RuntimeFilter(DataSchema.ColumnDataType dataType, int maxNumValues) {
+    Preconditions.checkArgument(isSupported(dataType), "Unsupported runtime filter data type: %s", dataType);
+    _dataType = dataType;
+    _maxNumValues = maxNumValues;
+    _values = new HashSet<>();
+  }
+
+  public static boolean isSupported(DataSchema.ColumnDataType dataType) {
+    switch (dataType) {
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns the ID of the mailbox a join stage worker sends its runtime filter to a probe side table scan worker with.
+   */
+  public static String toMailboxId(long jobId, int joinStageId, String fromHost, int fromPort, String toHost,
+      int toPort) {
+    return new StringMailboxIdentifier(String.format("%s_%s_runtime_filter", jobId, joinStageId), fromHost, fromPort,
+        toHost, toPort).toString();
+  }
+
+  @SuppressWarnings("unchecked")
+  public void add(@Nullable Object value) {
+    if (value == null) {
+      return;
+    }
+    Comparable<Object> comparableValue = (Comparable<Object>) value;
+    if (_minValue == null) {
+      _minValue = comparableValue;
+      _maxValue = comparableValue;
+    } else if (comparableValue.compareTo(_minValue) < 0) {
+      _minValue = comparableValue;
+    } else if (comparableValue.compareTo(_maxValue) > 0) {
+      _maxValue = comparableValue;
+    }
+    if (_values != null) {
+      _values.add(value);
+      if (_values.size() > _maxNumValues) {
+        _values = null;
+      }
+    }
+  }
+
+  /**
+   * Merges the runtime filter built by another join worker into this one, so that it passes the values of both.
+   */
+  public void merge(RuntimeFilter other) {
+    if (other._minValue == null) {
+      return;
+    }
+    if (other._values != null) {
+      for (Object value : other._values) {
+        add(value);
+      }
+    } else {
+      add(other._minValue);
+      add(other._maxValue);
+      _values = null;
+    }
+  }
+
+  /**
+   * Returns whether no (non-null) value was added, in which case no row can match.
+   */
+  public boolean isEmpty() {
+    return _minValue == null;
+  }
+
+  /**
+   * Returns the distinct values, or {@code null} if there are too many of them and only the range is kept.
+   */
+  @Nullable
+  public Set<Object> getValues() {
+    return _values;
+  }
+
+  public Object getMinValue() {
+    return _minValue;
+  }
+
+  public Object getMaxValue() {
+    return _maxValue;
+  }
+
+  /**
+   * Serializes the runtime filter into a single column data block: the distinct values under the {@code IN} column, or
+   * the min and max value under the {@code RANGE} column.
+   */
+  public TransferableBlock toTransferableBlock() {
+    List<Object[]> rows;
+    String columnName;
+    if (_values != null) {
+      columnName = IN_COLUMN_NAME;
+      rows = new ArrayList<>(_values.size());
+      for (Object value : _values) {
+        rows.add(new Object[]{value});
+      }
+    } else {
+      columnName = RANGE_COLUMN_NAME;
+      rows = new ArrayList<>(2);
+      rows.add(new Object[]{_minValue});
+      rows.add(new Object[]{_maxValue});
+    }
+    return new TransferableBlock(rows, getDataSchema(columnName, _dataType), BaseDataBlock.Type.ROW);
+  }
+
+  /**
+   * Returns the block sent by a join worker that cannot produce a runtime filter, in which case the probe side must not
+   * be filtered. It holds a dummy row so that it is not dropped as an empty block by the mailbox.
+   */
+  public static TransferableBlock getNoFilterTransferableBlock() {
+    List<Object[]> rows = new ArrayList<>(1);
+    rows.add(new Object[]{0});
+    return new TransferableBlock(rows, getDataSchema(NONE_COLUMN_NAME, DataSchema.ColumnDataType.INT),
+        BaseDataBlock.Type.ROW);
+  }
+
+  public static boolean isNoFilter(TransferableBlock block) {
+    return NONE_COLUMN_NAME.equals(block.getDataSchema().getColumnName(0));
+  }
+
+  /**
+   * Returns the end-of-stream block that terminates the runtime filter mailbox. A join worker with no build side key
+   * sends it alone.
+   */
+  public static TransferableBlock getEndOfStreamTransferableBlock(DataSchema.ColumnDataType dataType) {
+    return TransferableBlockUtils.getEndOfStreamTransferableBlock(getDataSchema(IN_COLUMN_NAME, dataType));
+  }
+
+  public static RuntimeFilter fromTransferableBlock(TransferableBlock block, int maxNumValues) {
+    DataSchema dataSchema = block.getDataSchema();
+    RuntimeFilter runtimeFilter = new RuntimeFilter(dataSchema.getColumnDataType(0), maxNumValues);
+    for (Object[] row : block.getContainer()) {
+      runtimeFilter.add(row[0]);
+    }
+    if (RANGE_COLUMN_NAME.equals(dataSchema.getColumnName(0))) {
+      runtimeFilter._values = null;
+    }
+    return runtimeFilter;
+  }
+
+  private static DataSchema getDataSchema(String columnName, DataSchema.ColumnDataType dataType) {
+    return new DataSchema(new String[]{columnName}, new DataSchema.ColumnDataType[]{dataType});
+  }
+}
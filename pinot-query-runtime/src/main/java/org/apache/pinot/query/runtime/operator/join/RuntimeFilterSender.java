@@ -0,0 +1,96 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.join;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.query.mailbox.MailboxService;
+import org.apache.pinot.query.mailbox.SendingMailbox;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * {@code RuntimeFilterSender} builds the {@link RuntimeFilter} of a join key from the rows of the build side of a join,
+ * and sends it to every worker of the probe side table scan stage once the hash table is complete.
+ *
+ * <p>Each probe side worker waits for the runtime filters of all the join workers before scanning its segments, so a
+ * join worker always terminates the mailbox, even when it cannot produce a runtime filter. A join worker without any
+ * build side key only sends the end-of-stream block.
+ */
+public class RuntimeFilterSender {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RuntimeFilterSender.class);
+
+  private final MailboxService<TransferableBlock> _mailboxService;
+  private final List<String> _mailboxIds;
+  private final int _keyColumnIndex;
+  private final DataSchema.ColumnDataType _dataType;
+  private RuntimeFilter _runtimeFilter;
+  private boolean _isSent;
+
+  public RuntimeFilterSender(MailboxService<TransferableBlock> mailboxService,
+      List<ServerInstance> receivingStageInstances, String hostName, int port, long jobId, int stageId,
+      int keyColumnIndex, DataSchema.ColumnDataType dataType, int maxNumValues) {
+    _mailboxService = mailboxService;
+    _mailboxIds = new ArrayList<>(receivingStageInstances.size());
+    for (ServerInstance receivingInstance : receivingStageInstances) {
+      _mailboxIds.add(RuntimeFilter.toMailboxId(jobId, stageId, hostName, port, receivingInstance.getHostname(),
+          receivingInstance.getQueryMailboxPort()));
+    }
+    _keyColumnIndex = keyColumnIndex;
+    _dataType = dataType;
+    _runtimeFilter = RuntimeFilter.isSupported(dataType) ? new RuntimeFilter(dataType, maxNumValues) : null;
+  }
+
+  public void addRow(Object[] row) {
+    if (_runtimeFilter != null) {
+      _runtimeFilter.add(row[_keyColumnIndex]);
+    }
+  }
+
+  /**
+   * Sends the runtime filter to the probe side workers. When the build side is incomplete (e.g. it failed), a no filter
+   * block is sent instead so that the probe side is not filtered.
+   */
+  public void send(boolean isComplete) {
+    if (_isSent) {
+      return;
+    }
+    _isSent = true;
+    for (String mailboxId : _mailboxIds) {
+      try {
+        SendingMailbox<TransferableBlock> sendingMailbox = _mailboxService.getSendingMailbox(mailboxId);
+        if (!isComplete || _runtimeFilter == null) {
+          sendingMailbox.send(RuntimeFilter.getNoFilterTransferableBlock());
+        } else if (!_runtimeFilter.isEmpty()) {
+          sendingMailbox.send(_runtimeFilter.toTransferableBlock());
+        }
+        sendingMailbox.send(RuntimeFilter.getEndOfStreamTransferableBlock(_dataType));
+        sendingMailbox.complete();
+      } catch (Exception e) {
+        LOGGER.error("Caught exception while sending the runtime filter to mailbox: {}", mailboxId, e);
+      }
+    }
+    // release the values, they are no longer needed.
+    _runtimeFilter = null;
+  }
+}
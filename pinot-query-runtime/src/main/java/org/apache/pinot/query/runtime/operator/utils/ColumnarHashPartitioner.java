@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlockPartitioner;
+import org.apache.pinot.query.planner.partitioning.FieldSelectionKeySelector;
+import org.apache.pinot.query.planner.partitioning.KeySelector;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+
+/**
+ * {@code ColumnarHashPartitioner} hash partitions a {@link ColumnarDataBlock} without converting it into rows.
+ *
+ * <p>The key columns are read in bulk from the block and hashed column by column into a partition id array, then the
+ * block is split with {@link ColumnarDataBlockPartitioner}. The partition of a row is always the same as
+ * {@code keySelector.computeHash(row) % numPartitions} on the row path, so both paths can be used for the two sides of
+ * the same exchange.
+ */
+public class ColumnarHashPartitioner {
+  // Same seed and multiplier as the HashCodeBuilder used by FieldSelectionKeySelector.
+  private static final int HASH_SEED = 17;
+  private static final int HASH_MULTIPLIER = 37;
+
+  private ColumnarHashPartitioner() {
+  }
+
+  /**
+   * Returns whether the columnar path can partition blocks of the given schema with the given key selector.
+   */
+  public static boolean isSupported(DataSchema dataSchema, KeySelector<Object[], Object[]> keySelector) {
+    if (!(keySelector instanceof FieldSelectionKeySelector)) {
+      return false;
+    }
+    DataSchema.ColumnDataType[] storedTypes = dataSchema.getStoredColumnDataTypes();
+    for (int colId : ((FieldSelectionKeySelector) keySelector).getColumnIndices()) {
+      switch (storedTypes[colId]) {
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+        case STRING:
+          break;
+        default:
+          return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Splits the selected rows of the block (all the rows when the selection is null) into {@code numPartitions} blocks
+   * by the hash of the key columns of the key selector, which must be supported according to
+   * {@link #isSupported(DataSchema, KeySelector)}.
+   */
+  public static List<TransferableBlock> partition(ColumnarDataBlock block, @Nullable int[] selection,
+      KeySelector<Object[], Object[]> keySelector, int numPartitions)
+      throws IOException {
+    int[] partitionIds =
+        computePartitionIds(block, ((FieldSelectionKeySelector) keySelector).getColumnIndices(), numPartitions);
+    if (selection != null) {
+      // drop the rows not selected
+      boolean[] selected = new boolean[partitionIds.length];
+      for (int rowId : selection) {
+        selected[rowId] = true;
+      }
+      for (int rowId = 0; rowId < partitionIds.length; rowId++) {
+        if (!selected[rowId]) {
+          partitionIds[rowId] = -1;
+        }
+      }
+    }
+    ColumnarDataBlock[] partitionBlocks = ColumnarDataBlockPartitioner.partition(block, partitionIds, numPartitions);
+    List<TransferableBlock> transferableBlocks = new ArrayList<>(numPartitions);
+    for (ColumnarDataBlock partitionBlock : partitionBlocks) {
+      transferableBlocks.add(new TransferableBlock(partitionBlock));
+    }
+    return transferableBlocks;
+  }
+
+  /**
+   * Returns the partition id of every row of the block.
+   */
+  public static int[] computePartitionIds(ColumnarDataBlock block, List<Integer> keyColumnIds, int numPartitions) {
+    int numRows = block.getNumberOfRows();
+    DataSchema.ColumnDataType[] storedTypes = block.getDataSchema().getStoredColumnDataTypes();
+    int[] hashes = new int[numRows];
+    Arrays.fill(hashes, HASH_SEED);
+    int[] valueHashes = new int[numRows];
+    for (int colId : keyColumnIds) {
+      computeValueHashes(block, colId, storedTypes[colId], valueHashes);
+      for (int rowId = 0; rowId < numRows; rowId++) {
+        hashes[rowId] = hashes[rowId] * HASH_MULTIPLIER + valueHashes[rowId];
+      }
+    }
+    // Reuse the hash array for the partition ids, masking the sign bit the same way as the key selector
+    for (int rowId = 0; rowId < numRows; rowId++) {
+      hashes[rowId] = (hashes[rowId] & Integer.MAX_VALUE) % numPartitions;
+    }
+    return hashes;
+  }
+
+  /**
+   * Fills the {@link Object#hashCode()} of the boxed value of every row of the column, or 0 for null values.
+   */
+  private static void computeValueHashes(ColumnarDataBlock block, int colId, DataSchema.ColumnDataType storedType,
+      int[] valueHashes) {
+    int numRows = block.getNumberOfRows();
+    switch (storedType) {
+      case INT: {
+        int[] values = block.getIntColumn(colId);
+        System.arraycopy(values, 0, valueHashes, 0, numRows);
+        break;
+      }
+      case LONG: {
+        long[] values = block.getLongColumn(colId);
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          valueHashes[rowId] = Long.hashCode(values[rowId]);
+        }
+        break;
+      }
+      case FLOAT: {
+        float[] values = block.getFloatColumn(colId);
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          valueHashes[rowId] = Float.hashCode(values[rowId]);
+        }
+        break;
+      }
+      case DOUBLE: {
+        double[] values = block.getDoubleColumn(colId);
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          valueHashes[rowId] = Double.hashCode(values[rowId]);
+        }
+        break;
+      }
+      case STRING: {
+        // Hash each dictionary entry only once
+        String[] dictionary = block.getStringDictionary();
+        int[] dictionaryHashes = new int[dictionary != null ? dictionary.length : 0];
+        for (int dictId = 0; dictId < dictionaryHashes.length; dictId++) {
+          dictionaryHashes[dictId] = dictionary[dictId].hashCode();
+        }
+        int[] dictIds = block.getIntColumn(colId);
+        for (int rowId = 0; rowId < numRows; rowId++) {
+          valueHashes[rowId] = dictionaryHashes[dictIds[rowId]];
+        }
+        break;
+      }
+      default:
+        throw new IllegalStateException("Unsupported key column type: " + storedType);
+    }
+    RoaringBitmap nullRowIds = block.getNullRowIds(colId);
+    if (nullRowIds != null) {
+      PeekableIntIterator iterator = nullRowIds.getIntIterator();
+      while (iterator.hasNext()) {
+        valueHashes[iterator.next()] = 0;
+      }
+    }
+  }
+}
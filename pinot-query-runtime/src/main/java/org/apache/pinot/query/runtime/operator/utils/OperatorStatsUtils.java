@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.pinot.common.utils.DataTable;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.query.runtime.operator.MailboxReceiveOperator;
+import org.apache.pinot.query.runtime.operator.MultiStageOperator;
+import org.apache.pinot.spi.utils.JsonUtils;
+
+
+/**
+ * Utils for the per-operator stats of the multi-stage queries.
+ *
+ * <p>The stats of a stage on a worker are reported as a JSON object holding the stage id, the worker server and the
+ * stats tree of the stage operators (see {@link MultiStageOperator#getStatsTree()}). The stage stats are sent back to
+ * the broker in the metadata of the end-of-stream blocks: each stage forwards the stats of its upstream stages along
+ * with its own. The broker merges the stats of all the workers of each stage.
+ */
+public class OperatorStatsUtils {
+  public static final String STAGE_ID = "stageId";
+  public static final String SERVER = "server";
+  public static final String NUM_WORKERS = "numWorkers";
+  public static final String OPERATOR_STATS = "operatorStats";
+  public static final String OPERATOR = "operator";
+  public static final String ROWS_IN = "rowsIn";
+  public static final String ROWS_OUT = "rowsOut";
+  public static final String NUM_BLOCKS = "numBlocks";
+  public static final String WALL_TIME_NS = "wallTimeNs";
+  public static final String MAX_WALL_TIME_NS = "maxWallTimeNs";
+  public static final String CPU_TIME_NS = "cpuTimeNs";
+  public static final String MAILBOX_BYTES = "mailboxBytes";
+  public static final String CHILDREN = "children";
+
+  private OperatorStatsUtils() {
+    // do not instantiate.
+  }
+
+  /**
+   * Returns the stats of the stage rooted at the given operator on the given worker.
+   */
+  public static ObjectNode getStageStats(int stageId, String server, MultiStageOperator rootOperator) {
+    ObjectNode stageStats = JsonUtils.newObjectNode();
+    stageStats.put(STAGE_ID, stageId);
+    stageStats.put(SERVER, server);
+    stageStats.set(OPERATOR_STATS, rootOperator.getStatsTree());
+    return stageStats;
+  }
+
+  /**
+   * Collects the stats of the upstream stages received by the mailbox receive operators of the operator tree.
+   */
+  public static void collectUpstreamStageStats(Operator operator, List<JsonNode> stageStatsList) {
+    if (operator instanceof MailboxReceiveOperator) {
+      stageStatsList.addAll(((MailboxReceiveOperator) operator).getUpstreamStageStats());
+    }
+    List<Operator> childOperators = operator.getChildOperators();
+    if (childOperators != null) {
+      for (Operator childOperator : childOperators) {
+        collectUpstreamStageStats(childOperator, stageStatsList);
+      }
+    }
+  }
+
+  /**
+   * Returns the end-of-stream block metadata carrying the given stage stats.
+   */
+  public static Map<String, String> toMetadata(List<JsonNode> stageStatsList) {
+    ArrayNode stageStatsArray = JsonUtils.newArrayNode();
+    stageStatsArray.addAll(stageStatsList);
+    return Collections.singletonMap(DataTable.MetadataKey.OPERATOR_STATS.getName(), stageStatsArray.toString());
+  }
+
+  /**
+   * Extracts the stage stats from the end-of-stream block metadata into the given list.
+   */
+  public static void fromMetadata(Map<String, String> metadata, List<JsonNode> stageStatsList)
+      throws IOException {
+    String operatorStats = metadata.get(DataTable.MetadataKey.OPERATOR_STATS.getName());
+    if (operatorStats != null) {
+      for (JsonNode stageStats : JsonUtils.stringToJsonNode(operatorStats)) {
+        stageStatsList.add(stageStats);
+      }
+    }
+  }
+
+  /**
+   * Merges the stats of all the workers of each stage, ordered by stage id. The numeric stats of the workers are
+   * summed up, and the max wall time of the workers is kept for each operator.
+   */
+  public static ArrayNode mergeStageStats(List<JsonNode> stageStatsList) {
+    Map<Integer, ObjectNode> mergedStageStatsMap = new TreeMap<>();
+    for (JsonNode stageStats : stageStatsList) {
+      int stageId = stageStats.get(STAGE_ID).asInt();
+      ObjectNode mergedStageStats = mergedStageStatsMap.computeIfAbsent(stageId, k -> {
+        ObjectNode node = JsonUtils.newObjectNode();
+        node.put(STAGE_ID, k);
+        node.put(NUM_WORKERS, 0);
+        node.putObject(OPERATOR_STATS);
+        return node;
+      });
+      mergedStageStats.put(NUM_WORKERS, mergedStageStats.get(NUM_WORKERS).asInt() + 1);
+      mergeStatsTree((ObjectNode) mergedStageStats.get(OPERATOR_STATS), stageStats.get(OPERATOR_STATS));
+    }
+    ArrayNode mergedStageStatsArray = JsonUtils.newArrayNode();
+    mergedStageStatsArray.addAll(mergedStageStatsMap.values());
+    return mergedStageStatsArray;
+  }
+
+  private static void mergeStatsTree(ObjectNode mergedStatsTree, JsonNode statsTree) {
+    Iterator<Map.Entry<String, JsonNode>> fields = statsTree.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      String key = field.getKey();
+      JsonNode value = field.getValue();
+      if (key.equals(CHILDREN)) {
+        ArrayNode mergedChildren = mergedStatsTree.withArray(CHILDREN);
+        for (int i = 0; i < value.size(); i++) {
+          if (i == mergedChildren.size()) {
+            mergedChildren.addObject();
+          }
+          mergeStatsTree((ObjectNode) mergedChildren.get(i), value.get(i));
+        }
+      } else if (key.equals(MAILBOX_BYTES)) {
+        JsonNode mergedMailboxBytes = mergedStatsTree.get(MAILBOX_BYTES);
+        mergeStatsTree(mergedMailboxBytes != null ? (ObjectNode) mergedMailboxBytes
+            : mergedStatsTree.putObject(MAILBOX_BYTES), value);
+      } else if (value.isNumber()) {
+        JsonNode mergedValue = mergedStatsTree.get(key);
+        mergedStatsTree.put(key, mergedValue != null ? mergedValue.asLong() + value.asLong() : value.asLong());
+        if (key.equals(WALL_TIME_NS)) {
+          JsonNode maxWallTimeNs = mergedStatsTree.get(MAX_WALL_TIME_NS);
+          mergedStatsTree.put(MAX_WALL_TIME_NS,
+              maxWallTimeNs != null ? Math.max(maxWallTimeNs.asLong(), value.asLong()) : value.asLong());
+        }
+      } else {
+        mergedStatsTree.set(key, value);
+      }
+    }
+  }
+
+  /**
+   * Renders the merged stage stats (see {@link #mergeStageStats(List)}) as text, one operator per line, indented under
+   * its downstream operator.
+   */
+  public static String explainStageStats(JsonNode mergedStageStatsArray) {
+    StringBuilder stringBuilder = new StringBuilder();
+    for (JsonNode stageStats : mergedStageStatsArray) {
+      stringBuilder.append("[").append(stageStats.get(STAGE_ID).asInt()).append("] ")
+          .append(NUM_WORKERS).append('=').append(stageStats.get(NUM_WORKERS).asInt()).append('\n');
+      explainStatsTree(stageStats.get(OPERATOR_STATS), "  ", stringBuilder);
+    }
+    return stringBuilder.toString();
+  }
+
+  private static void explainStatsTree(JsonNode statsTree, String indent, StringBuilder stringBuilder) {
+    stringBuilder.append(indent).append(statsTree.get(OPERATOR).asText());
+    Iterator<Map.Entry<String, JsonNode>> fields = statsTree.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      String key = field.getKey();
+      if (!key.equals(OPERATOR) && !key.equals(CHILDREN)) {
+        stringBuilder.append(' ').append(key).append('=').append(field.getValue().toString());
+      }
+    }
+    stringBuilder.append('\n');
+    JsonNode children = statsTree.get(CHILDREN);
+    if (children != null) {
+      for (JsonNode child : children) {
+        explainStatsTree(child, indent + "  ", stringBuilder);
+      }
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlockPartitioner;
+import org.apache.pinot.query.runtime.blocks.ColumnarRowReader;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+
+
+/**
+ * {@code RangePartitioner} range partitions rows on sort keys: all the keys of a partition come before the keys of the
+ * next partition in the sort order, so the partitions sorted independently can be concatenated into the global order.
+ *
+ * <p>The split points between the partitions are picked from a sample of the keys of all the sending workers. Every
+ * sending worker sorts the same sample keys and picks the same quantiles, so they all agree on the ranges without any
+ * coordination. The keys are compared the same way as the sort operator does, and a key equal to a split point always
+ * goes to the partition before it, so the rows with the same key end up in the same partition.
+ *
+ * <p>Null keys are ordered by the default null direction of their sort direction, i.e. nulls last for ascending and
+ * nulls first for descending order. A row with a null first key always goes to the last or the first partition
+ * accordingly.
+ */
+public class RangePartitioner {
+  private final int _numPartitions;
+  private final int _numKeys;
+  private final int[] _keyColumnIndices;
+  private final int[] _multipliers;
+  private final boolean[] _useDoubleComparison;
+  private final boolean[] _nullsFirst;
+  private final DataSchema _keyDataSchema;
+  private List<Object[]> _splitPoints;
+
+  public RangePartitioner(List<Integer> keyColumnIndices, List<RelFieldCollation.Direction> collationDirections,
+      DataSchema dataSchema, int numPartitions) {
+    Preconditions.checkArgument(keyColumnIndices.size() == collationDirections.size(),
+        "Each range partition key requires a sort direction");
+    _numPartitions = numPartitions;
+    _numKeys = keyColumnIndices.size();
+    _keyColumnIndices = new int[_numKeys];
+    _multipliers = new int[_numKeys];
+    _useDoubleComparison = new boolean[_numKeys];
+    _nullsFirst = new boolean[_numKeys];
+    String[] keyColumnNames = new String[_numKeys];
+    DataSchema.ColumnDataType[] keyColumnDataTypes = new DataSchema.ColumnDataType[_numKeys];
+    for (int i = 0; i < _numKeys; i++) {
+      int columnIndex = keyColumnIndices.get(i);
+      _keyColumnIndices[i] = columnIndex;
+      _multipliers[i] = collationDirections.get(i).isDescending() ? -1 : 1;
+      _useDoubleComparison[i] = dataSchema.getColumnDataType(columnIndex).isNumber();
+      _nullsFirst[i] = collationDirections.get(i).defaultNullDirection() == RelFieldCollation.NullDirection.FIRST;
+      keyColumnNames[i] = dataSchema.getColumnName(columnIndex);
+      keyColumnDataTypes[i] = dataSchema.getColumnDataType(columnIndex);
+    }
+    _keyDataSchema = new DataSchema(keyColumnNames, keyColumnDataTypes);
+    // a single partition holds all the keys, no sample is needed.
+    _splitPoints = numPartitions == 1 ? Collections.emptyList() : null;
+  }
+
+  /**
+   * Returns the schema of the sample keys.
+   */
+  public DataSchema getKeyDataSchema() {
+    return _keyDataSchema;
+  }
+
+  /**
+   * Returns up to {@code numSamples} keys evenly spread across the given rows.
+   */
+  public List<Object[]> sampleKeys(List<Object[]> rows, int numSamples) {
+    int numRows = rows.size();
+    int numSampleKeys = Math.min(numRows, numSamples);
+    List<Object[]> sampleKeys = new ArrayList<>(numSampleKeys);
+    for (int i = 0; i < numSampleKeys; i++) {
+      Object[] row = rows.get((int) ((long) i * numRows / numSampleKeys));
+      Object[] key = new Object[_numKeys];
+      for (int j = 0; j < _numKeys; j++) {
+        key[j] = row[_keyColumnIndices[j]];
+      }
+      sampleKeys.add(key);
+    }
+    return sampleKeys;
+  }
+
+  public boolean hasSplitPoints() {
+    return _splitPoints != null;
+  }
+
+  /**
+   * Picks the split points between the partitions at the quantiles of the sample keys of all the sending workers.
+   * Without any sample key, all the rows go to the first partition.
+   */
+  public void setSplitPoints(List<Object[]> sampleKeys) {
+    if (sampleKeys.isEmpty()) {
+      _splitPoints = Collections.emptyList();
+      return;
+    }
+    List<Object[]> sortedKeys = new ArrayList<>(sampleKeys);
+    sortedKeys.sort(this::compareKeys);
+    int numSampleKeys = sortedKeys.size();
+    _splitPoints = new ArrayList<>(_numPartitions - 1);
+    for (int i = 1; i < _numPartitions; i++) {
+      // the last key of the first i / numPartitions of the sorted sample keys.
+      int index = (int) (((long) i * numSampleKeys + _numPartitions - 1) / _numPartitions) - 1;
+      _splitPoints.add(sortedKeys.get(index));
+    }
+  }
+
+  /**
+   * Returns the partition of the given row, the split points must be set.
+   */
+  public int getPartition(Object[] row) {
+    if (row[_keyColumnIndices[0]] == null) {
+      return _nullsFirst[0] ? 0 : _splitPoints.size();
+    }
+    // binary search the first split point greater than or equal to the key of the row.
+    int low = 0;
+    int high = _splitPoints.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareRowToKey(row, _splitPoints.get(mid)) > 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Splits the rows into {@code numPartitions} lists by the range of their keys, the split points must be set.
+   */
+  public List<List<Object[]>> partition(List<Object[]> rows) {
+    List<List<Object[]>> partitionedRows = new ArrayList<>(_numPartitions);
+    for (int i = 0; i < _numPartitions; i++) {
+      partitionedRows.add(new ArrayList<>());
+    }
+    for (Object[] row : rows) {
+      partitionedRows.get(getPartition(row)).add(row);
+    }
+    return partitionedRows;
+  }
+
+  /**
+   * Splits the selected rows of a columnar block into {@code numPartitions} columnar blocks by the range of their keys,
+   * the split points must be set. Only the key columns are decoded.
+   */
+  public List<TransferableBlock> partition(TransferableBlock block)
+      throws IOException {
+    ColumnarRowReader rowReader = new ColumnarRowReader(block, _keyColumnIndices);
+    ColumnarDataBlock dataBlock = rowReader.getDataBlock();
+    int[] partitionIds = new int[dataBlock.getNumberOfRows()];
+    // drop the rows not selected
+    Arrays.fill(partitionIds, -1);
+    int numRows = rowReader.getNumRows();
+    for (int i = 0; i < numRows; i++) {
+      partitionIds[rowReader.getRowId(i)] = getPartition(rowReader.readRow(i));
+    }
+    ColumnarDataBlock[] partitionBlocks =
+        ColumnarDataBlockPartitioner.partition(dataBlock, partitionIds, _numPartitions);
+    List<TransferableBlock> transferableBlocks = new ArrayList<>(_numPartitions);
+    for (ColumnarDataBlock partitionBlock : partitionBlocks) {
+      transferableBlocks.add(new TransferableBlock(partitionBlock));
+    }
+    return transferableBlocks;
+  }
+
+  private int compareRowToKey(Object[] row, Object[] key) {
+    for (int i = 0; i < _numKeys; i++) {
+      int result = compareValues(i, row[_keyColumnIndices[i]], key[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  private int compareKeys(Object[] key1, Object[] key2) {
+    for (int i = 0; i < _numKeys; i++) {
+      int result = compareValues(i, key1[i], key2[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compareValues(int keyIndex, Object v1, Object v2) {
+    if (v1 == null || v2 == null) {
+      if (v1 == v2) {
+        return 0;
+      }
+      // nulls are placed regardless of the sort direction.
+      return (v1 == null) == _nullsFirst[keyIndex] ? -1 : 1;
+    }
+    int result;
+    if (_useDoubleComparison[keyIndex]) {
+      result = Double.compare(((Number) v1).doubleValue(), ((Number) v2).doubleValue());
+    } else {
+      result = ((Comparable<Object>) v1).compareTo(v2);
+    }
+    return result * _multipliers[keyIndex];
+  }
+}
@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.core.common.datablock.DataBlockUtils;
+
+
+/**
+ * {@code SpilledRowPartitions} writes rows into a fixed number of partitions backed by local temporary files.
+ *
+ * <p>Rows are buffered per partition and flushed as serialized row data blocks once the buffer is full, so that each
+ * partition file is a sequence of length-prefixed data blocks. After {@link #finish()} is called, each partition can
+ * be read back one block at a time with {@link #openPartition(int)}. All the files are deleted on {@link #close()}.
+ */
+public class SpilledRowPartitions implements Closeable {
+  private static final int MAX_NUM_BUFFERED_ROWS_PER_PARTITION = 4096;
+  private static final String SPILL_FILE_PREFIX = "spill_";
+  private static final String SPILL_FILE_SUFFIX = ".tmp";
+
+  private final File _spillDir;
+  private final DataSchema _dataSchema;
+  private final List<Object[]>[] _bufferedRows;
+  private final File[] _files;
+  private final DataOutputStream[] _outputStreams;
+  private long _numSpilledBytes;
+  private boolean _isFinished;
+
+  @SuppressWarnings("unchecked")
+  public SpilledRowPartitions(File spillDir, DataSchema dataSchema, int numPartitions) {
+    _spillDir = spillDir;
+    _dataSchema = dataSchema;
+    _bufferedRows = new List[numPartitions];
+    _files = new File[numPartitions];
+    _outputStreams = new DataOutputStream[numPartitions];
+  }
+
+  public int getNumPartitions() {
+    return _bufferedRows.length;
+  }
+
+  /**
+   * Returns the number of bytes written to disk so far.
+   */
+  public long getNumSpilledBytes() {
+    return _numSpilledBytes;
+  }
+
+  public void addRow(int partitionId, Object[] row)
+      throws IOException {
+    List<Object[]> bufferedRows = _bufferedRows[partitionId];
+    if (bufferedRows == null) {
+      bufferedRows = new ArrayList<>();
+      _bufferedRows[partitionId] = bufferedRows;
+    }
+    bufferedRows.add(row);
+    if (bufferedRows.size() == MAX_NUM_BUFFERED_ROWS_PER_PARTITION) {
+      flush(partitionId);
+    }
+  }
+
+  /**
+   * Flushes all the buffered rows and closes the writers. No row can be added afterwards.
+   */
+  public void finish()
+      throws IOException {
+    for (int partitionId = 0; partitionId < _bufferedRows.length; partitionId++) {
+      flush(partitionId);
+      if (_outputStreams[partitionId] != null) {
+        _outputStreams[partitionId].close();
+        _outputStreams[partitionId] = null;
+      }
+    }
+    _isFinished = true;
+  }
+
+  /**
+   * Opens the given partition for reading. Must be called after {@link #finish()}.
+   */
+  public PartitionReader openPartition(int partitionId)
+      throws IOException {
+    if (!_isFinished) {
+      throw new IllegalStateException("Partitions must be finished before being read");
+    }
+    File file = _files[partitionId];
+    return new PartitionReader(file != null ? new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file))) : null);
+  }
+
+  private void flush(int partitionId)
+      throws IOException {
+    List<Object[]> bufferedRows = _bufferedRows[partitionId];
+    if (bufferedRows == null || bufferedRows.isEmpty()) {
+      return;
+    }
+    DataOutputStream outputStream = _outputStreams[partitionId];
+    if (outputStream == null) {
+      File file = File.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX, _spillDir);
+      _files[partitionId] = file;
+      outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      _outputStreams[partitionId] = outputStream;
+    }
+    byte[] bytes = DataBlockBuilder.buildFromRows(bufferedRows, _dataSchema).toBytes();
+    outputStream.writeInt(bytes.length);
+    outputStream.write(bytes);
+    _numSpilledBytes += Integer.BYTES + bytes.length;
+    bufferedRows.clear();
+  }
+
+  @Override
+  public void close() {
+    for (int partitionId = 0; partitionId < _files.length; partitionId++) {
+      if (_outputStreams[partitionId] != null) {
+        try {
+          _outputStreams[partitionId].close();
+        } catch (IOException e) {
+          // Ignore, the file is deleted below.
+        }
+        _outputStreams[partitionId] = null;
+      }
+      if (_files[partitionId] != null) {
+        FileUtils.deleteQuietly(_files[partitionId]);
+        _files[partitionId] = null;
+      }
+      _bufferedRows[partitionId] = null;
+    }
+  }
+
+  /**
+   * Reads the rows of a partition back, one spilled data block at a time.
+   */
+  public static class PartitionReader implements Closeable {
+    private final DataInputStream _inputStream;
+
+    private PartitionReader(@Nullable DataInputStream inputStream) {
+      _inputStream = inputStream;
+    }
+
+    /**
+     * Returns the rows of the next spilled data block, or {@code null} if all the rows have been read.
+     */
+    @Nullable
+    public List<Object[]> nextRows()
+        throws IOException {
+      if (_inputStream == null) {
+        return null;
+      }
+      int numBytes;
+      try {
+        numBytes = _inputStream.readInt();
+      } catch (EOFException e) {
+        return null;
+      }
+      byte[] bytes = new byte[numBytes];
+      _inputStream.readFully(bytes);
+      return DataBlockUtils.extractRows(DataBlockUtils.getDataBlock(ByteBuffer.wrap(bytes)));
+    }
+
+    @Override
+    public void close()
+        throws IOException {
+      if (_inputStream != null) {
+        _inputStream.close();
+      }
+    }
+  }
+}
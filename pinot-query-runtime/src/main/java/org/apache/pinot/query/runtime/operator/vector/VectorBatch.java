@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.vector;
+
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.core.common.datablock.DataBlockUtils;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.roaringbitmap.RoaringBitmap;
+
+
+/**
+ * {@code VectorBatch} exposes the columns of a columnar {@link TransferableBlock} as primitive arrays to the vectorized
+ * expressions.
+ *
+ * <p>Columns are read in bulk once per batch and indexed by the row id in the data block, the rows of the block are
+ * addressed through a selection vector of row ids (see {@link #getRowIds()}). Null values are not represented, the
+ * vectorized evaluation only applies to blocks without nulls in the referenced columns (see {@link #hasNulls}).
+ */
+public class VectorBatch {
+  private final ColumnarDataBlock _dataBlock;
+  private final int[] _selection;
+  private final int _numRows;
+  private final Object[] _columns;
+  private final Object[][] _boxedColumns;
+
+  public VectorBatch(TransferableBlock block) {
+    _dataBlock = block.getColumnarDataBlock();
+    _selection = block.getSelection();
+    _numRows = _selection != null ? _selection.length : _dataBlock.getNumberOfRows();
+    int numColumns = _dataBlock.getDataSchema().size();
+    _columns = new Object[numColumns];
+    _boxedColumns = new Object[numColumns][];
+  }
+
+  /**
+   * Returns {@code true} if any of the given columns of the columnar block holds a null value.
+   */
+  public static boolean hasNulls(TransferableBlock block, int[] colIds) {
+    ColumnarDataBlock dataBlock = block.getColumnarDataBlock();
+    for (int colId : colIds) {
+      RoaringBitmap nullRowIds = dataBlock.getNullRowIds(colId);
+      if (nullRowIds != null && !nullRowIds.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public ColumnarDataBlock getDataBlock() {
+    return _dataBlock;
+  }
+
+  public int getNumRows() {
+    return _numRows;
+  }
+
+  /**
+   * Returns a new selection vector with the ids of all the rows of the block, which can be modified by the caller.
+   */
+  public int[] getRowIds() {
+    if (_selection != null) {
+      return _selection.clone();
+    }
+    int[] rowIds = new int[_numRows];
+    for (int i = 0; i < _numRows; i++) {
+      rowIds[i] = i;
+    }
+    return rowIds;
+  }
+
+  public DataSchema.ColumnDataType getStoredType(int colId) {
+    return _dataBlock.getDataSchema().getColumnDataType(colId).getStoredType();
+  }
+
+  public int[] getIntColumn(int colId) {
+    int[] values = (int[]) _columns[colId];
+    if (values == null) {
+      values = _dataBlock.getIntColumn(colId);
+      _columns[colId] = values;
+    }
+    return values;
+  }
+
+  public long[] getLongColumn(int colId) {
+    long[] values = (long[]) _columns[colId];
+    if (values == null) {
+      values = _dataBlock.getLongColumn(colId);
+      _columns[colId] = values;
+    }
+    return values;
+  }
+
+  public float[] getFloatColumn(int colId) {
+    float[] values = (float[]) _columns[colId];
+    if (values == null) {
+      values = _dataBlock.getFloatColumn(colId);
+      _columns[colId] = values;
+    }
+    return values;
+  }
+
+  public double[] getDoubleColumn(int colId) {
+    double[] values = (double[]) _columns[colId];
+    if (values == null) {
+      values = _dataBlock.getDoubleColumn(colId);
+      _columns[colId] = values;
+    }
+    return values;
+  }
+
+  public String[] getStringColumn(int colId) {
+    String[] values = (String[]) _columns[colId];
+    if (values == null) {
+      values = _dataBlock.getStringColumn(colId);
+      _columns[colId] = values;
+    }
+    return values;
+  }
+
+  /**
+   * Returns the boxed values of the column, for the expressions that are evaluated one row at a time.
+   */
+  public Object[] getBoxedColumn(int colId) {
+    Object[] values = _boxedColumns[colId];
+    if (values == null) {
+      values = DataBlockUtils.extractColumn(_dataBlock, colId);
+      _boxedColumns[colId] = values;
+    }
+    return values;
+  }
+}
@@ -0,0 +1,622 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.vector;
+
+import com.google.common.collect.ImmutableSet;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.function.FunctionInfo;
+import org.apache.pinot.common.function.FunctionRegistry;
+import org.apache.pinot.common.function.scalar.ArithmeticFunctions;
+import org.apache.pinot.common.function.scalar.StringFunctions;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.operator.OperatorUtils;
+
+
+/**
+ * {@code VectorExpression} evaluates a {@link RexExpression} over the selected rows of a {@link VectorBatch} at once,
+ * into a primitive array holding one value per selected row.
+ *
+ * <p>The expression can be evaluated into any of the supported types, with the same conversions as
+ * {@link ColumnDataType#convert(Object)} applied to the row-based result, so that the values match the ones produced by
+ * the row-based {@link org.apache.pinot.query.runtime.operator.operands.TransformOperand}. Only column references,
+ * literals, arithmetic and a few common scalar functions of {@link ArithmeticFunctions} and {@link StringFunctions} are
+ * supported, {@link #compile(RexExpression, DataSchema)} returns {@code null} for the other expressions so that they
+ * are evaluated one row at a time.
+ */
+public abstract class VectorExpression {
+  static final Set<ColumnDataType> NUMERIC_TYPES =
+      ImmutableSet.of(ColumnDataType.INT, ColumnDataType.LONG, ColumnDataType.FLOAT, ColumnDataType.DOUBLE);
+  static final Set<ColumnDataType> SUPPORTED_TYPES = ImmutableSet.of(ColumnDataType.INT, ColumnDataType.LONG,
+      ColumnDataType.FLOAT, ColumnDataType.DOUBLE, ColumnDataType.STRING);
+
+  protected final ColumnDataType _resultType;
+
+  protected VectorExpression(ColumnDataType resultType) {
+    _resultType = resultType;
+  }
+
+  /**
+   * Compiles the expression into a vectorized expression.
+   *
+   * @param rexExpression expression over the input columns.
+   * @param dataSchema schema of the input columns.
+   * @return the vectorized expression, or {@code null} if the expression cannot be vectorized.
+   */
+  @Nullable
+  public static VectorExpression compile(RexExpression rexExpression, DataSchema dataSchema) {
+    if (rexExpression instanceof RexExpression.InputRef) {
+      int colId = ((RexExpression.InputRef) rexExpression).getIndex();
+      ColumnDataType columnDataType = dataSchema.getColumnDataType(colId);
+      return SUPPORTED_TYPES.contains(columnDataType) ? new ColumnReference(colId, columnDataType) : null;
+    } else if (rexExpression instanceof RexExpression.Literal) {
+      RexExpression.Literal literal = (RexExpression.Literal) rexExpression;
+      ColumnDataType columnDataType = ColumnDataType.fromDataType(literal.getDataType(), true);
+      return literal.getValue() != null && SUPPORTED_TYPES.contains(columnDataType) ? new Literal(literal.getValue(),
+          columnDataType) : null;
+    } else if (rexExpression instanceof RexExpression.FunctionCall) {
+      return compileFunction((RexExpression.FunctionCall) rexExpression, dataSchema);
+    }
+    return null;
+  }
+
+  @Nullable
+  private static VectorExpression compileFunction(RexExpression.FunctionCall functionCall, DataSchema dataSchema) {
+    List<RexExpression> operandExpressions = functionCall.getFunctionOperands();
+    int numOperands = operandExpressions.size();
+    // resolve the function the same way as the row-based evaluation, so that both evaluate the same scalar function.
+    FunctionInfo functionInfo =
+        FunctionRegistry.getFunctionInfo(OperatorUtils.canonicalizeFunctionName(functionCall.getFunctionName()),
+            numOperands);
+    if (functionInfo == null) {
+      return null;
+    }
+    Method method = functionInfo.getMethod();
+    List<VectorExpression> operands = new ArrayList<>(numOperands);
+    for (RexExpression operandExpression : operandExpressions) {
+      VectorExpression operand = compile(operandExpression, dataSchema);
+      if (operand == null) {
+        return null;
+      }
+      operands.add(operand);
+    }
+    if (method.getDeclaringClass() == ArithmeticFunctions.class) {
+      DoubleFunction.Kernel kernel = DoubleFunction.Kernel.fromMethod(method);
+      if (kernel == null || operands.stream().anyMatch(operand -> !NUMERIC_TYPES.contains(operand._resultType))) {
+        return null;
+      }
+      return new DoubleFunction(kernel, operands);
+    } else if (method.getDeclaringClass() == StringFunctions.class) {
+      StringFunction.Kernel kernel = StringFunction.Kernel.fromMethod(method);
+      if (kernel == null || operands.get(0)._resultType != ColumnDataType.STRING) {
+        return null;
+      }
+      return new StringFunction(kernel, operands.get(0));
+    }
+    return null;
+  }
+
+  public ColumnDataType getResultType() {
+    return _resultType;
+  }
+
+  public abstract int[] evaluateInt(VectorBatch batch, int[] rowIds, int numRows);
+
+  public abstract long[] evaluateLong(VectorBatch batch, int[] rowIds, int numRows);
+
+  public abstract float[] evaluateFloat(VectorBatch batch, int[] rowIds, int numRows);
+
+  public abstract double[] evaluateDouble(VectorBatch batch, int[] rowIds, int numRows);
+
+  public abstract String[] evaluateString(VectorBatch batch, int[] rowIds, int numRows);
+
+  /**
+   * Evaluates the expression into the boxed values produced by the row-based evaluation.
+   */
+  public abstract Object[] evaluateObject(VectorBatch batch, int[] rowIds, int numRows);
+
+  private static class ColumnReference extends VectorExpression {
+    private final int _colId;
+
+    ColumnReference(int colId, ColumnDataType columnDataType) {
+      super(columnDataType);
+      _colId = colId;
+    }
+
+    @Override
+    public int[] evaluateInt(VectorBatch batch, int[] rowIds, int numRows) {
+      int[] result = new int[numRows];
+      switch (_resultType) {
+        case INT: {
+          int[] values = batch.getIntColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        case LONG: {
+          long[] values = batch.getLongColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = (int) values[rowIds[i]];
+          }
+          break;
+        }
+        case FLOAT: {
+          float[] values = batch.getFloatColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = (int) values[rowIds[i]];
+          }
+          break;
+        }
+        case DOUBLE: {
+          double[] values = batch.getDoubleColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = (int) values[rowIds[i]];
+          }
+          break;
+        }
+        default:
+          throw new IllegalStateException("Cannot read int values from column of type: " + _resultType);
+      }
+      return result;
+    }
+
+    @Override
+    public long[] evaluateLong(VectorBatch batch, int[] rowIds, int numRows) {
+      long[] result = new long[numRows];
+      switch (_resultType) {
+        case INT: {
+          int[] values = batch.getIntColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        case LONG: {
+          long[] values = batch.getLongColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        case FLOAT: {
+          float[] values = batch.getFloatColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = (long) values[rowIds[i]];
+          }
+          break;
+        }
+        case DOUBLE: {
+          double[] values = batch.getDoubleColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = (long) values[rowIds[i]];
+          }
+          break;
+        }
+        default:
+          throw new IllegalStateException("Cannot read long values from column of type: " + _resultType);
+      }
+      return result;
+    }
+
+    @Override
+    public float[] evaluateFloat(VectorBatch batch, int[] rowIds, int numRows) {
+      float[] result = new float[numRows];
+      switch (_resultType) {
+        case INT: {
+          int[] values = batch.getIntColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        case LONG: {
+          long[] values = batch.getLongColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        case FLOAT: {
+          float[] values = batch.getFloatColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        case DOUBLE: {
+          double[] values = batch.getDoubleColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = (float) values[rowIds[i]];
+          }
+          break;
+        }
+        default:
+          throw new IllegalStateException("Cannot read float values from column of type: " + _resultType);
+      }
+      return result;
+    }
+
+    @Override
+    public double[] evaluateDouble(VectorBatch batch, int[] rowIds, int numRows) {
+      double[] result = new double[numRows];
+      switch (_resultType) {
+        case INT: {
+          int[] values = batch.getIntColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        case LONG: {
+          long[] values = batch.getLongColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        case FLOAT: {
+          float[] values = batch.getFloatColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        case DOUBLE: {
+          double[] values = batch.getDoubleColumn(_colId);
+          for (int i = 0; i < numRows; i++) {
+            result[i] = values[rowIds[i]];
+          }
+          break;
+        }
+        default:
+          throw new IllegalStateException("Cannot read double values from column of type: " + _resultType);
+      }
+      return result;
+    }
+
+    @Override
+    public String[] evaluateString(VectorBatch batch, int[] rowIds, int numRows) {
+      String[] result = new String[numRows];
+      if (_resultType == ColumnDataType.STRING) {
+        String[] values = batch.getStringColumn(_colId);
+        for (int i = 0; i < numRows; i++) {
+          result[i] = values[rowIds[i]];
+        }
+      } else {
+        Object[] values = batch.getBoxedColumn(_colId);
+        for (int i = 0; i < numRows; i++) {
+          result[i] = values[rowIds[i]].toString();
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public Object[] evaluateObject(VectorBatch batch, int[] rowIds, int numRows) {
+      Object[] result = new Object[numRows];
+      Object[] values = batch.getBoxedColumn(_colId);
+      for (int i = 0; i < numRows; i++) {
+        result[i] = values[rowIds[i]];
+      }
+      return result;
+    }
+  }
+
+  private static class Literal extends VectorExpression {
+    private final Object _value;
+
+    Literal(Object value, ColumnDataType columnDataType) {
+      super(columnDataType);
+      _value = value;
+    }
+
+    @Override
+    public int[] evaluateInt(VectorBatch batch, int[] rowIds, int numRows) {
+      int[] result = new int[numRows];
+      Arrays.fill(result, ((Number) _value).intValue());
+      return result;
+    }
+
+    @Override
+    public long[] evaluateLong(VectorBatch batch, int[] rowIds, int numRows) {
+      long[] result = new long[numRows];
+      Arrays.fill(result, ((Number) _value).longValue());
+      return result;
+    }
+
+    @Override
+    public float[] evaluateFloat(VectorBatch batch, int[] rowIds, int numRows) {
+      float[] result = new float[numRows];
+      Arrays.fill(result, ((Number) _value).floatValue());
+      return result;
+    }
+
+    @Override
+    public double[] evaluateDouble(VectorBatch batch, int[] rowIds, int numRows) {
+      double[] result = new double[numRows];
+      Arrays.fill(result, ((Number) _value).doubleValue());
+      return result;
+    }
+
+    @Override
+    public String[] evaluateString(VectorBatch batch, int[] rowIds, int numRows) {
+      String[] result = new String[numRows];
+      Arrays.fill(result, _value.toString());
+      return result;
+    }
+
+    @Override
+    public Object[] evaluateObject(VectorBatch batch, int[] rowIds, int numRows) {
+      Object[] result = new Object[numRows];
+      Arrays.fill(result, _value);
+      return result;
+    }
+  }
+
+  /**
+   * Scalar functions of {@link ArithmeticFunctions}, which all take and return double values.
+   */
+  private static class DoubleFunction extends VectorExpression {
+    enum Kernel {
+      PLUS("plus", 2), MINUS("minus", 2), TIMES("times", 2), DIVIDE("divide", 2), MOD("mod", 2), ABS("abs", 1),
+      CEIL("ceil", 1), FLOOR("floor", 1), EXP("exp", 1), LN("ln", 1), LOG10("log10", 1), SQRT("sqrt", 1);
+
+      private final String _methodName;
+      private final int _numOperands;
+
+      Kernel(String methodName, int numOperands) {
+        _methodName = methodName;
+        _numOperands = numOperands;
+      }
+
+      @Nullable
+      static Kernel fromMethod(Method method) {
+        for (Kernel kernel : values()) {
+          if (kernel._methodName.equals(method.getName()) && kernel._numOperands == method.getParameterCount()) {
+            return kernel;
+          }
+        }
+        return null;
+      }
+    }
+
+    private final Kernel _kernel;
+    private final List<VectorExpression> _operands;
+
+    DoubleFunction(Kernel kernel, List<VectorExpression> operands) {
+      super(ColumnDataType.DOUBLE);
+      _kernel = kernel;
+      _operands = operands;
+    }
+
+    @Override
+    public int[] evaluateInt(VectorBatch batch, int[] rowIds, int numRows) {
+      double[] values = evaluateDouble(batch, rowIds, numRows);
+      int[] result = new int[numRows];
+      for (int i = 0; i < numRows; i++) {
+        result[i] = (int) values[i];
+      }
+      return result;
+    }
+
+    @Override
+    public long[] evaluateLong(VectorBatch batch, int[] rowIds, int numRows) {
+      double[] values = evaluateDouble(batch, rowIds, numRows);
+      long[] result = new long[numRows];
+      for (int i = 0; i < numRows; i++) {
+        result[i] = (long) values[i];
+      }
+      return result;
+    }
+
+    @Override
+    public float[] evaluateFloat(VectorBatch batch, int[] rowIds, int numRows) {
+      double[] values = evaluateDouble(batch, rowIds, numRows);
+      float[] result = new float[numRows];
+      for (int i = 0; i < numRows; i++) {
+        result[i] = (float) values[i];
+      }
+      return result;
+    }
+
+    @Override
+    public double[] evaluateDouble(VectorBatch batch, int[] rowIds, int numRows) {
+      double[] result = _operands.get(0).evaluateDouble(batch, rowIds, numRows);
+      if (_kernel._numOperands == 2) {
+        double[] rhs = _operands.get(1).evaluateDouble(batch, rowIds, numRows);
+        switch (_kernel) {
+          case PLUS:
+            for (int i = 0; i < numRows; i++) {
+              result[i] += rhs[i];
+            }
+            break;
+          case MINUS:
+            for (int i = 0; i < numRows; i++) {
+              result[i] -= rhs[i];
+            }
+            break;
+          case TIMES:
+            for (int i = 0; i < numRows; i++) {
+              result[i] *= rhs[i];
+            }
+            break;
+          case DIVIDE:
+            for (int i = 0; i < numRows; i++) {
+              result[i] /= rhs[i];
+            }
+            break;
+          case MOD:
+            for (int i = 0; i < numRows; i++) {
+              result[i] %= rhs[i];
+            }
+            break;
+          default:
+            throw new IllegalStateException("Unsupported binary function: " + _kernel);
+        }
+      } else {
+        switch (_kernel) {
+          case ABS:
+            for (int i = 0; i < numRows; i++) {
+              result[i] = Math.abs(result[i]);
+            }
+            break;
+          case CEIL:
+            for (int i = 0; i < numRows; i++) {
+              result[i] = Math.ceil(result[i]);
+            }
+            break;
+          case FLOOR:
+            for (int i = 0; i < numRows; i++) {
+              result[i] = Math.floor(result[i]);
+            }
+            break;
+          case EXP:
+            for (int i = 0; i < numRows; i++) {
+              result[i] = Math.exp(result[i]);
+            }
+            break;
+          case LN:
+            for (int i = 0; i < numRows; i++) {
+              result[i] = Math.log(result[i]);
+            }
+            break;
+          case LOG10:
+            for (int i = 0; i < numRows; i++) {
+              result[i] = Math.log10(result[i]);
+            }
+            break;
+          case SQRT:
+            for (int i = 0; i < numRows; i++) {
+              result[i] = Math.sqrt(result[i]);
+            }
+            break;
+          default:
+            throw new IllegalStateException("Unsupported unary function: " + _kernel);
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public String[] evaluateString(VectorBatch batch, int[] rowIds, int numRows) {
+      double[] values = evaluateDouble(batch, rowIds, numRows);
+      String[] result = new String[numRows];
+      for (int i = 0; i < numRows; i++) {
+        result[i] = Double.toString(values[i]);
+      }
+      return result;
+    }
+
+    @Override
+    public Object[] evaluateObject(VectorBatch batch, int[] rowIds, int numRows) {
+      double[] values = evaluateDouble(batch, rowIds, numRows);
+      Object[] result = new Object[numRows];
+      for (int i = 0; i < numRows; i++) {
+        result[i] = values[i];
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Scalar functions of {@link StringFunctions} taking and returning a single string value.
+   */
+  private static class StringFunction extends VectorExpression {
+    enum Kernel {
+      UPPER("upper"), LOWER("lower");
+
+      private final String _methodName;
+
+      Kernel(String methodName) {
+        _methodName = methodName;
+      }
+
+      @Nullable
+      static Kernel fromMethod(Method method) {
+        for (Kernel kernel : values()) {
+          if (kernel._methodName.equals(method.getName()) && method.getParameterCount() == 1) {
+            return kernel;
+          }
+        }
+        return null;
+      }
+    }
+
+    private final Kernel _kernel;
+    private final VectorExpression _operand;
+
+    StringFunction(Kernel kernel, VectorExpression operand) {
+      super(ColumnDataType.STRING);
+      _kernel = kernel;
+      _operand = operand;
+    }
+
+    @Override
+    public int[] evaluateInt(VectorBatch batch, int[] rowIds, int numRows) {
+      throw new IllegalStateException("Cannot read int values from function: " + _kernel);
+    }
+
+    @Override
+    public long[] evaluateLong(VectorBatch batch, int[] rowIds, int numRows) {
+      throw new IllegalStateException("Cannot read long values from function: " + _kernel);
+    }
+
+    @Override
+    public float[] evaluateFloat(VectorBatch batch, int[] rowIds, int numRows) {
+      throw new IllegalStateException("Cannot read float values from function: " + _kernel);
+    }
+
+    @Override
+    public double[] evaluateDouble(VectorBatch batch, int[] rowIds, int numRows) {
+      throw new IllegalStateException("Cannot read double values from function: " + _kernel);
+    }
+
+    @Override
+    public String[] evaluateString(VectorBatch batch, int[] rowIds, int numRows) {
+      String[] result = _operand.evaluateString(batch, rowIds, numRows);
+      switch (_kernel) {
+        case UPPER:
+          for (int i = 0; i < numRows; i++) {
+            result[i] = result[i].toUpperCase();
+          }
+          break;
+        case LOWER:
+          for (int i = 0; i < numRows; i++) {
+            result[i] = result[i].toLowerCase();
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unsupported string function: " + _kernel);
+      }
+      return result;
+    }
+
+    @Override
+    public Object[] evaluateObject(VectorBatch batch, int[] rowIds, int numRows) {
+      return evaluateString(batch, rowIds, numRows);
+    }
+  }
+}
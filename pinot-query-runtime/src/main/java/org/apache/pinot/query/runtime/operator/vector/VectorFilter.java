@@ -0,0 +1,323 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.operator.OperatorUtils;
+import org.apache.pinot.query.runtime.operator.operands.FilterOperand;
+
+
+/**
+ * {@code VectorFilter} evaluates a filter over the selected rows of a {@link VectorBatch} at once, by compacting the
+ * selection vector to the ids of the matching rows.
+ *
+ * <p>AND, OR and NOT are evaluated on selection vectors, so that the operands of an AND are only evaluated on the rows
+ * matched so far, and the operands of an OR only on the rows not matched yet. Comparisons are evaluated with typed
+ * kernels over primitive arrays, with the same type resolution and conversions as the row-based {@link FilterOperand}.
+ * The predicates that cannot be vectorized are evaluated by their {@link FilterOperand} one row at a time.
+ */
+public abstract class VectorFilter {
+
+  /**
+   * Compiles the filter, which must be accepted by {@link FilterOperand#toFilterOperand(RexExpression, DataSchema)}.
+   */
+  public static VectorFilter compile(RexExpression filter, DataSchema dataSchema) {
+    RexExpression.FunctionCall functionCall = (RexExpression.FunctionCall) filter;
+    String functionName = OperatorUtils.canonicalizeFunctionName(functionCall.getFunctionName());
+    switch (functionName) {
+      case "AND":
+      case "OR":
+        List<VectorFilter> children = new ArrayList<>(functionCall.getFunctionOperands().size());
+        for (RexExpression childExpression : functionCall.getFunctionOperands()) {
+          children.add(compile(childExpression, dataSchema));
+        }
+        return functionName.equals("AND") ? new And(children) : new Or(children);
+      case "NOT":
+        return new Not(compile(functionCall.getFunctionOperands().get(0), dataSchema));
+      default:
+        Comparison.Operator operator = Comparison.Operator.fromFunctionName(functionName);
+        if (operator != null) {
+          Comparison comparison = Comparison.compile(operator, functionCall, dataSchema);
+          if (comparison != null) {
+            return comparison;
+          }
+        }
+        return new RowFilter(filter, dataSchema);
+    }
+  }
+
+  /**
+   * Filters the selected rows.
+   *
+   * @param batch batch of rows.
+   * @param rowIds ids of the selected rows, compacted in place to the ids of the matching rows.
+   * @param numRows number of selected rows.
+   * @return number of matching rows.
+   */
+  public abstract int filter(VectorBatch batch, int[] rowIds, int numRows);
+
+  private static class And extends VectorFilter {
+    private final List<VectorFilter> _children;
+
+    And(List<VectorFilter> children) {
+      _children = children;
+    }
+
+    @Override
+    public int filter(VectorBatch batch, int[] rowIds, int numRows) {
+      for (VectorFilter child : _children) {
+        if (numRows == 0) {
+          break;
+        }
+        numRows = child.filter(batch, rowIds, numRows);
+      }
+      return numRows;
+    }
+  }
+
+  private static class Or extends VectorFilter {
+    private final List<VectorFilter> _children;
+
+    Or(List<VectorFilter> children) {
+      _children = children;
+    }
+
+    @Override
+    public int filter(VectorBatch batch, int[] rowIds, int numRows) {
+      boolean[] matched = new boolean[batch.getDataBlock().getNumberOfRows()];
+      int[] remainingRowIds = Arrays.copyOf(rowIds, numRows);
+      int numRemainingRows = numRows;
+      for (VectorFilter child : _children) {
+        int[] matchedRowIds = Arrays.copyOf(remainingRowIds, numRemainingRows);
+        int numMatchedRows = child.filter(batch, matchedRowIds, numRemainingRows);
+        if (numMatchedRows == 0) {
+          continue;
+        }
+        for (int i = 0; i < numMatchedRows; i++) {
+          matched[matchedRowIds[i]] = true;
+        }
+        numRemainingRows = retain(remainingRowIds, numRemainingRows, matched, false);
+        if (numRemainingRows == 0) {
+          break;
+        }
+      }
+      return retain(rowIds, numRows, matched, true);
+    }
+  }
+
+  private static class Not extends VectorFilter {
+    private final VectorFilter _child;
+
+    Not(VectorFilter child) {
+      _child = child;
+    }
+
+    @Override
+    public int filter(VectorBatch batch, int[] rowIds, int numRows) {
+      boolean[] matched = new boolean[batch.getDataBlock().getNumberOfRows()];
+      int[] matchedRowIds = Arrays.copyOf(rowIds, numRows);
+      int numMatchedRows = _child.filter(batch, matchedRowIds, numRows);
+      for (int i = 0; i < numMatchedRows; i++) {
+        matched[matchedRowIds[i]] = true;
+      }
+      return retain(rowIds, numRows, matched, false);
+    }
+  }
+
+  /**
+   * Compacts the row ids in place to the ones whose matched flag is the given one, returns the number of rows kept.
+   */
+  private static int retain(int[] rowIds, int numRows, boolean[] matched, boolean keepMatched) {
+    int numRetained = 0;
+    for (int i = 0; i < numRows; i++) {
+      int rowId = rowIds[i];
+      if (matched[rowId] == keepMatched) {
+        rowIds[numRetained++] = rowId;
+      }
+    }
+    return numRetained;
+  }
+
+  private static class Comparison extends VectorFilter {
+    enum Operator {
+      EQUALS("equals"), NOT_EQUALS("notEquals"), GREATER_THAN("greaterThan"),
+      GREATER_THAN_OR_EQUAL("greaterThanOrEqual"), LESS_THAN("lessThan"), LESS_THAN_OR_EQUAL("lessThanOrEqual");
+
+      private final String _functionName;
+
+      Operator(String functionName) {
+        _functionName = functionName;
+      }
+
+      static Operator fromFunctionName(String functionName) {
+        for (Operator operator : values()) {
+          if (operator._functionName.equals(functionName)) {
+            return operator;
+          }
+        }
+        return null;
+      }
+
+      boolean matches(int compareResult) {
+        switch (this) {
+          case EQUALS:
+            return compareResult == 0;
+          case NOT_EQUALS:
+            return compareResult != 0;
+          case GREATER_THAN:
+            return compareResult > 0;
+          case GREATER_THAN_OR_EQUAL:
+            return compareResult >= 0;
+          case LESS_THAN:
+            return compareResult < 0;
+          case LESS_THAN_OR_EQUAL:
+            return compareResult <= 0;
+          default:
+            throw new IllegalStateException("Unsupported comparison: " + this);
+        }
+      }
+    }
+
+    private final Operator _operator;
+    private final VectorExpression _lhs;
+    private final VectorExpression _rhs;
+    private final ColumnDataType _compareType;
+
+    private Comparison(Operator operator, VectorExpression lhs, VectorExpression rhs, ColumnDataType compareType) {
+      _operator = operator;
+      _lhs = lhs;
+      _rhs = rhs;
+      _compareType = compareType;
+    }
+
+    static Comparison compile(Operator operator, RexExpression.FunctionCall functionCall, DataSchema dataSchema) {
+      VectorExpression lhs = VectorExpression.compile(functionCall.getFunctionOperands().get(0), dataSchema);
+      VectorExpression rhs = VectorExpression.compile(functionCall.getFunctionOperands().get(1), dataSchema);
+      if (lhs == null || rhs == null) {
+        return null;
+      }
+      // both sides are converted to the type of the left side, as the row-based predicate does.
+      ColumnDataType compareType = lhs.getResultType();
+      if (compareType != ColumnDataType.STRING && !VectorExpression.NUMERIC_TYPES.contains(rhs.getResultType())) {
+        return null;
+      }
+      return new Comparison(operator, lhs, rhs, compareType);
+    }
+
+    @Override
+    public int filter(VectorBatch batch, int[] rowIds, int numRows) {
+      int numMatched = 0;
+      switch (_compareType) {
+        case INT: {
+          int[] lhs = _lhs.evaluateInt(batch, rowIds, numRows);
+          int[] rhs = _rhs.evaluateInt(batch, rowIds, numRows);
+          for (int i = 0; i < numRows; i++) {
+            if (_operator.matches(Integer.compare(lhs[i], rhs[i]))) {
+              rowIds[numMatched++] = rowIds[i];
+            }
+          }
+          break;
+        }
+        case LONG: {
+          long[] lhs = _lhs.evaluateLong(batch, rowIds, numRows);
+          long[] rhs = _rhs.evaluateLong(batch, rowIds, numRows);
+          for (int i = 0; i < numRows; i++) {
+            if (_operator.matches(Long.compare(lhs[i], rhs[i]))) {
+              rowIds[numMatched++] = rowIds[i];
+            }
+          }
+          break;
+        }
+        case FLOAT: {
+          float[] lhs = _lhs.evaluateFloat(batch, rowIds, numRows);
+          float[] rhs = _rhs.evaluateFloat(batch, rowIds, numRows);
+          for (int i = 0; i < numRows; i++) {
+            if (_operator.matches(Float.compare(lhs[i], rhs[i]))) {
+              rowIds[numMatched++] = rowIds[i];
+            }
+          }
+          break;
+        }
+        case DOUBLE: {
+          double[] lhs = _lhs.evaluateDouble(batch, rowIds, numRows);
+          double[] rhs = _rhs.evaluateDouble(batch, rowIds, numRows);
+          for (int i = 0; i < numRows; i++) {
+            if (_operator.matches(Double.compare(lhs[i], rhs[i]))) {
+              rowIds[numMatched++] = rowIds[i];
+            }
+          }
+          break;
+        }
+        case STRING: {
+          String[] lhs = _lhs.evaluateString(batch, rowIds, numRows);
+          String[] rhs = _rhs.evaluateString(batch, rowIds, numRows);
+          for (int i = 0; i < numRows; i++) {
+            if (_operator.matches(lhs[i].compareTo(rhs[i]))) {
+              rowIds[numMatched++] = rowIds[i];
+            }
+          }
+          break;
+        }
+        default:
+          throw new IllegalStateException("Unsupported comparison type: " + _compareType);
+      }
+      return numMatched;
+    }
+  }
+
+  /**
+   * Fallback evaluating the predicate one row at a time, over the boxed values of the referenced columns.
+   */
+  private static class RowFilter extends VectorFilter {
+    private final FilterOperand _filterOperand;
+    private final int[] _referencedColIds;
+    private final Object[] _row;
+
+    RowFilter(RexExpression filter, DataSchema dataSchema) {
+      _filterOperand = FilterOperand.toFilterOperand(filter, dataSchema);
+      _referencedColIds = OperatorUtils.getReferencedColumnIds(Collections.singletonList(filter));
+      _row = new Object[dataSchema.size()];
+    }
+
+    @Override
+    public int filter(VectorBatch batch, int[] rowIds, int numRows) {
+      Object[][] columns = new Object[_referencedColIds.length][];
+      for (int i = 0; i < _referencedColIds.length; i++) {
+        columns[i] = batch.getBoxedColumn(_referencedColIds[i]);
+      }
+      int numMatched = 0;
+      for (int i = 0; i < numRows; i++) {
+        int rowId = rowIds[i];
+        for (int j = 0; j < _referencedColIds.length; j++) {
+          _row[_referencedColIds[j]] = columns[j][rowId];
+        }
+        if (_filterOperand.apply(_row)) {
+          rowIds[numMatched++] = rowId;
+        }
+      }
+      return numMatched;
+    }
+  }
+}
@@ -24,7 +24,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.apache.helix.store.zk.ZkHelixPropertyStore;
 import org.apache.helix.zookeeper.datamodel.ZNRecord;
 import org.apache.pinot.common.metadata.ZKMetadataProvider;
@@ -48,6 +50,7 @@ import org.apache.pinot.query.planner.stage.ProjectNode;
 import org.apache.pinot.query.planner.stage.SortNode;
 import org.apache.pinot.query.planner.stage.StageNode;
 import org.apache.pinot.query.planner.stage.TableScanNode;
+import org.apache.pinot.query.runtime.operator.join.RuntimeFilter;
 import org.apache.pinot.query.runtime.plan.DistributedStagePlan;
 import org.apache.pinot.spi.config.table.TableConfig;
 import org.apache.pinot.spi.config.table.TableType;
@@ -81,6 +84,16 @@ public class ServerRequestUtils {
   // TODO: This is a hack, make an actual ServerQueryRequest converter.
   public static List<ServerQueryRequest> constructServerQueryRequest(DistributedStagePlan distributedStagePlan,
       Map<String, String> requestMetadataMap, ZkHelixPropertyStore<ZNRecord> helixPropertyStore) {
+    return constructServerQueryRequest(distributedStagePlan, requestMetadataMap, helixPropertyStore, null);
+  }
+
+  /**
+   * Constructs the server query requests of a leaf stage, with the given join runtime filter applied on the runtime
+   * filter column of the stage.
+   */
+  public static List<ServerQueryRequest> constructServerQueryRequest(DistributedStagePlan distributedStagePlan,
+      Map<String, String> requestMetadataMap, ZkHelixPropertyStore<ZNRecord> helixPropertyStore,
+      @Nullable RuntimeFilter runtimeFilter) {
     StageMetadata stageMetadata = distributedStagePlan.getMetadataMap().get(distributedStagePlan.getStageId());
     Preconditions.checkState(stageMetadata.getScannedTables().size() == 1,
         "Server request for V2 engine should only have 1 scan table per request.");
@@ -99,14 +112,14 @@ public class ServerRequestUtils {
         Schema schema = ZKMetadataProvider.getTableSchema(helixPropertyStore,
             TableNameBuilder.forType(TableType.OFFLINE).tableNameWithType(rawTableName));
         requests.add(constructServerQueryRequest(distributedStagePlan, requestMetadataMap, tableConfig, schema,
-            stageMetadata.getTimeBoundaryInfo(), TableType.OFFLINE, tableEntry.getValue()));
+            stageMetadata.getTimeBoundaryInfo(), TableType.OFFLINE, tableEntry.getValue(), runtimeFilter));
       } else if (TableType.REALTIME.name().equals(tableType)) {
         TableConfig tableConfig = ZKMetadataProvider.getTableConfig(helixPropertyStore,
             TableNameBuilder.forType(TableType.REALTIME).tableNameWithType(rawTableName));
         Schema schema = ZKMetadataProvider.getTableSchema(helixPropertyStore,
             TableNameBuilder.forType(TableType.REALTIME).tableNameWithType(rawTableName));
         requests.add(constructServerQueryRequest(distributedStagePlan, requestMetadataMap, tableConfig, schema,
-            stageMetadata.getTimeBoundaryInfo(), TableType.REALTIME, tableEntry.getValue()));
+            stageMetadata.getTimeBoundaryInfo(), TableType.REALTIME, tableEntry.getValue(), runtimeFilter));
       } else {
         throw new IllegalArgumentException("Unsupported table type key: " + tableType);
       }
@@ -116,14 +129,15 @@ public class ServerRequestUtils {
 
   public static ServerQueryRequest constructServerQueryRequest(DistributedStagePlan distributedStagePlan,
       Map<String, String> requestMetadataMap, TableConfig tableConfig, Schema schema,
-      TimeBoundaryInfo timeBoundaryInfo, TableType tableType, List<String> segmentList) {
+      TimeBoundaryInfo timeBoundaryInfo, TableType tableType, List<String> segmentList,
+      @Nullable RuntimeFilter runtimeFilter) {
     InstanceRequest instanceRequest = new InstanceRequest();
     instanceRequest.setRequestId(Long.parseLong(requestMetadataMap.get("REQUEST_ID")));
     instanceRequest.setBrokerId("unknown");
     instanceRequest.setEnableTrace(false);
     instanceRequest.setSearchSegments(segmentList);
     instanceRequest.setQuery(constructBrokerRequest(distributedStagePlan, tableType, tableConfig, schema,
-        timeBoundaryInfo));
+        timeBoundaryInfo, runtimeFilter));
     return new ServerQueryRequest(instanceRequest, new ServerMetrics(PinotMetricUtils.getPinotMetricsRegistry()),
         System.currentTimeMillis());
   }
@@ -131,8 +145,10 @@ public class ServerRequestUtils {
   // TODO: this is a hack, create a broker request object should not be needed because we rewrite the entire
   // query into stages already.
   public static BrokerRequest constructBrokerRequest(DistributedStagePlan distributedStagePlan, TableType tableType,
-      TableConfig tableConfig, Schema schema, TimeBoundaryInfo timeBoundaryInfo) {
-    PinotQuery pinotQuery = constructPinotQuery(distributedStagePlan, tableType, tableConfig, schema, timeBoundaryInfo);
+      TableConfig tableConfig, Schema schema, TimeBoundaryInfo timeBoundaryInfo,
+      @Nullable RuntimeFilter runtimeFilter) {
+    PinotQuery pinotQuery =
+        constructPinotQuery(distributedStagePlan, tableType, tableConfig, schema, timeBoundaryInfo, runtimeFilter);
     BrokerRequest brokerRequest = new BrokerRequest();
     brokerRequest.setPinotQuery(pinotQuery);
     // Set table name in broker request because it is used for access control, query routing etc.
@@ -146,7 +162,8 @@ public class ServerRequestUtils {
   }
 
   public static PinotQuery constructPinotQuery(DistributedStagePlan distributedStagePlan, TableType tableType,
-      TableConfig tableConfig, Schema schema, TimeBoundaryInfo timeBoundaryInfo) {
+      TableConfig tableConfig, Schema schema, TimeBoundaryInfo timeBoundaryInfo,
+      @Nullable RuntimeFilter runtimeFilter) {
     PinotQuery pinotQuery = new PinotQuery();
     pinotQuery.setLimit(DEFAULT_LEAF_NODE_LIMIT);
     pinotQuery.setExplain(false);
@@ -154,6 +171,10 @@ public class ServerRequestUtils {
     if (timeBoundaryInfo != null) {
       attachTimeBoundary(pinotQuery, timeBoundaryInfo, tableType == TableType.OFFLINE);
     }
+    if (runtimeFilter != null) {
+      attachRuntimeFilter(pinotQuery, ((MailboxSendNode) distributedStagePlan.getStageRoot()).getRuntimeFilterColumn(),
+          runtimeFilter);
+    }
     for (QueryRewriter queryRewriter : QUERY_REWRITERS) {
       pinotQuery = queryRewriter.rewrite(pinotQuery);
     }
@@ -219,13 +240,41 @@ public class ServerRequestUtils {
     timeFilterExpression.getFunctionCall().setOperands(
         Arrays.asList(RequestUtils.getIdentifierExpression(timeColumn), RequestUtils.getLiteralExpression(timeValue)));
 
+    addFilter(pinotQuery, timeFilterExpression);
+  }
+
+  /**
+   * Helper method to attach the join runtime filter to the given PinotQuery, as an IN predicate for the exact set of
+   * join keys, or a BETWEEN predicate for the range of join keys. The segments that cannot match the predicate are
+   * pruned with their column min/max value by the segment pruner.
+   */
+  private static void attachRuntimeFilter(PinotQuery pinotQuery, String column, RuntimeFilter runtimeFilter) {
+    Set<Object> values = runtimeFilter.getValues();
+    List<Expression> operands = new ArrayList<>(values != null ? values.size() + 1 : 3);
+    operands.add(RequestUtils.getIdentifierExpression(column));
+    Expression runtimeFilterExpression;
+    if (values != null) {
+      runtimeFilterExpression = RequestUtils.getFunctionExpression(FilterKind.IN.name());
+      for (Object value : values) {
+        operands.add(RequestUtils.getLiteralExpression(value));
+      }
+    } else {
+      runtimeFilterExpression = RequestUtils.getFunctionExpression(FilterKind.BETWEEN.name());
+      operands.add(RequestUtils.getLiteralExpression(runtimeFilter.getMinValue()));
+      operands.add(RequestUtils.getLiteralExpression(runtimeFilter.getMaxValue()));
+    }
+    runtimeFilterExpression.getFunctionCall().setOperands(operands);
+    addFilter(pinotQuery, runtimeFilterExpression);
+  }
+
+  private static void addFilter(PinotQuery pinotQuery, Expression expression) {
     Expression filterExpression = pinotQuery.getFilterExpression();
     if (filterExpression != null) {
       Expression andFilterExpression = RequestUtils.getFunctionExpression(FilterKind.AND.name());
-      andFilterExpression.getFunctionCall().setOperands(Arrays.asList(filterExpression, timeFilterExpression));
+      andFilterExpression.getFunctionCall().setOperands(Arrays.asList(filterExpression, expression));
       pinotQuery.setFilterExpression(andFilterExpression);
     } else {
-      pinotQuery.setFilterExpression(timeFilterExpression);
+      pinotQuery.setFilterExpression(expression);
     }
   }
 }
@@ -36,6 +36,48 @@ public class QueryConfig {
   public static final String KEY_OF_QUERY_RUNNER_PORT = "pinot.query.runner.port";
   public static final int DEFAULT_QUERY_RUNNER_PORT = 0;
 
+  // number of worker threads shared by the operator chains of all the queries, default to 2 * number of cores.
+  public static final String KEY_OF_QUERY_RUNNER_NUM_WORKER_THREADS = "pinot.query.runner.num.worker.threads";
+
+  // max estimated bytes of the in-memory join hash table before both join inputs are spilled to disk.
+  public static final String KEY_OF_JOIN_MAX_IN_MEMORY_BUILD_BYTES =
+      "pinot.query.runner.join.max.in.memory.build.bytes";
+  public static final long DEFAULT_JOIN_MAX_IN_MEMORY_BUILD_BYTES = 512 * 1024 * 1024L;
+  public static final String KEY_OF_JOIN_NUM_SPILL_PARTITIONS = "pinot.query.runner.join.num.spill.partitions";
+  public static final int DEFAULT_JOIN_NUM_SPILL_PARTITIONS = 16;
+  // max number of distinct build side join keys sent as an IN runtime filter, a [min, max] range is sent beyond that.
+  public static final String KEY_OF_JOIN_RUNTIME_FILTER_MAX_IN_VALUES =
+      "pinot.query.runner.join.runtime.filter.max.in.values";
+  public static final int DEFAULT_JOIN_RUNTIME_FILTER_MAX_IN_VALUES = 1000;
+  // max time a probe side table scan waits for the join runtime filter, it scans without the filter after that.
+  public static final String KEY_OF_JOIN_RUNTIME_FILTER_WAIT_TIMEOUT_MS =
+      "pinot.query.runner.join.runtime.filter.wait.timeout.ms";
+  public static final long DEFAULT_JOIN_RUNTIME_FILTER_WAIT_TIMEOUT_MS = 5000L;
+  // max estimated bytes of the rows buffered by a sort before a sorted run is spilled to disk.
+  public static final String KEY_OF_SORT_MAX_IN_MEMORY_BYTES = "pinot.query.runner.sort.max.in.memory.bytes";
+  public static final long DEFAULT_SORT_MAX_IN_MEMORY_BYTES = 512 * 1024 * 1024L;
+  // directory of the temporary spill files, default to the system temporary directory.
+  public static final String KEY_OF_QUERY_RUNNER_SPILL_DIR = "pinot.query.runner.spill.dir";
+
+  // target size of the blocks sent through a gRPC mailbox, smaller blocks are coalesced up to this estimated size.
+  public static final String KEY_OF_MAILBOX_SEND_BLOCK_TARGET_BYTES =
+      "pinot.query.runner.mailbox.send.block.target.bytes";
+  public static final long DEFAULT_MAILBOX_SEND_BLOCK_TARGET_BYTES = 1024 * 1024L;
+  // max number of blocks buffered by a receiving (gRPC or in-memory) mailbox, the sender is held back once it is full.
+  public static final String KEY_OF_MAILBOX_RECEIVE_BUFFER_CAPACITY =
+      "pinot.query.runner.mailbox.receive.buffer.capacity";
+  public static final int DEFAULT_MAILBOX_RECEIVE_BUFFER_CAPACITY = 5;
+  // compression of the blocks sent through a gRPC mailbox, one of PASS_THROUGH, LZ4 and ZSTANDARD.
+  public static final String KEY_OF_MAILBOX_COMPRESSION_TYPE = "pinot.query.runner.mailbox.compression.type";
+  public static final String DEFAULT_MAILBOX_COMPRESSION_TYPE = "PASS_THROUGH";
+  // refresh interval of the table statistics (row counts from segment ZK metadata) used for join reordering.
+  public static final String KEY_OF_PLANNER_TABLE_STATISTICS_REFRESH_INTERVAL_MS =
+      "pinot.query.planner.table.statistics.refresh.interval.ms";
+  // max number of optimized logical plans cached by the broker, keyed by the SQL with its literals parameterized.
+  // plans expire with the table statistics refresh interval, 0 disables the cache.
+  public static final String KEY_OF_PLANNER_PLAN_CACHE_SIZE = "pinot.query.planner.plan.cache.size";
+  public static final int DEFAULT_PLANNER_PLAN_CACHE_SIZE = 1000;
+
   private QueryConfig() {
     // do not instantiate.
   }
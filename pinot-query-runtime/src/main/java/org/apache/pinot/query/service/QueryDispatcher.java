@@ -18,6 +18,7 @@
  */
 package org.apache.pinot.query.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.annotations.VisibleForTesting;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
@@ -26,10 +27,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
 import org.apache.calcite.rel.RelDistribution;
 import org.apache.calcite.util.Pair;
 import org.apache.pinot.common.exception.QueryException;
-import org.apache.pinot.common.proto.Mailbox;
 import org.apache.pinot.common.proto.PinotQueryWorkerGrpc;
 import org.apache.pinot.common.proto.Worker;
 import org.apache.pinot.common.response.broker.ResultTable;
@@ -46,6 +49,7 @@ import org.apache.pinot.query.planner.stage.MailboxReceiveNode;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
 import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
 import org.apache.pinot.query.runtime.operator.MailboxReceiveOperator;
+import org.apache.pinot.query.runtime.operator.utils.OperatorStatsUtils;
 import org.apache.pinot.query.runtime.plan.DistributedStagePlan;
 import org.apache.pinot.query.runtime.plan.serde.QueryPlanSerDeUtils;
 import org.slf4j.Logger;
@@ -57,6 +61,7 @@ import org.slf4j.LoggerFactory;
  */
 public class QueryDispatcher {
   private static final Logger LOGGER = LoggerFactory.getLogger(QueryDispatcher.class);
+  private static final long REDUCE_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
   private final Map<String, DispatchClient> _dispatchClientMap = new ConcurrentHashMap<>();
 
@@ -64,7 +69,17 @@ public class QueryDispatcher {
   }
 
   public ResultTable submitAndReduce(long requestId, QueryPlan queryPlan,
-      MailboxService<Mailbox.MailboxContent> mailboxService, long timeoutNano)
+      MailboxService<TransferableBlock> mailboxService, long timeoutNano)
+      throws Exception {
+    return submitAndReduce(requestId, queryPlan, mailboxService, timeoutNano, null);
+  }
+
+  /**
+   * Submits the query and reduces its result. When a stage stats list is given, the stats of all the stages on all
+   * the workers are added to it, see {@link OperatorStatsUtils}.
+   */
+  public ResultTable submitAndReduce(long requestId, QueryPlan queryPlan,
+      MailboxService<TransferableBlock> mailboxService, long timeoutNano, @Nullable List<JsonNode> stageStats)
       throws Exception {
     // submit all the distributed stages.
     int reduceStageId = submit(requestId, queryPlan);
@@ -72,9 +87,14 @@ public class QueryDispatcher {
     MailboxReceiveNode reduceNode = (MailboxReceiveNode) queryPlan.getQueryStageMap().get(reduceStageId);
     MailboxReceiveOperator mailboxReceiveOperator = createReduceStageOperator(mailboxService,
         queryPlan.getStageMetadataMap().get(reduceNode.getSenderStageId()).getServerInstances(),
-        requestId, reduceNode.getSenderStageId(), reduceNode.getDataSchema(), mailboxService.getHostname(),
-        mailboxService.getMailboxPort());
+        requestId, reduceNode.getSenderStageId(), reduceNode.getDataSchema(), reduceNode.isOrdered(),
+        mailboxService.getHostname(), mailboxService.getMailboxPort());
     List<DataTable> resultDataBlocks = reduceMailboxReceive(mailboxReceiveOperator, timeoutNano);
+    if (stageStats != null) {
+      stageStats.add(OperatorStatsUtils.getStageStats(reduceStageId,
+          mailboxService.getHostname() + ":" + mailboxService.getMailboxPort(), mailboxReceiveOperator));
+      stageStats.addAll(mailboxReceiveOperator.getUpstreamStageStats());
+    }
     return toResultTable(resultDataBlocks, queryPlan.getQueryResultFields());
   }
 
@@ -131,6 +151,11 @@ public class QueryDispatcher {
     long timeoutWatermark = System.nanoTime() + timeoutNano;
     while (System.nanoTime() < timeoutWatermark) {
       transferableBlock = mailboxReceiveOperator.nextBlock();
+      if (TransferableBlockUtils.isNoOpBlock(transferableBlock)) {
+        // the reduce stage runs on the calling thread, wait a bit for more data to arrive.
+        LockSupport.parkNanos(REDUCE_POLL_INTERVAL_NANOS);
+        continue;
+      }
       if (TransferableBlockUtils.isEndOfStream(transferableBlock) && transferableBlock.isErrorBlock()) {
         // TODO: we only received bubble up error from the execution stage tree.
         // TODO: query dispatch should also send cancel signal to the rest of the execution stage tree.
@@ -187,12 +212,24 @@ public class QueryDispatcher {
   }
 
   @VisibleForTesting
-  public static MailboxReceiveOperator createReduceStageOperator(MailboxService<Mailbox.MailboxContent> mailboxService,
+  public static MailboxReceiveOperator createReduceStageOperator(MailboxService<TransferableBlock> mailboxService,
       List<ServerInstance> sendingInstances, long jobId, int stageId, DataSchema dataSchema, String hostname,
       int port) {
+    return createReduceStageOperator(mailboxService, sendingInstances, jobId, stageId, dataSchema, false, hostname,
+        port);
+  }
+
+  /**
+   * An ordered reduce stage operator receives all the rows of each sending instance one after the other, in the order
+   * of the sending instances.
+   */
+  @VisibleForTesting
+  public static MailboxReceiveOperator createReduceStageOperator(MailboxService<TransferableBlock> mailboxService,
+      List<ServerInstance> sendingInstances, long jobId, int stageId, DataSchema dataSchema, boolean isOrdered,
+      String hostname, int port) {
     MailboxReceiveOperator mailboxReceiveOperator =
         new MailboxReceiveOperator(mailboxService, dataSchema, sendingInstances,
-            RelDistribution.Type.RANDOM_DISTRIBUTED, null, hostname, port, jobId, stageId);
+            RelDistribution.Type.RANDOM_DISTRIBUTED, null, isOrdered, hostname, port, jobId, stageId);
     return mailboxReceiveOperator;
   }
 
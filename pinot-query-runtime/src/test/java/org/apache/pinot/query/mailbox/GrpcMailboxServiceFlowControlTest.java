@@ -0,0 +1,175 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.mailbox;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.service.QueryConfig;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.apache.pinot.util.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class GrpcMailboxServiceFlowControlTest extends GrpcMailboxServiceTestBase {
+  private static final DataSchema TEST_DATA_SCHEMA = new DataSchema(new String[]{"foo", "bar"},
+      new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING});
+  private static final int RECEIVE_BUFFER_CAPACITY = 2;
+  private static final long SEND_BLOCK_TARGET_BYTES = 64 * 1024;
+
+  @Override
+  protected PinotConfiguration getExtraConfig() {
+    return new PinotConfiguration(ImmutableMap.of(
+        QueryConfig.KEY_OF_MAILBOX_RECEIVE_BUFFER_CAPACITY, RECEIVE_BUFFER_CAPACITY,
+        QueryConfig.KEY_OF_MAILBOX_SEND_BLOCK_TARGET_BYTES, SEND_BLOCK_TARGET_BYTES,
+        QueryConfig.KEY_OF_MAILBOX_COMPRESSION_TYPE, "ZSTANDARD"));
+  }
+
+  @Test
+  public void testCoalescingAndCompression()
+      throws Exception {
+    Map.Entry<Integer, GrpcMailboxService> sender = _mailboxServices.firstEntry();
+    Map.Entry<Integer, GrpcMailboxService> receiver = _mailboxServices.lastEntry();
+    String mailboxId =
+        String.format("coalescing:localhost:%d:localhost:%d", sender.getKey(), receiver.getKey());
+    SendingMailbox<TransferableBlock> sendingMailbox = sender.getValue().getSendingMailbox(mailboxId);
+    ReceivingMailbox<TransferableBlock> receivingMailbox = receiver.getValue().getReceivingMailbox(mailboxId);
+
+    // tiny blocks are coalesced into a single one, sent along with the end of stream.
+    int numRows = 100;
+    for (int i = 0; i < numRows; i++) {
+      sendingMailbox.send(new TransferableBlock(Collections.singletonList(new Object[]{i, "value_" + i}),
+          TEST_DATA_SCHEMA, BaseDataBlock.Type.ROW));
+    }
+    sendingMailbox.send(TransferableBlockUtils.getEndOfStreamTransferableBlock(TEST_DATA_SCHEMA));
+    sendingMailbox.complete();
+
+    List<Object[]> rows = receive(receivingMailbox).getContainer();
+    Assert.assertEquals(rows.size(), numRows);
+    for (int i = 0; i < numRows; i++) {
+      Assert.assertEquals(rows.get(i), new Object[]{i, "value_" + i});
+    }
+    Assert.assertTrue(receive(receivingMailbox).isEndOfStreamBlock());
+    TestUtils.waitForCondition(aVoid -> receivingMailbox.isClosed(), 5000L,
+        "Receiving mailbox is not closed properly!");
+  }
+
+  @Test
+  public void testCoalescingColumnarDataBlocks()
+      throws Exception {
+    Map.Entry<Integer, GrpcMailboxService> sender = _mailboxServices.firstEntry();
+    Map.Entry<Integer, GrpcMailboxService> receiver = _mailboxServices.lastEntry();
+    String mailboxId =
+        String.format("coalescingColumnar:localhost:%d:localhost:%d", sender.getKey(), receiver.getKey());
+    SendingMailbox<TransferableBlock> sendingMailbox = sender.getValue().getSendingMailbox(mailboxId);
+    ReceivingMailbox<TransferableBlock> receivingMailbox = receiver.getValue().getReceivingMailbox(mailboxId);
+
+    // tiny binary-packed columnar blocks are concatenated into a single one, sent along with the end of stream.
+    int numRows = 100;
+    for (int i = 0; i < numRows; i++) {
+      ColumnarDataBlock dataBlock = DataBlockBuilder.buildFromColumns(
+          Arrays.asList(new Object[]{i}, new Object[]{"value_" + i % 10}), TEST_DATA_SCHEMA);
+      sendingMailbox.send(new TransferableBlock(dataBlock));
+    }
+    sendingMailbox.send(TransferableBlockUtils.getEndOfStreamTransferableBlock(TEST_DATA_SCHEMA));
+    sendingMailbox.complete();
+
+    TransferableBlock block = receive(receivingMailbox);
+    Assert.assertEquals(block.getType(), BaseDataBlock.Type.COLUMNAR);
+    List<Object[]> rows = block.getContainer();
+    Assert.assertEquals(rows.size(), numRows);
+    for (int i = 0; i < numRows; i++) {
+      Assert.assertEquals(rows.get(i), new Object[]{i, "value_" + i % 10});
+    }
+    Assert.assertTrue(receive(receivingMailbox).isEndOfStreamBlock());
+  }
+
+  @Test
+  public void testSenderIsHeldBackBySlowReceiver()
+      throws Exception {
+    Map.Entry<Integer, GrpcMailboxService> sender = _mailboxServices.firstEntry();
+    Map.Entry<Integer, GrpcMailboxService> receiver = _mailboxServices.lastEntry();
+    String mailboxId =
+        String.format("flowControl:localhost:%d:localhost:%d", sender.getKey(), receiver.getKey());
+    SendingMailbox<TransferableBlock> sendingMailbox = sender.getValue().getSendingMailbox(mailboxId);
+    ReceivingMailbox<TransferableBlock> receivingMailbox = receiver.getValue().getReceivingMailbox(mailboxId);
+
+    // send incompressible blocks while nothing is received, until the sender is held back.
+    int maxNumBlocks = 1000;
+    int numBlocksSent = 0;
+    while (numBlocksSent < maxNumBlocks && waitUntilReady(sendingMailbox)) {
+      sendingMailbox.send(getRandomBlock(numBlocksSent++));
+    }
+    Assert.assertTrue(numBlocksSent < maxNumBlocks, "Sender is not held back by the receiver");
+
+    // all the blocks are delivered once the receiver catches up.
+    for (int i = 0; i < numBlocksSent; i++) {
+      TransferableBlock block = receive(receivingMailbox);
+      Assert.assertEquals(block.getContainer().get(0)[0], i);
+    }
+    Assert.assertTrue(waitUntilReady(sendingMailbox));
+    sendingMailbox.send(TransferableBlockUtils.getEndOfStreamTransferableBlock(TEST_DATA_SCHEMA));
+    sendingMailbox.complete();
+    Assert.assertTrue(receive(receivingMailbox).isEndOfStreamBlock());
+  }
+
+  private static boolean waitUntilReady(SendingMailbox<TransferableBlock> sendingMailbox) {
+    long deadlineMs = System.currentTimeMillis() + 1000L;
+    while (!sendingMailbox.isReady()) {
+      if (System.currentTimeMillis() >= deadlineMs) {
+        return false;
+      }
+      Thread.yield();
+    }
+    return true;
+  }
+
+  private static TransferableBlock getRandomBlock(int blockId) {
+    // a block of about the target size, so that it is sent right away.
+    char[] chars = new char[(int) SEND_BLOCK_TARGET_BYTES];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) ('a' + (int) (Math.random() * 26));
+    }
+    return new TransferableBlock(Collections.singletonList(new Object[]{blockId, new String(chars)}), TEST_DATA_SCHEMA,
+        BaseDataBlock.Type.ROW);
+  }
+
+  // receive() doesn't wait for the content to arrive.
+  private static TransferableBlock receive(ReceivingMailbox<TransferableBlock> receivingMailbox) {
+    TransferableBlock[] receivedBlock = new TransferableBlock[1];
+    TestUtils.waitForCondition(aVoid -> {
+      try {
+        receivedBlock[0] = receivingMailbox.receive();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return receivedBlock[0] != null;
+    }, 5000L, "Failed to receive mailbox content!");
+    return receivedBlock[0];
+  }
+}
@@ -19,24 +19,23 @@
 package org.apache.pinot.query.mailbox;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
-import com.google.protobuf.ByteString;
-import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import org.apache.pinot.common.proto.Mailbox;
 import org.apache.pinot.common.utils.DataSchema;
 import org.apache.pinot.core.common.datablock.BaseDataBlock;
-import org.apache.pinot.core.common.datablock.DataBlockUtils;
 import org.apache.pinot.core.common.datablock.MetadataBlock;
-import org.apache.pinot.query.mailbox.channel.ChannelUtils;
 import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
 import org.apache.pinot.util.TestUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 
 public class GrpcMailboxServiceTest extends GrpcMailboxServiceTestBase {
+  private static final DataSchema TEST_DATA_SCHEMA = new DataSchema(new String[]{"foo", "bar"},
+      new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING});
 
   @Test
   public void testHappyPath()
@@ -46,20 +45,27 @@ public class GrpcMailboxServiceTest extends GrpcMailboxServiceTestBase {
     Map.Entry<Integer, GrpcMailboxService> receiver = _mailboxServices.lastEntry();
     String mailboxId =
         String.format("happyPath:localhost:%d:localhost:%d", sender.getKey(), receiver.getKey());
-    SendingMailbox<Mailbox.MailboxContent> sendingMailbox = sender.getValue().getSendingMailbox(mailboxId);
-    ReceivingMailbox<Mailbox.MailboxContent> receivingMailbox = receiver.getValue().getReceivingMailbox(mailboxId);
+    SendingMailbox<TransferableBlock> sendingMailbox = sender.getValue().getSendingMailbox(mailboxId);
+    ReceivingMailbox<TransferableBlock> receivingMailbox = receiver.getValue().getReceivingMailbox(mailboxId);
 
     // create mock object
-    Mailbox.MailboxContent testContent = getTestMailboxContent(mailboxId);
-    sendingMailbox.send(testContent);
+    List<Object[]> rows = Arrays.asList(new Object[]{1, "a"}, new Object[]{2, "b"});
+    sendingMailbox.send(new TransferableBlock(rows, TEST_DATA_SCHEMA, BaseDataBlock.Type.ROW));
+    sendingMailbox.send(TransferableBlockUtils.getEndOfStreamTransferableBlock(TEST_DATA_SCHEMA));
 
     // wait for receiving mailbox to be created.
     TestUtils.waitForCondition(aVoid -> {
       return receivingMailbox.isInitialized();
     }, 5000L, "Receiving mailbox initialize failed!");
 
-    Mailbox.MailboxContent receivedContent = receivingMailbox.receive();
-    Assert.assertEquals(receivedContent, testContent);
+    TransferableBlock receivedBlock = receive(receivingMailbox);
+    Assert.assertEquals(receivedBlock.getDataSchema(), TEST_DATA_SCHEMA);
+    List<Object[]> receivedRows = receivedBlock.getContainer();
+    Assert.assertEquals(receivedRows.size(), rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      Assert.assertEquals(receivedRows.get(i), rows.get(i));
+    }
+    Assert.assertTrue(receive(receivingMailbox).isEndOfStreamBlock());
 
     sendingMailbox.complete();
 
@@ -76,42 +82,35 @@ public class GrpcMailboxServiceTest extends GrpcMailboxServiceTestBase {
     Map.Entry<Integer, GrpcMailboxService> receiver = _mailboxServices.lastEntry();
     String mailboxId =
         String.format("exception:localhost:%d:localhost:%d", sender.getKey(), receiver.getKey());
-    SendingMailbox<Mailbox.MailboxContent> sendingMailbox = sender.getValue().getSendingMailbox(mailboxId);
-    ReceivingMailbox<Mailbox.MailboxContent> receivingMailbox = receiver.getValue().getReceivingMailbox(mailboxId);
+    SendingMailbox<TransferableBlock> sendingMailbox = sender.getValue().getSendingMailbox(mailboxId);
+    ReceivingMailbox<TransferableBlock> receivingMailbox = receiver.getValue().getReceivingMailbox(mailboxId);
 
-    // create mock object
-    Mailbox.MailboxContent testContent = getTooLargeMailboxContent(mailboxId);
-    sendingMailbox.send(testContent);
+    // create mock object, which exceeds the max inbound message size of the receiver.
+    List<Object[]> rows = Collections.singletonList(new Object[]{1, new String(new char[16_000_000])});
+    sendingMailbox.send(new TransferableBlock(rows, TEST_DATA_SCHEMA, BaseDataBlock.Type.ROW));
 
     // wait for receiving mailbox to be created.
     TestUtils.waitForCondition(aVoid -> {
       return receivingMailbox.isInitialized();
     }, 5000L, "Receiving mailbox initialize failed!");
 
-    Mailbox.MailboxContent receivedContent = receivingMailbox.receive();
-    Assert.assertNotNull(receivedContent);
-    ByteBuffer byteBuffer = receivedContent.getPayload().asReadOnlyByteBuffer();
-    Assert.assertTrue(byteBuffer.hasRemaining());
-    BaseDataBlock dataBlock = DataBlockUtils.getDataBlock(byteBuffer);
+    TransferableBlock receivedBlock = receive(receivingMailbox);
+    Assert.assertTrue(receivedBlock.isErrorBlock());
+    BaseDataBlock dataBlock = receivedBlock.getDataBlock();
     Assert.assertTrue(dataBlock instanceof MetadataBlock && !dataBlock.getExceptions().isEmpty());
   }
 
-  private Mailbox.MailboxContent getTestMailboxContent(String mailboxId)
-      throws IOException {
-    return Mailbox.MailboxContent.newBuilder().setMailboxId(mailboxId)
-        .putAllMetadata(ImmutableMap.of("key", "value", ChannelUtils.MAILBOX_METADATA_END_OF_STREAM_KEY, "true"))
-        .setPayload(ByteString.copyFrom(new TransferableBlock(DataBlockUtils.getEndOfStreamDataBlock(new DataSchema(
-            new String[]{"foo", "bar"},
-            new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING}))
-        ).toBytes()))
-        .build();
-  }
-
-  private Mailbox.MailboxContent getTooLargeMailboxContent(String mailboxId)
-      throws IOException {
-    return Mailbox.MailboxContent.newBuilder().setMailboxId(mailboxId)
-        .putAllMetadata(ImmutableMap.of("key", "value", ChannelUtils.MAILBOX_METADATA_END_OF_STREAM_KEY, "true"))
-        .setPayload(ByteString.copyFrom(new byte[16_000_000]))
-        .build();
+  // receive() doesn't wait for the content to arrive.
+  private static TransferableBlock receive(ReceivingMailbox<TransferableBlock> receivingMailbox) {
+    TransferableBlock[] receivedBlock = new TransferableBlock[1];
+    TestUtils.waitForCondition(aVoid -> {
+      try {
+        receivedBlock[0] = receivingMailbox.receive();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return receivedBlock[0] != null;
+    }, 5000L, "Failed to receive mailbox content!");
+    return receivedBlock[0];
   }
 }
@@ -34,8 +34,7 @@ public abstract class GrpcMailboxServiceTestBase {
   @BeforeClass
   public void setUp()
       throws Exception {
-    PinotConfiguration extraConfig = new PinotConfiguration(Collections.singletonMap(
-        QueryConfig.KEY_OF_MAX_INBOUND_QUERY_DATA_BLOCK_BYTES_SIZE, 4_000_000));
+    PinotConfiguration extraConfig = getExtraConfig();
     for (int i = 0; i < MAILBOX_TEST_SIZE; i++) {
       int availablePort = QueryEnvironmentTestUtils.getAvailablePort();
       GrpcMailboxService grpcMailboxService = new GrpcMailboxService("localhost", availablePort, extraConfig);
@@ -44,6 +43,11 @@ public abstract class GrpcMailboxServiceTestBase {
     }
   }
 
+  protected PinotConfiguration getExtraConfig() {
+    return new PinotConfiguration(Collections.singletonMap(
+        QueryConfig.KEY_OF_MAX_INBOUND_QUERY_DATA_BLOCK_BYTES_SIZE, 4_000_000));
+  }
+
   @AfterClass
   public void tearDown() {
     for (GrpcMailboxService service : _mailboxServices.values()) {
@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.mailbox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.service.QueryConfig;
+import org.apache.pinot.spi.env.PinotConfiguration;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class MultiplexingMailboxServiceTest {
+  private static final DataSchema TEST_DATA_SCHEMA = new DataSchema(new String[]{"foo", "bar"},
+      new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING});
+
+  @Test
+  public void testLocalMailboxPassesBlocksInMemory()
+      throws Exception {
+    List<String> notifiedMailboxIds = Collections.synchronizedList(new ArrayList<>());
+    MultiplexingMailboxService mailboxService =
+        MultiplexingMailboxService.newInstance("localhost", 1234, new PinotConfiguration(), notifiedMailboxIds::add);
+    String mailboxId = "inMemory:localhost:1234:localhost:1234";
+    SendingMailbox<TransferableBlock> sendingMailbox = mailboxService.getSendingMailbox(mailboxId);
+    ReceivingMailbox<TransferableBlock> receivingMailbox = mailboxService.getReceivingMailbox(mailboxId);
+    Assert.assertTrue(sendingMailbox instanceof InMemorySendingMailbox);
+    Assert.assertTrue(receivingMailbox instanceof InMemoryReceivingMailbox);
+    Assert.assertFalse(receivingMailbox.isInitialized());
+    Assert.assertNull(receivingMailbox.receive());
+
+    TransferableBlock dataBlock = new TransferableBlock(Collections.singletonList(new Object[]{1, "a"}),
+        TEST_DATA_SCHEMA, BaseDataBlock.Type.ROW);
+    TransferableBlock endOfStreamBlock = TransferableBlockUtils.getEndOfStreamTransferableBlock(TEST_DATA_SCHEMA);
+    sendingMailbox.send(dataBlock);
+    sendingMailbox.send(endOfStreamBlock);
+    sendingMailbox.complete();
+    Assert.assertTrue(receivingMailbox.isInitialized());
+    Assert.assertEquals(notifiedMailboxIds, Collections.nCopies(3, mailboxId));
+
+    // blocks are handed over as is, without serialization.
+    Assert.assertFalse(receivingMailbox.isClosed());
+    Assert.assertSame(receivingMailbox.receive(), dataBlock);
+    Assert.assertSame(receivingMailbox.receive(), endOfStreamBlock);
+    Assert.assertNull(receivingMailbox.receive());
+    Assert.assertTrue(receivingMailbox.isClosed());
+  }
+
+  @Test
+  public void testLocalMailboxFlowControl()
+      throws Exception {
+    List<String> notifiedMailboxIds = Collections.synchronizedList(new ArrayList<>());
+    PinotConfiguration config = new PinotConfiguration(
+        Collections.<String, Object>singletonMap(QueryConfig.KEY_OF_MAILBOX_RECEIVE_BUFFER_CAPACITY, 2));
+    MultiplexingMailboxService mailboxService =
+        MultiplexingMailboxService.newInstance("localhost", 1234, config, notifiedMailboxIds::add);
+    String mailboxId = "inMemory:localhost:1234:localhost:1234";
+    SendingMailbox<TransferableBlock> sendingMailbox = mailboxService.getSendingMailbox(mailboxId);
+    ReceivingMailbox<TransferableBlock> receivingMailbox = mailboxService.getReceivingMailbox(mailboxId);
+    TransferableBlock dataBlock = new TransferableBlock(Collections.singletonList(new Object[]{1, "a"}),
+        TEST_DATA_SCHEMA, BaseDataBlock.Type.ROW);
+
+    Assert.assertTrue(sendingMailbox.isReady());
+    sendingMailbox.send(dataBlock);
+    Assert.assertTrue(sendingMailbox.isReady());
+    sendingMailbox.send(dataBlock);
+    // the sender should yield once the receiving mailbox is full, but the blocks sent anyway are still accepted.
+    Assert.assertFalse(sendingMailbox.isReady());
+    sendingMailbox.send(TransferableBlockUtils.getEndOfStreamTransferableBlock(TEST_DATA_SCHEMA));
+    Assert.assertFalse(sendingMailbox.isReady());
+    Assert.assertEquals(notifiedMailboxIds.size(), 3);
+
+    Assert.assertSame(receivingMailbox.receive(), dataBlock);
+    Assert.assertFalse(sendingMailbox.isReady());
+    Assert.assertEquals(notifiedMailboxIds.size(), 3);
+    // the sender should be notified once the receiving mailbox is drained below its capacity.
+    Assert.assertSame(receivingMailbox.receive(), dataBlock);
+    Assert.assertTrue(sendingMailbox.isReady());
+    Assert.assertEquals(notifiedMailboxIds.size(), 4);
+    Assert.assertTrue(receivingMailbox.receive().isEndOfStreamBlock());
+    Assert.assertEquals(notifiedMailboxIds.size(), 4);
+  }
+
+  @Test
+  public void testRemoteMailboxGoesThroughGrpc() {
+    MultiplexingMailboxService mailboxService =
+        MultiplexingMailboxService.newInstance("localhost", 1234, new PinotConfiguration(), mailboxId -> {
+        });
+    String mailboxId = "grpc:localhost:1234:localhost:1235";
+    Assert.assertTrue(mailboxService.getSendingMailbox(mailboxId) instanceof GrpcSendingMailbox);
+    Assert.assertTrue(mailboxService.getReceivingMailbox(mailboxId) instanceof GrpcReceivingMailbox);
+  }
+
+  @Test
+  public void testReleaseMailboxes() {
+    MultiplexingMailboxService mailboxService =
+        MultiplexingMailboxService.newInstance("localhost", 1234, new PinotConfiguration(), mailboxId -> {
+        });
+    String[] mailboxIds = {"inMemory:localhost:1234:localhost:1234", "grpc:localhost:1234:localhost:1235"};
+    for (String mailboxId : mailboxIds) {
+      ReceivingMailbox<TransferableBlock> receivingMailbox = mailboxService.getReceivingMailbox(mailboxId);
+      Assert.assertSame(mailboxService.getReceivingMailbox(mailboxId), receivingMailbox);
+      mailboxService.releaseReceivingMailbox(mailboxId);
+      Assert.assertNotSame(mailboxService.getReceivingMailbox(mailboxId), receivingMailbox);
+      SendingMailbox<TransferableBlock> sendingMailbox = mailboxService.getSendingMailbox(mailboxId);
+      Assert.assertSame(mailboxService.getSendingMailbox(mailboxId), sendingMailbox);
+      mailboxService.releaseSendingMailbox(mailboxId);
+      Assert.assertNotSame(mailboxService.getSendingMailbox(mailboxId), sendingMailbox);
+    }
+  }
+}
@@ -18,6 +18,8 @@
  */
 package org.apache.pinot.query.runtime;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import java.sql.ResultSet;
@@ -30,6 +32,7 @@ import org.apache.pinot.core.transport.ServerInstance;
 import org.apache.pinot.query.planner.QueryPlan;
 import org.apache.pinot.query.planner.stage.MailboxReceiveNode;
 import org.apache.pinot.query.runtime.operator.MailboxReceiveOperator;
+import org.apache.pinot.query.runtime.operator.utils.OperatorStatsUtils;
 import org.apache.pinot.query.runtime.plan.DistributedStagePlan;
 import org.apache.pinot.query.service.QueryDispatcher;
 import org.testng.Assert;
@@ -52,11 +55,52 @@ public class QueryRunnerTest extends QueryRunnerTestBase {
     List<Object[]> resultRows = queryRunner(sql);
     // query H2 for data
     List<Object[]> expectedRows = queryH2(sql);
-    compareRowEquals(resultRows, expectedRows);
+    compareRowEquals(resultRows, expectedRows, false);
+  }
+
+  @Test(dataProvider = "testDataWithOrderedSql")
+  public void testOrderedSqlWithH2Checker(String sql)
+      throws Exception {
+    List<Object[]> resultRows = queryRunner(sql);
+    // query H2 for data, only the sort keys are selected so that the order of the rows is deterministic.
+    List<Object[]> expectedRows = queryH2(sql);
+    compareRowEquals(resultRows, expectedRows, true);
+  }
+
+  @Test
+  public void testOperatorStats() {
+    String sql = "SELECT a.col1, COUNT(*) FROM a JOIN b ON a.col1 = b.col1 GROUP BY a.col1";
+    QueryPlan queryPlan = _queryEnvironment.planQuery(sql);
+    MailboxReceiveOperator mailboxReceiveOperator = submitQuery(queryPlan);
+    List<Object[]> resultRows = QueryDispatcher.toResultTable(
+        QueryDispatcher.reduceMailboxReceive(mailboxReceiveOperator), queryPlan.getQueryResultFields()).getRows();
+
+    // every stage but the reduce stage (stage 0) reports its stats from each of its workers.
+    MailboxReceiveNode reduceNode = (MailboxReceiveNode) queryPlan.getQueryStageMap().get(0);
+    ArrayNode stageStatsArray = OperatorStatsUtils.mergeStageStats(mailboxReceiveOperator.getUpstreamStageStats());
+    Assert.assertEquals(stageStatsArray.size(), queryPlan.getStageMetadataMap().size() - 1);
+    for (JsonNode stageStats : stageStatsArray) {
+      int stageId = stageStats.get(OperatorStatsUtils.STAGE_ID).asInt();
+      Assert.assertEquals(stageStats.get(OperatorStatsUtils.NUM_WORKERS).asInt(),
+          queryPlan.getStageMetadataMap().get(stageId).getServerInstances().size());
+      JsonNode sendStats = stageStats.get(OperatorStatsUtils.OPERATOR_STATS);
+      Assert.assertEquals(sendStats.get(OperatorStatsUtils.OPERATOR).asText(), "MAILBOX_SEND");
+      // the send operator passes all of its input rows through.
+      Assert.assertEquals(sendStats.get(OperatorStatsUtils.ROWS_OUT).asLong(),
+          sendStats.get(OperatorStatsUtils.ROWS_IN).asLong());
+      if (stageId == reduceNode.getSenderStageId()) {
+        Assert.assertEquals(sendStats.get(OperatorStatsUtils.ROWS_OUT).asLong(), resultRows.size());
+      }
+    }
   }
 
   private List<Object[]> queryRunner(String sql) {
     QueryPlan queryPlan = _queryEnvironment.planQuery(sql);
+    return QueryDispatcher.toResultTable(QueryDispatcher.reduceMailboxReceive(submitQuery(queryPlan)),
+        queryPlan.getQueryResultFields()).getRows();
+  }
+
+  private MailboxReceiveOperator submitQuery(QueryPlan queryPlan) {
     Map<String, String> requestMetadataMap =
         ImmutableMap.of("REQUEST_ID", String.valueOf(RANDOM_REQUEST_ID_GEN.nextLong()));
     MailboxReceiveOperator mailboxReceiveOperator = null;
@@ -66,7 +110,7 @@ public class QueryRunnerTest extends QueryRunnerTestBase {
         mailboxReceiveOperator = QueryDispatcher.createReduceStageOperator(_mailboxService,
             queryPlan.getStageMetadataMap().get(reduceNode.getSenderStageId()).getServerInstances(),
             Long.parseLong(requestMetadataMap.get("REQUEST_ID")), reduceNode.getSenderStageId(),
-            reduceNode.getDataSchema(), "localhost", _reducerGrpcPort);
+            reduceNode.getDataSchema(), reduceNode.isOrdered(), "localhost", _reducerGrpcPort);
       } else {
         for (ServerInstance serverInstance : queryPlan.getStageMetadataMap().get(stageId).getServerInstances()) {
           DistributedStagePlan distributedStagePlan =
@@ -75,9 +119,7 @@ public class QueryRunnerTest extends QueryRunnerTestBase {
         }
       }
     }
-    Preconditions.checkNotNull(mailboxReceiveOperator);
-    return QueryDispatcher.toResultTable(QueryDispatcher.reduceMailboxReceive(mailboxReceiveOperator),
-        queryPlan.getQueryResultFields()).getRows();
+    return Preconditions.checkNotNull(mailboxReceiveOperator);
   }
 
   private List<Object[]> queryH2(String sql)
@@ -97,7 +139,7 @@ public class QueryRunnerTest extends QueryRunnerTestBase {
     return result;
   }
 
-  private void compareRowEquals(List<Object[]> resultRows, List<Object[]> expectedRows) {
+  private void compareRowEquals(List<Object[]> resultRows, List<Object[]> expectedRows, boolean isOrdered) {
     Assert.assertEquals(resultRows.size(), expectedRows.size());
 
     Comparator<Object> valueComp = (l, r) -> {
@@ -132,8 +174,10 @@ public class QueryRunnerTest extends QueryRunnerTestBase {
       }
       return 0;
     };
-    resultRows.sort(rowComp);
-    expectedRows.sort(rowComp);
+    if (!isOrdered) {
+      resultRows.sort(rowComp);
+      expectedRows.sort(rowComp);
+    }
     for (int i = 0; i < resultRows.size(); i++) {
       Object[] resultRow = resultRows.get(i);
       Object[] expectedRow = expectedRows.get(i);
@@ -144,6 +188,17 @@ public class QueryRunnerTest extends QueryRunnerTestBase {
     }
   }
 
+  @DataProvider(name = "testDataWithOrderedSql")
+  private Object[][] provideTestOrderedSql() {
+    return new Object[][]{
+        // Order BY without LIMIT, range partitioned on the sort keys and sorted by all the workers of the sort stage.
+        new Object[]{"SELECT col1, ts FROM a ORDER BY col1, ts"},
+        new Object[]{"SELECT col3, col2 FROM a ORDER BY col3 DESC, col2"},
+        new Object[]{"SELECT a.col3, b.col3 FROM a JOIN b ON a.col1 = b.col1 ORDER BY a.col3, b.col3 DESC"},
+        new Object[]{"SELECT col2 FROM b WHERE col3 < 0.5 ORDER BY col2"},
+    };
+  }
+
   @DataProvider(name = "testDataWithSql")
   private Object[][] provideTestSql() {
     return new Object[][]{
@@ -171,6 +226,11 @@ public class QueryRunnerTest extends QueryRunnerTestBase {
         // thus the final JOIN result will be 15 x 1 = 15.
         new Object[]{"SELECT * FROM a JOIN b on a.col1 = b.col1"},
 
+        // The table scan of A is filtered with the runtime filter of the B join keys, none of the B rows is left here
+        // so table A doesn't need to be scanned at all.
+        new Object[]{"SELECT * FROM a JOIN b on a.col1 = b.col1 WHERE b.col3 < 0"},
+        new Object[]{"SELECT * FROM a JOIN b on a.col1 = b.col1 WHERE b.col3 = 42"},
+
         // Query with function in JOIN keys, table A and B are both (1, 42, 1, 42, 1), with table A cycling 3 times.
         // Because:
         //   - MOD(a.col3, 2) will have 6 (42)s equal to 0 and 9 (1)s equals to 1
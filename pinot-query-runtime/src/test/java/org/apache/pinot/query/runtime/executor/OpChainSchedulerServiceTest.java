@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.Operator;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.operator.BaseOperator;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.pinot.core.transport.ServerInstance;
+import org.apache.pinot.query.mailbox.MailboxService;
+import org.apache.pinot.query.mailbox.SendingMailbox;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.query.runtime.operator.MailboxSendOperator;
+import org.apache.pinot.util.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class OpChainSchedulerServiceTest {
+  private static final DataSchema SCHEMA = new DataSchema(new String[]{"col"},
+      new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT});
+
+  @Test
+  public void testWaitingOpChainsDoNotHoldThreads() {
+    // more op chains waiting for data than worker threads.
+    int numOpChains = 10;
+    OpChainSchedulerService scheduler = new OpChainSchedulerService(2);
+    scheduler.start();
+    try {
+      List<WaitingOperator> operators = new ArrayList<>();
+      for (int i = 0; i < numOpChains; i++) {
+        WaitingOperator operator = new WaitingOperator();
+        operators.add(operator);
+        scheduler.register(new OpChain("chain_" + i, operator, Collections.singletonList("mailbox_" + i)));
+      }
+      TestUtils.waitForCondition(aVoid -> scheduler.getNumParkedOpChains() == numOpChains, 5000L,
+          "Op chains are not parked");
+
+      for (int i = 0; i < numOpChains; i++) {
+        operators.get(i)._hasData.set(true);
+        scheduler.onDataAvailable("mailbox_" + i);
+      }
+      TestUtils.waitForCondition(aVoid -> operators.stream().allMatch(o -> o._isFinished.get()), 5000L,
+          "Op chains are not resumed");
+      Assert.assertEquals(scheduler.getNumParkedOpChains(), 0);
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void testParkedOpChainIsResumedWithoutData() {
+    OpChainSchedulerService scheduler = new OpChainSchedulerService(1);
+    scheduler.start();
+    try {
+      WaitingOperator operator = new WaitingOperator();
+      scheduler.register(new OpChain("chain", operator, Collections.singletonList("mailbox")));
+      TestUtils.waitForCondition(aVoid -> scheduler.getNumParkedOpChains() == 1, 5000L, "Op chain is not parked");
+      int numCalls = operator._numCalls.get();
+
+      // parked op chains are periodically resumed so that timeouts are checked even without any new data.
+      TestUtils.waitForCondition(aVoid -> operator._numCalls.get() > numCalls,
+          5 * OpChainSchedulerService.MAX_PARK_TIME_MS, "Op chain is not resumed");
+      // data arrived to an unknown mailbox is ignored.
+      scheduler.onDataAvailable("unknown");
+      Assert.assertFalse(operator._isFinished.get());
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFailedOpChainSendsErrorBlock()
+      throws Exception {
+    MailboxService<TransferableBlock> mailboxService = mock(MailboxService.class);
+    SendingMailbox<TransferableBlock> sendingMailbox = mock(SendingMailbox.class);
+    when(sendingMailbox.isReady()).thenReturn(true);
+    when(mailboxService.getSendingMailbox(anyString())).thenReturn(sendingMailbox);
+    ServerInstance receivingInstance = mock(ServerInstance.class);
+    when(receivingInstance.getHostname()).thenReturn("localhost");
+    when(receivingInstance.getQueryMailboxPort()).thenReturn(1234);
+    MailboxSendOperator sendOperator = new MailboxSendOperator(mailboxService, SCHEMA, new FailingOperator(),
+        Collections.singletonList(receivingInstance), RelDistribution.Type.BROADCAST_DISTRIBUTED, null, "localhost",
+        5678, 1L, 1);
+
+    OpChainSchedulerService scheduler = new OpChainSchedulerService(1);
+    scheduler.start();
+    try {
+      scheduler.register(new OpChain("chain", sendOperator, sendOperator.getMailboxIds()));
+      // the receiver should get the error instead of waiting for the end of the stream until it times out.
+      verify(sendingMailbox, timeout(5000L)).send(
+          argThat(TransferableBlock::isErrorBlock));
+      verify(sendingMailbox, timeout(5000L)).complete();
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  /**
+   * Returns no-op blocks until data is available, then one data block and end of stream.
+   */
+  private static class WaitingOperator extends BaseOperator<TransferableBlock> {
+    private final AtomicBoolean _hasData = new AtomicBoolean(false);
+    private final AtomicBoolean _isFinished = new AtomicBoolean(false);
+    private final AtomicInteger _numCalls = new AtomicInteger();
+    private boolean _isDataReturned;
+
+    @Override
+    protected TransferableBlock getNextBlock() {
+      _numCalls.incrementAndGet();
+      if (!_hasData.get()) {
+        return TransferableBlockUtils.getNoOpTransferableBlock(SCHEMA);
+      }
+      if (!_isDataReturned) {
+        _isDataReturned = true;
+        return new TransferableBlock(Collections.singletonList(new Object[]{1}), SCHEMA,
+            BaseDataBlock.Type.ROW);
+      }
+      _isFinished.set(true);
+      return TransferableBlockUtils.getEndOfStreamTransferableBlock(SCHEMA);
+    }
+
+    @Override
+    public List<Operator> getChildOperators() {
+      return null;
+    }
+
+    @Nullable
+    @Override
+    public String toExplainString() {
+      return "WAITING";
+    }
+  }
+
+  private static class FailingOperator extends BaseOperator<TransferableBlock> {
+
+    @Override
+    protected TransferableBlock getNextBlock() {
+      throw new RuntimeException("Failed to process the block");
+    }
+
+    @Override
+    public List<Operator> getChildOperators() {
+      return null;
+    }
+
+    @Nullable
+    @Override
+    public String toExplainString() {
+      return "FAILING";
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class AggregateOperatorTest {
+  private static final DataSchema INPUT_SCHEMA = new DataSchema(new String[]{"key", "value", "name"},
+      new DataSchema.ColumnDataType[]{
+          DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING
+      });
+
+  @Test
+  public void testGroupByWithHashCollision() {
+    // "Aa" and "BB" have the same hash code but are different groups.
+    List<TransferableBlock> blocks = Arrays.asList(
+        getInputBlock(new Object[]{"Aa", 1, "x"}, new Object[]{"BB", 2, "y"}, new Object[]{"Aa", 3, "z"}),
+        getInputBlock(new Object[]{"BB", 4, "x"}, new Object[]{"Aa", 5, "x"}));
+    DataSchema resultSchema = new DataSchema(new String[]{"key", "sum", "min", "max", "count"},
+        new DataSchema.ColumnDataType[]{
+            DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.DOUBLE, DataSchema.ColumnDataType.DOUBLE,
+            DataSchema.ColumnDataType.DOUBLE, DataSchema.ColumnDataType.LONG
+        });
+    AggregateOperator operator = new AggregateOperator(new BlockListOperator(blocks, INPUT_SCHEMA), resultSchema,
+        Arrays.asList(getAggCall("SUM", 1), getAggCall("$MIN", 1), getAggCall("MAX", 1), getAggCall("COUNT", -1)),
+        Collections.singletonList(new RexExpression.InputRef(0)), INPUT_SCHEMA);
+
+    Map<Object, Object[]> results = drain(operator, 1);
+    Assert.assertEquals(results.size(), 2);
+    Assert.assertEquals(results.get("Aa"), new Object[]{"Aa", 9.0, 1.0, 5.0, 3L});
+    Assert.assertEquals(results.get("BB"), new Object[]{"BB", 6.0, 2.0, 4.0, 2L});
+  }
+
+  @Test
+  public void testMultiColumnGroupBy() {
+    List<TransferableBlock> blocks = Collections.singletonList(
+        getInputBlock(new Object[]{"a", 1, "x"}, new Object[]{"a", 2, "y"}, new Object[]{"a", 3, "x"},
+            new Object[]{"b", 4, "x"}));
+    DataSchema resultSchema = new DataSchema(new String[]{"key", "name", "sum"},
+        new DataSchema.ColumnDataType[]{
+            DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.DOUBLE
+        });
+    AggregateOperator operator = new AggregateOperator(new BlockListOperator(blocks, INPUT_SCHEMA), resultSchema,
+        Collections.singletonList(getAggCall("$SUM0", 1)),
+        Arrays.asList(new RexExpression.InputRef(0), new RexExpression.InputRef(2)), INPUT_SCHEMA);
+
+    Map<Object, Object[]> results = drain(operator, 2);
+    Assert.assertEquals(results.size(), 3);
+    Assert.assertEquals(results.get(Arrays.asList("a", "x")), new Object[]{"a", "x", 4.0});
+    Assert.assertEquals(results.get(Arrays.asList("a", "y")), new Object[]{"a", "y", 2.0});
+    Assert.assertEquals(results.get(Arrays.asList("b", "x")), new Object[]{"b", "x", 4.0});
+  }
+
+  @Test
+  public void testTwoPhaseAggregation() {
+    // first phase aggregates the raw values into intermediate results (OBJECT result column).
+    DataSchema intermediateSchema = new DataSchema(new String[]{"key", "distinctCount"},
+        new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.OBJECT});
+    List<TransferableBlock> intermediateBlocks = new ArrayList<>();
+    List<List<TransferableBlock>> partitions = Arrays.asList(
+        Collections.singletonList(
+            getInputBlock(new Object[]{"a", 1, "x"}, new Object[]{"a", 2, "y"}, new Object[]{"b", 3, "x"})),
+        Collections.singletonList(
+            getInputBlock(new Object[]{"a", 1, "z"}, new Object[]{"a", 2, "y"}, new Object[]{"b", 3, "y"})));
+    for (List<TransferableBlock> partition : partitions) {
+      AggregateOperator firstPhase =
+          new AggregateOperator(new BlockListOperator(partition, INPUT_SCHEMA), intermediateSchema,
+              Collections.singletonList(getAggCall("DISTINCTCOUNTHLL", 2)),
+              Collections.singletonList(new RexExpression.InputRef(0)), INPUT_SCHEMA);
+      TransferableBlock block = firstPhase.nextBlock();
+      Assert.assertFalse(TransferableBlockUtils.isEndOfStream(block));
+      intermediateBlocks.add(block);
+      Assert.assertTrue(TransferableBlockUtils.isEndOfStream(firstPhase.nextBlock()));
+    }
+
+    // second phase merges the intermediate results (OBJECT input column) and extracts the final results.
+    DataSchema resultSchema = new DataSchema(new String[]{"key", "distinctCount"},
+        new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.LONG});
+    AggregateOperator secondPhase =
+        new AggregateOperator(new BlockListOperator(intermediateBlocks, intermediateSchema), resultSchema,
+            Collections.singletonList(getAggCall("DISTINCTCOUNTHLL", 1)),
+            Collections.singletonList(new RexExpression.InputRef(0)), intermediateSchema);
+
+    Map<Object, Object[]> results = drain(secondPhase, 1);
+    Assert.assertEquals(results.size(), 2);
+    Assert.assertEquals(results.get("a"), new Object[]{"a", 3L});
+    Assert.assertEquals(results.get("b"), new Object[]{"b", 2L});
+  }
+
+  @Test
+  public void testAggregationWithoutGroupBy() {
+    DataSchema resultSchema = new DataSchema(new String[]{"count"},
+        new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.LONG});
+    AggregateOperator operator = new AggregateOperator(
+        new BlockListOperator(Collections.singletonList(getInputBlock(new Object[]{"a", 1, "x"},
+            new Object[]{"b", 2, "y"})), INPUT_SCHEMA), resultSchema,
+        Collections.singletonList(getAggCall("COUNT", -1)), Collections.emptyList(), INPUT_SCHEMA);
+    TransferableBlock block = operator.nextBlock();
+    Assert.assertEquals(block.getContainer().size(), 1);
+    Assert.assertEquals(block.getContainer().get(0), new Object[]{2L});
+    Assert.assertTrue(TransferableBlockUtils.isEndOfStream(operator.nextBlock()));
+
+    // no input row generates no output row.
+    operator = new AggregateOperator(new BlockListOperator(Collections.emptyList(), INPUT_SCHEMA), resultSchema,
+        Collections.singletonList(getAggCall("COUNT", -1)), Collections.emptyList(), INPUT_SCHEMA);
+    Assert.assertTrue(TransferableBlockUtils.isEndOfStream(operator.nextBlock()));
+  }
+
+  @Test
+  public void testNullValuesAreSkipped() {
+    List<TransferableBlock> blocks = Arrays.asList(
+        getInputBlock(new Object[]{"a", 1, "x"}, new Object[]{"a", null, "y"}, new Object[]{"b", null, "x"}),
+        getInputBlock(new Object[]{"a", 3, null}));
+    DataSchema resultSchema = new DataSchema(new String[]{"key", "sum", "min", "count", "sum0", "countStar"},
+        new DataSchema.ColumnDataType[]{
+            DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.DOUBLE, DataSchema.ColumnDataType.DOUBLE,
+            DataSchema.ColumnDataType.LONG, DataSchema.ColumnDataType.DOUBLE, DataSchema.ColumnDataType.LONG
+        });
+    AggregateOperator operator = new AggregateOperator(new BlockListOperator(blocks, INPUT_SCHEMA), resultSchema,
+        Arrays.asList(getAggCall("SUM", 1), getAggCall("MIN", 1), getAggCall("COUNT", 1), getAggCall("$SUM0", 1),
+            getAggCall("COUNT", -1)), Collections.singletonList(new RexExpression.InputRef(0)), INPUT_SCHEMA);
+
+    TransferableBlock block = operator.nextBlock();
+    BaseDataBlock dataBlock = block.getDataBlock();
+    Assert.assertEquals(dataBlock.getNumberOfRows(), 2);
+    int aRowId = "a".equals(dataBlock.getString(0, 0)) ? 0 : 1;
+    int bRowId = 1 - aRowId;
+    Assert.assertEquals(block.getContainer().get(aRowId), new Object[]{"a", 4.0, 1.0, 2L, 4.0, 3L});
+    // all the values of group "b" are null: SUM and MIN are null, COUNT and $SUM0 are 0.
+    Assert.assertTrue(dataBlock.getNullRowIds(1).contains(bRowId));
+    Assert.assertTrue(dataBlock.getNullRowIds(2).contains(bRowId));
+    Assert.assertFalse(dataBlock.getNullRowIds(1).contains(aRowId));
+    Assert.assertEquals(dataBlock.getLong(bRowId, 3), 0L);
+    Assert.assertEquals(dataBlock.getDouble(bRowId, 4), 0.0);
+    Assert.assertEquals(dataBlock.getLong(bRowId, 5), 1L);
+    Assert.assertTrue(TransferableBlockUtils.isEndOfStream(operator.nextBlock()));
+  }
+
+  @Test
+  public void testMultiValueInput() {
+    DataSchema inputSchema = new DataSchema(new String[]{"key", "values"},
+        new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.INT_ARRAY});
+    List<TransferableBlock> blocks = Collections.singletonList(new TransferableBlock(Arrays.asList(
+        new Object[]{"a", new int[]{1, 2}}, new Object[]{"b", new int[]{3}}, new Object[]{"a", new int[]{4, 5, 6}}),
+        inputSchema, BaseDataBlock.Type.ROW));
+    DataSchema resultSchema = new DataSchema(new String[]{"key", "sum", "count"},
+        new DataSchema.ColumnDataType[]{
+            DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.DOUBLE, DataSchema.ColumnDataType.LONG
+        });
+    AggregateOperator operator = new AggregateOperator(new BlockListOperator(blocks, inputSchema), resultSchema,
+        Arrays.asList(getAggCall("SUMMV", 1), getAggCall("COUNTMV", 1)),
+        Collections.singletonList(new RexExpression.InputRef(0)), inputSchema);
+
+    Map<Object, Object[]> results = drain(operator, 1);
+    Assert.assertEquals(results.size(), 2);
+    Assert.assertEquals(results.get("a"), new Object[]{"a", 18.0, 5L});
+    Assert.assertEquals(results.get("b"), new Object[]{"b", 3.0, 1L});
+  }
+
+  private static TransferableBlock getInputBlock(Object[]... rows) {
+    return new TransferableBlock(Arrays.asList(rows), INPUT_SCHEMA, BaseDataBlock.Type.ROW);
+  }
+
+  private static RexExpression getAggCall(String functionName, int inputRef) {
+    List<RexExpression> operands = inputRef >= 0 ? Collections.singletonList(new RexExpression.InputRef(inputRef))
+        : Collections.emptyList();
+    return new RexExpression.FunctionCall(SqlKind.OTHER_FUNCTION, FieldSpec.DataType.DOUBLE, functionName, operands);
+  }
+
+  // returns the result rows keyed by the group key (a list of values for multiple group keys).
+  private static Map<Object, Object[]> drain(AggregateOperator operator, int numGroupKeys) {
+    Map<Object, Object[]> results = new HashMap<>();
+    TransferableBlock block = operator.nextBlock();
+    while (!TransferableBlockUtils.isEndOfStream(block)) {
+      for (Object[] row : block.getContainer()) {
+        results.put(numGroupKeys == 1 ? row[0] : Arrays.asList(row).subList(0, numGroupKeys), row);
+      }
+      block = operator.nextBlock();
+    }
+    Assert.assertFalse(block.isErrorBlock());
+    return results;
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class FilterOperatorTest {
+  private static final DataSchema SCHEMA = new DataSchema(new String[]{"key", "value"},
+      new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING});
+  private static final int NUM_ROWS = 100;
+
+  @Test
+  public void testColumnarBlockIsFilteredWithSelection() {
+    ColumnarDataBlock dataBlock = getColumnarDataBlock();
+    TransferableBlock block = filter(new TransferableBlock(dataBlock), "greaterThanOrEqual", 90);
+
+    Assert.assertEquals(block.getType(), BaseDataBlock.Type.COLUMNAR);
+    Assert.assertSame(block.getColumnarDataBlock(), dataBlock);
+    Assert.assertEquals(block.getSelection(), new int[]{90, 91, 92, 93, 94, 95, 96, 97, 98, 99});
+    Assert.assertEquals(block.getNumRows(), 10);
+    List<Object[]> rows = block.getContainer();
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(rows.get(i), new Object[]{90 + i, "value_" + (90 + i)});
+    }
+    Assert.assertEquals(block.getDataBlock().getNumberOfRows(), 10);
+  }
+
+  @Test
+  public void testSelectionIsFilteredAgain() {
+    ColumnarDataBlock dataBlock = getColumnarDataBlock();
+    TransferableBlock block = filter(new TransferableBlock(dataBlock), "greaterThanOrEqual", 90);
+    block = filter(block, "lessThan", 93);
+
+    Assert.assertSame(block.getColumnarDataBlock(), dataBlock);
+    Assert.assertEquals(block.getSelection(), new int[]{90, 91, 92});
+  }
+
+  @Test
+  public void testContainerBlock() {
+    List<Object[]> rows = getRows();
+    TransferableBlock block = filter(new TransferableBlock(rows, SCHEMA, BaseDataBlock.Type.COLUMNAR), "lessThan", 2);
+
+    Assert.assertEquals(block.getNumRows(), 2);
+    Assert.assertSame(block.getContainer().get(0), rows.get(0));
+    Assert.assertSame(block.getContainer().get(1), rows.get(1));
+  }
+
+  private static TransferableBlock filter(TransferableBlock block, String predicate, int value) {
+    RexExpression filter = new RexExpression.FunctionCall(SqlKind.OTHER_FUNCTION, FieldSpec.DataType.BOOLEAN,
+        predicate, Arrays.asList(new RexExpression.InputRef(0), new RexExpression.Literal(FieldSpec.DataType.INT,
+        value)));
+    FilterOperator operator =
+        new FilterOperator(new BlockListOperator(Collections.singletonList(block), SCHEMA), SCHEMA, filter);
+    return operator.nextBlock();
+  }
+
+  private static ColumnarDataBlock getColumnarDataBlock() {
+    return (ColumnarDataBlock) new TransferableBlock(getRows(), SCHEMA, BaseDataBlock.Type.COLUMNAR).getDataBlock();
+  }
+
+  private static List<Object[]> getRows() {
+    List<Object[]> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      rows.add(new Object[]{i, "value_" + i});
+    }
+    return rows;
+  }
+}
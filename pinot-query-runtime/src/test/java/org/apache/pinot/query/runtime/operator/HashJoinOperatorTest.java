@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.commons.io.FileUtils;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.query.planner.partitioning.FieldSelectionKeySelector;
+import org.apache.pinot.query.planner.stage.JoinNode;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+
+public class HashJoinOperatorTest {
+  private static final File SPILL_DIR = new File(FileUtils.getTempDirectory(), "HashJoinOperatorTest");
+  private static final DataSchema LEFT_SCHEMA = new DataSchema(new String[]{"key", "leftValue"},
+      new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING});
+  private static final DataSchema RIGHT_SCHEMA = new DataSchema(new String[]{"key", "rightValue"},
+      new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.LONG});
+  private static final DataSchema JOIN_SCHEMA = new DataSchema(new String[]{"key", "leftValue", "key0", "rightValue"},
+      new DataSchema.ColumnDataType[]{
+          DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.INT,
+          DataSchema.ColumnDataType.LONG
+      });
+  private static final int NUM_BLOCKS = 10;
+  private static final int NUM_ROWS_PER_BLOCK = 1000;
+
+  @BeforeClass
+  public void setUp()
+      throws Exception {
+    FileUtils.deleteDirectory(SPILL_DIR);
+    FileUtils.forceMkdir(SPILL_DIR);
+  }
+
+  @AfterClass
+  public void tearDown()
+      throws Exception {
+    FileUtils.deleteDirectory(SPILL_DIR);
+  }
+
+  @DataProvider(name = "joinTypes")
+  public Object[][] provideJoinTypes() {
+    return new Object[][]{
+        {JoinRelType.INNER}, {JoinRelType.LEFT}, {JoinRelType.RIGHT}, {JoinRelType.FULL}, {JoinRelType.SEMI},
+        {JoinRelType.ANTI}
+    };
+  }
+
+  @Test(dataProvider = "joinTypes")
+  public void testSpilledJoinMatchesInMemoryJoin(JoinRelType joinType) {
+    DataSchema outputSchema = getOutputSchema(joinType);
+
+    HashJoinOperator inMemoryJoin =
+        new HashJoinOperator(new BlockListOperator(getLeftBlocks(), LEFT_SCHEMA), LEFT_SCHEMA,
+            new BlockListOperator(getRightBlocks(), RIGHT_SCHEMA), RIGHT_SCHEMA, outputSchema, getCriteria(),
+            joinType);
+    List<String> expectedRows = drain(inMemoryJoin);
+    Assert.assertEquals(inMemoryJoin.getNumSpilledBytes(), 0);
+
+    // 0 in-memory budget forces spilling after the first right block.
+    HashJoinOperator spilledJoin =
+        new HashJoinOperator(new BlockListOperator(getLeftBlocks(), LEFT_SCHEMA), LEFT_SCHEMA,
+            new BlockListOperator(getRightBlocks(), RIGHT_SCHEMA), RIGHT_SCHEMA, outputSchema, getCriteria(),
+            joinType, 0, 4, SPILL_DIR);
+    List<String> actualRows = drain(spilledJoin);
+    Assert.assertTrue(spilledJoin.getNumSpilledBytes() > 0);
+    Assert.assertEquals(actualRows, expectedRows);
+    // spill files are deleted once the join is done.
+    Assert.assertEquals(SPILL_DIR.list().length, 0);
+    // the hash table size sums up the rows of all the spilled partitions.
+    Assert.assertEquals(spilledJoin.getOperatorStats().getStats().get(OperatorStats.HASH_TABLE_SIZE),
+        inMemoryJoin.getOperatorStats().getStats().get(OperatorStats.HASH_TABLE_SIZE));
+
+    int numExpectedRows;
+    int numUnmatchedLeftRows = NUM_BLOCKS * NUM_ROWS_PER_BLOCK - 2 * NUM_ROWS_PER_BLOCK;
+    // only the right rows with null key are unmatched.
+    int numUnmatchedRightRows = 4;
+    switch (joinType) {
+      case INNER:
+        // even keys in [0, 2000) match 2 right rows each.
+        numExpectedRows = 2 * NUM_ROWS_PER_BLOCK * 2;
+        break;
+      case LEFT:
+        numExpectedRows = 2 * NUM_ROWS_PER_BLOCK * 2 + numUnmatchedLeftRows;
+        break;
+      case RIGHT:
+        numExpectedRows = 2 * NUM_ROWS_PER_BLOCK * 2 + numUnmatchedRightRows;
+        break;
+      case FULL:
+        numExpectedRows = 2 * NUM_ROWS_PER_BLOCK * 2 + numUnmatchedLeftRows + numUnmatchedRightRows;
+        break;
+      case ANTI:
+        numExpectedRows = numUnmatchedLeftRows;
+        break;
+      default:
+        numExpectedRows = 2 * NUM_ROWS_PER_BLOCK;
+        break;
+    }
+    Assert.assertEquals(actualRows.size(), numExpectedRows);
+  }
+
+  @Test(dataProvider = "joinTypes")
+  public void testSkewedSpilledJoinMatchesInMemoryJoin(JoinRelType joinType) {
+    DataSchema outputSchema = getOutputSchema(joinType);
+
+    HashJoinOperator inMemoryJoin =
+        new HashJoinOperator(new BlockListOperator(getLeftBlocks(), LEFT_SCHEMA), LEFT_SCHEMA,
+            new BlockListOperator(getSkewedRightBlocks(), RIGHT_SCHEMA), RIGHT_SCHEMA, outputSchema, getCriteria(),
+            joinType);
+    List<String> expectedRows = drain(inMemoryJoin);
+
+    // the partition of the hot key cannot fit in the 0 in-memory budget even after being partitioned again, it is
+    // joined one chunk of right rows at a time.
+    HashJoinOperator spilledJoin =
+        new HashJoinOperator(new BlockListOperator(getLeftBlocks(), LEFT_SCHEMA), LEFT_SCHEMA,
+            new BlockListOperator(getSkewedRightBlocks(), RIGHT_SCHEMA), RIGHT_SCHEMA, outputSchema, getCriteria(),
+            joinType, 0, 4, SPILL_DIR);
+    List<String> actualRows = drain(spilledJoin);
+    Assert.assertTrue(spilledJoin.getNumSpilledBytes() > 0);
+    Assert.assertEquals(actualRows, expectedRows);
+    Assert.assertEquals(SPILL_DIR.list().length, 0);
+  }
+
+  @Test
+  public void testSpilledJoinUpstreamError() {
+    List<TransferableBlock> leftBlocks = getLeftBlocks();
+    leftBlocks.add(TransferableBlockUtils.getErrorTransferableBlock(new RuntimeException("left failed")));
+    HashJoinOperator spilledJoin =
+        new HashJoinOperator(new BlockListOperator(leftBlocks, LEFT_SCHEMA), LEFT_SCHEMA,
+            new BlockListOperator(getRightBlocks(), RIGHT_SCHEMA), RIGHT_SCHEMA, JOIN_SCHEMA, getCriteria(),
+            JoinRelType.INNER, 0, 4, SPILL_DIR);
+    TransferableBlock block = spilledJoin.nextBlock();
+    Assert.assertTrue(block.isErrorBlock());
+    Assert.assertEquals(SPILL_DIR.list().length, 0);
+  }
+
+  @Test
+  public void testCloseDeletesSpillFiles() {
+    HashJoinOperator spilledJoin =
+        new HashJoinOperator(new BlockListOperator(getLeftBlocks(), LEFT_SCHEMA), LEFT_SCHEMA,
+            new BlockListOperator(getRightBlocks(), RIGHT_SCHEMA), RIGHT_SCHEMA, JOIN_SCHEMA, getCriteria(),
+            JoinRelType.INNER, 0, 4, SPILL_DIR);
+    TransferableBlock block = spilledJoin.nextBlock();
+    Assert.assertFalse(TransferableBlockUtils.isEndOfStream(block));
+    Assert.assertTrue(SPILL_DIR.list().length > 0);
+
+    // the op chain is closed before the join is done, e.g. when it gets cancelled.
+    spilledJoin.close();
+    Assert.assertEquals(SPILL_DIR.list().length, 0);
+    spilledJoin.close();
+    Assert.assertEquals(SPILL_DIR.list().length, 0);
+  }
+
+  private static DataSchema getOutputSchema(JoinRelType joinType) {
+    return joinType == JoinRelType.SEMI || joinType == JoinRelType.ANTI ? LEFT_SCHEMA : JOIN_SCHEMA;
+  }
+
+  private static List<JoinNode.JoinClause> getCriteria() {
+    return Collections.singletonList(
+        new JoinNode.JoinClause(new FieldSelectionKeySelector(0), new FieldSelectionKeySelector(0)));
+  }
+
+  // left keys are in [0, 10000) with a null key every 100 rows.
+  private static List<TransferableBlock> getLeftBlocks() {
+    List<TransferableBlock> blocks = new ArrayList<>();
+    for (int blockId = 0; blockId < NUM_BLOCKS; blockId++) {
+      List<Object[]> rows = new ArrayList<>();
+      for (int i = 0; i < NUM_ROWS_PER_BLOCK; i++) {
+        int key = blockId * NUM_ROWS_PER_BLOCK + i;
+        rows.add(new Object[]{key % 100 == 1 ? null : key, "left_" + key});
+      }
+      blocks.add(new TransferableBlock(rows, LEFT_SCHEMA, BaseDataBlock.Type.ROW));
+    }
+    return blocks;
+  }
+
+  // right keys are the even numbers in [0, 4000), each of them appearing twice, plus some null keys.
+  private static List<TransferableBlock> getRightBlocks() {
+    List<TransferableBlock> blocks = new ArrayList<>();
+    for (int copy = 0; copy < 2; copy++) {
+      for (int blockId = 0; blockId < 2; blockId++) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < NUM_ROWS_PER_BLOCK; i++) {
+          int key = 2 * (blockId * NUM_ROWS_PER_BLOCK + i);
+          rows.add(new Object[]{key, (long) copy});
+        }
+        rows.add(new Object[]{null, -1L});
+        blocks.add(new TransferableBlock(rows, RIGHT_SCHEMA, BaseDataBlock.Type.ROW));
+      }
+    }
+    return blocks;
+  }
+
+  // right keys are mostly the same hot key 7, plus the even numbers in [0, 100) and some null keys.
+  private static List<TransferableBlock> getSkewedRightBlocks() {
+    List<TransferableBlock> blocks = new ArrayList<>();
+    for (int blockId = 0; blockId < NUM_BLOCKS; blockId++) {
+      List<Object[]> rows = new ArrayList<>();
+      for (int i = 0; i < NUM_ROWS_PER_BLOCK; i++) {
+        rows.add(new Object[]{i < 50 ? 2 * i : 7, (long) (blockId * NUM_ROWS_PER_BLOCK + i)});
+      }
+      rows.add(new Object[]{null, -1L});
+      blocks.add(new TransferableBlock(rows, RIGHT_SCHEMA, BaseDataBlock.Type.ROW));
+    }
+    return blocks;
+  }
+
+  private static List<String> drain(HashJoinOperator operator) {
+    List<String> rows = new ArrayList<>();
+    TransferableBlock block = operator.nextBlock();
+    while (!TransferableBlockUtils.isEndOfStream(block)) {
+      for (Object[] row : block.getContainer()) {
+        rows.add(Arrays.toString(row));
+      }
+      block = operator.nextBlock();
+    }
+    Assert.assertFalse(block.isErrorBlock());
+    Collections.sort(rows);
+    return rows;
+  }
+}
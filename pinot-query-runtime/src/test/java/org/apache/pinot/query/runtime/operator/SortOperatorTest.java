@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlockUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class SortOperatorTest {
+  private static final DataSchema SCHEMA = new DataSchema(new String[]{"key", "value"},
+      new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING});
+  private static final int NUM_ROWS = 25_000;
+
+  @Test
+  public void testTopK() {
+    List<Object[]> rows = generateRows();
+    SortOperator operator = getSortOperator(rows, RelFieldCollation.Direction.DESCENDING, 10, 5, Long.MAX_VALUE);
+    List<Object[]> sortedRows = drain(operator);
+    Assert.assertEquals(sortedRows.size(), 10);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(sortedRows.get(i)[0], NUM_ROWS - 6 - i);
+    }
+  }
+
+  @Test
+  public void testTopKAscending() {
+    List<Object[]> rows = generateRows();
+    SortOperator operator = getSortOperator(rows, RelFieldCollation.Direction.ASCENDING, 100, 20, Long.MAX_VALUE);
+    List<Object[]> sortedRows = drain(operator);
+    assertAscending(sortedRows, 20, 100);
+  }
+
+  @Test
+  public void testFullSortInMemory() {
+    List<Object[]> rows = generateRows();
+    SortOperator operator = getSortOperator(rows, RelFieldCollation.Direction.ASCENDING, -1, 0, Long.MAX_VALUE);
+    List<Object[]> sortedRows = drain(operator);
+    Assert.assertEquals(operator.getNumSpilledBytes(), 0);
+    assertAscending(sortedRows, 0, NUM_ROWS);
+  }
+
+  @Test
+  public void testFullSortWithSpilling() {
+    List<Object[]> rows = generateRows();
+    SortOperator operator = getSortOperator(rows, RelFieldCollation.Direction.ASCENDING, -1, 0, 100_000);
+    List<Object[]> sortedRows = drain(operator);
+    Assert.assertTrue(operator.getNumSpilledBytes() > 0);
+    assertAscending(sortedRows, 0, NUM_ROWS);
+  }
+
+  @Test
+  public void testFullSortWithMultiPassMerge() {
+    List<Object[]> rows = generateRows();
+    // the tiny budget spills many more sorted runs than what can be merged at once.
+    SortOperator operator = getSortOperator(rows, RelFieldCollation.Direction.ASCENDING, -1, 0, 2_000);
+    List<Object[]> sortedRows = drain(operator);
+    Assert.assertTrue(operator.getNumSpilledBytes() > 0);
+    assertAscending(sortedRows, 0, NUM_ROWS);
+  }
+
+  @Test
+  public void testLargeLimitWithOffsetAndSpilling() {
+    List<Object[]> rows = generateRows();
+    SortOperator operator = getSortOperator(rows, RelFieldCollation.Direction.ASCENDING, 15_000, 100, 100_000);
+    List<Object[]> sortedRows = drain(operator);
+    Assert.assertTrue(operator.getNumSpilledBytes() > 0);
+    assertAscending(sortedRows, 100, 15_000);
+  }
+
+  @Test
+  public void testUpstreamErrorBlock() {
+    TransferableBlock errorBlock = TransferableBlockUtils.getErrorTransferableBlock(new RuntimeException("error"));
+    SortOperator operator = new SortOperator(new BlockListOperator(Collections.singletonList(errorBlock), SCHEMA),
+        Collections.singletonList(new RexExpression.InputRef(0)),
+        Collections.singletonList(RelFieldCollation.Direction.ASCENDING), -1, 0, SCHEMA, 0, null);
+    Assert.assertTrue(operator.nextBlock().isErrorBlock());
+  }
+
+  private static SortOperator getSortOperator(List<Object[]> rows, RelFieldCollation.Direction direction, int fetch,
+      int offset, long maxInMemoryBytes) {
+    List<TransferableBlock> blocks = new ArrayList<>();
+    for (int i = 0; i < rows.size(); i += 1000) {
+      blocks.add(new TransferableBlock(rows.subList(i, Math.min(i + 1000, rows.size())), SCHEMA,
+          BaseDataBlock.Type.ROW));
+    }
+    return new SortOperator(new BlockListOperator(blocks, SCHEMA),
+        Collections.singletonList(new RexExpression.InputRef(0)), Collections.singletonList(direction), fetch, offset,
+        SCHEMA, maxInMemoryBytes, null);
+  }
+
+  private static List<Object[]> generateRows() {
+    List<Object[]> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      rows.add(new Object[]{i, "value_" + i});
+    }
+    Collections.shuffle(rows, new Random(0));
+    return rows;
+  }
+
+  private static List<Object[]> drain(SortOperator operator) {
+    List<Object[]> rows = new ArrayList<>();
+    TransferableBlock block = operator.nextBlock();
+    while (!TransferableBlockUtils.isEndOfStream(block)) {
+      Assert.assertFalse(block.isErrorBlock());
+      List<Object[]> container = block.getContainer();
+      Assert.assertTrue(container.size() <= SortOperator.MAX_ROWS_PER_BLOCK);
+      rows.addAll(container);
+      block = operator.nextBlock();
+    }
+    return rows;
+  }
+
+  private static void assertAscending(List<Object[]> rows, int firstKey, int numRows) {
+    Assert.assertEquals(rows.size(), numRows);
+    for (int i = 0; i < numRows; i++) {
+      Assert.assertEquals(rows.get(i), new Object[]{firstKey + i, "value_" + (firstKey + i)});
+    }
+  }
+}
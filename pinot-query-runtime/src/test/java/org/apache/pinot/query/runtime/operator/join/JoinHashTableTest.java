@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.join;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.planner.partitioning.FieldSelectionKeySelector;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class JoinHashTableTest {
+
+  @Test
+  public void testIntKey() {
+    DataSchema schema = new DataSchema(new String[]{"key", "value"},
+        new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING});
+    JoinHashTable table = createTable(schema, schema, 0);
+    Assert.assertTrue(table instanceof IntKeyJoinHashTable);
+    table.addRow(new Object[]{1, "a"});
+    table.addRow(new Object[]{2, "b"});
+    table.addRow(new Object[]{1, "c"});
+    table.addRow(new Object[]{null, "d"});
+    Assert.assertEquals(table.size(), 3);
+    Assert.assertEquals(table.getNumKeys(), 2);
+    Assert.assertEquals(getMatchedValues(table, new Object[]{1, "x"}, 1), new Object[]{"c", "a"});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{2, "x"}, 1), new Object[]{"b"});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{3, "x"}, 1), new Object[0]);
+    Assert.assertEquals(getMatchedValues(table, new Object[]{null, "x"}, 1), new Object[0]);
+  }
+
+  @Test
+  public void testLongKey() {
+    DataSchema schema = new DataSchema(new String[]{"value", "key"},
+        new ColumnDataType[]{ColumnDataType.STRING, ColumnDataType.LONG});
+    JoinHashTable table = createTable(schema, schema, 1);
+    Assert.assertTrue(table instanceof LongKeyJoinHashTable);
+    table.addRow(new Object[]{"a", Long.MAX_VALUE});
+    table.addRow(new Object[]{"b", 1L});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{"x", Long.MAX_VALUE}, 0), new Object[]{"a"});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{"x", -1L}, 0), new Object[0]);
+  }
+
+  @Test
+  public void testDoubleKey() {
+    DataSchema schema = new DataSchema(new String[]{"key", "value"},
+        new ColumnDataType[]{ColumnDataType.DOUBLE, ColumnDataType.INT});
+    JoinHashTable table = createTable(schema, schema, 0);
+    Assert.assertTrue(table instanceof DoubleKeyJoinHashTable);
+    table.addRow(new Object[]{0.0, 1});
+    table.addRow(new Object[]{1.5, 2});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{-0.0, 0}, 1), new Object[]{1});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{1.5, 0}, 1), new Object[]{2});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{1.0, 0}, 1), new Object[0]);
+  }
+
+  @Test
+  public void testStringKeyWithHashCollision() {
+    DataSchema schema = new DataSchema(new String[]{"key", "value"},
+        new ColumnDataType[]{ColumnDataType.STRING, ColumnDataType.INT});
+    JoinHashTable table = createTable(schema, schema, 0);
+    Assert.assertTrue(table instanceof ObjectKeyJoinHashTable);
+    // "Aa" and "BB" have the same hash code
+    Assert.assertEquals("Aa".hashCode(), "BB".hashCode());
+    table.addRow(new Object[]{"Aa", 1});
+    table.addRow(new Object[]{"BB", 2});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{"Aa", 0}, 1), new Object[]{1});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{"BB", 0}, 1), new Object[]{2});
+  }
+
+  @Test
+  public void testMultiKey() {
+    DataSchema schema = new DataSchema(new String[]{"key1", "key2", "value"},
+        new ColumnDataType[]{ColumnDataType.STRING, ColumnDataType.INT, ColumnDataType.INT});
+    JoinHashTable table = createTable(schema, schema, 0, 1);
+    Assert.assertTrue(table instanceof MultiKeyJoinHashTable);
+    table.addRow(new Object[]{"Aa", 1, 1});
+    table.addRow(new Object[]{"BB", 1, 2});
+    table.addRow(new Object[]{"Aa", 2, 3});
+    table.addRow(new Object[]{"Aa", null, 4});
+    Assert.assertEquals(table.size(), 3);
+    Assert.assertEquals(getMatchedValues(table, new Object[]{"Aa", 1, 0}, 2), new Object[]{1});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{"BB", 1, 0}, 2), new Object[]{2});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{"BB", 2, 0}, 2), new Object[0]);
+    Assert.assertEquals(getMatchedValues(table, new Object[]{"Aa", null, 0}, 2), new Object[0]);
+  }
+
+  @Test
+  public void testMismatchedKeyTypes() {
+    DataSchema probeSchema = new DataSchema(new String[]{"key"}, new ColumnDataType[]{ColumnDataType.INT});
+    DataSchema buildSchema = new DataSchema(new String[]{"key", "value"},
+        new ColumnDataType[]{ColumnDataType.LONG, ColumnDataType.INT});
+    JoinHashTable table = createTable(probeSchema, buildSchema, 0);
+    Assert.assertTrue(table instanceof MultiKeyJoinHashTable);
+    table.addRow(new Object[]{1L, 1});
+    table.addRow(new Object[]{2L, 2});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{1}, 1), new Object[]{1});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{3}, 1), new Object[0]);
+  }
+
+  @Test
+  public void testKeyValueNotMatchingKeyType() {
+    DataSchema schema = new DataSchema(new String[]{"key", "value"},
+        new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING});
+    JoinHashTable table = createTable(schema, schema, 0);
+    table.addRow(new Object[]{1, "a"});
+    table.addRow(new Object[]{"1", "b"});
+    Assert.assertEquals(table.getNumKeys(), 1);
+    Assert.assertEquals(getMatchedValues(table, new Object[]{1, "x"}, 1), new Object[]{"a"});
+    Assert.assertEquals(getMatchedValues(table, new Object[]{"1", "x"}, 1), new Object[0]);
+    Assert.assertEquals(table.getProbePartitionId(new Object[]{"1", "x"}, 4), JoinHashTable.NULL_KEY_PARTITION_ID);
+  }
+
+  @Test
+  public void testMemoryEstimation() {
+    DataSchema schema = new DataSchema(new String[]{"key", "value"},
+        new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.STRING});
+    JoinHashTable table = createTable(schema, schema, 0);
+    long emptyTableBytes = table.getEstimatedMemoryBytes();
+    for (int i = 0; i < 10_000; i++) {
+      table.addRow(new Object[]{i, "value_" + i});
+    }
+    Assert.assertEquals(table.size(), 10_000);
+    Assert.assertTrue(table.getEstimatedMemoryBytes() > emptyTableBytes + 10_000 * 50);
+    for (int i = 0; i < 10_000; i++) {
+      Assert.assertEquals(getMatchedValues(table, new Object[]{i, null}, 1), new Object[]{"value_" + i});
+    }
+  }
+
+  private static JoinHashTable createTable(DataSchema probeSchema, DataSchema buildSchema, int... keyIds) {
+    return JoinHashTable.create(new FieldSelectionKeySelector(keyIds), probeSchema,
+        new FieldSelectionKeySelector(keyIds), buildSchema);
+  }
+
+  private static Object[] getMatchedValues(JoinHashTable table, Object[] probeRow, int valueId) {
+    List<Object> values = new ArrayList<>();
+    for (int rowId = table.getFirstMatch(probeRow); rowId != JoinHashTable.INVALID_ROW_ID;
+        rowId = table.getNextMatch(rowId)) {
+      values.add(table.getRow(rowId)[valueId]);
+    }
+    return values.toArray();
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.join;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class RuntimeFilterTest {
+
+  @Test
+  public void testInValues() {
+    RuntimeFilter runtimeFilter = new RuntimeFilter(ColumnDataType.INT, 3);
+    Assert.assertTrue(runtimeFilter.isEmpty());
+    runtimeFilter.add(5);
+    runtimeFilter.add(null);
+    runtimeFilter.add(1);
+    runtimeFilter.add(5);
+    runtimeFilter.add(3);
+    Assert.assertFalse(runtimeFilter.isEmpty());
+    Assert.assertEquals(runtimeFilter.getValues(), ImmutableSet.of(1, 3, 5));
+    Assert.assertEquals(runtimeFilter.getMinValue(), 1);
+    Assert.assertEquals(runtimeFilter.getMaxValue(), 5);
+  }
+
+  @Test
+  public void testRangeFallback() {
+    RuntimeFilter runtimeFilter = new RuntimeFilter(ColumnDataType.STRING, 2);
+    runtimeFilter.add("b");
+    runtimeFilter.add("c");
+    runtimeFilter.add("a");
+    Assert.assertNull(runtimeFilter.getValues());
+    Assert.assertEquals(runtimeFilter.getMinValue(), "a");
+    Assert.assertEquals(runtimeFilter.getMaxValue(), "c");
+  }
+
+  @Test
+  public void testMerge() {
+    RuntimeFilter runtimeFilter = new RuntimeFilter(ColumnDataType.LONG, 3);
+    runtimeFilter.add(2L);
+    RuntimeFilter emptyRuntimeFilter = new RuntimeFilter(ColumnDataType.LONG, 3);
+    runtimeFilter.merge(emptyRuntimeFilter);
+    Assert.assertEquals(runtimeFilter.getValues(), ImmutableSet.of(2L));
+
+    RuntimeFilter inRuntimeFilter = new RuntimeFilter(ColumnDataType.LONG, 3);
+    inRuntimeFilter.add(4L);
+    runtimeFilter.merge(inRuntimeFilter);
+    Assert.assertEquals(runtimeFilter.getValues(), ImmutableSet.of(2L, 4L));
+
+    // merging a range drops the distinct values.
+    RuntimeFilter rangeRuntimeFilter = new RuntimeFilter(ColumnDataType.LONG, 1);
+    rangeRuntimeFilter.add(-1L);
+    rangeRuntimeFilter.add(3L);
+    runtimeFilter.merge(rangeRuntimeFilter);
+    Assert.assertNull(runtimeFilter.getValues());
+    Assert.assertEquals(runtimeFilter.getMinValue(), -1L);
+    Assert.assertEquals(runtimeFilter.getMaxValue(), 4L);
+  }
+
+  @Test
+  public void testSerDe() {
+    RuntimeFilter runtimeFilter = new RuntimeFilter(ColumnDataType.DOUBLE, 2);
+    runtimeFilter.add(1.5);
+    runtimeFilter.add(-2.0);
+    TransferableBlock block = runtimeFilter.toTransferableBlock();
+    Assert.assertFalse(RuntimeFilter.isNoFilter(block));
+    Assert.assertTrue(RuntimeFilter.isNoFilter(RuntimeFilter.getNoFilterTransferableBlock()));
+    RuntimeFilter deserialized = RuntimeFilter.fromTransferableBlock(block, 2);
+    Assert.assertEquals(deserialized.getValues(), ImmutableSet.of(1.5, -2.0));
+
+    runtimeFilter.add(0.5);
+    block = runtimeFilter.toTransferableBlock();
+    Assert.assertEquals(block.getNumRows(), 2);
+    // the range is kept even when the receiver allows more distinct values.
+    deserialized = RuntimeFilter.fromTransferableBlock(block, 10);
+    Assert.assertNull(deserialized.getValues());
+    Assert.assertEquals(deserialized.getMinValue(), -2.0);
+    Assert.assertEquals(deserialized.getMaxValue(), 1.5);
+
+    RuntimeFilter emptyRuntimeFilter = new RuntimeFilter(ColumnDataType.DOUBLE, 2);
+    deserialized = RuntimeFilter.fromTransferableBlock(emptyRuntimeFilter.toTransferableBlock(), 2);
+    Assert.assertTrue(deserialized.isEmpty());
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.core.common.datablock.DataBlockBuilder;
+import org.apache.pinot.core.common.datablock.DataBlockUtils;
+import org.apache.pinot.query.planner.partitioning.FieldSelectionKeySelector;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class ColumnarHashPartitionerTest {
+  private static final DataSchema DATA_SCHEMA = new DataSchema(new String[]{"i", "l", "f", "d", "s", "bd"},
+      new DataSchema.ColumnDataType[]{
+          DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.LONG, DataSchema.ColumnDataType.FLOAT,
+          DataSchema.ColumnDataType.DOUBLE, DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.BIG_DECIMAL
+      });
+  private static final int NUM_ROWS = 1000;
+  private static final int NUM_PARTITIONS = 3;
+  private static final Random RANDOM = new Random();
+
+  @Test
+  public void testPartitionIdsMatchRowKeySelector()
+      throws Exception {
+    ColumnarDataBlock block = buildBlock();
+    List<Object[]> rows = DataBlockUtils.extractRows(block);
+    for (int[] keyColumnIds : new int[][]{{0}, {1}, {2}, {3}, {4}, {4, 0}, {0, 1, 2, 3, 4}}) {
+      FieldSelectionKeySelector keySelector = new FieldSelectionKeySelector(keyColumnIds);
+      Assert.assertTrue(ColumnarHashPartitioner.isSupported(DATA_SCHEMA, keySelector));
+      int[] partitionIds =
+          ColumnarHashPartitioner.computePartitionIds(block, keySelector.getColumnIndices(), NUM_PARTITIONS);
+      for (int rowId = 0; rowId < NUM_ROWS; rowId++) {
+        Assert.assertEquals(partitionIds[rowId], keySelector.computeHash(rows.get(rowId)) % NUM_PARTITIONS,
+            "Partition mismatch for keys " + Arrays.toString(keyColumnIds) + " of row " + rowId);
+      }
+    }
+    Assert.assertFalse(ColumnarHashPartitioner.isSupported(DATA_SCHEMA, new FieldSelectionKeySelector(5)));
+  }
+
+  @Test
+  public void testPartitionKeepsRowsAndOrder()
+      throws Exception {
+    ColumnarDataBlock block = buildBlock();
+    List<Object[]> rows = DataBlockUtils.extractRows(block);
+    FieldSelectionKeySelector keySelector = new FieldSelectionKeySelector(4, 1);
+    List<List<Object[]>> expectedPartitions = new ArrayList<>();
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      expectedPartitions.add(new ArrayList<>());
+    }
+    for (Object[] row : rows) {
+      expectedPartitions.get(keySelector.computeHash(row) % NUM_PARTITIONS).add(row);
+    }
+
+    List<TransferableBlock> partitions = ColumnarHashPartitioner.partition(block, null, keySelector, NUM_PARTITIONS);
+    Assert.assertEquals(partitions.size(), NUM_PARTITIONS);
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      List<Object[]> actualRows = DataBlockUtils.extractRows(partitions.get(i).getDataBlock());
+      List<Object[]> expectedRows = expectedPartitions.get(i);
+      Assert.assertEquals(actualRows.size(), expectedRows.size());
+      for (int rowId = 0; rowId < expectedRows.size(); rowId++) {
+        Assert.assertEquals(actualRows.get(rowId), expectedRows.get(rowId));
+      }
+    }
+  }
+
+  @Test
+  public void testMinValueHash()
+      throws Exception {
+    // 17 * 37 + 2147483019 overflows to Integer.MIN_VALUE.
+    DataSchema dataSchema = new DataSchema(new String[]{"i"}, new DataSchema.ColumnDataType[]{
+        DataSchema.ColumnDataType.INT
+    });
+    Object[] row = new Object[]{2147483019};
+    ColumnarDataBlock block =
+        DataBlockBuilder.buildFromColumns(Collections.singletonList(new Object[]{row[0]}), dataSchema);
+    FieldSelectionKeySelector keySelector = new FieldSelectionKeySelector(0);
+    int partitionId = keySelector.computeHash(row) % NUM_PARTITIONS;
+    Assert.assertTrue(partitionId >= 0);
+    Assert.assertEquals(ColumnarHashPartitioner.computePartitionIds(block, keySelector.getColumnIndices(),
+        NUM_PARTITIONS)[0], partitionId);
+    List<TransferableBlock> partitions = ColumnarHashPartitioner.partition(block, null, keySelector, NUM_PARTITIONS);
+    Assert.assertEquals(partitions.get(partitionId).getNumRows(), 1);
+  }
+
+  private static ColumnarDataBlock buildBlock()
+      throws Exception {
+    Object[][] columns = new Object[DATA_SCHEMA.size()][NUM_ROWS];
+    for (int rowId = 0; rowId < NUM_ROWS; rowId++) {
+      // Few distinct values so that keys collide, and ~10% of nulls
+      columns[0][rowId] = RANDOM.nextInt(20) - 10;
+      columns[1][rowId] = (long) RANDOM.nextInt(20) << 33;
+      columns[2][rowId] = RANDOM.nextInt(20) / 4f;
+      columns[3][rowId] = RANDOM.nextInt(20) / 8d;
+      columns[4][rowId] = "key_" + RANDOM.nextInt(20);
+      columns[5][rowId] = new BigDecimal(RANDOM.nextInt(20));
+      for (int colId = 0; colId < DATA_SCHEMA.size(); colId++) {
+        if (RANDOM.nextInt(10) == 0) {
+          columns[colId][rowId] = null;
+        }
+      }
+    }
+    return DataBlockBuilder.buildFromColumns(Arrays.asList(columns), DATA_SCHEMA);
+  }
+}
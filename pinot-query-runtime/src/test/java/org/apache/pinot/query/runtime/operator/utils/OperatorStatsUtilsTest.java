@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.pinot.spi.utils.JsonUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class OperatorStatsUtilsTest {
+
+  @Test
+  public void testMergeStageStats()
+      throws Exception {
+    List<JsonNode> stageStatsList = new ArrayList<>();
+    stageStatsList.add(JsonUtils.stringToJsonNode("{\"stageId\":2,\"server\":\"host1:1\",\"operatorStats\":"
+        + "{\"operator\":\"MAILBOX_SEND\",\"rowsIn\":10,\"rowsOut\":10,\"wallTimeNs\":100,"
+        + "\"mailboxBytes\":{\"host3:3\":50},"
+        + "\"children\":[{\"operator\":\"LEAF_STAGE_TRANSFER_OPERATOR\",\"rowsOut\":10,\"wallTimeNs\":20}]}}"));
+    stageStatsList.add(JsonUtils.stringToJsonNode("{\"stageId\":1,\"server\":\"host3:3\",\"operatorStats\":"
+        + "{\"operator\":\"MAILBOX_SEND\",\"rowsIn\":30,\"rowsOut\":30,\"wallTimeNs\":10}}"));
+    stageStatsList.add(JsonUtils.stringToJsonNode("{\"stageId\":2,\"server\":\"host2:2\",\"operatorStats\":"
+        + "{\"operator\":\"MAILBOX_SEND\",\"rowsIn\":20,\"rowsOut\":20,\"wallTimeNs\":300,"
+        + "\"mailboxBytes\":{\"host3:3\":70},"
+        + "\"children\":[{\"operator\":\"LEAF_STAGE_TRANSFER_OPERATOR\",\"rowsOut\":20,\"wallTimeNs\":40}]}}"));
+
+    // the stage stats are sorted by stage id, and the stats of the workers of the same stage are summed up.
+    ArrayNode mergedStageStats = OperatorStatsUtils.mergeStageStats(stageStatsList);
+    Assert.assertEquals(mergedStageStats.size(), 2);
+    Assert.assertEquals(mergedStageStats.get(0).get(OperatorStatsUtils.STAGE_ID).asInt(), 1);
+    Assert.assertEquals(mergedStageStats.get(0).get(OperatorStatsUtils.NUM_WORKERS).asInt(), 1);
+    JsonNode stageStats = mergedStageStats.get(1);
+    Assert.assertEquals(stageStats.get(OperatorStatsUtils.STAGE_ID).asInt(), 2);
+    Assert.assertEquals(stageStats.get(OperatorStatsUtils.NUM_WORKERS).asInt(), 2);
+    JsonNode sendStats = stageStats.get(OperatorStatsUtils.OPERATOR_STATS);
+    Assert.assertEquals(sendStats.get(OperatorStatsUtils.OPERATOR).asText(), "MAILBOX_SEND");
+    Assert.assertEquals(sendStats.get(OperatorStatsUtils.ROWS_IN).asLong(), 30);
+    Assert.assertEquals(sendStats.get(OperatorStatsUtils.WALL_TIME_NS).asLong(), 400);
+    Assert.assertEquals(sendStats.get(OperatorStatsUtils.MAX_WALL_TIME_NS).asLong(), 300);
+    Assert.assertEquals(sendStats.get(OperatorStatsUtils.MAILBOX_BYTES).get("host3:3").asLong(), 120);
+    JsonNode leafStats = sendStats.get(OperatorStatsUtils.CHILDREN).get(0);
+    Assert.assertEquals(leafStats.get(OperatorStatsUtils.ROWS_OUT).asLong(), 30);
+    Assert.assertEquals(leafStats.get(OperatorStatsUtils.MAX_WALL_TIME_NS).asLong(), 40);
+
+    String explainString = OperatorStatsUtils.explainStageStats(mergedStageStats);
+    Assert.assertTrue(explainString.startsWith("[1] numWorkers=1\n  MAILBOX_SEND rowsIn=30 rowsOut=30"),
+        explainString);
+    Assert.assertTrue(explainString.contains("\n    LEAF_STAGE_TRANSFER_OPERATOR rowsOut=30 wallTimeNs=60"),
+        explainString);
+  }
+
+  @Test
+  public void testMetadataRoundTrip()
+      throws Exception {
+    List<JsonNode> stageStatsList = new ArrayList<>();
+    stageStatsList.add(JsonUtils.stringToJsonNode("{\"stageId\":1,\"operatorStats\":{\"operator\":\"SORT\"}}"));
+    Map<String, String> metadata = OperatorStatsUtils.toMetadata(stageStatsList);
+    List<JsonNode> extractedStageStatsList = new ArrayList<>();
+    OperatorStatsUtils.fromMetadata(metadata, extractedStageStatsList);
+    Assert.assertEquals(extractedStageStatsList, stageStatsList);
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.utils;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.apache.calcite.rel.RelFieldCollation;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class RangePartitionerTest {
+  private static final DataSchema DATA_SCHEMA = new DataSchema(new String[]{"i", "s", "d"},
+      new DataSchema.ColumnDataType[]{
+          DataSchema.ColumnDataType.INT, DataSchema.ColumnDataType.STRING, DataSchema.ColumnDataType.DOUBLE
+      });
+  private static final int NUM_ROWS = 1000;
+  private static final int NUM_PARTITIONS = 4;
+  private static final Random RANDOM = new Random();
+
+  @Test
+  public void testPartitionsAreOrderedRanges() {
+    List<Integer> keyColumnIndices = ImmutableList.of(0, 1);
+    List<RelFieldCollation.Direction> directions =
+        ImmutableList.of(RelFieldCollation.Direction.DESCENDING, RelFieldCollation.Direction.ASCENDING);
+    Comparator<Object[]> comparator = Comparator.<Object[], Integer>comparing(row -> (Integer) row[0]).reversed()
+        .thenComparing(row -> (String) row[1]);
+    List<Object[]> rows = buildRows();
+
+    // two sending workers with half of the rows each agree on the same split points.
+    RangePartitioner partitioner1 = new RangePartitioner(keyColumnIndices, directions, DATA_SCHEMA, NUM_PARTITIONS);
+    RangePartitioner partitioner2 = new RangePartitioner(keyColumnIndices, directions, DATA_SCHEMA, NUM_PARTITIONS);
+    Assert.assertFalse(partitioner1.hasSplitPoints());
+    List<Object[]> sampleKeys = new ArrayList<>(partitioner1.sampleKeys(rows.subList(0, NUM_ROWS / 2), 100));
+    sampleKeys.addAll(partitioner2.sampleKeys(rows.subList(NUM_ROWS / 2, NUM_ROWS), 100));
+    Assert.assertEquals(sampleKeys.size(), 200);
+    partitioner1.setSplitPoints(sampleKeys);
+    Collections.reverse(sampleKeys);
+    partitioner2.setSplitPoints(sampleKeys);
+    Assert.assertTrue(partitioner1.hasSplitPoints());
+
+    List<List<Object[]>> partitions = partitioner1.partition(rows);
+    Assert.assertEquals(partitions.size(), NUM_PARTITIONS);
+    List<Object[]> concatenatedRows = new ArrayList<>();
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      List<Object[]> partition = partitions.get(i);
+      // the sampled ranges are roughly balanced.
+      Assert.assertTrue(partition.size() > NUM_ROWS / NUM_PARTITIONS / 2, "Partition " + i + " is too small");
+      for (Object[] row : partition) {
+        Assert.assertEquals(partitioner2.getPartition(row), i);
+      }
+      partition.sort(comparator);
+      concatenatedRows.addAll(partition);
+    }
+    // sorting each partition and concatenating them yields the global order.
+    List<Object[]> sortedRows = new ArrayList<>(rows);
+    sortedRows.sort(comparator);
+    Assert.assertEquals(concatenatedRows.size(), NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      Assert.assertEquals(comparator.compare(concatenatedRows.get(i), sortedRows.get(i)), 0);
+    }
+  }
+
+  @Test
+  public void testWithoutSampleKeys() {
+    List<Integer> keyColumnIndices = ImmutableList.of(2);
+    List<RelFieldCollation.Direction> directions = ImmutableList.of(RelFieldCollation.Direction.ASCENDING);
+    RangePartitioner partitioner = new RangePartitioner(keyColumnIndices, directions, DATA_SCHEMA, NUM_PARTITIONS);
+    Assert.assertEquals(partitioner.getKeyDataSchema(), new DataSchema(new String[]{"d"},
+        new DataSchema.ColumnDataType[]{DataSchema.ColumnDataType.DOUBLE}));
+    Assert.assertTrue(partitioner.sampleKeys(Collections.emptyList(), 100).isEmpty());
+    partitioner.setSplitPoints(Collections.emptyList());
+    List<List<Object[]>> partitions = partitioner.partition(buildRows());
+    Assert.assertEquals(partitions.get(0).size(), NUM_ROWS);
+
+    // a single partition doesn't need any sample key.
+    Assert.assertTrue(new RangePartitioner(keyColumnIndices, directions, DATA_SCHEMA, 1).hasSplitPoints());
+  }
+
+  @Test
+  public void testNullKeys() {
+    List<Object[]> rows = buildRows();
+    int numNullRows = 0;
+    for (int i = 0; i < NUM_ROWS; i += 7) {
+      rows.get(i)[0] = null;
+      numNullRows++;
+    }
+    for (RelFieldCollation.Direction direction : ImmutableList.of(RelFieldCollation.Direction.ASCENDING,
+        RelFieldCollation.Direction.DESCENDING)) {
+      RangePartitioner partitioner =
+          new RangePartitioner(ImmutableList.of(0), ImmutableList.of(direction), DATA_SCHEMA, NUM_PARTITIONS);
+      // the sample keys include nulls as well.
+      partitioner.setSplitPoints(partitioner.sampleKeys(rows, 100));
+      // nulls are last in ascending order and first in descending order.
+      int nullPartition = direction == RelFieldCollation.Direction.ASCENDING ? NUM_PARTITIONS - 1 : 0;
+      List<List<Object[]>> partitions = partitioner.partition(rows);
+      for (int i = 0; i < NUM_PARTITIONS; i++) {
+        for (Object[] row : partitions.get(i)) {
+          if (row[0] == null) {
+            Assert.assertEquals(i, nullPartition);
+          }
+        }
+      }
+      Assert.assertEquals(partitions.get(nullPartition).stream().filter(row -> row[0] == null).count(), numNullRows);
+    }
+  }
+
+  @Test
+  public void testColumnarPartition()
+      throws Exception {
+    List<Integer> keyColumnIndices = ImmutableList.of(1, 0);
+    List<RelFieldCollation.Direction> directions =
+        ImmutableList.of(RelFieldCollation.Direction.ASCENDING, RelFieldCollation.Direction.DESCENDING);
+    RangePartitioner partitioner = new RangePartitioner(keyColumnIndices, directions, DATA_SCHEMA, NUM_PARTITIONS);
+    List<Object[]> rows = buildRows();
+    partitioner.setSplitPoints(partitioner.sampleKeys(rows, 100));
+
+    List<List<Object[]>> expectedPartitions = partitioner.partition(rows);
+    List<TransferableBlock> blocks =
+        partitioner.partition(new TransferableBlock(rows, DATA_SCHEMA, BaseDataBlock.Type.COLUMNAR));
+    Assert.assertEquals(blocks.size(), NUM_PARTITIONS);
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      TransferableBlock block = blocks.get(i);
+      Assert.assertEquals(block.getType(), BaseDataBlock.Type.COLUMNAR);
+      List<Object[]> partitionRows = block.getContainer();
+      Assert.assertEquals(partitionRows.size(), expectedPartitions.get(i).size());
+      for (Object[] row : partitionRows) {
+        Assert.assertEquals(partitioner.getPartition(row), i);
+      }
+    }
+  }
+
+  private static List<Object[]> buildRows() {
+    List<Object[]> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      rows.add(new Object[]{RANDOM.nextInt(100), "s" + RANDOM.nextInt(50), RANDOM.nextDouble()});
+    }
+    return rows;
+  }
+}
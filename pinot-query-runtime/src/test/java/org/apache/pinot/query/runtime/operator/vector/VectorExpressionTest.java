@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.pinot.query.runtime.operator.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.pinot.common.utils.DataSchema;
+import org.apache.pinot.common.utils.DataSchema.ColumnDataType;
+import org.apache.pinot.core.common.datablock.BaseDataBlock;
+import org.apache.pinot.core.common.datablock.ColumnarDataBlock;
+import org.apache.pinot.query.planner.logical.RexExpression;
+import org.apache.pinot.query.runtime.blocks.TransferableBlock;
+import org.apache.pinot.query.runtime.operator.operands.FilterOperand;
+import org.apache.pinot.query.runtime.operator.operands.TransformOperand;
+import org.apache.pinot.spi.data.FieldSpec;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+
+public class VectorExpressionTest {
+  private static final DataSchema SCHEMA = new DataSchema(new String[]{"intCol", "longCol", "floatCol", "doubleCol",
+      "stringCol"}, new ColumnDataType[]{ColumnDataType.INT, ColumnDataType.LONG, ColumnDataType.FLOAT,
+      ColumnDataType.DOUBLE, ColumnDataType.STRING});
+  private static final int NUM_ROWS = 200;
+  private static final List<Object[]> ROWS = getRows();
+  private static final ColumnarDataBlock DATA_BLOCK =
+      (ColumnarDataBlock) new TransferableBlock(ROWS, SCHEMA, BaseDataBlock.Type.COLUMNAR).getDataBlock();
+
+  @DataProvider(name = "filters")
+  public Object[][] provideFilters() {
+    return new Object[][]{
+        new Object[]{call("=", ref(0), literal(FieldSpec.DataType.INT, 7))},
+        new Object[]{call(">=", ref(1), literal(FieldSpec.DataType.INT, -50))},
+        new Object[]{call("<", ref(2), ref(3))},
+        new Object[]{call("<>", ref(3), literal(FieldSpec.DataType.DOUBLE, 10.5))},
+        new Object[]{call("<=", literal(FieldSpec.DataType.LONG, 30L), ref(0))},
+        // compared as INT, the type of the left side.
+        new Object[]{call(">", ref(0), ref(3))},
+        new Object[]{call("=", ref(4), literal(FieldSpec.DataType.STRING, "value_3"))},
+        new Object[]{call(">", ref(4), ref(0))},
+        new Object[]{call(">", call("+", ref(0), ref(2)), literal(FieldSpec.DataType.INT, 20))},
+        new Object[]{call("<", call("MOD", ref(1), literal(FieldSpec.DataType.INT, 7)), literal(FieldSpec.DataType.INT,
+            2))},
+        new Object[]{call("=", call("UPPER", ref(4)), literal(FieldSpec.DataType.STRING, "VALUE_12"))},
+        new Object[]{call("AND", call(">", ref(0), literal(FieldSpec.DataType.INT, 10)),
+            call("<", ref(3), literal(FieldSpec.DataType.DOUBLE, 50.0)))},
+        new Object[]{call("OR", call("<", ref(0), literal(FieldSpec.DataType.INT, -90)),
+            call("=", ref(4), literal(FieldSpec.DataType.STRING, "value_5")),
+            call(">", call("SQRT", call("ABS", ref(3))), literal(FieldSpec.DataType.DOUBLE, 9.5)))},
+        new Object[]{call("NOT", call("OR", call("<", ref(0), literal(FieldSpec.DataType.INT, 0)),
+            call(">", ref(1), literal(FieldSpec.DataType.LONG, 60L))))},
+        // not vectorized, evaluated one row at a time.
+        new Object[]{call("AND", call("=", call("reverse", ref(4)), literal(FieldSpec.DataType.STRING, "1_eulav")),
+            call(">=", ref(0), literal(FieldSpec.DataType.INT, 0)))},
+    };
+  }
+
+  @Test(dataProvider = "filters")
+  public void testFilterMatchesRowEvaluation(RexExpression filter) {
+    FilterOperand filterOperand = FilterOperand.toFilterOperand(filter, SCHEMA);
+    VectorFilter vectorFilter = VectorFilter.compile(filter, SCHEMA);
+
+    // all rows of the block.
+    VectorBatch batch = new VectorBatch(new TransferableBlock(DATA_BLOCK));
+    int[] rowIds = batch.getRowIds();
+    int numMatched = vectorFilter.filter(batch, rowIds, batch.getNumRows());
+    List<Integer> expected = new ArrayList<>();
+    for (int rowId = 0; rowId < NUM_ROWS; rowId++) {
+      if (filterOperand.apply(ROWS.get(rowId))) {
+        expected.add(rowId);
+      }
+    }
+    Assert.assertEquals(toList(rowIds, numMatched), expected);
+
+    // rows selected by a previous filter.
+    int[] selection = new int[NUM_ROWS / 2];
+    for (int i = 0; i < selection.length; i++) {
+      selection[i] = 2 * i + 1;
+    }
+    batch = new VectorBatch(new TransferableBlock(DATA_BLOCK, selection));
+    rowIds = batch.getRowIds();
+    numMatched = vectorFilter.filter(batch, rowIds, batch.getNumRows());
+    expected.removeIf(rowId -> rowId % 2 == 0);
+    Assert.assertEquals(toList(rowIds, numMatched), expected);
+    Assert.assertEquals(selection[0], 1, "Selection of the input block must not be modified");
+  }
+
+  @DataProvider(name = "transforms")
+  public Object[][] provideTransforms() {
+    return new Object[][]{
+        new Object[]{ref(0)},
+        new Object[]{ref(4)},
+        new Object[]{literal(FieldSpec.DataType.LONG, 5L)},
+        new Object[]{call("+", ref(0), literal(FieldSpec.DataType.INT, 1))},
+        new Object[]{call("*", ref(1), ref(2))},
+        new Object[]{call("/", ref(3), ref(0))},
+        new Object[]{call("-", call("FLOOR", ref(3)), call("CEIL", ref(2)))},
+        new Object[]{call("SQRT", call("ABS", ref(3)))},
+        new Object[]{call("LOWER", call("UPPER", ref(4)))},
+    };
+  }
+
+  @Test(dataProvider = "transforms")
+  public void testTransformMatchesRowEvaluation(RexExpression transform) {
+    TransformOperand transformOperand = TransformOperand.toTransformOperand(transform, SCHEMA);
+    VectorExpression vectorExpression = VectorExpression.compile(transform, SCHEMA);
+    Assert.assertNotNull(vectorExpression);
+    Assert.assertEquals(vectorExpression.getResultType(), transformOperand.getResultType());
+
+    VectorBatch batch = new VectorBatch(new TransferableBlock(DATA_BLOCK));
+    Object[] values = vectorExpression.evaluateObject(batch, batch.getRowIds(), batch.getNumRows());
+    for (int rowId = 0; rowId < NUM_ROWS; rowId++) {
+      Assert.assertEquals(values[rowId], transformOperand.apply(ROWS.get(rowId)));
+    }
+  }
+
+  @Test
+  public void testUnsupportedExpressionIsNotVectorized() {
+    Assert.assertNull(VectorExpression.compile(call("reverse", ref(4)), SCHEMA));
+    Assert.assertNull(VectorExpression.compile(call("+", ref(4), ref(0)), SCHEMA));
+    Assert.assertNull(VectorExpression.compile(call("UPPER", ref(0)), SCHEMA));
+  }
+
+  private static RexExpression ref(int index) {
+    return new RexExpression.InputRef(index);
+  }
+
+  private static RexExpression literal(FieldSpec.DataType dataType, Object value) {
+    return new RexExpression.Literal(dataType, value);
+  }
+
+  private static RexExpression call(String functionName, RexExpression... operands) {
+    return new RexExpression.FunctionCall(SqlKind.OTHER_FUNCTION, FieldSpec.DataType.DOUBLE, functionName,
+        Arrays.asList(operands));
+  }
+
+  private static List<Integer> toList(int[] rowIds, int numRows) {
+    List<Integer> list = new ArrayList<>(numRows);
+    for (int i = 0; i < numRows; i++) {
+      list.add(rowIds[i]);
+    }
+    return list;
+  }
+
+  private static List<Object[]> getRows() {
+    List<Object[]> rows = new ArrayList<>(NUM_ROWS);
+    for (int i = 0; i < NUM_ROWS; i++) {
+      int value = i - NUM_ROWS / 2;
+      rows.add(new Object[]{value, (long) value * 3, value / 4.0f, value * 0.75, "value_" + (i % 20)});
+    }
+    return rows;
+  }
+}
@@ -44,6 +44,13 @@ public interface InvocationRecording {
   default void setNumDocsScanned(int numDocsScanned) {
   }
 
+  /**
+   * Sets the max number of documents per block chosen for the query.
+   * @param maxDocsPerCall the max number of documents per block
+   */
+  default void setMaxDocsPerCall(int maxDocsPerCall) {
+  }
+
   /**
    * Sets the number of documents matching after a filter has been applied.
    * Indicates whether the index was selective or not.